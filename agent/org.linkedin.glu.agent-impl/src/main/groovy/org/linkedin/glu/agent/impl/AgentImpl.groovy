@@ -92,7 +92,9 @@ def class AgentImpl implements Agent, AgentContext, Shutdownable
                            rootShell: _rootShell,
                            scriptLoader: args.scriptLoader ?: new NoSharedClassLoaderScriptLoader(),
                            mop: new MOPImpl(),
-                           zooKeeper: args.zooKeeper)
+                           zooKeeper: args.zooKeeper,
+                           threadPool: args.threadPool,
+                           scriptCache: args.scriptCache)
     _agentLogDir = args.agentLogDir
     _sigar = args.sigar
 
@@ -102,6 +104,8 @@ def class AgentImpl implements Agent, AgentContext, Shutdownable
       _scriptManager = new ScriptManagerImpl(agentContext: _agentContext)
       _commandManager = new CommandManagerImpl(agentContext: _agentContext,
                                                ioStorage: new MemoryCommandExecutionIOStorage(clock: clock))
+      if(args.threadPool)
+        _commandManager.submitter = args.threadPool.submitter
       def f = new CommandGluScriptFactoryFactory(ioStorage: _commandManager.ioStorage)
       _scriptManager.scriptFactoryFactory.chain(f)
       _scriptManager = new StateKeeperScriptManager(scriptManager: _scriptManager,
@@ -193,6 +197,10 @@ def class AgentImpl implements Agent, AgentContext, Shutdownable
         res.mem = _sigar.mem.toMap()
       }
 
+      // script cache (hits/misses...)
+      if(_agentContext.scriptCache)
+        res.scriptCache = _agentContext.scriptCache.stats
+
       return res
     }
   }
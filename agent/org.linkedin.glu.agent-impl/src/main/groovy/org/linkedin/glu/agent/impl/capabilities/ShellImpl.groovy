@@ -43,7 +43,10 @@ def class ShellImpl extends org.linkedin.glu.groovy.utils.shell.ShellImpl implem
                          agentProperties: agentProperties,
                          charset: charset,
                          clock: clock,
-                         submitter: _submitter)
+                         submitter: _submitter,
+                         fetchParallelism: fetchParallelism,
+                         untarInProcess: untarInProcess,
+                         untarParallelism: untarParallelism)
   }
 
   Map<String, String> getEnv()
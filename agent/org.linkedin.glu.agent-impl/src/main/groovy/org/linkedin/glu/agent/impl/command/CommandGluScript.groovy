@@ -22,6 +22,7 @@ import org.linkedin.glu.groovy.utils.io.StreamType
 import org.linkedin.glu.groovy.utils.concurrent.CallExecution
 import org.linkedin.glu.commands.impl.CommandExecutionIOStorage
 import org.linkedin.util.annotations.Initializable
+import org.linkedin.util.clock.Clock
 
 /**
  * The glu script that wraps the execution of a glu command
@@ -60,7 +61,17 @@ public class CommandGluScript
 
     CommandExecution ce = findCommandExecution()
 
-    ce.syncCaptureIO { CommandStreamStorage storage ->
+    ce.syncCaptureIO(createProcessing(ce, shell.clock))
+  }
+
+  /**
+   * @return the closure which runs the command (to be provided to
+   *         {@link CommandExecution#syncCaptureIO} or
+   *         {@link CommandExecution#asyncCaptureIO})
+   */
+  static Closure createProcessing(CommandExecution ce, Clock clock)
+  {
+    return { CommandStreamStorage storage ->
 
       def actionArgs = [*:ce.args]
 
@@ -82,7 +93,7 @@ public class CommandGluScript
             // finally run the commandExecution
             def callExecution = new CallExecution(action: 'run',
                                                   actionArgs: actionArgs,
-                                                  clock: shell.clock,
+                                                  clock: clock,
                                                   source: [invocable: ce.command])
 
             return [exitValue: callExecution.runSync()]
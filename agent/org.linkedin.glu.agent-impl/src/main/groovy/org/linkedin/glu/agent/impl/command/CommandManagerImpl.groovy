@@ -30,6 +30,7 @@ import org.linkedin.util.clock.Timespan
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeoutException
 import org.linkedin.glu.groovy.utils.concurrent.FutureTaskExecution
 import org.linkedin.glu.utils.concurrent.Submitter
@@ -57,6 +58,18 @@ public class CommandManagerImpl implements CommandManager
   @Initializable(required = true)
   ScriptManager scriptManager
 
+  /**
+   * When <code>true</code>, the commands are executed directly by the <code>submitter</code>
+   * instead of installing a glu script for each command: nothing is written in the script storage
+   * and the command is only kept in memory while it runs.
+   */
+  @Initializable
+  boolean lightweightExecution = false
+
+  // the commands currently executing (lightweight execution only)
+  private final Map<String, CommandExecution> _currentCommandExecutions =
+    new ConcurrentHashMap<String, CommandExecution>()
+
   void setIoStorage(CommandExecutionIOStorage storage)
   {
     storage.gluCommandFactory = createGluCommand as GluCommandFactory
@@ -86,6 +99,52 @@ public class CommandManagerImpl implements CommandManager
 
     CommandExecution command = ioStorage.createStorageForCommandExecution([*:args, type: 'shell'])
 
+    if(lightweightExecution)
+      executeCommand(command)
+    else
+      executeCommandScript(command)
+
+    if(args.id)
+    {
+      command.log.info("execute(${GluGroovyCollectionUtils.xorMap(args, ['stdin', 'id'])}${args.stdin ? ', stdin:<...>': ''})")
+    }
+    else
+    {
+      log.info("execute(${GluGroovyCollectionUtils.xorMap(args, ['stdin'])}${args.stdin ? ', stdin:<...>': ''}): ${command.id}")
+    }
+
+    return command
+  }
+
+  /**
+   * Executes the command asynchronously (in the <code>submitter</code>) and keeps track of it
+   * until it completes
+   */
+  protected void executeCommand(CommandExecution command)
+  {
+    _currentCommandExecutions[command.id] = command
+    try
+    {
+      def future = command.asyncCaptureIO(submitter,
+                                          CommandGluScript.createProcessing(command,
+                                                                            agentContext.clock))
+      future.onCompletionCallback = { _currentCommandExecutions.remove(command.id) }
+    }
+    catch(Throwable th)
+    {
+      // this is to avoid the case when the command is added to the map but we cannot
+      // run the asynchronous execution which will remove it from the map when complete
+      _currentCommandExecutions.remove(command.id)
+      throw th
+    }
+  }
+
+  /**
+   * Executes the command by installing a glu script (<code>CommandGluScript</code>) which
+   * automatically gets uninstalled when the command completes
+   */
+  protected void executeCommandScript(CommandExecution command)
+  {
     def mountPoint = toMountPoint(command)
 
     // install the CommandGluScript
@@ -144,17 +203,6 @@ public class CommandManagerImpl implements CommandManager
                                onCancelPreCallback: { doInterruptCommand(command) },
                                onCompletionCallback: onCompletionCallback
                              ])
-
-    if(args.id)
-    {
-      command.log.info("execute(${GluGroovyCollectionUtils.xorMap(args, ['stdin', 'id'])}${args.stdin ? ', stdin:<...>': ''})")
-    }
-    else
-    {
-      log.info("execute(${GluGroovyCollectionUtils.xorMap(args, ['stdin'])}${args.stdin ? ', stdin:<...>': ''}): ${command.id}")
-    }
-
-    return command
   }
 
   /**
@@ -239,6 +287,10 @@ public class CommandManagerImpl implements CommandManager
         // then we interrupt the execution (no effect if completed...)
         commandExecution.interruptExecution()
 
+        // a command cancelled while still queued never runs so it is completed here
+        if(!commandExecution.futureExecution?.isStarted())
+          completeCancelledCommand(commandExecution)
+
         // lastly we wait again, we give a bit of time for the operation to complete
         res = commandExecution.waitForCompletionNoException(interruptCommandGracePeriod)
       }
@@ -247,13 +299,37 @@ public class CommandManagerImpl implements CommandManager
     return res
   }
 
-  CommandExecution findCommand(String id)
+  /**
+   * Records the completion of a command which has been cancelled before it started: like any
+   * cancelled command, it has no exit value (otherwise <code>waitForCommand</code> would wait
+   * for it to start until the timeout)
+   */
+  private void completeCancelledCommand(CommandExecution commandExecution)
   {
+    try
+    {
+      commandExecution.syncCaptureIO { storage -> [exitValue: null] }
+    }
+    catch(Throwable th)
+    {
+      log.warn("Could not complete cancelled command ${commandExecution.id} (ignored)", th)
+    }
+    finally
+    {
+      _currentCommandExecutions.remove(commandExecution.id, commandExecution)
+    }
+  }
 
+  CommandExecution findCommand(String id)
+  {
     // first we look to see if the command is still currently running
-    def scriptNode = scriptManager.findScript(toMountPoint(id))
+    CommandExecution commandExecution = id ? _currentCommandExecutions[id] : null
 
-    CommandExecution commandExecution = scriptNode?.commandExecution
+    if(!commandExecution)
+    {
+      def scriptNode = scriptManager.findScript(toMountPoint(id))
+      commandExecution = scriptNode?.commandExecution
+    }
 
     // not found... should be completed => look in storage
     if(!commandExecution)
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.concurrent
+
+import org.linkedin.glu.utils.concurrent.ExecutorServiceSubmitter
+import org.linkedin.glu.utils.concurrent.Submitter
+import org.linkedin.util.clock.ClockUtils
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.lifecycle.Shutdownable
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.SynchronousQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * The pool of threads shared by the scripts and the commands of the agent. The threads are only
+ * borrowed while there is something to execute (an idle script does not hold any thread) and a
+ * single (daemon) thread is used to wake up the scripts which have something scheduled in the
+ * future (timers, expiry...).
+ *
+ * @author yan@pongasoft.com
+ */
+class AgentThreadPool implements Shutdownable
+{
+  public static final String MODULE = AgentThreadPool.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private final ThreadPoolExecutor _executor
+  private final ScheduledExecutorService _scheduler
+  private final Submitter _submitter
+
+  /**
+   * Constructor
+   *
+   * @param stackSize the stack size of the threads (<code>0</code> means the default stack size
+   *                  of the jvm)
+   * @param keepAlive how long an idle thread is kept in the pool before being released
+   */
+  AgentThreadPool(long stackSize = 0, Timespan keepAlive = Timespan.parse('1m'))
+  {
+    _executor = new ThreadPoolExecutor(0,
+                                       Integer.MAX_VALUE,
+                                       keepAlive.durationInMilliseconds,
+                                       TimeUnit.MILLISECONDS,
+                                       new SynchronousQueue<Runnable>(),
+                                       new AgentThreadFactory('glu-agent', stackSize))
+    _scheduler =
+      Executors.newSingleThreadScheduledExecutor(new AgentThreadFactory('glu-agent-scheduler', 0))
+    _submitter = new ExecutorServiceSubmitter(_executor)
+  }
+
+  /**
+   * @return the executor service backing this pool
+   */
+  ExecutorService getExecutorService()
+  {
+    return _executor
+  }
+
+  /**
+   * @return a submitter backed by this pool (for shells and commands)
+   */
+  Submitter getSubmitter()
+  {
+    return _submitter
+  }
+
+  /**
+   * @return the number of threads currently in the pool (idle or not)
+   */
+  int getPoolSize()
+  {
+    return _executor.poolSize
+  }
+
+  /**
+   * @return the number of threads currently executing something
+   */
+  int getActiveCount()
+  {
+    return _executor.activeCount
+  }
+
+  /**
+   * @return the largest number of threads which have ever simultaneously been in the pool
+   */
+  int getLargestPoolSize()
+  {
+    return _executor.largestPoolSize
+  }
+
+  /**
+   * Executes the runnable in a thread of the pool
+   */
+  void execute(Runnable runnable)
+  {
+    _executor.execute(runnable)
+  }
+
+  /**
+   * Executes the runnable in a thread of the pool after the delay. Note that the scheduler thread
+   * simply hands off the runnable to the pool, so the runnable never executes in the scheduler
+   * thread.
+   */
+  ScheduledFuture<?> schedule(Runnable runnable, long delayInMilliseconds)
+  {
+    _scheduler.schedule({ execute(runnable) } as Runnable,
+                        delayInMilliseconds,
+                        TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void shutdown()
+  {
+    _scheduler.shutdownNow()
+    _executor.shutdown()
+  }
+
+  @Override
+  void waitForShutdown()
+  {
+    _executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void waitForShutdown(Object timeout)
+  {
+    timeout = ClockUtils.toTimespan(timeout)
+    if(timeout == null)
+      waitForShutdown()
+    else
+    {
+      if(!_executor.awaitTermination(timeout.durationInMilliseconds, TimeUnit.MILLISECONDS))
+        throw new TimeoutException()
+    }
+  }
+
+  private static class AgentThreadFactory implements ThreadFactory
+  {
+    private final String _prefix
+    private final long _stackSize
+    private final AtomicInteger _counter = new AtomicInteger(0)
+
+    AgentThreadFactory(String prefix, long stackSize)
+    {
+      _prefix = prefix
+      _stackSize = stackSize
+    }
+
+    @Override
+    Thread newThread(Runnable runnable)
+    {
+      Thread res = new Thread(null,
+                              runnable,
+                              "${_prefix}-${_counter.incrementAndGet()}".toString(),
+                              _stackSize)
+      res.daemon = true
+      return res
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package org.linkedin.glu.agent.impl.script
 
 import org.linkedin.glu.agent.api.Shell
+import org.linkedin.glu.agent.impl.concurrent.AgentThreadPool
 import org.linkedin.util.clock.Clock
 import org.linkedin.zookeeper.client.IZKClient
 
@@ -33,4 +34,16 @@ public interface AgentContext
   MOP getMop()
   ScriptLoader getScriptLoader()
   IZKClient getZooKeeper()
+
+  /**
+   * @return the pool of threads shared by the scripts (<code>null</code> means that each script
+   * uses its own dedicated thread)
+   */
+  AgentThreadPool getThreadPool()
+
+  /**
+   * @return the cache for the scripts fetched from a location (<code>null</code> means that each
+   * mount point fetches its own copy)
+   */
+  ScriptCache getScriptCache()
 }
\ No newline at end of file
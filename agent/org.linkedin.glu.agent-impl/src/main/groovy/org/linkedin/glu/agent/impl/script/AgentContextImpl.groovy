@@ -17,6 +17,7 @@
 package org.linkedin.glu.agent.impl.script
 
 import org.linkedin.glu.agent.api.Shell
+import org.linkedin.glu.agent.impl.concurrent.AgentThreadPool
 import org.linkedin.util.clock.Clock
 import org.linkedin.util.clock.SystemClock
 import org.linkedin.zookeeper.client.IZKClient
@@ -32,4 +33,6 @@ public class AgentContextImpl implements AgentContext
   MOP mop
   ScriptLoader scriptLoader
   IZKClient zooKeeper
+  AgentThreadPool threadPool
+  ScriptCache scriptCache
 }
\ No newline at end of file
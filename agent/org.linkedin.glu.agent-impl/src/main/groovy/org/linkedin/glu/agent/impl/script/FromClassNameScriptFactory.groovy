@@ -33,6 +33,7 @@ def class FromClassNameScriptFactory implements ScriptFactory, Serializable
   private final def _classPath
   private def _jarFiles
   private transient LoadedScript _loadedScript
+  private transient Collection<ScriptCache.CachedFile> _cachedFiles
 
   FromClassNameScriptFactory(String className)
   {
@@ -61,10 +62,30 @@ def class FromClassNameScriptFactory implements ScriptFactory, Serializable
   {
     if(!_loadedScript)
     {
-      if(!_jarFiles?.collect { it.exists() }?.inject(true) { res, i -> res && i })
+      ScriptCache scriptCache = scriptConfig.scriptCache
+
+      if(scriptCache && _classPath)
+      {
+        def previousJarFiles = _jarFiles
+        _cachedFiles = []
+        _classPath.eachWithIndex { location, int idx ->
+          _cachedFiles << scriptCache.acquire(location, previousJarFiles ? previousJarFiles[idx] : null)
+        }
+        _jarFiles = _cachedFiles.collect { it.resource }
+
+        // local copies fetched before the cache was enabled
+        previousJarFiles?.each {
+          if(!scriptCache.isCachedFile(it) && it.exists())
+            scriptConfig.shell.rm(it)
+        }
+      }
+      else
       {
-        // fetch all the jar files
-        _jarFiles = _classPath?.collect { scriptConfig.shell.fetch(it) }
+        if(!_jarFiles?.collect { it.exists() }?.inject(true) { res, i -> res && i })
+        {
+          // fetch all the jar files
+          _jarFiles = _classPath?.collect { scriptConfig.shell.fetch(it) }
+        }
       }
 
       _loadedScript = scriptConfig.scriptLoader.loadScript(_className,
@@ -79,7 +100,15 @@ def class FromClassNameScriptFactory implements ScriptFactory, Serializable
   {
     scriptConfig.scriptLoader.unloadScript(_loadedScript)
 
-    _jarFiles?.each { scriptConfig.shell.rm(it) }
+    ScriptCache scriptCache = scriptConfig.scriptCache
+
+    _jarFiles?.each {
+      // the cached files are shared with the other mount points (released below)
+      if(!scriptCache?.isCachedFile(it))
+        scriptConfig.shell.rm(it)
+    }
+    _cachedFiles?.each { scriptCache?.release(it) }
+    _cachedFiles = null
     _loadedScript = null
   }
 
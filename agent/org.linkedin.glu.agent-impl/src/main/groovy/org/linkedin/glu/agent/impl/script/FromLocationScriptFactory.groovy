@@ -31,6 +31,7 @@ def class FromLocationScriptFactory implements ScriptFactory, Serializable
   private final def _location
   private def _scriptFile
   private transient LoadedScript _loadedScript
+  private transient ScriptCache.CachedFile _cachedFile
 
   FromLocationScriptFactory(location)
   {
@@ -47,8 +48,23 @@ def class FromLocationScriptFactory implements ScriptFactory, Serializable
   {
     if(!_loadedScript)
     {
-      if(!_scriptFile?.exists())
-        _scriptFile = scriptConfig.shell.fetch(_location)
+      ScriptCache scriptCache = scriptConfig.scriptCache
+
+      if(scriptCache)
+      {
+        def previousScriptFile = _scriptFile
+        _cachedFile = scriptCache.acquire(_location, previousScriptFile)
+        _scriptFile = _cachedFile.resource
+
+        // local copy fetched before the cache was enabled
+        if(!scriptCache.isCachedFile(previousScriptFile) && previousScriptFile?.exists())
+          scriptConfig.shell.rm(previousScriptFile)
+      }
+      else
+      {
+        if(!_scriptFile?.exists())
+          _scriptFile = scriptConfig.shell.fetch(_location)
+      }
 
       _loadedScript = scriptConfig.scriptLoader.loadScript(_scriptFile.file)
     }
@@ -61,10 +77,21 @@ def class FromLocationScriptFactory implements ScriptFactory, Serializable
   {
     scriptConfig.scriptLoader.unloadScript(_loadedScript)
 
-    if(_scriptFile?.exists())
-      scriptConfig.shell.rm(_scriptFile)
+    ScriptCache scriptCache = scriptConfig.scriptCache
+
+    if(scriptCache?.isCachedFile(_scriptFile))
+    {
+      // the file is shared with the other mount points
+      scriptCache.release(_cachedFile)
+    }
+    else
+    {
+      if(_scriptFile?.exists())
+        scriptConfig.shell.rm(_scriptFile)
+    }
 
     _scriptFile = null
+    _cachedFile = null
     _loadedScript = null
   }
 
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.agent.impl.script
+
+import org.linkedin.glu.agent.api.Shell
+import org.linkedin.groovy.util.net.GroovyNetUtils
+import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.SystemClock
+import org.linkedin.util.io.resource.Resource
+import org.linkedin.util.lang.MemorySize
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A cache (shared by all the mount points of the agent) for the scripts (and the jar files of
+ * their class path) fetched from a location. The files are stored by content (sha-1) in the
+ * cache directory (<code>cacheDir/&lt;sha1&gt;/&lt;filename&gt;</code>) and are reference
+ * counted: a file which is not used anymore stays in the cache until the cache exceeds its
+ * maximum size, at which point the least recently used ones are removed.
+ *
+ * A location is fetched again unless it can be validated: <code>file:</code> locations are
+ * validated with their last modified time and length, <code>http(s):</code> locations with the
+ * <code>ETag</code> (or <code>Last-Modified</code> and <code>Content-Length</code>) headers
+ * returned by a <code>HEAD</code> request. Other locations are always fetched (but still stored
+ * only once).
+ *
+ * @author yan@pongasoft.com */
+class ScriptCache
+{
+  public static final String MODULE = ScriptCache.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  public static final MemorySize DEFAULT_MAX_SIZE = MemorySize.parse('500m')
+
+  /**
+   * A file in the cache
+   */
+  static class CachedFile
+  {
+    final String sha1
+    final Resource resource
+    final long size
+
+    private int _refCount = 0
+
+    CachedFile(String sha1, Resource resource)
+    {
+      this.sha1 = sha1
+      this.resource = resource
+      this.size = resource.file.length()
+    }
+
+    int getRefCount()
+    {
+      return _refCount
+    }
+  }
+
+  private static class CachedLocation
+  {
+    String sha1
+    def validator
+  }
+
+  /**
+   * the shell used to fetch the locations
+   */
+  Shell shell
+
+  /**
+   * the directory where the files are stored
+   */
+  File cacheDir
+
+  MemorySize maxSize = DEFAULT_MAX_SIZE
+
+  Clock clock = SystemClock.INSTANCE
+
+  // access order => least recently used first
+  private final Map<String, CachedFile> _files = new LinkedHashMap<String, CachedFile>(16, 0.75f, true)
+  private final Map<String, CachedLocation> _locations = [:]
+  private final ConcurrentHashMap<String, Object> _locationLocks = new ConcurrentHashMap<String, Object>()
+
+  private long _totalSize = 0
+  private long _hits = 0
+  private long _misses = 0
+  private long _evictions = 0
+
+  /**
+   * Registers the files already present in the cache directory (from a previous run) so that they
+   * can be reused (and evicted when not used).
+   */
+  synchronized void init()
+  {
+    cacheDir.mkdirs()
+
+    cacheDir.eachDir { File dir ->
+      File[] files = dir.listFiles()
+      if(files?.size() == 1 && files[0].isFile())
+      {
+        registerFile(dir.name, shell.toResource(files[0]))
+      }
+      else
+      {
+        // incomplete entry (ex: agent killed while moving the file in the cache)
+        dir.deleteDir()
+      }
+    }
+
+    log.info "Script cache [${cacheDir}]: ${_files.size()} file(s), ${_totalSize} bytes"
+
+    evict()
+  }
+
+  /**
+   * Returns the file for the location (fetching it if necessary). Each call must be balanced with
+   * a call to {@link #release(CachedFile)} when the file is not used anymore.
+   *
+   * @param localFile the file previously returned for this location (for example before the
+   *                  agent restarted) which is used (without validation) if still in the cache
+   */
+  CachedFile acquire(location, Resource localFile = null)
+  {
+    String locationKey = GroovyNetUtils.toURI(location).toString()
+
+    Object lock = new Object()
+    Object previousLock = _locationLocks.putIfAbsent(locationKey, lock)
+    if(previousLock != null)
+      lock = previousLock
+
+    // the lock (per location) guarantees that the same location is not
+    // fetched in parallel (ex: all the mount points using the same script when the agent restarts)
+    synchronized(lock)
+    {
+      CachedFile cachedFile = acquireLocalFile(locationKey, localFile)
+      if(cachedFile)
+        return cachedFile
+
+      def validator = computeValidator(location)
+
+      cachedFile = acquireValidLocation(locationKey, validator)
+      if(cachedFile)
+        return cachedFile
+
+      return fetch(location, locationKey, validator)
+    }
+  }
+
+  /**
+   * Releases the file (previously acquired)
+   */
+  synchronized void release(CachedFile cachedFile)
+  {
+    if(cachedFile == null)
+      return
+
+    if(cachedFile._refCount > 0)
+      cachedFile._refCount--
+
+    evict()
+  }
+
+  /**
+   * @return <code>true</code> if the resource is a file managed by this cache
+   */
+  boolean isCachedFile(Resource resource)
+  {
+    return resource?.file?.parentFile?.parentFile?.canonicalFile == cacheDir.canonicalFile
+  }
+
+  /**
+   * @return the statistics of the cache
+   */
+  synchronized Map getStats()
+  {
+    [
+      hits: _hits,
+      misses: _misses,
+      evictions: _evictions,
+      files: _files.size(),
+      usedFiles: _files.values().count { CachedFile cf -> cf._refCount > 0 },
+      sizeInBytes: _totalSize,
+      maxSizeInBytes: maxSize.sizeInBytes
+    ]
+  }
+
+  private synchronized CachedFile acquireLocalFile(String locationKey, Resource localFile)
+  {
+    if(!isCachedFile(localFile))
+      return null
+
+    String sha1 = localFile.file.parentFile.name
+
+    CachedFile cachedFile = _files[sha1]
+
+    if(cachedFile == null && localFile.exists())
+      cachedFile = registerFile(sha1, localFile)
+
+    if(cachedFile == null)
+      return null
+
+    if(!_locations.containsKey(locationKey))
+      _locations[locationKey] = new CachedLocation(sha1: sha1)
+
+    _hits++
+    cachedFile._refCount++
+    return cachedFile
+  }
+
+  private synchronized CachedFile acquireValidLocation(String locationKey, def validator)
+  {
+    if(validator == null)
+      return null
+
+    CachedLocation cachedLocation = _locations[locationKey]
+    if(cachedLocation?.validator != validator)
+      return null
+
+    CachedFile cachedFile = _files[cachedLocation.sha1]
+    if(cachedFile == null || !cachedFile.resource.exists())
+      return null
+
+    _hits++
+    cachedFile._refCount++
+    return cachedFile
+  }
+
+  private CachedFile fetch(location, String locationKey, def validator)
+  {
+    // the sha-1 is computed while fetching (when possible)
+    Map fetched = shell.fetchWithSha1(location, null, null)
+    Resource fetchedFile = fetched.resource
+
+    try
+    {
+      String sha1 = fetched.sha1
+
+      synchronized(this)
+      {
+        _misses++
+
+        CachedFile cachedFile = _files[sha1]
+
+        if(cachedFile == null || !cachedFile.resource.exists())
+        {
+          File file = new File(new File(cacheDir, sha1), fetchedFile.filename)
+          file.parentFile.mkdirs()
+          Files.move(fetchedFile.file.toPath(),
+                     file.toPath(),
+                     StandardCopyOption.REPLACE_EXISTING)
+          cachedFile = registerFile(sha1, shell.toResource(file))
+        }
+
+        if(log.isDebugEnabled())
+          log.debug("[${locationKey}] fetched => [${sha1}]")
+
+        _locations[locationKey] = new CachedLocation(sha1: sha1, validator: validator)
+        cachedFile._refCount++
+
+        evict()
+
+        return cachedFile
+      }
+    }
+    finally
+    {
+      // removes the temporary directory created by fetch
+      shell.rmdirs(fetchedFile.parentResource)
+    }
+  }
+
+  /**
+   * Must be called while holding the lock
+   */
+  private CachedFile registerFile(String sha1, Resource resource)
+  {
+    CachedFile cachedFile = new CachedFile(sha1, resource)
+    _files[sha1] = cachedFile
+    _totalSize += cachedFile.size
+    return cachedFile
+  }
+
+  /**
+   * Removes the least recently used files which are not used anymore until the cache fits in its
+   * maximum size. Must be called while holding the lock.
+   */
+  private void evict()
+  {
+    long maxSizeInBytes = maxSize.sizeInBytes
+
+    Iterator<CachedFile> iterator = _files.values().iterator()
+    while(_totalSize > maxSizeInBytes && iterator.hasNext())
+    {
+      CachedFile cachedFile = iterator.next()
+      if(cachedFile._refCount == 0)
+      {
+        iterator.remove()
+        _totalSize -= cachedFile.size
+        _evictions++
+        cachedFile.resource.file.parentFile.deleteDir()
+        _locations.values().removeAll { CachedLocation cl -> cl.sha1 == cachedFile.sha1 }
+        if(log.isDebugEnabled())
+          log.debug("[${cachedFile.sha1}] evicted from the cache")
+      }
+    }
+  }
+
+  /**
+   * @return an object which changes when the content of the location changes or
+   * <code>null</code> if it cannot be computed (in which case the location is always fetched)
+   */
+  protected def computeValidator(location)
+  {
+    URI uri = GroovyNetUtils.toURI(location)
+
+    switch(uri.scheme)
+    {
+      case 'file':
+        File file = new File(uri)
+        if(file.isFile())
+          return [lastModified: file.lastModified(), length: file.length()]
+        return null
+
+      case 'http':
+      case 'https':
+        try
+        {
+          Map head = shell.httpHead(uri)
+          if(head.responseCode != 200)
+            return null
+          Map<String, List<String>> headers = head.headers
+          def etag = headers.find { k, v -> k?.equalsIgnoreCase('ETag') }?.value
+          if(etag)
+            return [etag: etag]
+          def lastModified = headers.find { k, v -> k?.equalsIgnoreCase('Last-Modified') }?.value
+          def length = headers.find { k, v -> k?.equalsIgnoreCase('Content-Length') }?.value
+          if(lastModified && length)
+            return [lastModified: lastModified, length: length]
+        }
+        catch(IOException e)
+        {
+          if(log.isDebugEnabled())
+            log.debug("[ignored] could not validate ${uri}", e)
+        }
+        return null
+
+      default:
+        return null
+    }
+  }
+}
@@ -44,4 +44,9 @@ def class ScriptConfig
   {
     agentContext.scriptLoader
   }
+
+  ScriptCache getScriptCache()
+  {
+    agentContext.scriptCache
+  }
 }
@@ -17,6 +17,8 @@
 package org.linkedin.glu.agent.impl.script
 
 import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
 import org.slf4j.Logger
@@ -32,6 +34,8 @@ import org.linkedin.glu.groovy.utils.concurrent.ActionExecution
 import org.linkedin.glu.groovy.utils.concurrent.CallExecution
 import org.linkedin.glu.groovy.utils.concurrent.TimerExecution
 import org.linkedin.glu.groovy.utils.concurrent.FutureExecution
+import org.linkedin.glu.agent.impl.concurrent.AgentThreadPool
+import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 
 /**
  * @author ypujante@linkedin.com */
@@ -46,6 +50,13 @@ class ScriptExecution implements Startable, Shutdownable
   Timespan expiryDuration = Timespan.parse('1m')
   int expiryMaxElements = 50
 
+  /**
+   * When set, the future executions are run by a thread borrowed from the pool, only while there
+   * is something to run, instead of a dedicated thread (which spends most of its life waiting).
+   * Must be set before {@link #start()}.
+   */
+  AgentThreadPool threadPool
+
   /**
    * The timeline is sorted by futureExecutionTime first then queueing order
    * ({@link org.linkedin.glu.groovy.utils.concurrent.FutureExecutionImpl#compareTo} method)
@@ -78,6 +89,12 @@ class ScriptExecution implements Startable, Shutdownable
   private int _counter = 0
   private volatile Thread _thread
 
+  // pool mode only (guarded by lock)
+  private boolean _started = false
+  private boolean _draining = false
+  private boolean _terminated = false
+  private ScheduledFuture _wakeUp
+
   ScriptExecution(def source, String name, Logger log)
   {
     _source = source
@@ -115,9 +132,18 @@ class ScriptExecution implements Startable, Shutdownable
     {
       if(!_shutdown)
       {
-        _thread = Thread.start(_name, executeFutureTasks)
-        if(_log.isDebugEnabled())
-          _log.debug "Starting thread ${_thread}"
+        if(threadPool)
+        {
+          _started = true
+          if(_timeline)
+            scheduleDrain(0L)
+        }
+        else
+        {
+          _thread = Thread.start(_name, executeFutureTasks)
+          if(_log.isDebugEnabled())
+            _log.debug "Starting thread ${_thread}"
+        }
       }
     }
   }
@@ -129,6 +155,11 @@ class ScriptExecution implements Startable, Shutdownable
       if(!_shutdown)
       {
         _shutdown = true
+
+        // pool mode: when nothing is running, there is nothing to wait for
+        if(threadPool && !_draining)
+          terminate()
+
         lock.notifyAll()
       }
     }
@@ -152,6 +183,12 @@ class ScriptExecution implements Startable, Shutdownable
     if(!_shutdown)
       throw new IllegalStateException('call shutdown first')
 
+    if(threadPool)
+    {
+      waitForTermination(null)
+      return
+    }
+
     if(_log.isDebugEnabled())
       _log.debug "Waiting for thread ${_thread} to terminate..."
 
@@ -168,6 +205,12 @@ class ScriptExecution implements Startable, Shutdownable
 
     timeout = ClockUtils.toTimespan(timeout)
 
+    if(threadPool)
+    {
+      waitForTermination(timeout)
+      return
+    }
+
     if(_log.isDebugEnabled())
       _log.debug "Waiting for thread ${_thread} to terminate no longer than ${timeout}..."
 
@@ -361,6 +404,9 @@ class ScriptExecution implements Startable, Shutdownable
         _timers[futureExecution.timer] = futureExecution
       lock.notifyAll()
 
+      if(_started)
+        scheduleDrain(0L)
+
       if(_log.isDebugEnabled())
       {
         _log.debug("enqued: ${futureExecution}")
@@ -583,37 +629,177 @@ class ScriptExecution implements Startable, Shutdownable
       }
 
       if(_current)
+        runCurrent()
+    }
+    if(_log.isDebugEnabled())
+    {
+      _log.debug("executeFutureTasks: exiting thread")
+    }
+  }
+
+  /**
+   * Runs the current execution and moves it to the past executions
+   */
+  private void runCurrent()
+  {
+    if(_log.isDebugEnabled())
+    {
+      _log.debug("executeFutureTasks: running ${_current}")
+    }
+    _current.run()
+    if(_log.isDebugEnabled())
+    {
+      _log.debug("executeFutureTasks: completed ${_current}")
+    }
+    synchronized(lock)
+    {
+      _pastExecutions[_current.id] = _current
+      if(_current instanceof TimerExecution)
       {
-        if(_log.isDebugEnabled())
+        // we make sure that it has not been cancelled
+        if(_timers[_current.timer])
         {
-          _log.debug("executeFutureTasks: running ${_current}")
-        }
-        _current.run()
-        if(_log.isDebugEnabled())
-        {
-          _log.debug("executeFutureTasks: completed ${_current}")
+          scheduleTimer(_current.timer,
+                        null,
+                        _current.frequency,
+                        _current.onCancelPostCallback)
         }
+      }
+      _current = null
+    }
+  }
+
+  /**
+   * Pool mode: makes sure that the future executions get drained (right away when
+   * <code>delay</code> is <code>0</code>, or after the delay). Must be called while holding the
+   * lock.
+   */
+  private void scheduleDrain(long delay)
+  {
+    // the running drain always checks the timeline before giving back its thread
+    if(_draining || _terminated)
+      return
+
+    _wakeUp?.cancel(false)
+    _wakeUp = null
+
+    try
+    {
+      if(delay > 0L)
+        _wakeUp = threadPool.schedule(wakeUp, delay)
+      else
+      {
+        _draining = true
+        threadPool.execute(drainFutureTasks)
+      }
+    }
+    catch(RejectedExecutionException e)
+    {
+      _draining = false
+      _log.warn("could not schedule the execution (agent shutting down?)")
+      if(_log.isDebugEnabled())
+        _log.debug("Ignored exception", e)
+    }
+  }
+
+  private def wakeUp = {
+    synchronized(lock)
+    {
+      scheduleDrain(0L)
+    }
+  }
+
+  /**
+   * Must be called while holding the lock
+   */
+  private void terminate()
+  {
+    _wakeUp?.cancel(false)
+    _wakeUp = null
+    _terminated = true
+    lock.notifyAll()
+  }
+
+  private void waitForTermination(Timespan timeout)
+  {
+    if(_log.isDebugEnabled())
+      _log.debug "Waiting for ${_name} to terminate no longer than ${timeout}..."
+
+    // using the system clock on purpose (same as Thread.join)
+    GroovyConcurrentUtils.awaitFor(SystemClock.INSTANCE, timeout, lock) {
+      _terminated
+    }
+
+    if(_log.isDebugEnabled())
+      _log.debug "${_name} terminated."
+  }
+
+  /**
+   * Pool mode equivalent of {@link #executeFutureTasks}: runs all the future executions which are
+   * due then gives the thread back to the pool (after scheduling a wake up for the next one).
+   */
+  private def drainFutureTasks = {
+    Thread thread = Thread.currentThread()
+    String threadName = thread.name
+    thread.name = _name
+
+    boolean exited = false
+
+    try
+    {
+      while(!exited)
+      {
         synchronized(lock)
         {
-          _pastExecutions[_current.id] = _current
-          if(_current instanceof TimerExecution)
+          if(_shutdown)
           {
-            // we make sure that it has not been cancelled
-            if(_timers[_current.timer])
+            _draining = false
+            exited = true
+            terminate()
+          }
+          else
+          {
+            if(waitTime > 0L)
+            {
+              removeOldExecutions()
+              _draining = false
+              exited = true
+
+              // when there is nothing left, no need to wake up
+              if(_timeline || _pastExecutions)
+                scheduleDrain(waitTime)
+            }
+            else
             {
-              scheduleTimer(_current.timer,
-                            null,
-                            _current.frequency,
-                            _current.onCancelPostCallback)
+              _current = _timeline.first()
+              _timeline.remove(_current)
+              _futureExecutions.remove(_current.id)
             }
           }
-          _current = null
+        }
+
+        if(!exited)
+        {
+          runCurrent()
+
+          // a cancelled execution may have interrupted the thread: it should not leak to the next
+          // execution (or to the pool)
+          Thread.interrupted()
         }
       }
     }
-    if(_log.isDebugEnabled())
+    finally
     {
-      _log.debug("executeFutureTasks: exiting thread")
+      if(!exited)
+      {
+        synchronized(lock)
+        {
+          _current = null
+          _draining = false
+          scheduleDrain(0L)
+        }
+      }
+      thread.name = threadName
     }
   }
 
@@ -38,9 +38,15 @@ import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 
 import org.linkedin.util.annotations.Initializable
 import org.linkedin.glu.groovy.utils.concurrent.FutureExecution
+import org.linkedin.glu.utils.concurrent.StripedLocks
+
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.locks.ReadWriteLock
+import java.util.concurrent.locks.ReentrantReadWriteLock
 
 /**
- * Manager for scripts
+ * Manager for scripts. The operations which modify the scripts are only serialized per mount
+ * point (and its parent) so that a slow install or uninstall does not block the other scripts.
  *
  * @author ypujante@linkedin.com
  */
@@ -49,7 +55,16 @@ def class ScriptManagerImpl implements ScriptManager
   public static final String MODULE = ScriptManagerImpl.class.getName();
   public static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MODULE);
 
-  final Map<MountPoint, ScriptNode> _scripts = new LinkedHashMap<MountPoint, ScriptNode>()
+  // sorted by path so that the root (and a parent) always comes first
+  final Map<MountPoint, ScriptNode> _scripts =
+    new ConcurrentSkipListMap<MountPoint, ScriptNode>({ MountPoint mp1, MountPoint mp2 ->
+      mp1.path <=> mp2.path
+    } as Comparator<MountPoint>)
+
+  private final StripedLocks _mountPointLocks = new StripedLocks()
+
+  // guards the shutdown flag so that a node is never started once shutdown has begun
+  private final ReadWriteLock _shutdownLock = new ReentrantReadWriteLock()
 
   @Initializable(required = true)
   ScriptFactory rootScriptFactory = new FromClassNameScriptFactory(RootScript)
@@ -64,7 +79,14 @@ def class ScriptManagerImpl implements ScriptManager
   Timespan scriptGracePeriod1 = Timespan.parse('1s')
   Timespan scriptGracePeriod2 = Timespan.parse('1m')
 
-  synchronized ScriptNode installRootScript(actionArgs)
+  ScriptNode installRootScript(actionArgs)
+  {
+    _mountPointLocks.withLocks([MountPoint.ROOT]) {
+      doInstallRootScript(actionArgs)
+    }
+  }
+
+  private ScriptNode doInstallRootScript(actionArgs)
   {
     def scriptConfig = new ScriptConfig(shell: agentContext.shellForScripts,
                                         agentContext: agentContext)
@@ -90,12 +112,12 @@ def class ScriptManagerImpl implements ScriptManager
   /**
    * the root script
    */
-  synchronized def getRootScript()
+  def getRootScript()
   {
     return _scripts[MountPoint.ROOT]
   }
 
-  synchronized def getMountPoints()
+  def getMountPoints()
   {
     return _scripts.keySet().collect { it }
   }
@@ -103,10 +125,9 @@ def class ScriptManagerImpl implements ScriptManager
   /**
    * @return <code>true</code> if there is a script mounted at the given mount point
    */
-  synchronized boolean isMounted(mountPoint)
+  boolean isMounted(mountPoint)
   {
-    mountPoint = MountPoint.create(mountPoint)
-    return _scripts[mountPoint] != null
+    return findScript(mountPoint) != null
   }
 
   /**
@@ -114,19 +135,30 @@ def class ScriptManagerImpl implements ScriptManager
    *
    * @see Agent#installScript(Object) for details
    */
-  synchronized ScriptNode installScript(args)
+  ScriptNode installScript(args)
   {
     // handle mountPoint first
     def mountPoint = MountPoint.create(args.mountPoint)
     if(!mountPoint)
       throw new IllegalArgumentException('mountPoint is required')
 
+    def parentMountPoint = MountPoint.create(args.parent ?: MountPoint.ROOT)
+
+    // locking the parent as well prevents the parent from being
+    // uninstalled while the child is being added to it
+    _mountPointLocks.withLocks([mountPoint, parentMountPoint]) {
+      doInstallScript(mountPoint, parentMountPoint, args)
+    }
+  }
+
+  private ScriptNode doInstallScript(MountPoint mountPoint, MountPoint parentMountPoint, args)
+  {
     // first we check if the script is already installed
     if(_scripts[mountPoint])
       throw new DuplicateMountPointException(mountPoint.path)
 
     // now we locate the right node
-    ScriptNode parentNode = getScript(args.parent ?: MountPoint.ROOT)
+    ScriptNode parentNode = getScript(parentMountPoint)
 
     def initParameters = args.initParameters ?: [:]
 
@@ -234,10 +266,11 @@ def class ScriptManagerImpl implements ScriptManager
    * Returns the script mounted at the provided mount point (<code>null</code> if there is no
    * such script)
    */
-  synchronized ScriptNode findScript(mountPoint)
+  ScriptNode findScript(mountPoint)
   {
     mountPoint = MountPoint.create(mountPoint)
-    return _scripts[mountPoint]
+    // the concurrent map does not accept null keys
+    return mountPoint != null ? _scripts[mountPoint] : null
   }
 
   /**
@@ -284,8 +317,12 @@ def class ScriptManagerImpl implements ScriptManager
     ScriptNode node = findScript(mountPoint)
     if(node)
     {
-      synchronized(this)
-      {
+      boolean uninstalled = _mountPointLocks.withLocks([mountPoint, node.parentMountPoint]) {
+        // the node may have been uninstalled (and even reinstalled) by
+        // another thread while waiting for the lock, in which case there is nothing to do
+        if(!findScript(mountPoint).is(node))
+          return false
+
         def currentState = node.state.currentState
         if(currentState != StateMachine.NONE)
         {
@@ -338,10 +375,15 @@ def class ScriptManagerImpl implements ScriptManager
         removeScriptNode(mountPoint)
 
         node.log.info("uninstalled")
+
+        return true
       }
 
-      // we do this outside of the synchronized block in a separate thread
-      Thread.startDaemon {
+      if(!uninstalled)
+        return
+
+      // we do this outside of the locked block in a separate thread
+      def waitForShutdown = {
         try
         {
           node.waitForShutdown(scriptGracePeriod2.durationInMilliseconds)
@@ -352,6 +394,11 @@ def class ScriptManagerImpl implements ScriptManager
           node.interruptCurrentExecution()
         }
       }
+
+      if(agentContext.threadPool)
+        agentContext.threadPool.execute(waitForShutdown)
+      else
+        Thread.startDaemon(waitForShutdown)
     }
   }
 
@@ -469,7 +516,7 @@ def class ScriptManagerImpl implements ScriptManager
   /**
    * Returns all the children nodes of mountPoint
    */
-  synchronized private def locateChildrenNodes(mountPoint)
+  private def locateChildrenNodes(mountPoint)
   {
     return locateChildrenNodes(getScript(mountPoint))
   }
@@ -477,7 +524,7 @@ def class ScriptManagerImpl implements ScriptManager
   /**
    * Returns all the children nodes the node
    */
-  synchronized private def locateChildrenNodes(ScriptNode scriptNode)
+  private def locateChildrenNodes(ScriptNode scriptNode)
   {
     return scriptNode.childrenMountPoints.collect {
       getScript(it)
@@ -486,13 +533,18 @@ def class ScriptManagerImpl implements ScriptManager
 
   void shutdown()
   {
-    synchronized(this)
+    _shutdownLock.writeLock().lock()
+    try
     {
       if(_shutdown)
         return
 
       _shutdown = true
     }
+    finally
+    {
+      _shutdownLock.writeLock().unlock()
+    }
     
     scriptNodes.each { it.shutdown() }
   }
@@ -513,20 +565,28 @@ def class ScriptManagerImpl implements ScriptManager
     GroovyConcurrentUtils.waitForShutdownMultiple(agentContext.getClock(), timeout, scriptNodes)
   }
 
-  synchronized Collection<ScriptNode> getScriptNodes()
+  Collection<ScriptNode> getScriptNodes()
   {
     _scripts.values()
   }
 
-  synchronized void addScriptNode(ScriptNode node)
+  void addScriptNode(ScriptNode node)
   {
-    _scripts[node.mountPoint] = node
-    // start node when not in shutdown mode
-    if(!_shutdown)
-      node.start()
+    _shutdownLock.readLock().lock()
+    try
+    {
+      _scripts[node.mountPoint] = node
+      // start node when not in shutdown mode
+      if(!_shutdown)
+        node.start()
+    }
+    finally
+    {
+      _shutdownLock.readLock().unlock()
+    }
   }
 
-  synchronized void removeScriptNode(MountPoint mountPoint)
+  void removeScriptNode(MountPoint mountPoint)
   {
     _scripts.remove(mountPoint)
   }
@@ -62,6 +62,7 @@ def class ScriptNode implements Shutdownable, Startable, GluScript
                                            scriptDefinition.getMountPoint().toString(),
                                            _log)
     _scriptExecution.clock = agentContext.clock
+    _scriptExecution.threadPool = agentContext.threadPool
   }
 
   @Override
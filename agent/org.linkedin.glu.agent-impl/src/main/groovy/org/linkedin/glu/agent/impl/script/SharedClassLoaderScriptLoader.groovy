@@ -69,6 +69,22 @@ public class SharedClassLoaderScriptLoader implements ScriptLoader<SharedClassLo
    */
   private final def Map<Object, ClassLoaderWithKey> _classLoaders = [:]
 
+  public static final int MAX_FILE_DIGESTS = 1000
+
+  /**
+   * The digest of the files already hashed: when the files are shared (see {@link ScriptCache})
+   * the same file is loaded for many mount points and needs to be hashed only once.
+   * key is the canonical path, value is [length, lastModified, digest]
+   */
+  private final Map<String, List> _fileDigests =
+    new LinkedHashMap<String, List>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List> eldest)
+      {
+        return size() > MAX_FILE_DIGESTS
+      }
+    }
+
   /**
    * @return the internal structure... for testing only....
    */
@@ -133,11 +149,28 @@ public class SharedClassLoaderScriptLoader implements ScriptLoader<SharedClassLo
   {
     def md = MessageDigest.getInstance('SHA1')
 
-    files?.each { file -> addToDigest(file, md) }
+    files?.each { file -> if(file) md.update(computeFileDigest(file)) }
 
     return new BigInteger(1, md.digest())
   }
 
+  private byte[] computeFileDigest(File file)
+  {
+    String path = file.canonicalPath
+    long length = file.length()
+    long lastModified = file.lastModified()
+
+    List fileDigest = _fileDigests[path]
+
+    if(fileDigest == null || fileDigest[0] != length || fileDigest[1] != lastModified)
+    {
+      fileDigest = [length, lastModified, addToDigest(file, MessageDigest.getInstance('SHA1')).digest()]
+      _fileDigests[path] = fileDigest
+    }
+
+    return (byte[]) fileDigest[2]
+  }
+
   private MessageDigest addToDigest(File file, MessageDigest md)
   {
     file?.withInputStream { InputStream stream ->
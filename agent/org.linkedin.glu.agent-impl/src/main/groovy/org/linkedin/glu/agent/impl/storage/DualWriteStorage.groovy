@@ -20,11 +20,20 @@ package org.linkedin.glu.agent.impl.storage
 
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.groovy.utils.GluGroovyLangUtils
+import org.linkedin.glu.utils.concurrent.StripedLocks
 import org.linkedin.groovy.util.lang.GroovyLangUtils
 
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+import java.util.concurrent.locks.ReadWriteLock
+import java.util.concurrent.locks.ReentrantReadWriteLock
+
 /**
  * All the reads are delegated to the <code>readWriteStorage</code>, all the writes are dispatched
- * to both. This class is thread safe.
+ * to both. This class is thread safe: the writes are serialized per mount point only (so that a
+ * slow write for one mount point does not block the other ones) and the operations on all the
+ * states (<code>clearAllStates</code>, <code>sync</code>) are exclusive.
  *
  * @author ypujante@linkedin.com
  */
@@ -32,6 +41,16 @@ class DualWriteStorage extends FilteredStorage
 {
   private final WriteOnlyStorage _writeOnlyStorage
 
+  private final StripedLocks _mountPointLocks = new StripedLocks()
+  private final ReadWriteLock _allStatesLock = new ReentrantReadWriteLock()
+
+  /**
+   * when set, the write in the write only storage is executed in this executor while the write
+   * in the read write storage is executed in the calling thread (both are still completed before
+   * returning). <code>null</code> means one after the other (in the calling thread).
+   */
+  ExecutorService executor
+
   DualWriteStorage(Storage readWriteStorage, WriteOnlyStorage writeOnlyStorage)
   {
     super(readWriteStorage);
@@ -43,28 +62,34 @@ class DualWriteStorage extends FilteredStorage
     return _writeOnlyStorage
   }
 
-  synchronized void clearState(MountPoint mountPoint)
+  void clearState(MountPoint mountPoint)
   {
-    GluGroovyLangUtils.onlyOneException(
-      { super.clearState(mountPoint) },
-      { writeOnlyStorage.clearState(mountPoint) }
-    )
+    withMountPointLock(mountPoint) {
+      dualWrite(
+        { super.clearState(mountPoint) },
+        { writeOnlyStorage.clearState(mountPoint) }
+      )
+    }
   }
 
-  synchronized void storeState(MountPoint mountPoint, state)
+  void storeState(MountPoint mountPoint, state)
   {
-    GluGroovyLangUtils.onlyOneException(
-      { super.storeState(mountPoint, state) },
-      { writeOnlyStorage.storeState(mountPoint, state) }
-    )
+    withMountPointLock(mountPoint) {
+      dualWrite(
+        { super.storeState(mountPoint, state) },
+        { writeOnlyStorage.storeState(mountPoint, state) }
+      )
+    }
   }
 
-  synchronized public void clearAllStates()
+  public void clearAllStates()
   {
-    GluGroovyLangUtils.onlyOneException(
-      { super.clearAllStates() },
-      { writeOnlyStorage.clearAllStates() }
-    )
+    withAllStatesLock {
+      GluGroovyLangUtils.onlyOneException(
+        { super.clearAllStates() },
+        { writeOnlyStorage.clearAllStates() }
+      )
+    }
   }
 
   @Override
@@ -91,14 +116,16 @@ class DualWriteStorage extends FilteredStorage
   }
 
   @Override
-  synchronized def invalidateState(MountPoint mountPoint)
+  def invalidateState(MountPoint mountPoint)
   {
     def invalidStateNewLocation = null
 
-    GluGroovyLangUtils.onlyOneException(
-      { invalidStateNewLocation = super.invalidateState(mountPoint) },
-      { writeOnlyStorage.invalidateState(mountPoint) }
-    )
+    withMountPointLock(mountPoint) {
+      dualWrite(
+        { invalidStateNewLocation = super.invalidateState(mountPoint) },
+        { writeOnlyStorage.invalidateState(mountPoint) }
+      )
+    }
 
     return invalidStateNewLocation
   }
@@ -106,16 +133,82 @@ class DualWriteStorage extends FilteredStorage
   /**
    * Synchronizes the 2 storages (the source of truth is supposed to be the readWriteStorage).
    */
-  synchronized public void sync()
+  public void sync()
   {
-    writeOnlyStorage.clearAllStates()
+    withAllStatesLock {
+      writeOnlyStorage.clearAllStates()
+
+      mountPoints.each { mountPoint ->
+        def state = GroovyLangUtils.noException(mountPoint, null) { loadState(mountPoint) }
+        if(state != null)
+          writeOnlyStorage.storeState(mountPoint, state)
+      }
+    }
 
-    mountPoints.each { mountPoint ->
-      def state = GroovyLangUtils.noException(mountPoint, null) { loadState(mountPoint) }
-      if(state != null)
-        writeOnlyStorage.storeState(mountPoint, state)
+    synchronized(this)
+    {
+      writeOnlyStorage.saveAgentProperties(loadAgentProperties())
     }
+  }
 
-    writeOnlyStorage.saveAgentProperties(loadAgentProperties())
+  /**
+   * Writes in both storages (in parallel when there is an executor)
+   */
+  private void dualWrite(Closure readWriteClosure, Closure writeOnlyClosure)
+  {
+    ExecutorService executor = this.executor
+
+    if(executor == null)
+    {
+      GluGroovyLangUtils.onlyOneException(readWriteClosure, writeOnlyClosure)
+    }
+    else
+    {
+      Future writeOnlyFuture = executor.submit(writeOnlyClosure as Runnable)
+
+      GluGroovyLangUtils.onlyOneException(
+        readWriteClosure,
+        {
+          try
+          {
+            writeOnlyFuture.get()
+          }
+          catch(ExecutionException e)
+          {
+            throw e.cause
+          }
+        }
+      )
+    }
+  }
+
+  /**
+   * Executes the closure while holding the lock of the mount point (and while no operation on
+   * all the states is in progress)
+   */
+  private def withMountPointLock(MountPoint mountPoint, Closure closure)
+  {
+    _allStatesLock.readLock().lock()
+    try
+    {
+      _mountPointLocks.withLocks([mountPoint], closure)
+    }
+    finally
+    {
+      _allStatesLock.readLock().unlock()
+    }
+  }
+
+  private def withAllStatesLock(Closure closure)
+  {
+    _allStatesLock.writeLock().lock()
+    try
+    {
+      closure()
+    }
+    finally
+    {
+      _allStatesLock.writeLock().unlock()
+    }
   }
 }
@@ -0,0 +1,706 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.impl.storage
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.api.NoSuchMountPointException
+import org.linkedin.groovy.util.lang.GroovyLangUtils
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32
+
+/**
+ * Stores the states of the mount points in an append only log (journal) instead of one serialized
+ * file per mount point. The agent properties are delegated to the (wrapped) storage.
+ *
+ * <ul>
+ * <li>every state change is appended to the log which is then synced (fsync): the threads which
+ * store a state at the same time share the same sync (group commit)</li>
+ * <li>when the log contains too many obsolete records, it is compacted (rewritten with only the
+ * latest state of each mount point)</li>
+ * <li>the position of the latest state of each mount point is saved in an index (memory mapped on
+ * startup) when the log is compacted and when the storage is closed, so that on startup only the
+ * records appended since are read. The states are only deserialized when loaded.</li>
+ * </ul>
+ *
+ * @author yan@pongasoft.com */
+class JournaledStorage extends FilteredStorage
+{
+  public static final String MODULE = JournaledStorage.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  public static final String LOG_FILENAME = 'states.log'
+  public static final String INDEX_FILENAME = 'states.idx'
+
+  private static final int LOG_MAGIC = 0x676c754a // gluJ
+  private static final int INDEX_MAGIC = 0x676c7549 // gluI
+  private static final int VERSION = 1
+
+  // magic + version + generation
+  private static final int LOG_HEADER_SIZE = 16
+
+  // type + path length + payload length + crc
+  private static final int RECORD_OVERHEAD = 13
+
+  private static final byte RECORD_STORE = 1
+  private static final byte RECORD_CLEAR = 2
+
+  /**
+   * When <code>false</code> the log is never synced (the state changes are still written but may
+   * be lost if the machine crashes)
+   */
+  boolean fsync = true
+
+  /**
+   * The log is compacted when it is bigger than <code>compactionMinSize</code> and
+   * <code>compactionRatio</code> times bigger than the states it contains
+   */
+  long compactionMinSize = 1024 * 1024
+  int compactionRatio = 2
+
+  private final File _journalDir
+  private final File _logFile
+  private final File _indexFile
+
+  private final Random _random = new Random()
+
+  // all the following fields are guarded by this
+  private Map<MountPoint, Record> _records = new HashMap<MountPoint, Record>()
+  private volatile FileChannel _channel
+  private long _generation
+  private long _logSize
+  private long _liveSize
+  private long _compactionsCount = 0
+
+  // group commit
+  private final Object _syncLock = new Object()
+  private volatile long _appendedCount = 0
+  private long _syncedCount = 0
+
+  JournaledStorage(Storage storage, File journalDir)
+  {
+    super(storage)
+    _journalDir = journalDir
+    _logFile = new File(journalDir, LOG_FILENAME)
+    _indexFile = new File(journalDir, INDEX_FILENAME)
+  }
+
+  File getJournalDir()
+  {
+    return _journalDir
+  }
+
+  /**
+   * Opens the log (creates it if it does not exist) and reads the index. A truncated or corrupted
+   * record at the end of the log (ex: crash while writing) is discarded.
+   */
+  synchronized void open()
+  {
+    if(_channel != null)
+      return
+
+    _journalDir.mkdirs()
+
+    _channel = FileChannel.open(_logFile.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE)
+
+    if(_channel.size() < LOG_HEADER_SIZE)
+    {
+      _channel.truncate(0)
+      _generation = _random.nextLong()
+      writeFully(_channel, newLogHeader(_generation), 0)
+      _channel.force(true)
+    }
+    else
+    {
+      ByteBuffer header = readFully(_channel, 0, LOG_HEADER_SIZE)
+      if(header.getInt() != LOG_MAGIC || header.getInt() != VERSION)
+        throw new IOException("${_logFile} is not a journal (or unsupported version)")
+      _generation = header.getLong()
+    }
+
+    _records = new HashMap<MountPoint, Record>()
+    _liveSize = 0
+
+    long position = readIndex()
+    long count = _records.size()
+    _logSize = replay(position)
+
+    log.info "Opened journal ${_logFile}: ${_records.size()} states (${_logSize} bytes, ${count} from index)"
+  }
+
+  /**
+   * Writes the index and closes the log
+   */
+  synchronized void close()
+  {
+    if(_channel == null)
+      return
+
+    GroovyLangUtils.noException { writeIndex() }
+
+    synchronized(_syncLock)
+    {
+      _channel.force(false)
+      _channel.close()
+      _channel = null
+      _syncedCount = _appendedCount
+    }
+  }
+
+  /**
+   * Moves all the states of the wrapped storage into the journal (they are removed from the
+   * wrapped storage once they are safely stored in the journal)
+   *
+   * @return the mount points which have been imported
+   */
+  Collection<MountPoint> importStates()
+  {
+    def imported = []
+    long count = 0
+
+    storage.mountPoints.each { MountPoint mountPoint ->
+      def state = GroovyLangUtils.noException(mountPoint, null) { storage.loadState(mountPoint) }
+      if(state != null)
+      {
+        byte[] payload = serialize(checkState(mountPoint, state))
+        synchronized(this)
+        {
+          count = append(RECORD_STORE, mountPoint, payload)
+        }
+        imported << mountPoint
+      }
+    }
+
+    commit(count)
+
+    imported.each { MountPoint mountPoint -> storage.clearState(mountPoint) }
+
+    return imported
+  }
+
+  @Override
+  synchronized def getMountPoints()
+  {
+    return new ArrayList<MountPoint>(_records.keySet())
+  }
+
+  /**
+   * The records are checked (crc) when read so the only states left to delete are the ones of
+   * the commands (which are not meant to survive a restart).
+   *
+   * @return the mount points which have been deleted
+   */
+  Collection<MountPoint> deleteInvalidStates()
+  {
+    def staleCommands = mountPoints.findAll { MountPoint mp -> mp.path.startsWith("/_/command/") }
+
+    staleCommands.each { MountPoint mp ->
+      clearState(mp)
+      log.warn("Detected stale command state... deleted [${mp}]")
+    }
+
+    return staleCommands
+  }
+
+  @Override
+  def loadState(MountPoint mountPoint)
+  {
+    byte[] payload = readPayload(mountPoint)
+
+    def state = null
+
+    if(payload != null)
+      state = GroovyLangUtils.noException(mountPoint, null) { deserialize(payload) }
+
+    if(extractMountPointFromState(state) != mountPoint)
+    {
+      if(log.isDebugEnabled())
+        log.debug("mountPoint mismatch [ignored]: ${extractMountPointFromState(state)} != ${mountPoint}")
+      throw new NoSuchMountPointException(mountPoint?.path)
+    }
+
+    return state
+  }
+
+  @Override
+  void storeState(MountPoint mountPoint, state)
+  {
+    byte[] payload = serialize(checkState(mountPoint, state))
+
+    long count
+
+    synchronized(this)
+    {
+      count = append(RECORD_STORE, mountPoint, payload)
+      compactIfNeeded()
+    }
+
+    commit(count)
+  }
+
+  @Override
+  void clearState(MountPoint mountPoint)
+  {
+    long count
+
+    synchronized(this)
+    {
+      if(!_records.containsKey(mountPoint))
+        return
+
+      count = append(RECORD_CLEAR, mountPoint, new byte[0])
+      compactIfNeeded()
+    }
+
+    commit(count)
+  }
+
+  @Override
+  synchronized void clearAllStates()
+  {
+    _records.clear()
+    _liveSize = 0
+    compact()
+  }
+
+  /**
+   * Saves the (serialized) state in a file and removes it from the journal
+   */
+  @Override
+  def invalidateState(MountPoint mountPoint)
+  {
+    byte[] payload = readPayload(mountPoint)
+    if(payload == null)
+      return null
+
+    File invalidDir = new File(_journalDir, 'invalid')
+    invalidDir.mkdirs()
+    File invalidState =
+      new File(invalidDir, "${mountPoint.toPathWithNoSlash()}.${System.currentTimeMillis()}")
+    invalidState.bytes = payload
+
+    clearState(mountPoint)
+
+    return invalidState.toURI()
+  }
+
+  synchronized Map getStats()
+  {
+    [
+      states: _records.size(),
+      logSize: _logSize,
+      liveSize: _liveSize,
+      compactions: _compactionsCount
+    ]
+  }
+
+  private synchronized byte[] readPayload(MountPoint mountPoint)
+  {
+    Record record = _records[mountPoint]
+    if(record == null)
+      return null
+
+    return readFully(_channel, record.payloadPosition, record.payloadLength).array()
+  }
+
+  private def checkState(MountPoint mountPoint, state)
+  {
+    if(extractMountPointFromState(state) != mountPoint)
+      throw new IllegalArgumentException("mismatch mountPoint: ${mountPoint} != ${extractMountPointFromState(state)}")
+    return state
+  }
+
+  private MountPoint extractMountPointFromState(state)
+  {
+    state?.scriptDefinition?.mountPoint
+  }
+
+  /**
+   * Appends the record to the log (must be called while holding the lock)
+   *
+   * @return the number of records appended so far (to use with {@link #commit(long)})
+   */
+  private long append(byte type, MountPoint mountPoint, byte[] payload)
+  {
+    if(_channel == null)
+      throw new IllegalStateException("journal is not opened")
+
+    byte[] path = mountPoint.path.getBytes('UTF-8')
+
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + path.length + payload.length)
+    buffer.put(type)
+    buffer.putInt(path.length)
+    buffer.put(path)
+    buffer.putInt(payload.length)
+    buffer.put(payload)
+    buffer.putInt(computeCRC(type, path, payload))
+    buffer.flip()
+
+    long position = _logSize
+    writeFully(_channel, buffer, position)
+    _logSize += buffer.limit()
+
+    apply(type, mountPoint, new Record(position: position,
+                                       size: buffer.limit(),
+                                       payloadLength: payload.length))
+
+    return ++_appendedCount
+  }
+
+  private void apply(byte type, MountPoint mountPoint, Record record)
+  {
+    Record previous = type == RECORD_STORE ? _records.put(mountPoint, record) : _records.remove(mountPoint)
+
+    if(previous != null)
+      _liveSize -= previous.size
+
+    if(type == RECORD_STORE)
+      _liveSize += record.size
+  }
+
+  /**
+   * Makes sure that the first <code>count</code> records appended are synced. The thread which
+   * syncs the log syncs all the records appended so far so the threads waiting for it most likely
+   * have nothing left to do.
+   */
+  private void commit(long count)
+  {
+    if(!fsync)
+      return
+
+    synchronized(_syncLock)
+    {
+      if(_syncedCount >= count || _channel == null)
+        return
+
+      long appendedCount = _appendedCount
+      _channel.force(false)
+      _syncedCount = appendedCount
+    }
+  }
+
+  /**
+   * Must be called while holding the lock
+   */
+  private void compactIfNeeded()
+  {
+    if(_logSize > compactionMinSize && _logSize > compactionRatio * (_liveSize + LOG_HEADER_SIZE))
+      compact()
+  }
+
+  /**
+   * Rewrites the log with only the latest state of each mount point. Must be called while holding
+   * the lock.
+   */
+  private void compact()
+  {
+    File compactedFile = new File(_journalDir, "${LOG_FILENAME}.tmp")
+    long generation = _random.nextLong()
+
+    FileChannel compactedChannel = FileChannel.open(compactedFile.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)
+
+    Map<MountPoint, Record> records = new HashMap<MountPoint, Record>()
+    long position = LOG_HEADER_SIZE
+
+    try
+    {
+      writeFully(compactedChannel, newLogHeader(generation), 0)
+
+      _records.each { MountPoint mountPoint, Record record ->
+        writeFully(compactedChannel, readFully(_channel, record.position, record.size), position)
+        records[mountPoint] = new Record(position: position,
+                                         size: record.size,
+                                         payloadLength: record.payloadLength)
+        position += record.size
+      }
+
+      compactedChannel.force(true)
+    }
+    catch(Throwable th)
+    {
+      GroovyLangUtils.noException { compactedChannel.close() }
+      compactedFile.delete()
+      throw th
+    }
+
+    synchronized(_syncLock)
+    {
+      Files.move(compactedFile.toPath(),
+                 _logFile.toPath(),
+                 StandardCopyOption.ATOMIC_MOVE,
+                 StandardCopyOption.REPLACE_EXISTING)
+      _channel.close()
+      _channel = compactedChannel
+      _syncedCount = _appendedCount
+    }
+
+    if(log.isDebugEnabled())
+      log.debug("Compacted journal ${_logFile}: ${_logSize} -> ${position} bytes")
+
+    _generation = generation
+    _records = records
+    _logSize = position
+    _liveSize = position - LOG_HEADER_SIZE
+    _compactionsCount++
+
+    writeIndex()
+  }
+
+  /**
+   * Reads the records of the log starting at the given position (truncates the log at the first
+   * invalid record)
+   *
+   * @return the size of the log
+   */
+  private long replay(long position)
+  {
+    long size = _channel.size()
+
+    _channel.position(position)
+    DataInputStream dis =
+      new DataInputStream(new BufferedInputStream(Channels.newInputStream(_channel), 64 * 1024))
+
+    while(position < size)
+    {
+      byte type
+      byte[] path
+      byte[] payload
+
+      try
+      {
+        type = dis.readByte()
+        path = readBytes(dis, size - position)
+        payload = readBytes(dis, size - position - path.length)
+        if(dis.readInt() != computeCRC(type, path, payload) ||
+           (type != RECORD_STORE && type != RECORD_CLEAR))
+          throw new IOException("invalid record")
+      }
+      catch(IOException e)
+      {
+        log.warn("Invalid record in journal ${_logFile} at ${position} (${e.message})... truncating ${size - position} bytes")
+        _channel.truncate(position)
+        _channel.force(true)
+        return position
+      }
+
+      int recordSize = RECORD_OVERHEAD + path.length + payload.length
+
+      apply(type, MountPoint.create(new String(path, 'UTF-8')), new Record(position: position,
+                                                                             size: recordSize,
+                                                                             payloadLength: payload.length))
+
+      position += recordSize
+    }
+
+    return position
+  }
+
+  private static byte[] readBytes(DataInputStream dis, long maxLength)
+  {
+    int length = dis.readInt()
+    if(length < 0 || length > maxLength)
+      throw new IOException("invalid length ${length}")
+    byte[] res = new byte[length]
+    dis.readFully(res)
+    return res
+  }
+
+  /**
+   * Reads the index (if it matches the log)
+   *
+   * @return the position in the log up to which the index is valid
+   */
+  private long readIndex()
+  {
+    if(!_indexFile.exists())
+      return LOG_HEADER_SIZE
+
+    try
+    {
+      FileChannel indexChannel = FileChannel.open(_indexFile.toPath(), StandardOpenOption.READ)
+      try
+      {
+        MappedByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size())
+
+        if(buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION || buffer.getLong() != _generation)
+          return LOG_HEADER_SIZE
+
+        long logSize = buffer.getLong()
+        if(logSize > _channel.size())
+          return LOG_HEADER_SIZE
+
+        int count = buffer.getInt()
+        count.times {
+          byte[] path = new byte[buffer.getInt()]
+          buffer.get(path)
+          apply(RECORD_STORE, MountPoint.create(new String(path, 'UTF-8')), new Record(position: buffer.getLong(),
+                                                                                       size: buffer.getInt(),
+                                                                                       payloadLength: buffer.getInt()))
+        }
+
+        return logSize
+      }
+      finally
+      {
+        indexChannel.close()
+      }
+    }
+    catch(Throwable th)
+    {
+      log.warn("Ignoring invalid index ${_indexFile} (${th.message})")
+      _records.clear()
+      _liveSize = 0
+      return LOG_HEADER_SIZE
+    }
+  }
+
+  /**
+   * Writes the index (must be called while holding the lock)
+   */
+  private void writeIndex()
+  {
+    def paths = [:]
+    int size = 28
+    _records.keySet().each { MountPoint mountPoint ->
+      byte[] path = mountPoint.path.getBytes('UTF-8')
+      paths[mountPoint] = path
+      size += 20 + path.length
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size)
+    buffer.putInt(INDEX_MAGIC)
+    buffer.putInt(VERSION)
+    buffer.putLong(_generation)
+    buffer.putLong(_logSize)
+    buffer.putInt(_records.size())
+    _records.each { MountPoint mountPoint, Record record ->
+      byte[] path = paths[mountPoint]
+      buffer.putInt(path.length)
+      buffer.put(path)
+      buffer.putLong(record.position)
+      buffer.putInt(record.size)
+      buffer.putInt(record.payloadLength)
+    }
+    buffer.flip()
+
+    File indexFile = new File(_journalDir, "${INDEX_FILENAME}.tmp")
+    FileChannel indexChannel = FileChannel.open(indexFile.toPath(),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE)
+    try
+    {
+      writeFully(indexChannel, buffer, 0)
+      indexChannel.force(true)
+    }
+    finally
+    {
+      indexChannel.close()
+    }
+
+    Files.move(indexFile.toPath(),
+               _indexFile.toPath(),
+               StandardCopyOption.ATOMIC_MOVE,
+               StandardCopyOption.REPLACE_EXISTING)
+  }
+
+  private static ByteBuffer newLogHeader(long generation)
+  {
+    ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE)
+    header.putInt(LOG_MAGIC)
+    header.putInt(VERSION)
+    header.putLong(generation)
+    header.flip()
+    return header
+  }
+
+  private static int computeCRC(byte type, byte[] path, byte[] payload)
+  {
+    CRC32 crc = new CRC32()
+    crc.update(type)
+    crc.update(path)
+    crc.update(payload)
+    return (int) crc.value
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+  {
+    while(buffer.hasRemaining())
+      position += channel.write(buffer, position)
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length)
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(length)
+    while(buffer.hasRemaining())
+    {
+      int read = channel.read(buffer, position)
+      if(read == -1)
+        throw new EOFException("unexpected end of journal at ${position}")
+      position += read
+    }
+    buffer.flip()
+    return buffer
+  }
+
+  private static byte[] serialize(state)
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream()
+    new ObjectOutputStream(baos).withStream { ObjectOutputStream oos ->
+      oos.writeObject(state)
+    }
+    return baos.toByteArray()
+  }
+
+  private def deserialize(byte[] payload)
+  {
+    new ByteArrayInputStream(payload).newObjectInputStream(getClass().classLoader).withStream {
+      ObjectInputStream ois ->
+      ois.readObject()
+    }
+  }
+
+  /**
+   * Location of a state in the log
+   */
+  private static class Record
+  {
+    long position
+    int size
+    int payloadLength
+
+    long getPayloadPosition()
+    {
+      return position + size - 4 - payloadLength
+    }
+  }
+}
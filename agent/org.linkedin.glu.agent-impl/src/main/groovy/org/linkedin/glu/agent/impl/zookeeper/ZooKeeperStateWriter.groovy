@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.agent.impl.zookeeper
+
+import org.linkedin.util.clock.ClockUtils
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.lifecycle.Shutdownable
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.TimeoutException
+
+/**
+ * Write behind queue for the states stored in ZooKeeper. Only the latest pending write (or delete)
+ * is kept per path (a script which quickly goes through several states ends up being written
+ * only once) and the pending writes are flushed by a single thread, in batches of at most
+ * <code>maxBatchSize</code> writes (which bounds the number of writes in flight).
+ *
+ * The writes are executed by <code>flusher</code> which is called with the path and the data
+ * (<code>null</code> for a delete).
+ *
+ * @author yan@pongasoft.com */
+class ZooKeeperStateWriter implements Shutdownable
+{
+  public static final String MODULE = ZooKeeperStateWriter.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private static final Object DELETE = new Object()
+
+  /**
+   * Called with <code>(String path, String data)</code> to execute a write
+   * (<code>data</code> is <code>null</code> for a delete)
+   */
+  Closure flusher
+
+  /**
+   * Maximum number of writes flushed at once
+   */
+  int maxBatchSize = 100
+
+  /**
+   * How long to wait before flushing (so that the writes happening in a burst are coalesced)
+   */
+  Timespan flushDelay = Timespan.parse('100')
+
+  // path -> data (or DELETE) in the order in which they were first written
+  private final Map<String, Object> _pending = new LinkedHashMap<String, Object>()
+
+  // held while executing writes so that the writes are never reordered
+  // (flush from another thread or clear)
+  private final Object _flushLock = new Object()
+
+  private Thread _thread
+  private boolean _shutdown = false
+
+  private long _writes = 0
+  private long _coalescedWrites = 0
+  private long _flushedWrites = 0
+  private long _batches = 0
+
+  /**
+   * Enqueues a write
+   */
+  void write(String path, String data)
+  {
+    enqueue(path, data)
+  }
+
+  /**
+   * Enqueues a delete
+   */
+  void delete(String path)
+  {
+    enqueue(path, DELETE)
+  }
+
+  private void enqueue(String path, Object data)
+  {
+    boolean shutdown
+
+    synchronized(this)
+    {
+      shutdown = _shutdown
+
+      if(!shutdown)
+      {
+        _writes++
+
+        if(_pending.containsKey(path))
+          _coalescedWrites++
+
+        _pending[path] = data
+
+        if(_thread == null)
+        {
+          _thread = new Thread(this.&run as Runnable, 'glu-agent-zookeeper-writer')
+          _thread.daemon = true
+          _thread.start()
+        }
+
+        notifyAll()
+      }
+    }
+
+    // once shutdown the writes happen synchronously
+    if(shutdown)
+    {
+      synchronized(_flushLock)
+      {
+        // an older write for the same path may still be pending (it must not be executed after
+        // this one)
+        synchronized(this)
+        {
+          _pending.remove(path)
+        }
+
+        execute(path, data)
+      }
+    }
+  }
+
+  /**
+   * Executes all the pending writes (in the calling thread)
+   */
+  void flush()
+  {
+    synchronized(_flushLock)
+    {
+      boolean flushed = true
+      while(flushed)
+        flushed = flushBatch()
+    }
+  }
+
+  /**
+   * Discards all the pending writes (ex: when all the states are being cleared)
+   */
+  void clear()
+  {
+    synchronized(_flushLock)
+    {
+      synchronized(this)
+      {
+        _pending.clear()
+      }
+    }
+  }
+
+  /**
+   * @return the statistics of the writer
+   */
+  synchronized Map getStats()
+  {
+    [
+      writes: _writes,
+      coalescedWrites: _coalescedWrites,
+      flushedWrites: _flushedWrites,
+      batches: _batches,
+      pendingWrites: _pending.size()
+    ]
+  }
+
+  private void run()
+  {
+    try
+    {
+      while(true)
+      {
+        synchronized(this)
+        {
+          while(_pending.isEmpty() && !_shutdown)
+            wait()
+
+          if(_pending.isEmpty())
+            return
+
+          // coalesce the writes which happen in a burst (but do not delay the shutdown or a full
+          // batch)
+          long delay = flushDelay?.durationInMilliseconds ?: 0
+          long deadline = System.currentTimeMillis() + delay
+          while(!_shutdown && delay > 0 && _pending.size() < maxBatchSize)
+          {
+            wait(delay)
+            delay = deadline - System.currentTimeMillis()
+          }
+        }
+
+        synchronized(_flushLock)
+        {
+          flushBatch()
+        }
+      }
+    }
+    catch(InterruptedException e)
+    {
+      if(log.isDebugEnabled())
+        log.debug("interrupted", e)
+    }
+  }
+
+  /**
+   * Must be called while holding the flush lock
+   *
+   * @return <code>true</code> if some writes were executed
+   */
+  private boolean flushBatch()
+  {
+    Map<String, Object> batch = new LinkedHashMap<String, Object>()
+
+    synchronized(this)
+    {
+      Iterator<Map.Entry<String, Object>> iterator = _pending.entrySet().iterator()
+      while(iterator.hasNext() && batch.size() < maxBatchSize)
+      {
+        Map.Entry<String, Object> entry = iterator.next()
+        batch[entry.key] = entry.value
+        iterator.remove()
+      }
+    }
+
+    if(batch.isEmpty())
+      return false
+
+    batch.each { String path, Object data ->
+      execute(path, data)
+    }
+
+    synchronized(this)
+    {
+      _batches++
+      _flushedWrites += batch.size()
+    }
+
+    if(log.isDebugEnabled())
+      log.debug("flushed ${batch.size()} write(s)")
+
+    return true
+  }
+
+  private void execute(String path, Object data)
+  {
+    try
+    {
+      flusher(path, data.is(DELETE) ? null : data)
+    }
+    catch(Throwable th)
+    {
+      log.warn("[${path}] write ignored due to unexpected exception", th)
+    }
+  }
+
+  /**
+   * Flushes the pending writes and stops the thread (the writes happening after shutdown are
+   * executed synchronously)
+   */
+  @Override
+  void shutdown()
+  {
+    synchronized(this)
+    {
+      _shutdown = true
+      notifyAll()
+    }
+  }
+
+  @Override
+  void waitForShutdown()
+  {
+    waitForShutdown(null)
+  }
+
+  @Override
+  void waitForShutdown(Object timeout)
+  {
+    Thread thread
+    synchronized(this)
+    {
+      if(!_shutdown)
+        throw new IllegalStateException("call shutdown first")
+      thread = _thread
+    }
+
+    Timespan timespan = ClockUtils.toTimespan(timeout)
+
+    if(thread != null)
+    {
+      thread.join(timespan?.durationInMilliseconds ?: 0)
+      if(thread.isAlive())
+        throw new TimeoutException()
+    }
+
+    // in case some writes were enqueued while shutting down
+    flush()
+  }
+}
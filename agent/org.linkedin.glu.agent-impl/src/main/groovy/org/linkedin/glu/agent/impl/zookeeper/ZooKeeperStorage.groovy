@@ -24,6 +24,7 @@ import org.apache.zookeeper.ZooDefs.Ids
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.impl.storage.WriteOnlyStorage
 import org.linkedin.glu.groovy.utils.GluGroovyLangUtils
+import org.linkedin.glu.groovy.utils.json.GluGroovyJsonUtils
 import org.linkedin.glu.groovy.utils.jvm.JVMInfo
 import org.linkedin.groovy.util.json.JsonUtils
 import org.linkedin.util.lang.LangUtils
@@ -49,6 +50,14 @@ class ZooKeeperStorage implements WriteOnlyStorage
 
   String prefix = 'glu'
 
+  /**
+   * When <code>true</code>, the states are stored compressed (see
+   * {@link GluGroovyJsonUtils#compressJSON(String)}). The tracker reads both formats.
+   */
+  boolean compressStates = false
+
+  private volatile ZooKeeperStateWriter _stateWriter
+
   ZooKeeperStorage(IZKClient zkState, IZKClient zkAgentProperties)
   {
     _zkState = zkState
@@ -65,6 +74,26 @@ class ZooKeeperStorage implements WriteOnlyStorage
     return _zkAgentProperties
   }
 
+  ZooKeeperStateWriter getStateWriter()
+  {
+    return _stateWriter
+  }
+
+  /**
+   * When set, the states are written (and cleared) asynchronously by the writer (which coalesces
+   * the writes per mount point) instead of synchronously.
+   */
+  void setStateWriter(ZooKeeperStateWriter stateWriter)
+  {
+    stateWriter?.flusher = { String path, String data ->
+      if(data == null)
+        deleteState(path)
+      else
+        writeState(path, data)
+    }
+    _stateWriter = stateWriter
+  }
+
   /**
    * Make sure that a call to ZooKeeper happens only when zookeeper is connected and if an exception
    * is thrown, it gets logged but ignored. 
@@ -98,11 +127,19 @@ class ZooKeeperStorage implements WriteOnlyStorage
   }
 
   public void clearState(MountPoint mountPoint)
+  {
+    if(_stateWriter)
+      _stateWriter.delete(mountPoint.toPathWithNoSlash())
+    else
+      deleteState(mountPoint.toPathWithNoSlash())
+  }
+
+  private void deleteState(String path)
   {
     zkSafe(_zkState) { IZKClient zk ->
       try
       {
-        zk.delete(mountPoint.toPathWithNoSlash())
+        zk.delete(path)
       }
       catch (KeeperException.NoNodeException e)
       {
@@ -116,6 +153,9 @@ class ZooKeeperStorage implements WriteOnlyStorage
 
   public getMountPoints()
   {
+    // make sure that the pending writes are visible
+    _stateWriter?.flush()
+
     zkSafe(_zkState) {  IZKClient zk ->
       def mountPoints = []
 
@@ -132,6 +172,8 @@ class ZooKeeperStorage implements WriteOnlyStorage
 
   public void clearAllStates()
   {
+    _stateWriter?.clear()
+
     zkSafe(_zkState) {  IZKClient zk ->
       if(zk.exists('/'))
       {
@@ -151,24 +193,60 @@ class ZooKeeperStorage implements WriteOnlyStorage
 
   public void storeState(MountPoint mountPoint, state)
   {
-    zkSafe(_zkState) {  IZKClient zk ->
-      // modifying the state so making a copy
-      state = LangUtils.deepClone(state)
-
-      def error = state.scriptState.stateMachine.error
-      if(error instanceof Throwable)
+    if(_stateWriter)
+    {
+      String json
+      try
+      {
+        // the state is serialized right away because it may be modified by the caller
+        json = toJson(state)
+      }
+      catch(Throwable e)
       {
-        error = GluGroovyLangUtils.extractExceptionDetailsWithCause(error, [])
-        state.scriptState.stateMachine.error = error
+        log.warn("Call ignored storeState(${mountPoint}) due to unexpected exception", e)
+        return
       }
 
-      state = JsonUtils.compactPrint(state)
+      _stateWriter.write(mountPoint.toPathWithNoSlash(), json)
+    }
+    else
+    {
+      zkSafe(_zkState) {  IZKClient zk ->
+        createOrSetState(zk, mountPoint.toPathWithNoSlash(), toJson(state))
+      }
+    }
+  }
 
-      zk.createOrSetWithParents(mountPoint.toPathWithNoSlash(),
-                                state,
-                                ACLs,
-                                CreateMode.PERSISTENT)
+  private String toJson(state)
+  {
+    // modifying the state so making a copy
+    state = LangUtils.deepClone(state)
+
+    def error = state.scriptState.stateMachine.error
+    if(error instanceof Throwable)
+    {
+      error = GluGroovyLangUtils.extractExceptionDetailsWithCause(error, [])
+      state.scriptState.stateMachine.error = error
     }
+
+    String json = JsonUtils.compactPrint(state)
+
+    return compressStates ? GluGroovyJsonUtils.compressJSON(json) : json
+  }
+
+  private void writeState(String path, String state)
+  {
+    zkSafe(_zkState) {  IZKClient zk ->
+      createOrSetState(zk, path, state)
+    }
+  }
+
+  private static void createOrSetState(IZKClient zk, String path, String state)
+  {
+    zk.createOrSetWithParents(path,
+                              state,
+                              ACLs,
+                              CreateMode.PERSISTENT)
   }
 
   @Override
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package test.agent.perf
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.impl.storage.AgentProperties
+import org.linkedin.glu.agent.impl.storage.FileSystemStorage
+import org.linkedin.glu.agent.impl.storage.JournaledStorage
+import org.linkedin.glu.agent.impl.storage.Storage
+import org.linkedin.groovy.util.io.fs.FileSystemImpl
+
+/**
+ * Compares the startup time of the agent storage (cleaning up the invalid states, listing the
+ * mount points and loading all the states, which is what the agent does on boot) with one file per
+ * mount point (default) and with the journal (<code>glu.agent.stateJournal.enabled=true</code>).
+ *
+ * Example of running the performance test (the classpath must contain the agent-impl jar and its
+ * dependencies, ex: the lib folder of the agent server):
+ * groovy -cp "/export/content/glu/org.linkedin.glu.agent-server-xxx/lib/*" groovy/test/agent/perf/TestPerfStorage.groovy 1000 5
+ *
+ * @author yan@pongasoft.com */
+class TestPerfStorage
+{
+  int nbMountPoints = 1000
+  int nbIterations = 5
+
+  def createState(MountPoint mountPoint)
+  {
+    [
+      scriptDefinition: [
+        mountPoint: mountPoint,
+        scriptFactory: [location: "http://localhost:8080/scripts/${mountPoint.name}.groovy".toString()],
+        initParameters: [
+          metadata: [product: 'product1', version: '1.0.0', cluster: 'cluster1'],
+          tags: ['frontend', 'backend'],
+          skeleton: 'ivy:/com.acme/skeleton/1.0.0'
+        ]
+      ],
+      scriptState: [
+        script: [pid: 1234, port: 8080, serverLog: "/var/log/${mountPoint.name}.log".toString()],
+        stateMachine: [currentState: 'running']
+      ]
+    ]
+  }
+
+  def run()
+  {
+    def fs = FileSystemImpl.createTempFileSystem()
+    try
+    {
+      def mountPoints = (1..nbMountPoints).collect { MountPoint.create("/script/i${it}") }
+
+      File stateDir = fs.toResource('/state').file
+      stateDir.mkdirs()
+
+      def fileSystemStorage = new FileSystemStorage(fs.newFileSystem(stateDir),
+                                                    new AgentProperties(),
+                                                    fs.toResource('/agent.properties').file)
+
+      File journalDir = fs.toResource('/journal').file
+
+      // populates both storages
+      mountPoints.each { MountPoint mp -> fileSystemStorage.storeState(mp, createState(mp)) }
+
+      def journaledStorage = new JournaledStorage(fileSystemStorage, journalDir)
+      journaledStorage.open()
+      mountPoints.each { MountPoint mp -> journaledStorage.storeState(mp, createState(mp)) }
+      journaledStorage.close()
+
+      // warm up
+      boot(fileSystemStorage)
+      bootJournal(fileSystemStorage, journalDir, true)
+
+      println "${nbMountPoints} mount points (${nbIterations} iterations)"
+      println "file system: ${time { boot(fileSystemStorage) }}ms"
+      println "journal (with index): ${time { bootJournal(fileSystemStorage, journalDir, true) }}ms"
+      println "journal (no index): ${time { bootJournal(fileSystemStorage, journalDir, false) }}ms"
+    }
+    finally
+    {
+      fs.destroy()
+    }
+  }
+
+  private long time(Closure closure)
+  {
+    long start = System.currentTimeMillis()
+    nbIterations.times { closure() }
+    return (System.currentTimeMillis() - start) / nbIterations
+  }
+
+  private void boot(Storage storage)
+  {
+    storage.deleteInvalidStates()
+    storage.mountPoints.each { MountPoint mp -> storage.loadState(mp) }
+  }
+
+  private void bootJournal(Storage storage, File journalDir, boolean withIndex)
+  {
+    if(!withIndex)
+      new File(journalDir, JournaledStorage.INDEX_FILENAME).delete()
+
+    def journaledStorage = new JournaledStorage(storage, journalDir)
+    journaledStorage.open()
+    boot(journaledStorage)
+    journaledStorage.close()
+  }
+
+  public static void main(String[] args)
+  {
+    def tps = new TestPerfStorage()
+    if(args.size() > 0)
+      tps.nbMountPoints = args[0] as int
+    if(args.size() > 1)
+      tps.nbIterations = args[1] as int
+
+    tps.run()
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package test.agent.perf
+
+import org.linkedin.glu.agent.impl.concurrent.AgentThreadPool
+import org.linkedin.glu.agent.impl.script.ScriptExecution
+import org.linkedin.util.clock.Timespan
+import org.slf4j.LoggerFactory
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Compares the number of threads and the memory used by the agent with 1 thread per script
+ * (default) and with the shared pool of threads (<code>glu.agent.threads.pooled=true</code>).
+ *
+ * Example of running the performance test (the classpath must contain the agent-impl jar and its
+ * dependencies, ex: the lib folder of the agent server):
+ * groovy -cp "/export/content/glu/org.linkedin.glu.agent-server-xxx/lib/*" groovy/test/agent/perf/TestPerfThreads.groovy 1000 30s
+ *
+ * @author yan@pongasoft.com */
+class TestPerfThreads
+{
+  int nbMountPoints = 1000
+  String timerFrequency = '5s'
+  long durationInMilliseconds = 30000
+
+  def run(boolean pooled)
+  {
+    def threadMXBean = ManagementFactory.threadMXBean
+    def memoryMXBean = ManagementFactory.memoryMXBean
+
+    System.gc()
+    int threadsBefore = threadMXBean.threadCount
+    long heapBefore = memoryMXBean.heapMemoryUsage.used
+
+    AgentThreadPool threadPool = pooled ? new AgentThreadPool() : null
+    AtomicLong timersCount = new AtomicLong(0)
+
+    def log = LoggerFactory.getLogger(TestPerfThreads.class.name)
+
+    def executions = (1..nbMountPoints).collect { i ->
+      def mountPoint = "/script/${i}".toString()
+      def source = [
+        invocable: [timer1: { timersCount.incrementAndGet() }],
+        name: mountPoint,
+        checkValidTransitionForAction: { }
+      ]
+      def se = new ScriptExecution(source, mountPoint, log)
+      se.threadPool = threadPool
+      se.start()
+      se.scheduleTimer('timer1', null, timerFrequency, null)
+      return se
+    }
+
+    long startTime = System.currentTimeMillis()
+    int peakThreads = 0
+    while(System.currentTimeMillis() - startTime < durationInMilliseconds)
+    {
+      peakThreads = Math.max(peakThreads, threadMXBean.threadCount)
+      Thread.sleep(100)
+    }
+
+    System.gc()
+    int threads = threadMXBean.threadCount
+    long heap = memoryMXBean.heapMemoryUsage.used
+
+    executions.each { it.shutdown() }
+    executions.each { it.waitForShutdown('10s') }
+    threadPool?.shutdown()
+    threadPool?.waitForShutdown('10s')
+
+    println "${pooled ? 'pooled' : 'thread per script'}: " +
+            "${nbMountPoints} mount points, " +
+            "threads=${threads - threadsBefore} (peak=${peakThreads - threadsBefore}), " +
+            "heap=${(heap - heapBefore) / 1024}KB, " +
+            "timers=${timersCount.get()}" +
+            (pooled ? ", largestPoolSize=${threadPool.largestPoolSize}" : '')
+  }
+
+  public static void main(String[] args)
+  {
+    def tpt = new TestPerfThreads()
+    if(args.size() > 0)
+      tpt.nbMountPoints = args[0] as int
+    if(args.size() > 1)
+      tpt.durationInMilliseconds = Timespan.parse(args[1]).durationInMilliseconds
+
+    tpt.run(false)
+    tpt.run(true)
+  }
+}
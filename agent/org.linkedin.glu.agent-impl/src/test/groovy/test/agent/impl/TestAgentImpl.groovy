@@ -43,10 +43,13 @@ import java.util.concurrent.TimeoutException
 import org.linkedin.glu.agent.impl.storage.AgentProperties
 import org.linkedin.glu.agent.impl.storage.TagsStorage
 import org.linkedin.util.concurrent.ThreadPerTaskExecutor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
 import org.linkedin.glu.groovy.utils.concurrent.GluGroovyConcurrentUtils
 import org.linkedin.glu.agent.api.Shell
+import org.linkedin.glu.utils.concurrent.ExecutorServiceSubmitter
 import org.linkedin.util.clock.Chronos
 import org.linkedin.glu.groovy.utils.collections.GluGroovyCollectionUtils
 import org.linkedin.glu.utils.core.Externable
@@ -971,6 +974,100 @@ gc: 1000
     }
   }
 
+  /**
+   * test the commands executed without installing a glu script
+   */
+  public void testLightweightCommands()
+  {
+    agent._commandManager.lightweightExecution = true
+
+    FileSystemImpl.createTempFileSystem() { FileSystem fs ->
+      def shell = new ShellImpl(fileSystem: fs)
+      def shellScript = shell.fetch("./src/test/resources/shellScriptTestShellExec.sh")
+      // let's make sure it is executable
+      fs.chmod(shellScript, '+x')
+
+      // both stdout and stderr in their proper channel
+      checkShellExec(shell, [command: [shellScript, "-1", "-2"]], 0, "this goes to stdout\n", "this goes to stderr\n")
+
+      // testing for failure/exit value
+      checkShellExec(shell, [command: [shellScript, "-1", "-e"]], 1, "this goes to stdout\n", "")
+
+      // reading from stdin
+      checkShellExec(shell, [command: [shellScript, "-1", "-c"], stdin: "abc\ndef\n"], 0, "this goes to stdout\nabc\ndef\n", "")
+
+      Chronos c = new Chronos()
+
+      // testing interrupt
+      checkShellExec(shell, [command: ["sleep 10"]], null, "", "", { execResult ->
+
+        // we wait until the command is actually started...
+        shell.waitFor(timeout: '2s', heartbeat: '10') {
+          agent._commandManager.findCommand(execResult.id).command.exitValueStream != null
+        }
+
+        // no script is installed for the command
+        assertNull(agent._scriptManager.findScript(MountPoint.create("/_/command/${execResult.id}")))
+        assertEquals(1, ramStorage.size())
+
+        assertTrue(agent.interruptCommand([id: execResult.id]))
+        return execResult
+      }, null)
+
+      // we make sure that the command got interrupted properly and that it did not last the
+      // full 10s. We use 2s as a buffer...
+      assertTrue(c.tick() < Timespan.parse("2s").durationInMilliseconds)
+
+      // the commands are only kept in memory while they run
+      shell.waitFor(timeout: '2s', heartbeat: '10') {
+        agent._commandManager._currentCommandExecutions.isEmpty()
+      }
+      assertEquals(1, ramStorage.size())
+    }
+  }
+
+  /**
+   * a lightweight command cancelled while still queued (bounded pool) completes right away
+   */
+  public void testLightweightCommandCancelledWhileQueued()
+  {
+    ExecutorService executorService = Executors.newFixedThreadPool(1)
+    agent._commandManager.lightweightExecution = true
+    agent._commandManager.submitter = new ExecutorServiceSubmitter(executorService)
+
+    try
+    {
+      // occupies the only thread of the pool
+      def running = agent.executeShellCommand(command: "sleep 10")
+      shell.waitFor(timeout: '2s', heartbeat: '10') {
+        agent._commandManager.findCommand(running.id).command.exitValueStream != null
+      }
+
+      // queued behind the running command
+      def queued = agent.executeShellCommand(command: "sleep 10")
+      assertFalse(queued.isCompleted())
+
+      Chronos c = new Chronos()
+
+      assertTrue(agent.interruptCommand([id: queued.id]))
+      assertNull(agent.waitForCommand(id: queued.id, timeout: '5s'))
+      assertTrue(queued.isCompleted())
+
+      // it did not wait for the timeout
+      assertTrue(c.tick() < Timespan.parse("2s").durationInMilliseconds)
+
+      assertTrue(agent.interruptCommand([id: running.id]))
+
+      shell.waitFor(timeout: '2s', heartbeat: '10') {
+        agent._commandManager._currentCommandExecutions.isEmpty()
+      }
+    }
+    finally
+    {
+      executorService.shutdownNow()
+    }
+  }
+
   private void checkStorage2(mountPoint, args)
   {
     def state = ramStorage[mountPoint]
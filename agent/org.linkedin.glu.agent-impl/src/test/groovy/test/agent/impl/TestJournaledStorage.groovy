@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package test.agent.impl
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.api.NoSuchMountPointException
+import org.linkedin.glu.agent.impl.storage.AgentProperties
+import org.linkedin.glu.agent.impl.storage.FileSystemStorage
+import org.linkedin.glu.agent.impl.storage.JournaledStorage
+import org.linkedin.groovy.util.io.fs.FileSystem
+import org.linkedin.groovy.util.io.fs.FileSystemImpl
+
+/**
+ * Tests for the journaled storage
+ *
+ * @author yan@pongasoft.com */
+class TestJournaledStorage extends GroovyTestCase
+{
+  FileSystem stateFileSystem
+  FileSystem journalFileSystem
+  FileSystemStorage fileSystemStorage
+  JournaledStorage storage
+  File agentPropertiesFile
+  File journalDir
+
+  protected void setUp()
+  {
+    super.setUp();
+
+    stateFileSystem = FileSystemImpl.createTempFileSystem()
+    journalFileSystem = FileSystemImpl.createTempFileSystem()
+
+    agentPropertiesFile = journalFileSystem.toResource('/config/agent.properties').file
+    journalDir = journalFileSystem.toResource('/journal').file
+
+    fileSystemStorage = new FileSystemStorage(stateFileSystem,
+                                              new AgentProperties(),
+                                              agentPropertiesFile)
+
+    storage = newStorage()
+  }
+
+  protected void tearDown()
+  {
+    try
+    {
+      storage.close()
+      stateFileSystem.destroy()
+      journalFileSystem.destroy()
+    }
+    finally
+    {
+      super.tearDown()
+    }
+  }
+
+  private JournaledStorage newStorage()
+  {
+    JournaledStorage res = new JournaledStorage(fileSystemStorage, journalDir)
+    res.open()
+    return res
+  }
+
+  private static def newState(MountPoint mountPoint, value)
+  {
+    [p1: value, scriptDefinition: [mountPoint: mountPoint]]
+  }
+
+  /**
+   * Basic test for the journaled storage
+   */
+  void testJournaledStorage()
+  {
+    // first it is empty...
+    assertEquals(0, storage.mountPoints.size())
+
+    MountPoint mp = MountPoint.create('/a/b/c')
+
+    // nothing under /a/b/c
+    shouldFail(NoSuchMountPointException) {
+      storage.loadState(mp)
+    }
+
+    storage.storeState(mp, newState(mp, 'v1'))
+    assertEquals([mp], storage.mountPoints)
+    assertEquals(newState(mp, 'v1'), storage.loadState(mp))
+
+    storage.storeState(mp, newState(mp, 'v2'))
+    assertEquals(newState(mp, 'v2'), storage.loadState(mp))
+
+    MountPoint mp2 = MountPoint.create('/d')
+    storage.storeState(mp2, newState(mp2, 'v1'))
+    assertEquals([mp, mp2].sort(), storage.mountPoints.sort())
+
+    // trying to store an invalid state
+    shouldFail(IllegalArgumentException) {
+      storage.storeState(MountPoint.create('/foo'), newState(MountPoint.create('/foo2'), 'v3'))
+    }
+
+    storage.clearState(mp2)
+    assertEquals([mp], storage.mountPoints)
+    shouldFail(NoSuchMountPointException) {
+      storage.loadState(mp2)
+    }
+
+    // the states are read back from the log (no index)
+    JournaledStorage storage2 = newStorage()
+    assertEquals([mp], storage2.mountPoints)
+    assertEquals(newState(mp, 'v2'), storage2.loadState(mp))
+    storage2.close()
+
+    // the states are read back from the index
+    storage.storeState(mp2, newState(mp2, 'v2'))
+    storage.close()
+    assertTrue(new File(journalDir, JournaledStorage.INDEX_FILENAME).exists())
+    storage = newStorage()
+    assertEquals([mp, mp2].sort(), storage.mountPoints.sort())
+    assertEquals(newState(mp, 'v2'), storage.loadState(mp))
+    assertEquals(newState(mp2, 'v2'), storage.loadState(mp2))
+
+    // states written after the index
+    storage.storeState(mp2, newState(mp2, 'v3'))
+    storage2 = newStorage()
+    assertEquals(newState(mp2, 'v3'), storage2.loadState(mp2))
+    storage2.close()
+
+    storage.clearAllStates()
+    assertEquals(0, storage.mountPoints.size())
+    storage.close()
+    storage = newStorage()
+    assertEquals(0, storage.mountPoints.size())
+  }
+
+  /**
+   * A partially written record (crash) is discarded
+   */
+  void testTruncatedLog()
+  {
+    MountPoint mp = MountPoint.create('/a')
+    storage.storeState(mp, newState(mp, 'v1'))
+
+    File logFile = new File(journalDir, JournaledStorage.LOG_FILENAME)
+    long length = logFile.length()
+
+    storage.storeState(mp, newState(mp, 'v2'))
+
+    RandomAccessFile raf = new RandomAccessFile(logFile, 'rw')
+    try
+    {
+      raf.setLength(raf.length() - 5)
+    }
+    finally
+    {
+      raf.close()
+    }
+
+    JournaledStorage storage2 = newStorage()
+    assertEquals(newState(mp, 'v1'), storage2.loadState(mp))
+    assertEquals(length, logFile.length())
+
+    // it can still be written to
+    storage2.storeState(mp, newState(mp, 'v3'))
+    storage2.close()
+
+    storage2 = newStorage()
+    assertEquals(newState(mp, 'v3'), storage2.loadState(mp))
+    storage2.close()
+  }
+
+  /**
+   * The log is compacted when it contains too many obsolete states
+   */
+  void testCompaction()
+  {
+    storage.compactionMinSize = 4096
+
+    MountPoint mp1 = MountPoint.create('/a')
+    MountPoint mp2 = MountPoint.create('/b')
+
+    storage.storeState(mp2, newState(mp2, 'v1'))
+
+    (1..100).each { i ->
+      storage.storeState(mp1, newState(mp1, i))
+    }
+
+    assertTrue(storage.stats.compactions > 0)
+    assertTrue(storage.stats.logSize <= 4096 * storage.compactionRatio)
+    assertEquals(newState(mp1, 100), storage.loadState(mp1))
+    assertEquals(newState(mp2, 'v1'), storage.loadState(mp2))
+
+    storage.close()
+    storage = newStorage()
+    assertEquals([mp1, mp2].sort(), storage.mountPoints.sort())
+    assertEquals(newState(mp1, 100), storage.loadState(mp1))
+    assertEquals(newState(mp2, 'v1'), storage.loadState(mp2))
+  }
+
+  /**
+   * The states are imported from the wrapped storage, stale commands are deleted and invalidated
+   * states are moved out of the journal
+   */
+  void testImportAndInvalidStates()
+  {
+    MountPoint mp = MountPoint.create('/a/b')
+    MountPoint command = MountPoint.create('/_/command/1234')
+
+    fileSystemStorage.storeState(mp, newState(mp, 'v1'))
+    fileSystemStorage.storeState(command, newState(command, 'v1'))
+
+    assertEquals([command, mp].sort(), storage.importStates().sort())
+    assertEquals(0, fileSystemStorage.mountPoints.size())
+    assertEquals(newState(mp, 'v1'), storage.loadState(mp))
+
+    assertEquals([command], storage.deleteInvalidStates())
+    assertEquals([mp], storage.mountPoints)
+
+    def invalidState = storage.invalidateState(mp)
+    assertTrue(new File(invalidState).exists())
+    assertEquals(0, storage.mountPoints.size())
+    assertNull(storage.invalidateState(mp))
+  }
+
+  /**
+   * Concurrent writes (group commit)
+   */
+  void testConcurrentWrites()
+  {
+    def threads = (1..10).collect { i ->
+      Thread.start {
+        MountPoint mp = MountPoint.create("/m${i}")
+        (1..50).each { storage.storeState(mp, newState(mp, it)) }
+      }
+    }
+    threads*.join()
+
+    storage.close()
+    storage = newStorage()
+    assertEquals(10, storage.mountPoints.size())
+    (1..10).each { i ->
+      MountPoint mp = MountPoint.create("/m${i}")
+      assertEquals(newState(mp, 50), storage.loadState(mp))
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.agent.impl
+
+import org.linkedin.glu.agent.impl.capabilities.ShellImpl
+import org.linkedin.glu.agent.impl.script.ScriptCache
+import org.linkedin.groovy.util.io.fs.FileSystem
+import org.linkedin.groovy.util.io.fs.FileSystemImpl
+import org.linkedin.util.lang.MemorySize
+
+/**
+ * @author yan@pongasoft.com */
+class TestScriptCache extends GroovyTestCase
+{
+  void testAcquireAndRelease()
+  {
+    FileSystemImpl.createTempFileSystem() { FileSystem fs ->
+      def shell = new ShellImpl(fileSystem: fs)
+
+      def script1 = shell.saveContent('/src/script1.groovy', 'class Script1 {}')
+      def script2 = shell.saveContent('/src/script2.groovy', 'class Script2 {}')
+
+      def cache = new ScriptCache(shell: shell,
+                                  cacheDir: fs.toResource('/cache').file,
+                                  maxSize: MemorySize.parse('20'))
+      cache.init()
+
+      def cf1 = cache.acquire(script1.file.toURI())
+      assertEquals(1, cache.stats.misses)
+      assertEquals(0, cache.stats.hits)
+      assertTrue(cache.isCachedFile(cf1.resource))
+      assertEquals('script1.groovy', cf1.resource.filename)
+      assertEquals('class Script1 {}', cf1.resource.file.text)
+
+      // same location (unchanged) => same file
+      def cf2 = cache.acquire(script1.file.toURI())
+      assertEquals(1, cache.stats.misses)
+      assertEquals(1, cache.stats.hits)
+      assertSame(cf1, cf2)
+      assertEquals(2, cf1.refCount)
+
+      // after restart, the local file is reused
+      def cf3 = cache.acquire(script1.file.toURI(), cf1.resource)
+      assertSame(cf1, cf3)
+      assertEquals(2, cache.stats.hits)
+      assertEquals(3, cf1.refCount)
+
+      // the 2 files exceed the maximum size but cf1 is in use => not evicted
+      def cf4 = cache.acquire(script2.file.toURI())
+      assertEquals(2, cache.stats.files)
+      assertEquals(0, cache.stats.evictions)
+
+      [cf1, cf2, cf3].each { cache.release(it) }
+      assertEquals(0, cf1.refCount)
+      assertEquals(1, cache.stats.evictions)
+      assertEquals(1, cache.stats.files)
+      assertFalse(cf1.resource.exists())
+      assertTrue(cf4.resource.exists())
+
+      // evicted => fetched again
+      def cf5 = cache.acquire(script1.file.toURI())
+      assertEquals(3, cache.stats.misses)
+      assertNotSame(cf1, cf5)
+      assertEquals('class Script1 {}', cf5.resource.file.text)
+
+      // a new cache in the same directory finds the files
+      def cache2 = new ScriptCache(shell: shell,
+                                   cacheDir: fs.toResource('/cache').file,
+                                   maxSize: ScriptCache.DEFAULT_MAX_SIZE)
+      cache2.init()
+      assertEquals(2, cache2.stats.files)
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package test.agent.impl
 
+import org.linkedin.glu.agent.impl.concurrent.AgentThreadPool
 import org.linkedin.glu.agent.impl.script.ScriptExecution
 import junit.framework.Assert
 import org.linkedin.util.concurrent.ThreadControl
@@ -267,6 +268,60 @@ class TestScriptExecution extends GroovyTestCase
     }
   }
 
+  /**
+   * In pool mode, a thread is used only while there is something to execute
+   */
+  void testPooledScriptExecution()
+  {
+    AgentThreadPool threadPool = new AgentThreadPool()
+
+    try
+    {
+      ThreadControl tc = new ThreadControl(Timespan.parse('5s'))
+      def source = [invocable: new ScriptExecutionTest1(tc: tc),
+                    name: name,
+                    checkValidTransitionForAction: { }]
+      ScriptExecution se = new ScriptExecution(source, name, log)
+      se.threadPool = threadPool
+      se.start()
+
+      // nothing to execute => no thread
+      assertEquals(0, threadPool.activeCount)
+
+      def fe1 = se.executeAction('action1', [p1: 'v1'])
+      tc.waitForBlock('action1.v1')
+      assertEquals(1, threadPool.activeCount)
+      tc.unblock('action1.v1')
+      assertEquals('v1', fe1.get('5s'))
+
+      // the thread is given back to the pool
+      waitForScriptExecution(se) { threadPool.activeCount == 0 }
+
+      // the timer wakes up the script
+      se.scheduleTimer('timer1', '200', '200', null)
+      (1..3).each {
+        tc.waitForBlock('timer1.0')
+        tc.unblock('timer1.0')
+      }
+      se.cancelTimer('timer1', false)
+      waitForScriptExecution(se) { se.timeline.size() == 0 && threadPool.activeCount == 0 }
+
+      // shutdown waits for the current execution to complete
+      def fe2 = se.executeAction('action1', [p1: 'v2'])
+      tc.waitForBlock('action1.v2')
+      se.shutdown()
+      shouldFail(TimeoutException) { se.waitForShutdown('20') }
+      tc.unblock('action1.v2')
+      assertEquals('v2', fe2.get('5s'))
+      se.waitForShutdown('5s')
+    }
+    finally
+    {
+      threadPool.shutdown()
+      threadPool.waitForShutdown('5s')
+    }
+  }
+
   void waitForScriptExecution(ScriptExecution se, Closure closure)
   {
     GroovyConcurrentUtils.waitForCondition(clock, '5s', '10', closure)
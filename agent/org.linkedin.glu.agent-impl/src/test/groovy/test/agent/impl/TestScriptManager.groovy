@@ -87,7 +87,9 @@ def class TestScriptManager extends GroovyTestCase
       getRootShell: { rootShell },
       getMop: {new MOPImpl()},
       getClock: { SystemClock.instance() },
-      getScriptLoader: { scriptLoader }
+      getScriptLoader: { scriptLoader },
+      getThreadPool: { null },
+      getScriptCache: { null }
     ] as AgentContext
 
     sm = new ScriptManagerImpl(agentContext: agentContext)
@@ -86,7 +86,9 @@ public class TestStateKeeperScriptManager extends GroovyTestCase
       getRootShell: { rootShell },
       getMop: {new MOPImpl()},
       getClock: { SystemClock.instance() },
-      getScriptLoader: { scriptLoader }
+      getScriptLoader: { scriptLoader },
+      getThreadPool: { null },
+      getScriptCache: { null }
     ] as AgentContext
 
     sm = new ScriptManagerImpl(agentContext: agentContext)
@@ -18,6 +18,7 @@
 
 package test.agent.impl
 
+import org.linkedin.glu.agent.impl.zookeeper.ZooKeeperStateWriter
 import org.linkedin.glu.agent.impl.zookeeper.ZooKeeperStorage
 import org.linkedin.glu.agent.api.MountPoint
 import org.apache.zookeeper.KeeperException
@@ -31,6 +32,9 @@ import org.linkedin.glu.agent.impl.storage.AgentProperties
 import org.linkedin.zookeeper.client.ZKData
 import org.linkedin.glu.groovy.utils.test.GluGroovyTestUtils
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 /**
  * This test will start a zookeeper server and shuts it down, so it is not relying on one currently
  * running.
@@ -206,4 +210,96 @@ class TestZookeeperStorage extends GroovyTestCase
                                               [mp],
                                               storage.mountPoints)
   }
+
+  /**
+   * The states are written asynchronously and only the latest state of a mount point is written
+   */
+  public void testStateWriter()
+  {
+    IZKClient c = client.chroot('storage')
+    IZKClient p = client.chroot('agent.properties')
+
+    ZooKeeperStorage storage = new ZooKeeperStorage(c, p)
+    // flushes only when asked to
+    storage.stateWriter = new ZooKeeperStateWriter(flushDelay: Timespan.parse('1h'))
+
+    def ab = MountPoint.create('/a/b')
+    def abc = MountPoint.create('/a/b/c')
+
+    def state = [scriptState: [stateMachine: [currentState: 'installed']]]
+
+    ['installing', 'installed', 'starting', 'running'].each {
+      state.scriptState.stateMachine.currentState = it
+      storage.storeState(ab, state)
+    }
+    storage.storeState(abc, state)
+
+    // not written yet
+    assertFalse(c.exists('_a_b'))
+
+    // getMountPoints flushes the pending writes
+    assertEquals([ab, abc], storage.getMountPoints().sort())
+    assertEquals('running', JsonUtils.fromJSON(c.getStringData('_a_b')).scriptState.stateMachine.currentState)
+
+    def stats = storage.stateWriter.stats
+    assertEquals(5, stats.writes)
+    assertEquals(3, stats.coalescedWrites)
+    assertEquals(2, stats.flushedWrites)
+    assertEquals(1, stats.batches)
+    assertEquals(0, stats.pendingWrites)
+
+    // write then clear => the state is cleared
+    storage.storeState(ab, state)
+    storage.clearState(ab)
+    assertEquals([abc], storage.getMountPoints())
+
+    // shutdown flushes the pending writes
+    state.scriptState.stateMachine.currentState = 'stopped'
+    storage.storeState(abc, state)
+    storage.stateWriter.shutdown()
+    storage.stateWriter.waitForShutdown('5s')
+    assertEquals('stopped', JsonUtils.fromJSON(c.getStringData('_a_b_c')).scriptState.stateMachine.currentState)
+
+    // after shutdown, writes are synchronous
+    storage.storeState(ab, state)
+    assertTrue(c.exists('_a_b'))
+  }
+
+  /**
+   * A write happening after shutdown is never overwritten by an older write still pending
+   */
+  public void testStateWriterWriteAfterShutdown()
+  {
+    def written = Collections.synchronizedMap([:])
+    CountDownLatch flushing = new CountDownLatch(1)
+    CountDownLatch release = new CountDownLatch(1)
+
+    ZooKeeperStateWriter writer =
+      new ZooKeeperStateWriter(maxBatchSize: 1,
+                               flushDelay: Timespan.parse('0'),
+                               flusher: { String path, String data ->
+                                 if(path == '/p1')
+                                 {
+                                   flushing.countDown()
+                                   release.await()
+                                 }
+                                 written[path] = data
+                               })
+
+    // the writer thread is busy with /p1 while /p2 is pending
+    writer.write('/p1', 'a')
+    assertTrue(flushing.await(5, TimeUnit.SECONDS))
+    writer.write('/p2', 'b')
+
+    writer.shutdown()
+
+    // written synchronously (once the writer thread is done with /p1)
+    Thread thread = Thread.start { writer.write('/p2', 'c') }
+
+    release.countDown()
+    thread.join(5000)
+    writer.waitForShutdown('5s')
+
+    assertEquals([('/p1'): 'a', ('/p2'): 'c'], written)
+  }
 }
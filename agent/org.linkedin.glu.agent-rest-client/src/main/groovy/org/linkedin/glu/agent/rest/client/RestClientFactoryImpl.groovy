@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2011-2013 Yan Pujante
+ * Copyright (c) 2011-2015 Yan Pujante
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,20 +20,69 @@ package org.linkedin.glu.agent.rest.client
 import javax.net.ssl.SSLContext
 import org.linkedin.groovy.util.config.Config
 import org.linkedin.util.annotations.Initializable
+import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.SystemClock
 import org.linkedin.util.clock.Timespan
 import org.restlet.Client
 import org.restlet.Context
 import org.restlet.data.Protocol
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * @author yan@pongasoft.com */
 class RestClientFactoryImpl implements RestClientFactory
 {
+  public static final String MODULE = RestClientFactoryImpl.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
   private final SSLContext _sslContext
 
   @Initializable
   Timespan connectionTimeout = Timespan.parse('30s')
 
+  /**
+   * When <code>true</code>, the clients are started once and kept in a pool (one per agent
+   * host/port) so that the underlying http connections are kept alive and reused across calls
+   * instead of being created (and for https, negotiated) on every call. Since the ssl context is
+   * shared by all the clients, the ssl sessions are resumed as well.
+   */
+  @Initializable
+  boolean pooledConnections = false
+
+  /**
+   * Maximum number of (pooled) connections to a given agent
+   */
+  @Initializable
+  int maxConnectionsPerHost = 10
+
+  /**
+   * How long an idle (pooled) connection is kept alive
+   */
+  @Initializable
+  Timespan connectionIdleTimeout = Timespan.parse('30s')
+
+  /**
+   * How long a client which is not used anymore (ex: agent is gone) stays in the pool
+   */
+  @Initializable
+  Timespan clientIdleTimeout = Timespan.parse('5m')
+
+  @Initializable
+  Clock clock = SystemClock.INSTANCE
+
+  private final Map<String, PooledClient> _clients = [:]
+  private long _lastEvictionTime = 0
+
+  private final AtomicLong _poolHits = new AtomicLong(0)
+  private final AtomicLong _poolMisses = new AtomicLong(0)
+  private final AtomicLong _poolEvictions = new AtomicLong(0)
+
   RestClientFactoryImpl(SSLContext sslContext)
   {
     _sslContext = sslContext
@@ -49,7 +98,7 @@ class RestClientFactoryImpl implements RestClientFactory
     {
       case 'http':
         protocol = Protocol.HTTP
-        client = new Client(null,
+        client = new Client(pooledConnections ? createPooledContext() : null,
                             [protocol] as List,
                             'org.restlet.ext.httpclient.HttpClientHelper') // forcing httpclient
         client.connectTimeout = connectionTimeout.durationInMilliseconds
@@ -57,7 +106,7 @@ class RestClientFactoryImpl implements RestClientFactory
 
       case 'https':
         protocol = Protocol.HTTPS
-        Context context = new Context()
+        Context context = pooledConnections ? createPooledContext() : new Context()
         context.attributes['serverURI'] = uri
         context.attributes['sslContext'] = _sslContext
         client = new Client(context,
@@ -73,9 +122,26 @@ class RestClientFactoryImpl implements RestClientFactory
     return client
   }
 
+  /**
+   * Configures the connection manager of the http client (see <code>HttpClientHelper</code>)
+   */
+  protected Context createPooledContext()
+  {
+    Context context = new Context()
+    def parameters = context.parameters
+    parameters.add('maxConnectionsPerHost', maxConnectionsPerHost.toString())
+    parameters.add('maxTotalConnections', maxConnectionsPerHost.toString())
+    parameters.add('idleTimeout', connectionIdleTimeout.durationInMilliseconds.toString())
+    parameters.add('idleCheckInterval', connectionIdleTimeout.durationInMilliseconds.toString())
+    return context
+  }
+
   @Override
   def withRestClient(URI uri, Closure closure)
   {
+    if(pooledConnections)
+      return withPooledRestClient(uri, closure)
+
     Client client = createRestClient(uri)
 
     try
@@ -90,6 +156,211 @@ class RestClientFactoryImpl implements RestClientFactory
     }
   }
 
+  /**
+   * Same as {@link #withRestClient(URI, Closure)} but the client comes from the pool (and is not
+   * stopped after the call)
+   */
+  private def withPooledRestClient(URI uri, Closure closure)
+  {
+    PooledClient pooledClient = acquireClient(uri)
+
+    try
+    {
+      return closure(pooledClient.client)
+    }
+    finally
+    {
+      releaseClient(pooledClient)
+    }
+  }
+
+  /**
+   * Starting a client may take a while so it is never done while holding
+   * the lock (which would block the calls to all the other agents): the first caller for a given
+   * key publishes a (not yet started) client in the pool, then starts it outside the lock while
+   * the other callers for the same key simply wait for it to be started.
+   */
+  private PooledClient acquireClient(URI uri)
+  {
+    String key = "${uri.scheme}://${uri.host}:${uri.port}".toString()
+
+    PooledClient pooledClient
+    boolean created = false
+    Collection<PooledClient> evictedClients
+
+    synchronized(_clients)
+    {
+      long now = clock.currentTimeMillis()
+
+      evictedClients = evictIdleClients(now)
+
+      pooledClient = _clients[key]
+
+      if(pooledClient == null)
+      {
+        _poolMisses.incrementAndGet()
+        pooledClient = new PooledClient(key: key, startup: new FutureTask<Client>({
+          Client client = createRestClient(uri)
+          client.start()
+          return client
+        } as Callable<Client>))
+        _clients[key] = pooledClient
+        created = true
+      }
+      else
+      {
+        _poolHits.incrementAndGet()
+      }
+
+      pooledClient.usageCount++
+      pooledClient.lastUsedTime = now
+    }
+
+    evictedClients.each { stopClient(it) }
+
+    if(created)
+      pooledClient.startup.run()
+
+    try
+    {
+      pooledClient.startup.get()
+    }
+    catch(ExecutionException e)
+    {
+      // the client could not be started => it is removed from the pool so that the next call
+      // tries again
+      synchronized(_clients)
+      {
+        pooledClient.usageCount--
+        if(_clients[key].is(pooledClient))
+          _clients.remove(key)
+      }
+      throw e.cause
+    }
+
+    return pooledClient
+  }
+
+  private void releaseClient(PooledClient pooledClient)
+  {
+    synchronized(_clients)
+    {
+      pooledClient.usageCount--
+      pooledClient.lastUsedTime = clock.currentTimeMillis()
+    }
+  }
+
+  /**
+   * Removes the clients which have not been used for {@link #clientIdleTimeout} (checked at most
+   * every {@link #clientIdleTimeout}) from the pool. Must be called while holding the lock.
+   *
+   * @return the removed clients (which must be stopped once the lock is released)
+   */
+  private Collection<PooledClient> evictIdleClients(long now)
+  {
+    Collection<PooledClient> evictedClients = []
+
+    long timeout = clientIdleTimeout.durationInMilliseconds
+
+    if(now - _lastEvictionTime < timeout)
+      return evictedClients
+
+    _lastEvictionTime = now
+
+    def iterator = _clients.values().iterator()
+    while(iterator.hasNext())
+    {
+      PooledClient pooledClient = iterator.next()
+      if(pooledClient.usageCount == 0 && now - pooledClient.lastUsedTime >= timeout)
+      {
+        iterator.remove()
+        _poolEvictions.incrementAndGet()
+        evictedClients << pooledClient
+      }
+    }
+
+    return evictedClients
+  }
+
+  private void stopClient(PooledClient pooledClient)
+  {
+    try
+    {
+      pooledClient.client.stop()
+    }
+    catch(Throwable th)
+    {
+      log.warn("Error while stopping client for ${pooledClient.key} [ignored]", th)
+    }
+  }
+
+  /**
+   * @return the number of calls which reused a client from the pool
+   */
+  long getPoolHits()
+  {
+    _poolHits.get()
+  }
+
+  /**
+   * @return the number of calls which had to create a new client
+   */
+  long getPoolMisses()
+  {
+    _poolMisses.get()
+  }
+
+  /**
+   * @return the number of clients which were stopped because they were idle
+   */
+  long getPoolEvictions()
+  {
+    _poolEvictions.get()
+  }
+
+  /**
+   * @return the number of clients currently in the pool
+   */
+  int getPoolSize()
+  {
+    synchronized(_clients)
+    {
+      return _clients.size()
+    }
+  }
+
+  /**
+   * Stops all the pooled clients
+   */
+  void destroy()
+  {
+    Collection<PooledClient> clients
+
+    synchronized(_clients)
+    {
+      clients = new ArrayList<PooledClient>(_clients.values())
+      _clients.clear()
+    }
+
+    clients.each { stopClient(it) }
+  }
+
+  private static class PooledClient
+  {
+    String key
+    FutureTask<Client> startup
+    int usageCount = 0
+    long lastUsedTime = 0
+
+    /**
+     * @return the client (blocks until it is started)
+     */
+    Client getClient()
+    {
+      startup.get()
+    }
+  }
+
   static RestClientFactory create(config)
   {
     SSLContext sslContext = null
@@ -99,6 +370,8 @@ class RestClientFactoryImpl implements RestClientFactory
       sslContext = HttpsClientHelper.initSSLContext(config)
     }
 
-    return new RestClientFactoryImpl(sslContext)
+    def factory = new RestClientFactoryImpl(sslContext)
+    factory.pooledConnections = Config.getOptionalBoolean(config, 'pooledConnections', false)
+    return factory
   }
 }
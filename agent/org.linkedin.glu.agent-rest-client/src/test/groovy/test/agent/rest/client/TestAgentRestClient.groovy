@@ -29,6 +29,7 @@ import org.linkedin.glu.agent.impl.capabilities.ShellImpl
 import org.linkedin.glu.agent.impl.storage.RAMStorage
 import org.linkedin.glu.agent.rest.client.AgentFactoryImpl
 import org.linkedin.glu.agent.rest.client.AgentRestClient
+import org.linkedin.glu.agent.rest.client.RestClientFactoryImpl
 import org.linkedin.glu.agent.rest.common.RestServerFactoryImpl
 import org.linkedin.glu.agent.rest.resources.AgentResource
 import org.linkedin.glu.agent.rest.resources.FileResource
@@ -459,6 +460,61 @@ class TestAgentRestClient extends GroovyTestCase
     }
   }
 
+  /**
+   * Clients are reused across calls when pooled (and evicted when idle)
+   */
+  void testPooledConnections()
+  {
+    router.attach("/mountPoint/", MountPointResource).matchingMode = Template.MODE_STARTS_WITH
+    router.context.getAttributes().put(MountPointResource.class.name, "/mountPoint")
+
+    RestClientFactoryImpl restClientFactory =
+      RestClientFactoryImpl.create(sslEnabled: false, pooledConnections: true)
+    restClientFactory.clock = clock
+    restClientFactory.clientIdleTimeout = Timespan.parse('1m')
+
+    AgentFactoryImpl agentFactory =
+      new AgentFactoryImpl(restClientFactory: restClientFactory, paths: [mountPointPath: "/mountPoint"])
+
+    try
+    {
+      (1..3).each {
+        agentFactory.withRemoteAgent(serverURI) { arc ->
+          assertEquals([currentState: 'installed'], arc.getState(mountPoint: '/'))
+        }
+      }
+
+      assertEquals(1, restClientFactory.poolMisses)
+      assertEquals(2, restClientFactory.poolHits)
+      assertEquals(1, restClientFactory.poolSize)
+
+      // not idle long enough => still reused
+      clock.addDuration(Timespan.parse('30s'))
+      agentFactory.withRemoteAgent(serverURI) { arc ->
+        assertEquals([currentState: 'installed'], arc.getState(mountPoint: '/'))
+      }
+      assertEquals(1, restClientFactory.poolMisses)
+      assertEquals(3, restClientFactory.poolHits)
+      assertEquals(0, restClientFactory.poolEvictions)
+
+      // idle => evicted and recreated
+      clock.addDuration(Timespan.parse('2m'))
+      agentFactory.withRemoteAgent(serverURI) { arc ->
+        assertEquals([currentState: 'installed'], arc.getState(mountPoint: '/'))
+      }
+      assertEquals(2, restClientFactory.poolMisses)
+      assertEquals(3, restClientFactory.poolHits)
+      assertEquals(1, restClientFactory.poolEvictions)
+      assertEquals(1, restClientFactory.poolSize)
+    }
+    finally
+    {
+      restClientFactory.destroy()
+    }
+
+    assertEquals(0, restClientFactory.poolSize)
+  }
+
   void testAgentLog()
   {
     router.attach("/log/", LogResource).matchingMode = Template.MODE_STARTS_WITH
@@ -27,9 +27,12 @@ import org.linkedin.glu.agent.impl.capabilities.ShellImpl
 import org.linkedin.glu.agent.impl.script.NoSharedClassLoaderScriptLoader
 import org.linkedin.glu.agent.impl.script.ScriptLoader
 import org.linkedin.glu.agent.impl.script.SharedClassLoaderScriptLoader
+import org.linkedin.glu.agent.impl.script.ScriptCache
 import org.linkedin.glu.agent.impl.storage.DualWriteStorage
 import org.linkedin.glu.agent.impl.storage.FileSystemStorage
+import org.linkedin.glu.agent.impl.storage.JournaledStorage
 import org.linkedin.glu.agent.impl.storage.Storage
+import org.linkedin.glu.agent.impl.zookeeper.ZooKeeperStateWriter
 import org.linkedin.glu.agent.impl.zookeeper.ZooKeeperStorage
 import org.linkedin.glu.agent.rest.common.RestServerFactoryImpl
 import org.linkedin.glu.agent.rest.resources.AgentResource
@@ -51,6 +54,7 @@ import org.linkedin.util.codec.Codec
 import org.linkedin.util.codec.CodecUtils
 import org.linkedin.util.codec.OneWayCodec
 import org.linkedin.util.codec.OneWayMessageDigestCodec
+import org.linkedin.util.lang.MemorySize
 import org.linkedin.util.lifecycle.Shutdown
 import org.linkedin.util.lifecycle.ShutdownProxy
 import org.linkedin.util.reflect.ObjectProxyBuilder
@@ -83,10 +87,18 @@ import org.linkedin.glu.agent.impl.script.StateKeeperScriptManager
 import org.linkedin.glu.agent.impl.script.ScriptManager
 import org.linkedin.glu.groovy.utils.net.ReinitializableSingletonURLStreamHandlerFactory
 import org.linkedin.glu.agent.impl.script.AgentContextImpl
+import org.linkedin.glu.agent.impl.concurrent.AgentThreadPool
+import org.linkedin.glu.utils.concurrent.ExecutorServiceSubmitter
 import org.linkedin.glu.agent.impl.capabilities.MOPImpl
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
 /**
  * This is the main class to start the agent.
  *
@@ -130,9 +142,13 @@ class AgentMain implements LifecycleListener, Configurable
   protected Agent _proxiedAgent
   protected AgentImpl _agent
   protected AgentContextImpl _agentContext
+  protected AgentThreadPool _threadPool
+  protected ExecutorService _commandsExecutor = null
   protected def _restServer
   protected DualWriteStorage _dwStorage = null
+  protected ExecutorService _dwStorageExecutor = null
   protected ZooKeeperStorage _zkStorage = null
+  protected JournaledStorage _journaledStorage = null
   protected Storage _storage = null
 
   protected final Object _lock = new Object()
@@ -461,6 +477,8 @@ class AgentMain implements LifecycleListener, Configurable
 
     _agentTempDir = GroovyIOUtils.toFile(Config.getRequiredString(_config, "${prefix}.agent.tempDir"))
 
+    _threadPool = createThreadPool()
+
     def rootShell = createRootShell()
     _agentContext =
       new AgentContextImpl(shellForScripts: createShell(rootShell, "${prefix}.agent.scriptRootDir"),
@@ -468,7 +486,9 @@ class AgentMain implements LifecycleListener, Configurable
                            rootShell: rootShell,
                            scriptLoader: createScriptLoader(),
                            mop: new MOPImpl(),
-                           zooKeeper: _zkClient)
+                           zooKeeper: _zkClient,
+                           threadPool: _threadPool,
+                           scriptCache: createScriptCache(rootShell))
 
     _storage = createStorage()
     def scriptManager = new ScriptManagerImpl(agentContext: _agentContext)
@@ -545,6 +565,45 @@ class AgentMain implements LifecycleListener, Configurable
       log.info 'Agent shut down...'
     }
 
+    if(_commandsExecutor)
+    {
+      log.info 'Stopping commands executor...'
+      _commandsExecutor.shutdownNow()
+      _commandsExecutor = null
+      log.info 'Commands executor stopped.'
+    }
+
+    if(_dwStorageExecutor)
+    {
+      log.info 'Stopping dual write storage executor...'
+      _dwStorageExecutor.shutdown()
+      _dwStorageExecutor = null
+      log.info 'Dual write storage executor stopped.'
+    }
+
+    if(_zkStorage?.stateWriter)
+    {
+      log.info 'Flushing ZooKeeper states...'
+      _zkStorage.stateWriter.shutdown()
+      _zkStorage.stateWriter.waitForShutdown()
+      log.info "ZooKeeper states flushed (${_zkStorage.stateWriter.stats})."
+    }
+
+    if(_journaledStorage)
+    {
+      log.info 'Closing state journal...'
+      _journaledStorage.close()
+      log.info "State journal closed (${_journaledStorage.stats})."
+    }
+
+    if(_threadPool)
+    {
+      log.info 'Stopping thread pool...'
+      _threadPool.shutdown()
+      _threadPool = null
+      log.info 'Thread pool stopped.'
+    }
+
     if(_zkClient)
     {
       log.info 'Stopping ZooKeeper client...'
@@ -680,6 +739,33 @@ class AgentMain implements LifecycleListener, Configurable
     return res
   }
 
+  /**
+   * @return the cache for the scripts (shared by all the mount points) or <code>null</code> when
+   * each mount point fetches its own copy (default)
+   */
+  protected ScriptCache createScriptCache(ShellImpl rootShell)
+  {
+    if(Config.getOptionalBoolean(_config, "${prefix}.agent.scripts.cache.enabled", false))
+    {
+      def cacheDir = Config.getOptionalString(_config, "${prefix}.agent.scripts.cache.dir", null)
+      def maxSize = Config.getOptionalString(_config, "${prefix}.agent.scripts.cache.maxSize", null)
+
+      def scriptCache =
+        new ScriptCache(shell: rootShell,
+                        cacheDir: cacheDir ? GroovyIOUtils.toFile(cacheDir) :
+                                             new File(_agentTempDir, 'scripts-cache'),
+                        maxSize: maxSize ? MemorySize.parse(maxSize) :
+                                           ScriptCache.DEFAULT_MAX_SIZE)
+      scriptCache.init()
+
+      log.info "Using script cache [${scriptCache.cacheDir}] (maxSize=${scriptCache.maxSize})."
+
+      return scriptCache
+    }
+
+    return null
+  }
+
   protected ShellImpl createRootShell()
   {
     // registering ivy url handler
@@ -693,8 +779,39 @@ class AgentMain implements LifecycleListener, Configurable
     }
 
     def fileSystem = new FileSystemImpl(new File('/'), _agentTempDir)
-    return new ShellImpl(fileSystem: fileSystem,
-                         agentProperties: _agentProperties)
+    def rootShell = new ShellImpl(fileSystem: fileSystem,
+                                  agentProperties: _agentProperties)
+
+    // all the shells are created from the root shell so they share the same submitter
+    if(_threadPool)
+      rootShell.submitter = _threadPool.submitter
+
+    // all the shells are created from the root shell so they share the same fetch parallelism
+    rootShell.fetchParallelism =
+      Config.getOptionalInt(_config, "${prefix}.agent.fetch.parallelism", 1)
+    rootShell.untarInProcess =
+      Config.getOptionalBoolean(_config, "${prefix}.agent.untar.inProcess", false)
+    rootShell.untarParallelism =
+      Config.getOptionalInt(_config, "${prefix}.agent.untar.parallelism", 1)
+
+    return rootShell
+  }
+
+  /**
+   * @return the thread pool shared by the scripts and the commands or <code>null</code> when
+   * each script runs in its own (dedicated) thread (default)
+   */
+  protected AgentThreadPool createThreadPool()
+  {
+    if(Config.getOptionalBoolean(_config, "${prefix}.agent.threads.pooled", false))
+    {
+      long stackSize =
+        GluGroovyLangUtils.getOptionalLong(_config, "${prefix}.agent.threads.stackSize".toString(), 0)
+      log.info "Using pooled threads (stackSize=${stackSize})."
+      return new AgentThreadPool(stackSize)
+    }
+
+    return null
   }
 
   protected CommandManager createCommandsManager(ShellImpl rootShell,
@@ -729,9 +846,26 @@ class AgentMain implements LifecycleListener, Configurable
       def f = new CommandGluScriptFactoryFactory(ioStorage: ioStorage)
       scriptFactoryFactory.chain(f)
 
-      new CommandManagerImpl(agentContext: _agentContext,
-                             ioStorage: ioStorage,
-                             scriptManager: scriptManager)
+      def commandManager = new CommandManagerImpl(agentContext: _agentContext,
+                                                  ioStorage: ioStorage,
+                                                  scriptManager: scriptManager)
+      if(Config.getOptionalBoolean(_config, "${prefix}.agent.commands.lightweight", false))
+      {
+        int maxThreads = Config.getOptionalInt(_config, "${prefix}.agent.commands.maxThreads", 20)
+        log.info "Executing the commands without installing a script (maxThreads=${maxThreads})."
+        _commandsExecutor = new ThreadPoolExecutor(maxThreads,
+                                                   maxThreads,
+                                                   60,
+                                                   TimeUnit.SECONDS,
+                                                   new LinkedBlockingQueue<Runnable>())
+        _commandsExecutor.allowCoreThreadTimeOut(true)
+        commandManager.submitter = new ExecutorServiceSubmitter(_commandsExecutor)
+        commandManager.lightweightExecution = true
+      }
+      else if(_threadPool)
+        commandManager.submitter = _threadPool.submitter
+
+      return commandManager
     }
     else
     {
@@ -743,10 +877,10 @@ class AgentMain implements LifecycleListener, Configurable
 
   protected Storage createStorage()
   {
-    def fileSystem =
-      new FileSystemImpl(GroovyIOUtils.toFile(Config.getRequiredString(_config,
-                                                                       "${prefix}.agent.scriptStateDir")),
-                         _agentTempDir)
+    def scriptStateDir =
+      GroovyIOUtils.toFile(Config.getRequiredString(_config, "${prefix}.agent.scriptStateDir"))
+
+    def fileSystem = new FileSystemImpl(scriptStateDir, _agentTempDir)
     
     Storage storage = new FileSystemStorage(fileSystem,
                                             _agentProperties,
@@ -757,11 +891,23 @@ class AgentMain implements LifecycleListener, Configurable
     if(invalidStates)
       log.warn("cleaned up invalid states [${invalidStates.size()}]")
 
+    if(Config.getOptionalBoolean(_config, "${prefix}.agent.stateJournal.enabled", false))
+    {
+      _journaledStorage = createJournaledStorage(storage, scriptStateDir)
+      storage = _journaledStorage
+    }
+
     _zkStorage = createZooKeeperStorage()
 
     if(_zkStorage)
     {
       _dwStorage = new DualWriteStorage(storage, _zkStorage)
+      if(Config.getOptionalBoolean(_config, "${prefix}.agent.storage.parallelWrites", false))
+      {
+        log.info "Writing the states in ZooKeeper and locally in parallel."
+        _dwStorageExecutor = Executors.newCachedThreadPool()
+        _dwStorage.executor = _dwStorageExecutor
+      }
       storage = _dwStorage
     }
 
@@ -905,6 +1051,33 @@ class AgentMain implements LifecycleListener, Configurable
       log.warn("Detected ZooKeeper failure.")
   }
 
+  /**
+   * The states left in the script state dir (ex: first time the journal is enabled) are moved to
+   * the journal.
+   */
+  protected JournaledStorage createJournaledStorage(Storage storage, File scriptStateDir)
+  {
+    def journalDir =
+      GroovyIOUtils.toFile(Config.getOptionalString(_config,
+                                                    "${prefix}.agent.stateJournal.dir",
+                                                    "${scriptStateDir.path}.journal"))
+
+    JournaledStorage journaledStorage = new JournaledStorage(storage, journalDir)
+    journaledStorage.fsync =
+      Config.getOptionalBoolean(_config, "${prefix}.agent.stateJournal.fsync", true)
+    journaledStorage.open()
+
+    def importedStates = journaledStorage.importStates()
+    if(importedStates)
+      log.info("imported states in the journal [${importedStates.size()}]")
+
+    def invalidStates = journaledStorage.deleteInvalidStates()
+    if(invalidStates)
+      log.warn("cleaned up invalid states from the journal [${invalidStates.size()}]")
+
+    return journaledStorage
+  }
+
   protected ZooKeeperStorage createZooKeeperStorage()
   {
     if(_zkClient)
@@ -912,7 +1085,19 @@ class AgentMain implements LifecycleListener, Configurable
       ZooKeeperStorage storage = new ZooKeeperStorage(_zkClient.chroot(computeZooKeeperStoragePath()),
                                                       _zkClient.chroot(computeAgentEphemeralPath()))
       storage.prefix = prefix
-      
+      storage.compressStates =
+        Config.getOptionalBoolean(_config, "${prefix}.agent.zkState.compressed", false)
+
+      if(Config.getOptionalBoolean(_config, "${prefix}.agent.zkStateWriter.enabled", false))
+      {
+        storage.stateWriter = new ZooKeeperStateWriter(
+          maxBatchSize: Config.getOptionalInt(_config, "${prefix}.agent.zkStateWriter.batchSize", 100),
+          flushDelay: Timespan.parse(Config.getOptionalString(_config,
+                                                              "${prefix}.agent.zkStateWriter.flushDelay",
+                                                              "100")))
+        log.info "Writing the states in ZooKeeper asynchronously (${storage.stateWriter.maxBatchSize} writes per batch)."
+      }
+
       return storage
     }
 
@@ -81,7 +81,12 @@ interface AgentsTracker extends Startable, Destroyable
   Map<String, Map<MountPoint, MountPointInfo>> getMountPointInfos()
 
   /**
-   * @return a map [accuracy: _accuracyLevel_, allInfos: [_agentName_: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
+   * Note that the mount point infos map of a given agent is never modified (it is replaced when
+   * a mount point changes) so comparing it by identity is enough to detect a change.
+   *
+   * @return a map [accuracy: _accuracyLevel_,
+   *                allInfos: [_agentName_: [agent: _agentInfo_, mountPoints: _mountPointInfos_]],
+   *                transactionId: _zkTxId_]
    */
   def getAllInfosWithAccuracy()
 
@@ -39,6 +39,7 @@ import org.linkedin.zookeeper.tracker.NodeEventsListener
 import org.linkedin.zookeeper.tracker.NodeEventType
 import org.linkedin.zookeeper.tracker.ZKStringDataReader
 import org.apache.zookeeper.KeeperException
+import org.linkedin.glu.utils.collections.PersistentHashMap
 
 /**
  * Tracks the agents (through zookeeper). Note that it has recovery built in!
@@ -224,7 +225,9 @@ class AgentsTrackerImpl implements AgentsTracker, LifecycleListener, ErrorListen
   }
 
   /**
-   * @return a map [accuracy: _accuracyLevel_, allInfos: [h1: [agent: _agentInfo_, mountPoints: _mountPointInfos_]]
+   * @return a map [accuracy: _accuracyLevel_,
+   *                allInfos: [h1: [agent: _agentInfo_, mountPoints: _mountPointInfos_]],
+   *                transactionId: _zkTxId_]
    */
   def getAllInfosWithAccuracy()
   {
@@ -235,7 +238,7 @@ class AgentsTrackerImpl implements AgentsTracker, LifecycleListener, ErrorListen
     }
     else
     {
-      return [accuracy: AccuracyLevel.INACCURATE, allInfos: [:]]
+      return [accuracy: AccuracyLevel.INACCURATE, allInfos: [:], transactionId: -1L]
     }
   }
 
@@ -328,8 +331,11 @@ class AgentsTrackerInstance
   private ZooKeeperTreeTracker _agentsTracker
   private ZooKeeperTreeTracker _mountPointsTracker
 
-  private volatile Map<String, AgentInfo> _agents = [:]
-  private final Map<String, Map<MountPoint, MountPointInfo>> _mountPoints = [:]
+  // the maps are persistent (immutable) and replaced on every change so
+  // that the readers always get a consistent snapshot without locking or copying
+  private volatile PersistentHashMap<String, AgentInfo> _agents = PersistentHashMap.empty()
+  private volatile PersistentHashMap<String, PersistentHashMap<MountPoint, MountPointInfo>> _mountPoints =
+    PersistentHashMap.empty()
 
   private final def _agentListeners = new HashSet<TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>>>()
   private final def _mountPointListeners = new HashSet<TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>>>()
@@ -419,11 +425,8 @@ class AgentsTrackerInstance
     synchronized(_lock)
     {
       untrack()
-      _agents = [:]
-      synchronized(_mountPoints)
-      {
-        _mountPoints.clear()
-      }
+      _agents = PersistentHashMap.empty()
+      _mountPoints = PersistentHashMap.empty()
       _mountPointsTracker?.destroy()
       _agentsTracker?.destroy()
     }
@@ -453,7 +456,8 @@ class AgentsTrackerInstance
   }
 
   /**
-   * @return a map with <code>accuracy</code> and <code>allInfos</code>
+   * @return a map with <code>accuracy</code>, <code>allInfos</code> and <code>transactionId</code>
+   * (the zookeeper transaction id the infos are consistent with when accurate)
    */
   def getAllInfosWithAccuracy()
   {
@@ -462,11 +466,12 @@ class AgentsTrackerInstance
     def res = [:]
 
     def agents = getAgentInfos()
+    def mountPoints = getMountPointInfos()
 
     agents.each { agentName, info ->
       def agent = [:]
       agent.info = info
-      agent.mountPoints = getMountPointInfos(agentName) ?: [:]
+      agent.mountPoints = mountPoints[agentName] ?: [:]
       res[agentName] = agent
     }
 
@@ -477,7 +482,7 @@ class AgentsTrackerInstance
     if(_stopTracking)
       accuracy = AccuracyLevel.INACCURATE
 
-    return [accuracy: accuracy, allInfos: res]
+    return [accuracy: accuracy, allInfos: res, transactionId: txAfter]
   }
 
   /**
@@ -485,12 +490,7 @@ class AgentsTrackerInstance
    */
   Map<MountPoint, MountPointInfo> getMountPointInfos(String agentName)
   {
-    // it is ok to return the underlying map as it is *not* modified (it is copied and replaced)
-    // outside of this synchronized block
-    synchronized(_mountPoints)
-    {
-      return _mountPoints[agentName]
-    }
+    return _mountPoints[agentName]
   }
 
   /**
@@ -498,15 +498,8 @@ class AgentsTrackerInstance
    */
   Map<String, Map<MountPoint, MountPointInfo>> getMountPointInfos()
   {
-    synchronized(_mountPoints)
-    {
-      def res = [:]
-
-      // copying the outer map as this one changes...
-      _mountPoints.each { k, v -> res[k] = v }
-
-      return res
-    }
+    // it is ok to return the underlying map as it is never modified (it is replaced)
+    return _mountPoints
   }
 
   /**
@@ -525,7 +518,7 @@ class AgentsTrackerInstance
 
       def newEvents = []
 
-      def agents = new HashMap(_agents)
+      PersistentHashMap<String, AgentInfo> agents = _agents
 
       events.each { org.linkedin.zookeeper.tracker.NodeEvent event ->
         // we handle only events for children of instances
@@ -540,11 +533,12 @@ class AgentsTrackerInstance
               info = new AgentInfo(agentInfoPropertyAccessor: _agentInfoPropertyAccessor,
                                    agentName: agentName, 
                                    trackedNode: event.node)
-              agents[agentName] = info
+              agents = agents.plus(agentName, info)
               break;
 
             case NodeEventType.DELETED:
-              info = agents.remove(agentName)
+              info = agents[agentName]
+              agents = agents.minus(agentName)
               break;
           }
           newEvents << new NodeEvent(nodeInfo: info, eventType: event.eventType)
@@ -579,6 +573,9 @@ class AgentsTrackerInstance
 
       def newEvents = []
 
+      PersistentHashMap<String, PersistentHashMap<MountPoint, MountPointInfo>> mountPoints =
+        _mountPoints
+
       events.each { org.linkedin.zookeeper.tracker.NodeEvent event ->
         // handling only the leaves
         if(event.depth == 2)
@@ -588,37 +585,39 @@ class AgentsTrackerInstance
           if(mountPoint == MountPoint.ROOT)
             return
           MountPointInfo info
-          def agentMountPoints = new HashMap(_mountPoints[event.parentName] ?: [:])
+          def agentName = event.parentName
+          PersistentHashMap<MountPoint, MountPointInfo> agentMountPoints =
+            mountPoints[agentName] ?: PersistentHashMap.empty()
           switch(event.eventType)
           {
             case NodeEventType.ADDED:
             case NodeEventType.UPDATED:
               info = new MountPointInfo(mountPoint: mountPoint,
-                                        agentName: event.parentName,
+                                        agentName: agentName,
                                         trackedNode: event.node)
-              agentMountPoints[mountPoint] = info
+              agentMountPoints = agentMountPoints.plus(mountPoint, info)
               break
 
             case NodeEventType.DELETED:
-              info = agentMountPoints.remove(mountPoint)
+              info = agentMountPoints[mountPoint]
+              agentMountPoints = agentMountPoints.minus(mountPoint)
               break
 
             default:
               throw new RuntimeException("not reached [${event.eventType}]")
           }
 
-          synchronized(_mountPoints)
-          {
-            if(agentMountPoints)
-              _mountPoints[info.agentName] = agentMountPoints
-            else
-              _mountPoints.remove(info.agentName)
-          }
+          if(agentMountPoints)
+            mountPoints = mountPoints.plus(agentName, agentMountPoints)
+          else
+            mountPoints = mountPoints.minus(agentName)
 
           newEvents << new NodeEvent(nodeInfo: info, eventType: event.eventType)
         }
       }
 
+      _mountPoints = mountPoints
+
       if(newEvents)
       {
         _mountPointListeners.each { listener ->
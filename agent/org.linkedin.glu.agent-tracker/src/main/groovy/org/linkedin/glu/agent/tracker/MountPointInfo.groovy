@@ -37,9 +37,46 @@ class MountPointInfo extends NodeInfo
   MountPoint mountPoint
   String agentName
 
+  private volatile MountPointStateView _stateView = null
+
+  /**
+   * @return the (typed) view of the state which is lazily extracted from the json payload without
+   *         building the full data map (unless it has already been built)
+   */
+  MountPointStateView getStateView()
+  {
+    if(_stateView == null)
+    {
+      MountPointStateView stateView = null
+
+      // when the data has not been decoded yet (most common case for the
+      // tracker which only needs the state), we extract the view directly from the payload
+      if(_data == null)
+      {
+        try
+        {
+          stateView = MountPointStateView.parse(jsonData)
+        }
+        catch(Throwable error)
+        {
+          // the full data will handle the error
+          if(log.isDebugEnabled())
+            log.debug("Could not extract the state view: key=${agentName}:${mountPoint}", error)
+        }
+      }
+
+      if(stateView == null)
+        stateView = MountPointStateView.fromData(data)
+
+      _stateView = stateView
+    }
+
+    return _stateView
+  }
+
   MountPoint getParent()
   {
-    return MountPoint.create(data?.scriptDefinition?.parent)
+    return MountPoint.create(stateView.parent)
   }
 
   def getScriptDefinition()
@@ -49,27 +86,27 @@ class MountPointInfo extends NodeInfo
 
   def getCurrentState()
   {
-    return data?.scriptState?.stateMachine?.currentState
+    return stateView.currentState
   }
 
   def getTransitionState()
   {
-    return data?.scriptState?.stateMachine?.transitionState
+    return stateView.transitionState
   }
 
   def getTransitionAction()
   {
-    return data?.scriptState?.stateMachine?.transitionAction
+    return stateView.transitionAction
   }
 
   def getError()
   {
-    return data?.scriptState?.stateMachine?.error
+    return stateView.error
   }
 
   def getErrorStackTrace()
   {
-    return data?.scriptState?.stateMachine?.errorStackTrace
+    return stateView.errorStackTrace
   }
 
   def getInitParameters()
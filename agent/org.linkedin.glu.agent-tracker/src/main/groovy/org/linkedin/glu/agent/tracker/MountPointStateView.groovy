@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.agent.tracker
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.ObjectMapper
+
+/**
+ * Typed view of the few entries of the state of a mount point that the tracker (and the console)
+ * reads all the time (parent and state machine). It can be extracted from the json payload without
+ * building the full map (the script definition, which contains the init parameters, is skipped).
+ *
+ * @author yan@pongasoft.com */
+class MountPointStateView
+{
+  private static final JsonFactory JSON_FACTORY = new ObjectMapper().getFactory()
+
+  String parent
+  def currentState
+  def transitionState
+  def transitionAction
+  def error
+  def errorStackTrace
+
+  /**
+   * @return the view extracted from the (already decoded) state
+   */
+  static MountPointStateView fromData(Map data)
+  {
+    def sm = data?.scriptState?.stateMachine
+
+    new MountPointStateView(parent: data?.scriptDefinition?.parent,
+                            currentState: sm?.currentState,
+                            transitionState: sm?.transitionState,
+                            transitionAction: sm?.transitionAction,
+                            error: sm?.error,
+                            errorStackTrace: sm?.errorStackTrace)
+  }
+
+  /**
+   * Extracts the view directly from the json payload (streaming: only the state machine is
+   * actually built)
+   *
+   * @return the view or <code>null</code> if the payload does not have the expected structure (in
+   *         which case the full payload should be used)
+   */
+  static MountPointStateView parse(String json)
+  {
+    if(json == null)
+      return null
+
+    JsonParser parser = JSON_FACTORY.createParser(json)
+    try
+    {
+      if(parser.nextToken() != JsonToken.START_OBJECT)
+        return null
+
+      def res = new MountPointStateView()
+
+      boolean valid = readFields(parser) { String name ->
+        switch(name)
+        {
+          case 'scriptDefinition':
+            return readFields(parser) { String sdName ->
+              if(sdName != 'parent')
+                return skip(parser)
+
+              switch(parser.currentToken)
+              {
+                case JsonToken.VALUE_NULL:
+                  return true
+                case JsonToken.VALUE_STRING:
+                  res.parent = parser.text
+                  return true
+                default:
+                  return false
+              }
+            }
+
+          case 'scriptState':
+            return readFields(parser) { String ssName ->
+              if(ssName != 'stateMachine')
+                return skip(parser)
+
+              if(parser.currentToken == JsonToken.VALUE_NULL)
+                return true
+
+              if(parser.currentToken != JsonToken.START_OBJECT)
+                return false
+
+              Map sm = parser.readValueAs(Map)
+              res.currentState = sm.currentState
+              res.transitionState = sm.transitionState
+              res.transitionAction = sm.transitionAction
+              res.error = sm.error
+              res.errorStackTrace = sm.errorStackTrace
+              return true
+            }
+
+          default:
+            return skip(parser)
+        }
+      }
+
+      return valid ? res : null
+    }
+    finally
+    {
+      parser.close()
+    }
+  }
+
+  /**
+   * Calls the closure for each field of the object the parser is currently on (with the parser
+   * positioned on the value of the field). A <code>null</code> object is considered empty.
+   *
+   * @return <code>false</code> if the current token is not an object or the closure returned
+   *         <code>false</code>
+   */
+  private static boolean readFields(JsonParser parser, Closure<Boolean> closure)
+  {
+    if(parser.currentToken == JsonToken.VALUE_NULL)
+      return true
+
+    if(parser.currentToken != JsonToken.START_OBJECT)
+      return false
+
+    while(parser.nextToken() == JsonToken.FIELD_NAME)
+    {
+      String name = parser.currentName
+      parser.nextToken()
+      if(!closure(name))
+        return false
+    }
+
+    return true
+  }
+
+  private static boolean skip(JsonParser parser)
+  {
+    parser.skipChildren()
+    return true
+  }
+}
@@ -19,6 +19,7 @@
 package org.linkedin.glu.agent.tracker
 
 import org.apache.zookeeper.data.Stat
+import org.linkedin.glu.groovy.utils.json.GluGroovyJsonUtils
 import org.linkedin.zookeeper.tracker.TrackedNode
 import org.linkedin.groovy.util.json.JsonUtils
 
@@ -54,6 +55,15 @@ class NodeInfo
   }
 
 
+  /**
+   * @return the data associated to this node as a (json) string: the data may be stored
+   *         compressed (see {@link GluGroovyJsonUtils#compressJSON(String)})
+   */
+  String getJsonData()
+  {
+    return GluGroovyJsonUtils.decompressJSON(trackedNode.data)
+  }
+
   /**
    * Returns the data associated to this node as map (the data is supposed to be encoded in JSON
    * format).
@@ -64,7 +74,7 @@ class NodeInfo
     {
       try
       {
-        _data = validateAndAdjust(JsonUtils.fromJSON(trackedNode.data))
+        _data = validateAndAdjust(JsonUtils.fromJSON(jsonData))
       }
       catch(Throwable error)
       {
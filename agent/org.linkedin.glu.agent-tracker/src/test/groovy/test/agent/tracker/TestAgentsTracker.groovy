@@ -22,6 +22,7 @@ import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.tracker.AgentsTracker
 import org.linkedin.glu.agent.tracker.AgentsTrackerImpl
 import org.linkedin.glu.agent.tracker.TrackerEventsListener
+import org.linkedin.glu.groovy.utils.json.GluGroovyJsonUtils
 import org.apache.zookeeper.CreateMode
 import org.apache.zookeeper.Watcher
 import org.apache.zookeeper.ZooDefs.Ids
@@ -37,6 +38,7 @@ import org.linkedin.zookeeper.client.IZooKeeperFactory
 import org.linkedin.zookeeper.tracker.NodeEventType
 import org.linkedin.util.io.PathUtils
 import org.linkedin.groovy.util.json.JsonUtils
+import org.linkedin.groovy.util.state.StateMachine
 import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 import org.linkedin.util.clock.Clock
 import org.linkedin.util.clock.SystemClock
@@ -375,6 +377,70 @@ class TestAgentsTracker extends GroovyTestCase
     }
   }
 
+  /**
+   * The state may be stored compressed: both formats must be read (and the state view must be
+   * consistent with the full data)
+   */
+  void testCompressedState()
+  {
+    AgentsTracker tracker = new AgentsTrackerImpl(client, ROOT_PATH)
+
+    def mountPointEvents = []
+
+    def mountPointListener = { events ->
+      synchronized(mountPointEvents)
+      {
+        mountPointEvents.addAll(events)
+        mountPointEvents.notifyAll()
+      }
+    }
+    tracker.registerMountPointListener(mountPointListener as TrackerEventsListener)
+
+    tracker.start()
+    tracker.waitForStart('5s')
+    try
+    {
+      def state = [
+        scriptDefinition: [
+          parent: '/',
+          initParameters: [metadata: [product: 'p1'], tags: ['t1']]
+        ],
+        scriptState: [
+          stateMachine: [currentState: 'running', error: 'e1']
+        ]
+      ]
+
+      setAgentState('a1', '/s1', state)
+      setAgentState('a2', '/s2', state, true)
+
+      def events = waitForEvents(mountPointEvents, 2)
+      events = checkMountPointEvents(events, 'a1', '/s1', state, NodeEventType.ADDED)
+      events = checkMountPointEvents(events, 'a2', '/s2', state, NodeEventType.ADDED)
+      assertEquals(0, events.size())
+
+      ['a1', 'a2'].each { agentName ->
+        def mpi = tracker.getMountPointInfos(agentName).values().iterator().next()
+        assertEquals('running', mpi.currentState)
+        assertEquals('e1', mpi.error)
+        assertNull(mpi.transitionState)
+        assertEquals(MountPoint.ROOT, mpi.parent)
+        assertEquals([product: 'p1'], mpi.metadata)
+        assertEquals(['t1'], mpi.tags)
+      }
+
+      // invalid state
+      setAgentState('a1', '/s1', [scriptState: [stateMachine: 'invalid']])
+      events = waitForEvents(mountPointEvents, 1)
+      assertEquals(NodeEventType.UPDATED, events[0].eventType)
+      assertEquals(StateMachine.NONE, events[0].nodeInfo.currentState)
+      assertNotNull(events[0].nodeInfo.error)
+    }
+    finally
+    {
+      tracker.destroy()
+    }
+  }
+
   private def waitForEvents(events, size)
   {
     synchronized(events)
@@ -441,12 +507,13 @@ class TestAgentsTracker extends GroovyTestCase
     client.delete(PathUtils.addPaths(AGENTS_INSTANCES, name))
   }
 
-  private void setAgentState(String name, mountPoint, state)
+  private void setAgentState(String name, mountPoint, state, boolean compressed = false)
   {
     def path = PathUtils.addPaths(AGENTS_STATE, name)
     path = PathUtils.addPaths(path, toPath(MountPoint.create(mountPoint.toString())))
+    String json = JsonUtils.compactPrint(state)
     client.createOrSetWithParents(path,
-                                  JsonUtils.compactPrint(state),
+                                  compressed ? GluGroovyJsonUtils.compressJSON(json) : json,
                                   Ids.OPEN_ACL_UNSAFE,
                                   CreateMode.PERSISTENT)
   }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.orchestration.engine.delta.SystemModelDelta;
+import org.linkedin.glu.orchestration.engine.delta.impl.DeltaMgrImpl;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computation of the delta (single delta and multi deltas) between the expected
+ * and the current model.
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DeltaBenchmark
+{
+  @Param({"1000", "10000", "100000"})
+  public int entries;
+
+  private DeltaMgrImpl _deltaMgr;
+  private SystemModel _expectedModel;
+  private SystemModel _currentModel;
+
+  @Setup
+  public void setUp()
+  {
+    _deltaMgr = new DeltaMgrImpl();
+    _expectedModel = SyntheticFabric.createExpectedModel(entries);
+    _currentModel = SyntheticFabric.createCurrentModel(entries);
+  }
+
+  @Benchmark
+  public SystemModelDelta computeDelta()
+  {
+    return _deltaMgr.computeDelta(_expectedModel, _currentModel, null);
+  }
+
+  @Benchmark
+  public Collection<SystemModelDelta> computeDeltas()
+  {
+    return _deltaMgr.computeDeltas(_expectedModel,
+                                   _currentModel,
+                                   Arrays.asList("stopped", "running"),
+                                   null);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.provisioner.core.model.SystemEntry;
+import org.linkedin.glu.provisioner.core.model.SystemFilter;
+import org.linkedin.glu.provisioner.core.model.SystemFilterBuilder;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing of the filter dsl and the evaluation of the filters on the entries of a
+ * model.
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FilterBenchmark
+{
+  public static final String DSL =
+    "or{and{agent='agent-1';metadata.product='p3'};and{metadata.cluster='c2';tags='canary'}}";
+
+  @Param({"1000", "10000", "100000"})
+  public int entries;
+
+  private SystemModel _model;
+  private Collection<SystemEntry> _entries;
+  private SystemFilter _filter;
+
+  @Setup
+  public void setUp()
+  {
+    _model = SyntheticFabric.createExpectedModel(entries);
+    _entries = new ArrayList<SystemEntry>(_model.findEntries());
+    _filter = SystemFilterBuilder.parse(DSL);
+  }
+
+  @Benchmark
+  public SystemFilter parse()
+  {
+    return SystemFilterBuilder.parse(DSL);
+  }
+
+  @Benchmark
+  public int evaluate()
+  {
+    int res = 0;
+    for(SystemEntry entry : _entries)
+    {
+      if(_filter.filter(entry))
+        res++;
+    }
+    return res;
+  }
+
+  @Benchmark
+  public SystemModel filterBy()
+  {
+    return _model.filterBy(_filter);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.utils.io.MultiplexedInputStream;
+import org.linkedin.glu.utils.io.NullOutputStream;
+import org.linkedin.util.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the throughput of multiplexing (ex: stdout/stderr of a command) and demultiplexing
+ * streams.
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MultiplexingBenchmark
+{
+  public static final int STREAM_SIZE = 1024 * 1024;
+
+  @Param({"1", "2", "4", "8"})
+  public int streams;
+
+  private Map<String, byte[]> _content;
+  private byte[] _multiplexedContent;
+  private Map<String, OutputStream> _outputStreams;
+
+  @Setup
+  public void setUp() throws IOException
+  {
+    Random random = new Random(0);
+
+    _content = new LinkedHashMap<String, byte[]>();
+    _outputStreams = new LinkedHashMap<String, OutputStream>();
+    for(int i = 0; i < streams; i++)
+    {
+      byte[] content = new byte[STREAM_SIZE];
+      random.nextBytes(content);
+      _content.put("s" + i, content);
+      _outputStreams.put("s" + i, NullOutputStream.INSTANCE);
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    IOUtils.copy(createMultiplexedInputStream(), baos);
+    _multiplexedContent = baos.toByteArray();
+  }
+
+  @Benchmark
+  public long multiplex() throws IOException
+  {
+    InputStream inputStream = createMultiplexedInputStream();
+    try
+    {
+      byte[] buffer = new byte[4096];
+      long res = 0;
+      int len;
+      while((len = inputStream.read(buffer)) != -1)
+        res += len;
+      return res;
+    }
+    finally
+    {
+      inputStream.close();
+    }
+  }
+
+  @Benchmark
+  public long demultiplex() throws IOException
+  {
+    return MultiplexedInputStream.demultiplex(new ByteArrayInputStream(_multiplexedContent),
+                                              _outputStreams);
+  }
+
+  private MultiplexedInputStream createMultiplexedInputStream()
+  {
+    Map<String, InputStream> inputStreams = new LinkedHashMap<String, InputStream>();
+    for(Map.Entry<String, byte[]> entry : _content.entrySet())
+    {
+      inputStreams.put(entry.getKey(), new ByteArrayInputStream(entry.getValue()));
+    }
+    return new MultiplexedInputStream(inputStreams);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
+import org.linkedin.glu.orchestration.engine.delta.SystemModelDelta;
+import org.linkedin.glu.orchestration.engine.delta.impl.DeltaMgrImpl;
+import org.linkedin.glu.orchestration.engine.planner.impl.PlannerImpl;
+import org.linkedin.glu.provisioner.plan.api.IPlanBuilder;
+import org.linkedin.glu.provisioner.plan.api.IStep;
+import org.linkedin.glu.provisioner.plan.api.Plan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computation of the plan (transition plan + plan building) from a delta (the
+ * delta itself is computed once during setup).
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlannerBenchmark
+{
+  @Param({"1000", "10000", "100000"})
+  public int entries;
+
+  private PlannerImpl _planner;
+  private SystemModelDelta _delta;
+
+  @Setup
+  public void setUp()
+  {
+    _planner = new PlannerImpl();
+    _delta = new DeltaMgrImpl().computeDelta(SyntheticFabric.createExpectedModel(entries),
+                                             SyntheticFabric.createCurrentModel(entries),
+                                             null);
+  }
+
+  @Benchmark
+  public Plan<ActionDescriptor> computeParallelPlan()
+  {
+    return _planner.computeTransitionPlan(_delta).buildPlan(IStep.Type.PARALLEL,
+                                                            new IPlanBuilder.Config());
+  }
+
+  @Benchmark
+  public Plan<ActionDescriptor> computeSequentialPlan()
+  {
+    return _planner.computeTransitionPlan(_delta).buildPlan(IStep.Type.SEQUENTIAL,
+                                                            new IPlanBuilder.Config());
+  }
+}
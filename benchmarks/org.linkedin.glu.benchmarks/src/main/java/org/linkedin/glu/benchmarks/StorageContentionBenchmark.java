@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.agent.api.MountPoint;
+import org.linkedin.glu.agent.impl.storage.AgentProperties;
+import org.linkedin.glu.agent.impl.storage.DualWriteStorage;
+import org.linkedin.glu.agent.impl.storage.RAMStorage;
+import org.linkedin.glu.agent.impl.storage.WriteOnlyStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the state writes of the agent (<code>DualWriteStorage</code>) when many mount points
+ * change state at the same time and the write only storage (ZooKeeper) is slow (simulated by
+ * sleeping <code>writeOnlyLatency</code> microseconds for each write). Each thread writes the
+ * state of its own mount point.
+ *
+ * <code>globalLock</code> serializes all the writes (which is how the storage used to behave) and
+ * <code>parallelWrites</code> writes in both storages at the same time
+ * (<code>glu.agent.storage.parallelWrites=true</code>).
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(16)
+@Fork(1)
+public class StorageContentionBenchmark
+{
+  @Param({"100", "1000"})
+  public int writeOnlyLatency;
+
+  @Param({"true", "false"})
+  public boolean globalLock;
+
+  @Param({"false", "true"})
+  public boolean parallelWrites;
+
+  private final AtomicInteger _mountPointsCount = new AtomicInteger(0);
+
+  private DualWriteStorage _storage;
+  private ExecutorService _executor;
+
+  @Setup
+  public void setUp()
+  {
+    _storage = new DualWriteStorage(new RAMStorage(new ConcurrentHashMap<MountPoint, Object>(),
+                                                   new AgentProperties()),
+                                    new SlowWriteOnlyStorage(writeOnlyLatency));
+    if(parallelWrites)
+    {
+      _executor = Executors.newCachedThreadPool();
+      _storage.setExecutor(_executor);
+    }
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    if(_executor != null)
+      _executor.shutdown();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState
+  {
+    private MountPoint _mountPoint;
+    private Map<String, Object> _state;
+    private int _counter = 0;
+
+    @Setup
+    public void setUp(StorageContentionBenchmark benchmark)
+    {
+      _mountPoint =
+        (MountPoint) MountPoint.create("/script/i" + benchmark._mountPointsCount.incrementAndGet());
+      _state = new HashMap<String, Object>();
+      _state.put("mountPoint", _mountPoint);
+    }
+  }
+
+  @Benchmark
+  public void storeState(ThreadState threadState)
+  {
+    threadState._state.put("currentState", "state" + (threadState._counter++ % 5));
+
+    if(globalLock)
+    {
+      synchronized(this)
+      {
+        _storage.storeState(threadState._mountPoint, threadState._state);
+      }
+    }
+    else
+      _storage.storeState(threadState._mountPoint, threadState._state);
+  }
+
+  /**
+   * Simulates the latency of the writes in ZooKeeper
+   */
+  private static class SlowWriteOnlyStorage implements WriteOnlyStorage
+  {
+    private final long _latencyInMicroseconds;
+
+    private SlowWriteOnlyStorage(long latencyInMicroseconds)
+    {
+      _latencyInMicroseconds = latencyInMicroseconds;
+    }
+
+    private void write()
+    {
+      try
+      {
+        TimeUnit.MICROSECONDS.sleep(_latencyInMicroseconds);
+      }
+      catch(InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void storeState(MountPoint mountPoint, Object state)
+    {
+      write();
+    }
+
+    @Override
+    public void clearState(MountPoint mountPoint)
+    {
+      write();
+    }
+
+    @Override
+    public void clearAllStates()
+    {
+      write();
+    }
+
+    @Override
+    public Object invalidateState(MountPoint mountPoint)
+    {
+      write();
+      return null;
+    }
+
+    @Override
+    public AgentProperties saveAgentProperties(AgentProperties agentProperties)
+    {
+      return agentProperties;
+    }
+
+    @Override
+    public AgentProperties updateAgentProperty(String name, String value)
+    {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.provisioner.core.model.SystemEntry;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates synthetic (but realistic) models for the benchmarks: each entry has init parameters,
+ * metadata (product, version, cluster) and tags and there are 10 entries per agent.
+ *
+ * @author yan@pongasoft.com
+ */
+public class SyntheticFabric
+{
+  public static final String FABRIC = "f1";
+  public static final int ENTRIES_PER_AGENT = 10;
+  public static final int PRODUCTS_COUNT = 20;
+
+  public static final List<String> TAGS =
+    Arrays.asList("frontend", "backend", "batch", "canary", "east", "west", "critical", "beta");
+
+  /**
+   * @return the expected model with <code>entriesCount</code> entries
+   */
+  public static SystemModel createExpectedModel(int entriesCount)
+  {
+    SystemModel model = createModel();
+
+    for(int i = 0; i < entriesCount; i++)
+    {
+      model.addEntry(createEntry(i, "1.0.0"));
+    }
+
+    return model;
+  }
+
+  /**
+   * @return the current model matching the expected model (every entry is running), except for
+   * 1% of the entries which have a different version and 1% which are missing
+   */
+  public static SystemModel createCurrentModel(int entriesCount)
+  {
+    SystemModel model = createModel();
+
+    for(int i = 0; i < entriesCount; i++)
+    {
+      if(i % 100 == 99)
+        continue;
+
+      SystemEntry entry = createEntry(i, i % 100 == 42 ? "0.9.0" : "1.0.0");
+      entry.setEntryState("running");
+      entry.getMetadata().put("currentState", "running");
+      model.addEntry(entry);
+    }
+
+    return model;
+  }
+
+  public static String computeAgent(int i)
+  {
+    return "agent-" + (i / ENTRIES_PER_AGENT);
+  }
+
+  public static String computeMountPoint(int i)
+  {
+    return "/m/" + (i % ENTRIES_PER_AGENT) + "/" + i;
+  }
+
+  public static String computeProduct(int i)
+  {
+    return "p" + (i % PRODUCTS_COUNT);
+  }
+
+  private static SystemModel createModel()
+  {
+    SystemModel model = new SystemModel();
+    model.setFabric(FABRIC);
+    Map<String, Object> metadata = new HashMap<String, Object>();
+    metadata.put("name", "synthetic");
+    model.setMetadata(metadata);
+    return model;
+  }
+
+  private static SystemEntry createEntry(int i, String version)
+  {
+    SystemEntry entry = new SystemEntry();
+    entry.setAgent(computeAgent(i));
+    entry.setMountPoint(computeMountPoint(i));
+    entry.setScript("http://repository/scripts/" + computeProduct(i) + "/" + version + "/Script.groovy");
+
+    Map<String, Object> initParameters = new LinkedHashMap<String, Object>();
+    initParameters.put("port", 8000 + (i % ENTRIES_PER_AGENT));
+    initParameters.put("skeleton", "http://repository/skeletons/jetty-7.2.2.tgz");
+    initParameters.put("webapps", "http://repository/webapps/" + computeProduct(i) + "-" + version + ".war");
+    entry.setInitParameters(initParameters);
+
+    Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+    metadata.put("product", computeProduct(i));
+    metadata.put("version", version);
+    metadata.put("cluster", "c" + (i % 7));
+    entry.setMetadata(metadata);
+
+    entry.setTags(Arrays.asList(TAGS.get(i % TAGS.size()),
+                                TAGS.get((i / TAGS.size()) % TAGS.size())));
+
+    return entry;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.provisioner.core.model.JsonSystemModelRenderer;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computation of the id (sha-1 of the content) of a model.
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SystemModelSha1Benchmark
+{
+  @Param({"1000", "10000", "100000"})
+  public int entries;
+
+  private SystemModel _model;
+  private JsonSystemModelRenderer _renderer;
+  private JsonSystemModelRenderer _incrementalRenderer;
+
+  @Setup
+  public void setUp()
+  {
+    _model = SyntheticFabric.createExpectedModel(entries);
+    _renderer = new JsonSystemModelRenderer();
+    _incrementalRenderer = new JsonSystemModelRenderer();
+    _incrementalRenderer.setIncrementalSystemId(true);
+  }
+
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public String computeContentSha1()
+  {
+    return _model.computeContentSha1();
+  }
+
+  @Benchmark
+  public String computeSystemId()
+  {
+    return _renderer.computeSystemId(_model);
+  }
+
+  /**
+   * The entries digests are cached so after the first invocation, this measures the cost of
+   * recomputing the id of a model which did not change.
+   */
+  @Benchmark
+  public String computeIncrementalSystemId()
+  {
+    return _incrementalRenderer.computeSystemId(_model);
+  }
+}
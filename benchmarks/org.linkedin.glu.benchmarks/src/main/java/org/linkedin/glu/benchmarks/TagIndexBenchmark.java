@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.provisioner.core.model.SystemEntry;
+import org.linkedin.glu.utils.tags.TagIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the tag index: building it, querying it (single tag, intersection and exclusion of
+ * tags) and removing keys from it.
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TagIndexBenchmark
+{
+  @Param({"1000", "10000", "100000"})
+  public int entries;
+
+  private List<String> _keys;
+  private List<Set<String>> _tags;
+  private TagIndex _tagIndex;
+
+  @Setup
+  public void setUp()
+  {
+    _keys = new ArrayList<String>(entries);
+    _tags = new ArrayList<Set<String>>(entries);
+
+    for(SystemEntry entry : SyntheticFabric.createExpectedModel(entries).findEntries())
+    {
+      _keys.add(entry.getKey());
+      _tags.add(new HashSet<String>(entry.getTags()));
+    }
+
+    _tagIndex = buildIndex();
+  }
+
+  @Benchmark
+  public TagIndex add()
+  {
+    return buildIndex();
+  }
+
+  @Benchmark
+  public int getKeys()
+  {
+    int res = 0;
+    for(String tag : SyntheticFabric.TAGS)
+    {
+      res += _tagIndex.getKeys(tag).size();
+    }
+    return res;
+  }
+
+  @Benchmark
+  public Set<String> intersection()
+  {
+    return _tagIndex.findKeysWithAllTags(Arrays.asList("canary", "east"));
+  }
+
+  @Benchmark
+  public Set<String> intersectionAndNot()
+  {
+    return _tagIndex.findKeys(Arrays.asList("canary"), Arrays.asList("east", "west"));
+  }
+
+  @Benchmark
+  public TagIndex remove()
+  {
+    TagIndex tagIndex = new TagIndex(_tagIndex);
+    for(int i = 0; i < _keys.size(); i += 10)
+    {
+      tagIndex.remove(_keys.get(i));
+    }
+    return tagIndex;
+  }
+
+  private TagIndex buildIndex()
+  {
+    TagIndex res = new TagIndex();
+    for(int i = 0; i < _keys.size(); i++)
+    {
+      res.add(_keys.get(i), _tags.get(i));
+    }
+    return res;
+  }
+}
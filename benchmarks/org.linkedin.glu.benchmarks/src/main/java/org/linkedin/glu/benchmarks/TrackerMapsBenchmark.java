@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.benchmarks;
+
+import org.linkedin.glu.utils.collections.PersistentHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a stream of tracker events (agents and mount points added/updated/deleted) against the
+ * maps maintained by the agents tracker: the copy on write hash maps (the map of agents copied
+ * on every batch of events, the map of mount points of an agent copied on every event) and the
+ * persistent maps.
+ *
+ * The stream is either synthetic (<code>agents</code> agents with 10 mount points each, followed
+ * by <code>events</code> events mostly updating mount points) or recorded in a file
+ * (<code>-p recording=/path/to/events.txt</code>) with one event per line:
+ * <pre>
+ * ADDED|UPDATED|DELETED agentName [mountPoint]
+ * </pre>
+ * (an event without mount point is an agent event).
+ *
+ * @author yan@pongasoft.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TrackerMapsBenchmark
+{
+  public static final int MOUNT_POINTS_PER_AGENT = 10;
+
+  @Param({"1000", "5000"})
+  public int agents;
+
+  @Param({"10000"})
+  public int events;
+
+  @Param({""})
+  public String recording;
+
+  private List<Event> _events;
+
+  private static class Event
+  {
+    private final String _type;
+    private final String _agentName;
+    private final String _mountPoint;
+
+    private Event(String type, String agentName, String mountPoint)
+    {
+      _type = type;
+      _agentName = agentName;
+      _mountPoint = mountPoint;
+    }
+
+    private boolean isDeleted()
+    {
+      return "DELETED".equals(_type);
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException
+  {
+    if(recording.length() > 0)
+      _events = readRecording(new File(recording));
+    else
+      _events = createSyntheticEvents();
+  }
+
+  @Benchmark
+  public int copyOnWrite()
+  {
+    Map<String, Object> agentsMap = new HashMap<String, Object>();
+    Map<String, Map<String, Object>> mountPointsMap = new HashMap<String, Map<String, Object>>();
+
+    for(Event event : _events)
+    {
+      if(event._mountPoint == null)
+      {
+        Map<String, Object> newAgentsMap = new HashMap<String, Object>(agentsMap);
+        if(event.isDeleted())
+          newAgentsMap.remove(event._agentName);
+        else
+          newAgentsMap.put(event._agentName, event);
+        agentsMap = newAgentsMap;
+      }
+      else
+      {
+        Map<String, Object> agentMountPoints = mountPointsMap.get(event._agentName);
+        agentMountPoints = agentMountPoints == null ?
+          new HashMap<String, Object>() :
+          new HashMap<String, Object>(agentMountPoints);
+
+        if(event.isDeleted())
+          agentMountPoints.remove(event._mountPoint);
+        else
+          agentMountPoints.put(event._mountPoint, event);
+
+        if(agentMountPoints.isEmpty())
+          mountPointsMap.remove(event._agentName);
+        else
+          mountPointsMap.put(event._agentName, agentMountPoints);
+      }
+    }
+
+    return agentsMap.size() + mountPointsMap.size();
+  }
+
+  @Benchmark
+  public int persistent()
+  {
+    PersistentHashMap<String, Object> agentsMap = PersistentHashMap.empty();
+    PersistentHashMap<String, PersistentHashMap<String, Object>> mountPointsMap =
+      PersistentHashMap.empty();
+
+    for(Event event : _events)
+    {
+      if(event._mountPoint == null)
+      {
+        if(event.isDeleted())
+          agentsMap = agentsMap.minus(event._agentName);
+        else
+          agentsMap = agentsMap.plus(event._agentName, event);
+      }
+      else
+      {
+        PersistentHashMap<String, Object> agentMountPoints = mountPointsMap.get(event._agentName);
+        if(agentMountPoints == null)
+          agentMountPoints = PersistentHashMap.empty();
+
+        if(event.isDeleted())
+          agentMountPoints = agentMountPoints.minus(event._mountPoint);
+        else
+          agentMountPoints = agentMountPoints.plus(event._mountPoint, event);
+
+        if(agentMountPoints.isEmpty())
+          mountPointsMap = mountPointsMap.minus(event._agentName);
+        else
+          mountPointsMap = mountPointsMap.plus(event._agentName, agentMountPoints);
+      }
+    }
+
+    return agentsMap.size() + mountPointsMap.size();
+  }
+
+  /**
+   * All the agents and mount points get added, then the events are: 80% updates of a mount point,
+   * 5% mount point deleted, 5% mount point added, 10% agent updated (ex: agent restarting)
+   */
+  private List<Event> createSyntheticEvents()
+  {
+    List<Event> res = new ArrayList<Event>();
+
+    for(int i = 0; i < agents; i++)
+    {
+      String agentName = "agent-" + i;
+      res.add(new Event("ADDED", agentName, null));
+      for(int j = 0; j < MOUNT_POINTS_PER_AGENT; j++)
+      {
+        res.add(new Event("ADDED", agentName, "/m" + j));
+      }
+    }
+
+    Random random = new Random(0);
+
+    for(int i = 0; i < events; i++)
+    {
+      String agentName = "agent-" + random.nextInt(agents);
+      String mountPoint = "/m" + random.nextInt(MOUNT_POINTS_PER_AGENT);
+
+      int p = random.nextInt(100);
+      if(p < 80)
+        res.add(new Event("UPDATED", agentName, mountPoint));
+      else if(p < 85)
+        res.add(new Event("DELETED", agentName, mountPoint));
+      else if(p < 90)
+        res.add(new Event("ADDED", agentName, mountPoint));
+      else
+        res.add(new Event("UPDATED", agentName, null));
+    }
+
+    return res;
+  }
+
+  private static List<Event> readRecording(File file) throws IOException
+  {
+    List<Event> res = new ArrayList<Event>();
+
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try
+    {
+      String line;
+      while((line = reader.readLine()) != null)
+      {
+        line = line.trim();
+        if(line.length() == 0 || line.startsWith("#"))
+          continue;
+
+        String[] parts = line.split("\\s+");
+        res.add(new Event(parts[0], parts[1], parts.length > 2 ? parts[2] : null));
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+
+    return res;
+  }
+}
@@ -84,6 +84,14 @@ public class CommandExecution<T>
     completionTime > 0
   }
 
+  FutureTaskExecution getFutureExecution()
+  {
+    synchronized(_lock)
+    {
+      return _futureExecution
+    }
+  }
+
   void setFutureExecution(FutureTaskExecution futureExecution)
   {
     synchronized(_lock)
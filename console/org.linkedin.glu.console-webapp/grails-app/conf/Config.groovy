@@ -33,17 +33,52 @@ plugins.StreamFileContentPlugin.unrestrictedLocation = "/"
 // set to '0' if you don't want deployments to be automatically archived
 console.deploymentService.autoArchiveTimeout = "30m"
 
+// maximum number of actions executing at the same time for a given deployment (0 means no limit)
+// and for a given agent within a deployment (0 means no limit)
+console.deploymentService.deployer.planExecutor.maxInFlightLeafSteps = 0
+console.deploymentService.deployer.planExecutor.maxInFlightLeafStepsPerAgent = 0
+
+// set to true if you want the script transitions to be completed by the ZooKeeper events instead
+// of holding a thread per transition while waiting for the agent
+console.deploymentService.deployer.planExecutor.asyncTransitions = false
+
 // set to true if you want to display state delta in error even if there is a delta (yellow vs red)
 console.deltaService.stateDeltaOverridesDelta = true
 
+// set to false if you want the delta to be recomputed entirely every time (when true, the entries
+// which did not change since the last delta computed for the same expected model are reused)
+console.deltaService.incrementalDelta = true
+
+// set to the number of threads to use if you want the delta of large fabrics to be computed in
+// parallel (only when the fabric has at least parallelThreshold entries)
+console.deltaService.parallelism = 0
+console.deltaService.parallelThreshold = 1000
+
 // set to false if you want missing agents to not be skipped anymore in plan computation
 console.plannerService.planner.skipMissingAgents = true
 
 console.trackerService.zookeeperRoot = '/org/glu'
 
+// set to false if you want the current (live) model to be rebuilt entirely on every call instead
+// of being maintained from the ZooKeeper events
+console.agentsService.incrementalCurrentSystemModel = true
+
 // connection timeout when the console tries to talk to the agent (rest)
 console.to.agent.connectionTimeout = "30s"
 
+// set to false if you want a new connection to be created for every call to an agent (when true,
+// connections are kept alive and reused, up to maxConnectionsPerHost per agent)
+console.to.agent.pooledConnections = true
+console.to.agent.maxConnectionsPerHost = 10
+// how long an idle connection to an agent is kept alive
+console.to.agent.connectionIdleTimeout = "30s"
+// how long the pool keeps the (unused) connections of an agent which is not called anymore
+console.to.agent.clientIdleTimeout = "5m"
+
+// set to true to compute the id of a model from the digests of its entries (only the entries
+// which changed are rehashed). Note that the ids of the models already saved are different!
+console.systemModelRenderer.incrementalSystemId = false
+
 /////////////////////////////////////////////////////////
 // End Default values
 /////////////////////////////////////////////////////////
@@ -402,6 +437,9 @@ console.security.roles = [
   'HEAD:/rest/v1/$fabric/deployment/archived/$id': 'USER',
   'GET:/rest/v1/$fabric/deployment/archived/$id': 'USER',
 
+  'HEAD:/rest/v1/$fabric/deployment/progress/$id': 'USER',
+  'GET:/rest/v1/$fabric/deployment/progress/$id': 'USER',
+
   /***
    * model
    */
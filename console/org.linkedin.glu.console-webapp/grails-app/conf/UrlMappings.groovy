@@ -546,6 +546,14 @@ class UrlMappings
       __roles = UrlMappings.restRoles(roles, action, '/rest/v1/$fabric/deployment/archived/$id')
     }
 
+    "/rest/v1/$fabric/deployment/progress/$id"(controller: 'plan') {
+      action = [
+        HEAD: 'rest_count_deployment_progress',
+        GET: 'rest_list_deployment_progress'
+      ]
+      __roles = UrlMappings.restRoles(roles, action, '/rest/v1/$fabric/deployment/progress/$id')
+    }
+
     /***
      * model
      */
@@ -745,6 +745,43 @@ public class PlanController extends ControllerBase
     processViewDeployment(deploymentService.getArchivedDeployment(params.id))
   }
 
+  /**
+   * count how many steps of the deployment have completed
+   * (HEAD /deployment/progress/<deploymentId>) */
+  def rest_count_deployment_progress = {
+    def map = deploymentService.getDeploymentProgress(params.id, [max: 1])
+    response.addHeader("X-glu-totalCount", map.count.toString())
+    response.setStatus(HttpServletResponse.SC_OK)
+    render ''
+  }
+
+  /**
+   * List the progress of the steps of the deployment in the order in which they completed
+   * (GET /deployment/progress/<deploymentId>). Polling with <code>offset</code> set to the number
+   * of entries already read returns only the steps which completed since.
+   */
+  def rest_list_deployment_progress = {
+    def map = deploymentService.getDeploymentProgress(params.id, params)
+
+    response.addHeader("X-glu-count", map.progress.size().toString())
+    response.addHeader("X-glu-totalCount", map.count.toString())
+    ['max', 'offset'].each { k ->
+      if(params[k] != null)
+        response.addHeader("X-glu-${k}", params[k].toString())
+    }
+
+    if(map.progress)
+    {
+      response.setContentType('text/json')
+      render prettyPrintJsonWhenRequested(map.progress.collect { it.toExternalRepresentation() })
+    }
+    else
+    {
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT)
+      render ''
+    }
+  }
+
   /**
    * Handle GET and HEAD for a deployment
    */
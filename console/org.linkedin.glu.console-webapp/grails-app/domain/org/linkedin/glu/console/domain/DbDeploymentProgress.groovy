@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.console.domain
+
+/**
+ * The progress of a (leaf) step of a deployment (recorded while the deployment is running).
+ *
+ * @author yan@pongasoft.com */
+class DbDeploymentProgress
+{
+  static constraints = {
+    deploymentId(nullable: false)
+    stepId(nullable: true)
+    name(nullable: true)
+    metadata(nullable: true)
+    status(nullable: false)
+    startDate(nullable: true)
+    endDate(nullable: true)
+    error(nullable: true)
+  }
+
+  static mapping = {
+    deploymentId index: 'deployment_progress_idx'
+    sequence column: 'progress_sequence', index: 'deployment_progress_idx'
+    columns {
+      metadata type: 'text'
+      error type: 'text'
+    }
+  }
+
+  Long deploymentId
+  int sequence
+  String stepId
+  String name
+  String metadata // json representation of the metadata of the step
+  String status
+  Date startDate
+  Date endDate
+  String error
+}
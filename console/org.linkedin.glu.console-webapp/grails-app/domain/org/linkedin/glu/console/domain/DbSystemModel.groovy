@@ -58,32 +58,42 @@ class DbSystemModel
     return _content
   }
   
+  /**
+   * This is called for every row loaded so only the "header" of the model
+   * (id, fabric, metadata) is deserialized at this time. The entries are only deserialized when
+   * the model is actually needed (see {@link #getSystemModel()}).
+   */
   void setContent(String content)
   {
     _content = content
-    _systemModel = SERIALIZER.deserialize(content)
-    fabric = _systemModel.fabric
-    systemId = _systemModel.id
-    name = _systemModel.name
+    _systemModel = null
+    _systemModelNoEntries = SERIALIZER.deserializeNoEntries(content)
+    fabric = _systemModelNoEntries.fabric
+    systemId = _systemModelNoEntries.id
+    name = _systemModelNoEntries.name
   }
 
   String contentSerializer = SERIALIZER.type
 
   private SystemModel _systemModel
+  private SystemModel _systemModelNoEntries
 
   SystemModel getSystemModel()
   {
+    if(_systemModel == null && _content != null)
+      _systemModel = SERIALIZER.deserialize(_content)
     return _systemModel
   }
 
   Map getMetadata()
   {
-    return _systemModel.metadata
+    return (_systemModel ?: _systemModelNoEntries)?.metadata
   }
 
   void setSystemModel(SystemModel systemModel)
   {
     _systemModel = systemModel
+    _systemModelNoEntries = systemModel
     _content = SERIALIZER.serialize(systemModel)
     fabric = systemModel.fabric
     systemId = systemModel.id
@@ -91,7 +101,7 @@ class DbSystemModel
     name = systemModel.name
   }
 
-  static transients = ['metadata', 'systemModel', '_systemModel', '_content']
+  static transients = ['metadata', 'systemModel', '_systemModel', '_systemModelNoEntries', '_content']
 
 
   /**
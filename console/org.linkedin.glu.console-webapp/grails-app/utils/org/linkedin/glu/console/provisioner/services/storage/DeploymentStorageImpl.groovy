@@ -18,11 +18,14 @@ package org.linkedin.glu.console.provisioner.services.storage
 
 import org.linkedin.glu.orchestration.engine.deployment.DeploymentStorage
 import org.linkedin.glu.orchestration.engine.deployment.ArchivedDeployment
+import org.linkedin.glu.orchestration.engine.deployment.DeploymentStepProgress
 import org.linkedin.glu.console.domain.DbDeployment
+import org.linkedin.glu.console.domain.DbDeploymentProgress
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.util.annotations.Initializable
 import org.linkedin.glu.console.domain.LightDbDeployment
 import org.linkedin.glu.groovy.utils.collections.GluGroovyCollectionUtils
+import org.linkedin.groovy.util.json.JsonUtils
 
 /**
  * @author yan@pongasoft.com */
@@ -34,6 +37,9 @@ public class DeploymentStorageImpl implements DeploymentStorage
   @Initializable
   int maxResults = 25
 
+  @Initializable
+  int maxProgressResults = 1000
+
   @Override
   ArchivedDeployment getArchivedDeployment(String id)
   {
@@ -157,4 +163,70 @@ public class DeploymentStorageImpl implements DeploymentStorage
 
     return archivedDeployment
   }
+  @Override
+  void appendDeploymentProgress(String id, Collection<DeploymentStepProgress> progress)
+  {
+    DbDeploymentProgress.withTransaction {
+      progress.each { DeploymentStepProgress stepProgress ->
+        def dbProgress =
+          new DbDeploymentProgress(deploymentId: id as long,
+                                   sequence: stepProgress.sequence,
+                                   stepId: stepProgress.stepId,
+                                   name: stepProgress.name,
+                                   metadata: stepProgress.metadata ?
+                                     JsonUtils.compactPrint(stepProgress.metadata) : null,
+                                   status: stepProgress.status,
+                                   startDate: stepProgress.startTime ? new Date(stepProgress.startTime) : null,
+                                   endDate: stepProgress.endTime ? new Date(stepProgress.endTime) : null,
+                                   error: stepProgress.error)
+
+        if(!dbProgress.save())
+          log.warn("could not save progress for deployment ${id}: ${dbProgress.errors}")
+      }
+    }
+  }
+
+  @Override
+  Map getDeploymentProgress(String id, params)
+  {
+    params = GluGroovyCollectionUtils.subMap(params, ['offset', 'max'])
+
+    if(params.offset == null)
+      params.offset = 0
+    params.max = Math.min(params.max ? params.max.toInteger() : maxProgressResults,
+                          maxProgressResults)
+    params.sort = 'sequence'
+    params.order = 'asc'
+
+    long deploymentId = id as long
+
+    [
+      progress: DbDeploymentProgress.findAllByDeploymentId(deploymentId, params).collect {
+        createDeploymentStepProgress(it)
+      },
+      count: DbDeploymentProgress.countByDeploymentId(deploymentId)
+    ]
+  }
+
+  @Override
+  void deleteDeploymentProgress(String id)
+  {
+    DbDeploymentProgress.withTransaction {
+      DbDeploymentProgress.executeUpdate("delete DbDeploymentProgress p where p.deploymentId=?",
+                                         [id as long])
+    }
+  }
+
+  protected DeploymentStepProgress createDeploymentStepProgress(DbDeploymentProgress progress)
+  {
+    new DeploymentStepProgress(deploymentId: progress.deploymentId.toString(),
+                               sequence: progress.sequence,
+                               stepId: progress.stepId,
+                               name: progress.name,
+                               metadata: progress.metadata ? JsonUtils.fromJSON(progress.metadata) : null,
+                               status: progress.status,
+                               startTime: progress.startDate?.time ?: 0,
+                               endTime: progress.endDate?.time ?: 0,
+                               error: progress.error)
+  }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ package org.linkedin.glu.console.domain
 
 import org.linkedin.glu.console.provisioner.services.storage.DeploymentStorageImpl
 import org.linkedin.glu.orchestration.engine.deployment.ArchivedDeployment
+import org.linkedin.glu.orchestration.engine.deployment.DeploymentStepProgress
 import org.linkedin.glu.provisioner.plan.api.LeafStepCompletionStatus
 import org.linkedin.util.clock.Clock
 import org.linkedin.util.clock.SettableClock
@@ -66,4 +67,41 @@ public class DbDeploymentIntegrationTests extends GroovyTestCase
     assertEquals(1, res.count)
     assertNull(res.deployments.iterator().next().details)
   }
-}
\ No newline at end of file
+
+  public void testDeploymentProgress()
+  {
+    ArchivedDeployment deployment = deploymentStorage.startDeployment("d1",
+                                                                      "f1",
+                                                                      "u1",
+                                                                      "d1")
+
+    def newProgress = { int sequence ->
+      new DeploymentStepProgress(deploymentId: deployment.id,
+                                 sequence: sequence,
+                                 stepId: "s${sequence}".toString(),
+                                 name: "step ${sequence}".toString(),
+                                 metadata: [agent: "a${sequence}".toString()],
+                                 status: Status.COMPLETED.name(),
+                                 startTime: clock.currentTimeMillis(),
+                                 endTime: clock.currentTimeMillis())
+    }
+
+    deploymentStorage.appendDeploymentProgress(deployment.id, [newProgress(0), newProgress(1)])
+    deploymentStorage.appendDeploymentProgress(deployment.id, [newProgress(2)])
+
+    Map res = deploymentStorage.getDeploymentProgress(deployment.id, [:])
+    assertEquals(3, res.count)
+    assertEquals([0, 1, 2], res.progress.collect { it.sequence })
+    assertEquals('a1', res.progress[1].metadata.agent)
+    assertEquals(clock.currentTimeMillis(), res.progress[1].endTime)
+
+    // only the new entries
+    res = deploymentStorage.getDeploymentProgress(deployment.id, [offset: 2])
+    assertEquals(3, res.count)
+    assertEquals(['step 2'], res.progress.collect { it.name })
+
+    // deleted (when the deployment is archived)
+    deploymentStorage.deleteDeploymentProgress(deployment.id)
+    assertEquals(0, deploymentStorage.getDeploymentProgress(deployment.id, [:]).count)
+  }
+}
@@ -22,6 +22,7 @@ import org.linkedin.glu.agent.tracker.MountPointInfo
 import org.linkedin.glu.provisioner.core.model.SystemModel
 import org.linkedin.glu.orchestration.engine.fabric.Fabric
 import org.linkedin.glu.agent.api.TimeOutException
+import org.linkedin.glu.utils.concurrent.ListenableFuture
 
 /**
  * @author ypujante
@@ -51,6 +52,30 @@ interface AgentsService
 
   boolean waitForState(Fabric fabric, String agentName, def mountPoint, String state, def timeout)
 
+  ListenableFuture<Boolean> waitForStateAsync(String fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+
+  ListenableFuture<Boolean> waitForStateAsync(Fabric fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+
+  ListenableFuture<Boolean> waitForStateChangeAsync(String fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+
+  ListenableFuture<Boolean> waitForStateChangeAsync(Fabric fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+
   def clearError(args)
 
   def uninstallScript(args)
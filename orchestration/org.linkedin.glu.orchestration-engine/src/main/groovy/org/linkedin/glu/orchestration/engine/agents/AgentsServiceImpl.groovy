@@ -40,6 +40,7 @@ import org.linkedin.glu.groovy.util.state.DefaultStateMachine
 import org.linkedin.util.reflect.ObjectProxyBuilder
 import org.linkedin.util.clock.Timespan
 import org.linkedin.glu.agent.api.TimeOutException
+import org.linkedin.glu.utils.concurrent.ListenableFuture
 
 /**
  * @author ypujante
@@ -73,6 +74,14 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
   @Initializable(required = false)
   int agentRecoveryNumRetries = 10
 
+  /**
+   * when <code>true</code> the current system model is maintained from the tracker events
+   * (see {@link CurrentSystemModelTracker}) instead of being rebuilt on every call */
+  @Initializable(required = false)
+  boolean incrementalCurrentSystemModel = false
+
+  private final Map<String, CurrentSystemModelTracker> _currentSystemModelTrackers = [:]
+
   @Override
   URI getAgentURI(String fabric, String agent) throws NoSuchAgentException
   {
@@ -118,6 +127,11 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
     trackerService.getMountPointInfo(fabric, agentName, mountPoint)
   }
 
+  MountPointInfo getMountPointInfo(String fabric, String agentName, mountPoint)
+  {
+    trackerService.getMountPointInfo(fabric, agentName, mountPoint)
+  }
+
   def getFullState(args)
   {
     withRemoteAgent(args.fabric, args.id) { Agent agent ->
@@ -135,6 +149,42 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
     trackerService.waitForState(fabric, agentName, mountPoint, state, timeout)
   }
 
+  ListenableFuture<Boolean> waitForStateAsync(String fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+  {
+    trackerService.waitForStateAsync(fabric, agentName, mountPoint, state, timeout)
+  }
+
+  ListenableFuture<Boolean> waitForStateAsync(Fabric fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+  {
+    trackerService.waitForStateAsync(fabric, agentName, mountPoint, state, timeout)
+  }
+
+  ListenableFuture<Boolean> waitForStateChangeAsync(String fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+  {
+    trackerService.waitForStateChangeAsync(fabric, agentName, mountPoint, state, timeout)
+  }
+
+  ListenableFuture<Boolean> waitForStateChangeAsync(Fabric fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+  {
+    trackerService.waitForStateChangeAsync(fabric, agentName, mountPoint, state, timeout)
+  }
+
   def clearError(args)
   {
     withRemoteAgent(args.fabric, args.id) { Agent agent ->
@@ -215,9 +265,20 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
   }
 
   /**
-   * Builds the current system model based on the live data from ZooKeeper
+   * @return the current system model based on the live data from ZooKeeper
    */
   SystemModel getCurrentSystemModel(Fabric fabric)
+  {
+    if(incrementalCurrentSystemModel)
+      return getCurrentSystemModelTracker(fabric).currentSystemModel
+    else
+      return buildCurrentSystemModel(fabric)
+  }
+
+  /**
+   * Builds the current system model based on the live data from ZooKeeper
+   */
+  protected SystemModel buildCurrentSystemModel(Fabric fabric)
   {
     def allInfosAndAccuracy = getAllInfosWithAccuracy(fabric)
     def agents = allInfosAndAccuracy.allInfos
@@ -249,10 +310,7 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
       else
       {
         // empty agent
-        SystemEntry emptyAgentEntry = new SystemEntry(agent: agentName)
-        emptyAgentEntry.metadata.emptyAgent = true
-        emptyAgentEntry.metadata.currentState = 'NA'
-        systemModel.addEntry(emptyAgentEntry)
+        systemModel.addEntry(createEmptyAgentSystemEntry(agentName))
       }
     }
 
@@ -261,6 +319,29 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
     return systemModel
   }
 
+  /**
+   * @return the (unique per fabric) tracker maintaining the current system model
+   */
+  protected CurrentSystemModelTracker getCurrentSystemModelTracker(Fabric fabric)
+  {
+    synchronized(_currentSystemModelTrackers)
+    {
+      CurrentSystemModelTracker tracker = _currentSystemModelTrackers[fabric.name]
+
+      // the tracker service recreates its tracker (and drops the listeners) when the fabric
+      // changes, so we need to do the same
+      if(tracker?.fabric != fabric)
+      {
+        tracker = new CurrentSystemModelTracker(this, fabric)
+        trackerService.registerAgentListener(fabric, tracker.eventsListener)
+        trackerService.registerMountPointListener(fabric, tracker.eventsListener)
+        _currentSystemModelTrackers[fabric.name] = tracker
+      }
+
+      return tracker
+    }
+  }
+
   @Override
   def executeShellCommand(Fabric fabric, String agentName, def args)
   {
@@ -307,6 +388,17 @@ class AgentsServiceImpl implements AgentsService, AgentURIProvider, MountPointSt
     } as boolean
   }
 
+  /**
+   * Create the system entry for an agent which does not have any mount point.
+   */
+  protected SystemEntry createEmptyAgentSystemEntry(agentName)
+  {
+    SystemEntry emptyAgentEntry = new SystemEntry(agent: agentName)
+    emptyAgentEntry.metadata.emptyAgent = true
+    emptyAgentEntry.metadata.currentState = 'NA'
+    return emptyAgentEntry
+  }
+
   /**
    * Create the system entry for the given agent and mountPoint.
    */
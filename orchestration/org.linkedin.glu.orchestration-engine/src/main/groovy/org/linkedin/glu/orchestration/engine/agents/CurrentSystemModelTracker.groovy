@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.agents
+
+import org.linkedin.glu.agent.tracker.AgentInfo
+import org.linkedin.glu.agent.tracker.AgentsTracker.AccuracyLevel
+import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.TrackerEventsListener
+import org.linkedin.glu.orchestration.engine.fabric.Fabric
+import org.linkedin.glu.provisioner.core.model.SystemEntry
+import org.linkedin.glu.provisioner.core.model.SystemModel
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Maintains the current system model of a fabric from the tracker events. The model is versioned:
+ * as long as no event is received, the same snapshot is returned. When an event is received, only
+ * the entries whose mount point info changed are recreated (a <code>MountPointInfo</code> is
+ * replaced, never modified, by the tracker so identity is enough to detect a change).
+ *
+ * The snapshot (and its entries) is shared by all the callers so it is
+ * made read only (see <code>SystemModel.makeReadOnly</code>): a caller which needs to modify it
+ * must <code>clone</code> it first.
+ *
+ * @author yan@pongasoft.com
+ */
+class CurrentSystemModelTracker
+{
+  public static final String MODULE = CurrentSystemModelTracker.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  final Fabric fabric
+
+  private final AgentsServiceImpl _agentsService
+  private final AtomicLong _version = new AtomicLong(0)
+
+  private final Object _lock = new Object()
+  private Map<String, AgentEntries> _agents = [:]
+  private SystemModel _snapshot = null
+  private long _snapshotVersion = -1
+
+  /**
+   * Listener to register for both agents and mount points events (called by the tracker while
+   * holding its lock, so it simply bumps the version)
+   */
+  final TrackerEventsListener eventsListener = { events ->
+    if(events)
+      _version.incrementAndGet()
+  } as TrackerEventsListener
+
+  CurrentSystemModelTracker(AgentsServiceImpl agentsService, Fabric fabric)
+  {
+    _agentsService = agentsService
+    this.fabric = fabric
+  }
+
+  /**
+   * @return the version of the model (changes every time an event is received)
+   */
+  long getVersion()
+  {
+    return _version.get()
+  }
+
+  /**
+   * @return the current system model (shared read only snapshot, see note)
+   */
+  SystemModel getCurrentSystemModel()
+  {
+    synchronized(_lock)
+    {
+      long version = _version.get()
+
+      if(_snapshot != null && _snapshotVersion == version)
+        return _snapshot
+
+      def allInfosAndAccuracy = _agentsService.getAllInfosWithAccuracy(fabric)
+      def accuracy = allInfosAndAccuracy.accuracy
+
+      int rebuiltAgentsCount = 0
+
+      Map<String, AgentEntries> agents = [:]
+      allInfosAndAccuracy.allInfos.each { String agentName, agent ->
+        AgentEntries previous = _agents[agentName]
+        AgentEntries agentEntries =
+          computeAgentEntries(agentName, agent.info, agent.mountPoints, previous)
+        if(!agentEntries.is(previous))
+          rebuiltAgentsCount++
+        agents[agentName] = agentEntries
+      }
+      _agents = agents
+
+      SystemModel systemModel = new SystemModel(fabric: fabric.name)
+
+      // 1. add the agent tags
+      agents.values().each { AgentEntries agentEntries ->
+        def agentTags = agentEntries.info.tags
+        if(agentTags)
+          systemModel.addAgentTags(agentEntries.agentName, agentTags)
+      }
+
+      // 2. add entries
+      agents.values().each { AgentEntries agentEntries ->
+        agentEntries.entries.values().each { SystemEntry entry ->
+          systemModel.addEntry(entry)
+        }
+      }
+
+      systemModel.metadata.accuracy = accuracy
+      systemModel.metadata.transactionId = allInfosAndAccuracy.transactionId
+
+      // the entries which are reused are already read only
+      systemModel.makeReadOnly()
+
+      _snapshot = systemModel
+
+      // when not accurate, the model will be recomputed on next call
+      _snapshotVersion = accuracy == AccuracyLevel.ACCURATE ? version : -1
+
+      if(log.isDebugEnabled())
+        log.debug("${fabric.name}: version=${version}, rebuilt ${rebuiltAgentsCount}/${agents.size()} agents")
+
+      return systemModel
+    }
+  }
+
+  /**
+   * Computes the entries for the given agent reusing the previous ones when possible
+   */
+  private AgentEntries computeAgentEntries(String agentName,
+                                           AgentInfo info,
+                                           Map<Object, MountPointInfo> mountPoints,
+                                           AgentEntries previous)
+  {
+    // nothing has changed for this agent
+    if(previous != null && previous.info.is(info) && previous.mountPoints.is(mountPoints))
+      return previous
+
+    // entries contain the agent tags so they can be reused only if the agent did not change
+    Map<MountPointInfo, SystemEntry> reusableEntries =
+      previous?.info?.is(info) ? previous.entries : null
+
+    AgentEntries res = new AgentEntries(agentName: agentName,
+                                        info: info,
+                                        mountPoints: mountPoints)
+
+    if(mountPoints)
+    {
+      mountPoints.values().each { MountPointInfo mp ->
+        SystemEntry entry = reusableEntries?.get(mp)
+        if(entry == null)
+          entry = _agentsService.createSystemEntry(agentName, mp)
+        if(entry)
+          res.entries[mp] = entry
+      }
+    }
+    else
+    {
+      res.entries[null] = _agentsService.createEmptyAgentSystemEntry(agentName)
+    }
+
+    return res
+  }
+
+  private static class AgentEntries
+  {
+    String agentName
+    AgentInfo info
+    Map<Object, MountPointInfo> mountPoints
+
+    // the key is the mount point info (by identity) the entry was created from
+    Map<MountPointInfo, SystemEntry> entries = new IdentityHashMap<MountPointInfo, SystemEntry>()
+  }
+}
@@ -16,9 +16,38 @@
 
 package org.linkedin.glu.orchestration.engine.agents
 
+import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.utils.concurrent.ListenableFuture
+
 /**
  * @author yan@pongasoft.com  */
 public interface MountPointStateProvider
 {
+  /**
+   * @return the mount point as currently known by the tracker (<code>null</code> if it does
+   * not exist)
+   */
+  MountPointInfo getMountPointInfo(String fabric, String agentName, def mountPoint)
+
   boolean waitForState(String fabric, String agentName, def mountPoint, String state, def timeout)
+
+  /**
+   * Same as {@link #waitForState} but does not block: the future completes with
+   * <code>true</code> when the state is reached and <code>false</code> on timeout
+   */
+  ListenableFuture<Boolean> waitForStateAsync(String fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+
+  /**
+   * Same as {@link #waitForStateAsync} but ignores the current state: the future only completes
+   * when the mount point changes to the state (or to an error)
+   */
+  ListenableFuture<Boolean> waitForStateChangeAsync(String fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
 }
\ No newline at end of file
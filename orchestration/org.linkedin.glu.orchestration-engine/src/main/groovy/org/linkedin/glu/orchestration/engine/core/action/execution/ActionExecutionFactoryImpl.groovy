@@ -18,6 +18,7 @@ package org.linkedin.glu.orchestration.engine.core.action.execution
 
 import org.linkedin.glu.orchestration.engine.action.execution.ActionExecutionFactory
 import org.linkedin.glu.orchestration.engine.action.execution.ActionExecution
+import org.linkedin.glu.orchestration.engine.action.execution.AsyncActionExecutionFactory
 import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor
 import org.linkedin.glu.orchestration.engine.action.descriptor.NoOpActionDescriptor
 import org.linkedin.glu.orchestration.engine.agents.MountPointStateProvider
@@ -35,11 +36,20 @@ import org.linkedin.glu.orchestration.engine.action.descriptor.ScriptLifecycleIn
 import org.linkedin.glu.orchestration.engine.action.descriptor.ScriptLifecycleUninstallActionDescriptor
 import org.linkedin.util.reflect.ObjectProxyBuilder
 import org.linkedin.glu.orchestration.engine.agents.RecoverableAgent
+import org.linkedin.glu.agent.api.ScriptFailedException
+import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.utils.concurrent.ListenableFuture
+import org.linkedin.glu.utils.concurrent.SettableFuture
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * This implementation uses a convention:
  * @author yan@pongasoft.com */
-public class ActionExecutionFactoryImpl implements ActionExecutionFactory
+public class ActionExecutionFactoryImpl implements AsyncActionExecutionFactory
 {
   public static final String MODULE = ActionExecutionFactoryImpl.class.getName();
   public static final Logger log = LoggerFactory.getLogger(MODULE);
@@ -84,6 +94,20 @@ public class ActionExecutionFactoryImpl implements ActionExecutionFactory
   @Initializable(required = false)
   int agentRecoveryNumRetries = 10
 
+  /**
+   * when <code>true</code>, the script transitions do not hold a thread while waiting for the
+   * transition to complete: the completion is driven by the tracker (ZooKeeper) events (requires
+   * <code>mountPointStateProvider</code>) */
+  @Initializable(required = false)
+  boolean asyncTransitions = false
+
+  /**
+   * the executor used to complete (and interrupt) the asynchronous script transitions so that
+   * neither the tracker (ZooKeeper) event thread nor the thread canceling the plan ever blocks
+   * (required for <code>asyncTransitions</code>) */
+  @Initializable(required = false)
+  Executor executor
+
   /**
    * For NoOpActionDescriptor: do nothing
    */
@@ -221,6 +245,178 @@ public class ActionExecutionFactoryImpl implements ActionExecutionFactory
     }
   }
 
+  /**
+   * Only the script transitions can be executed asynchronously (and not for the agent self
+   * upgrade which restarts the agent)
+   */
+  @Override
+  boolean isAsyncAction(ActionDescriptor actionDescriptor)
+  {
+    if(!asyncTransitions || !mountPointStateProvider || !executor)
+      return false
+
+    if(!(actionDescriptor instanceof ScriptTransitionActionDescriptor))
+      return false
+
+    return actionDescriptor.mountPoint != "/self/upgrade"
+  }
+
+  /**
+   * Same as {@link #ScriptTransitionActionDescriptor_execution} except that instead of waiting for
+   * the transition to complete, it returns a future completed by the tracker events.
+   */
+  @Override
+  ListenableFuture<Object> executeAsyncAction(ActionDescriptor actionDescriptor)
+  {
+    ScriptTransitionActionDescriptor ad = (ScriptTransitionActionDescriptor) actionDescriptor
+
+    String mountPoint = ad.mountPoint
+
+    AtomicReference<ListenableFuture<Boolean>> currentWait =
+      new AtomicReference<ListenableFuture<Boolean>>()
+
+    withAgent(ad) { Agent agent ->
+
+      // 1. we clear any error which could be left over
+      agent.clearError(mountPoint: mountPoint)
+
+      // 2. we start waiting for the state change before executing the action so that the event
+      // cannot be missed
+      currentWait.set(mountPointStateProvider.waitForStateChangeAsync(ad.fabric,
+                                                                      ad.agent,
+                                                                      mountPoint,
+                                                                      ad.toState,
+                                                                      timeout))
+
+      // 3. we execute the transition action
+      try
+      {
+        Map actionArgs = computeActionArgs(ad)
+        agent.executeAction(mountPoint: mountPoint, action: ad.action, actionArgs: actionArgs)
+      }
+      catch(Throwable th)
+      {
+        currentWait.get().cancel(false)
+        throw th
+      }
+    }
+
+    SettableFuture<Object> res = new SettableFuture<Object>()
+
+    res.addListener({
+      if(res.isCancelled())
+      {
+        currentWait.get().cancel(false)
+
+        // interrupting the action is a (blocking) call to the agent and the listener is called in
+        // the thread which cancels the plan
+        try
+        {
+          executor.execute({ interruptAction(ad) } as Runnable)
+        }
+        catch(RejectedExecutionException e)
+        {
+          log.warn("Could not interrupt ${ad.action} for ${ad.agent}:${ad.mountPoint} (ignored)", e)
+        }
+      }
+    } as Runnable)
+
+    // 4. the tracker events complete the action
+    onStateChange(ad, currentWait, res)
+
+    return res
+  }
+
+  /**
+   * Completes <code>res</code> when the wait completes. On timeout, checks the current state
+   * and waits again (same as the synchronous version which waits until the state is reached).
+   *
+   * The wait is completed by the tracker event thread (or the timeout
+   * thread) and completing <code>res</code> ends the step (which records the progress), so the
+   * completion is handed off to the executor.
+   */
+  private void onStateChange(ScriptTransitionActionDescriptor ad,
+                             AtomicReference<ListenableFuture<Boolean>> currentWait,
+                             SettableFuture<Object> res)
+  {
+    ListenableFuture<Boolean> stateWait = currentWait.get()
+
+    stateWait.addListener({
+      if(res.isDone() || stateWait.isCancelled())
+        return
+
+      try
+      {
+        executor.execute({ processStateChange(ad, currentWait, stateWait, res) } as Runnable)
+      }
+      catch(RejectedExecutionException e)
+      {
+        res.fail(e)
+      }
+    } as Runnable)
+  }
+
+  private void processStateChange(ScriptTransitionActionDescriptor ad,
+                                  AtomicReference<ListenableFuture<Boolean>> currentWait,
+                                  ListenableFuture<Boolean> stateWait,
+                                  SettableFuture<Object> res)
+  {
+    if(res.isDone())
+      return
+
+    try
+    {
+      if(stateWait.get())
+      {
+        MountPointInfo mpi = mountPointStateProvider.getMountPointInfo(ad.fabric,
+                                                                       ad.agent,
+                                                                       ad.mountPoint)
+        if(mpi?.error)
+          res.fail(new ScriptFailedException("${ad.mountPoint}: ${mpi.error}".toString()))
+        else
+          res.complete(null)
+      }
+      else
+      {
+        currentWait.set(mountPointStateProvider.waitForStateAsync(ad.fabric,
+                                                                  ad.agent,
+                                                                  ad.mountPoint,
+                                                                  ad.toState,
+                                                                  timeout))
+        // canceled while registering the new wait
+        if(res.isCancelled())
+          currentWait.get().cancel(false)
+        else
+          onStateChange(ad, currentWait, res)
+      }
+    }
+    catch(ExecutionException e)
+    {
+      res.fail(e.cause)
+    }
+    catch(Throwable th)
+    {
+      res.fail(th)
+    }
+  }
+
+  /**
+   * Interrupts the transition (when the asynchronous execution is canceled)
+   */
+  private void interruptAction(ScriptTransitionActionDescriptor ad)
+  {
+    try
+    {
+      withAgent(ad) { Agent agent ->
+        agent.interruptAction(mountPoint: ad.mountPoint, action: ad.action)
+      }
+    }
+    catch(Throwable th)
+    {
+      log.warn("Could not interrupt ${ad.action} for ${ad.agent}:${ad.mountPoint} (ignored)", th)
+    }
+  }
+
   @Override
   <V> ActionExecution<V> createAction(ActionDescriptor actionDescriptor)
   {
@@ -79,6 +79,16 @@ interface DeploymentService
    */
   int getArchivedDeploymentsCount(String fabric)
 
+  /**
+   * The progress of the steps of a deployment (current or archived) which is recorded while the
+   * deployment is running.
+   *
+   * params can be <code>max</code> and <code>offset</code>
+   * @return a map with progress: the list of {@link DeploymentStepProgress} (sorted by sequence)
+   *         and count: the total number of entries
+   */
+  Map getDeploymentProgress(String id, params)
+
   /**
    * If the deployment is not archived yet, then simply return it otherwise return the archived
    * version
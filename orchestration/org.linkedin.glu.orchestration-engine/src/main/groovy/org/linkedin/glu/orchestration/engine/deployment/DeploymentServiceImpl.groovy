@@ -33,6 +33,8 @@ import org.linkedin.groovy.util.clock.ClosureTimerTask
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.glu.groovy.utils.plugins.PluginService
 
+import java.util.concurrent.Executor
+
 /**
  * System service.
  *
@@ -57,6 +59,26 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
   @Initializable
   Timespan autoArchiveTimeout = Timespan.parse('30m')
 
+  /**
+   * The progress of the steps of a deployment is recorded in batches of (at most) this size
+   */
+  @Initializable
+  int progressBatchSize = 100
+
+  /**
+   * The progress of the steps of a deployment is recorded at least this often (while the steps
+   * are completing)
+   */
+  @Initializable
+  Timespan progressFlushDelay = Timespan.parse('5s')
+
+  /**
+   * The progress of the steps is recorded in this executor (rather than in the thread completing
+   * the step). When <code>null</code> it is recorded synchronously.
+   */
+  @Initializable
+  Executor progressExecutor
+
   @Initializable
   Clock clock = SystemClock.INSTANCE
 
@@ -168,7 +190,6 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
         if(deployment.planExecution.isCompleted())
         {
           _deployments.remove(id)
-          return true
         }
         else
         {
@@ -180,6 +201,9 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
         return false
       }
     }
+
+    deleteDeploymentProgress([id])
+    return true
   }
 
   /**
@@ -187,11 +211,13 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
    * check on 'old' is based on when the deployment was completed!
    */
   def autoArchiveClosure = {
+    def deploymentsToArchive
+
     synchronized(_deployments)
     {
       def cutoffTime = autoArchiveTimeout.pastTimeMillis(clock)
 
-      def deploymentsToArchive = _deployments.values().findAll { CurrentDeployment deployment ->
+      deploymentsToArchive = _deployments.values().findAll { CurrentDeployment deployment ->
         IStepCompletionStatus status = deployment.planExecution.completionStatus
 
         // completed more than 'cutoff' time ago
@@ -205,6 +231,8 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
       if(deploymentsToArchive.size())
         log.info "Auto-archived ${deploymentsToArchive.size()} deployments"
     }
+
+    deleteDeploymentProgress(deploymentsToArchive.collect { it.id })
   }
 
   /**
@@ -213,15 +241,38 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
    */
   int archiveAllDeployments(String fabric)
   {
+    def deploymentsToArchive
+
     synchronized(_deployments)
     {
-      def deploymentsToArchive = getDeployments(fabric) {
+      deploymentsToArchive = getDeployments(fabric) {
         it.planExecution.isCompleted()
       }
 
       deploymentsToArchive.each { _deployments.remove(it.id) }
+    }
+
+    deleteDeploymentProgress(deploymentsToArchive.collect { it.id })
+
+    return deploymentsToArchive.size()
+  }
 
-      return deploymentsToArchive.size()
+  /**
+   * The progress of the steps is only kept while the deployment is current (the details of the
+   * archived deployment contain the final status of every step). Called outside the lock since it
+   * hits the storage.
+   */
+  private void deleteDeploymentProgress(Collection<String> ids)
+  {
+    ids.each { id ->
+      try
+      {
+        deploymentStorage.deleteDeploymentProgress(id)
+      }
+      catch(Throwable th)
+      {
+        log.warn("could not delete the progress of deployment ${id} [ignored]", th)
+      }
     }
   }
   
@@ -252,6 +303,12 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
     deploymentStorage.getArchivedDeploymentsCount(fabric)
   }
 
+  @Override
+  Map getDeploymentProgress(String id, params)
+  {
+    deploymentStorage.getDeploymentProgress(id, params)
+  }
+
   @Override
   Deployment getCurrentOrArchivedDeployment(String id)
   {
@@ -302,6 +359,10 @@ class DeploymentServiceImpl implements DeploymentService, Startable, Destroyable
                                         id,
                                         model,
                                         description)
+      tracker.progressBatchSize = progressBatchSize
+      tracker.progressFlushDelay = progressFlushDelay
+      tracker.clock = clock
+      tracker.executor = progressExecutor
 
       def planExecution = deployer.executePlan(plan, tracker)
 
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.deployment
+
+/**
+ * The progress of a (leaf) step of a deployment, recorded as soon as the step completes (see
+ * {@link DeploymentStorage#appendDeploymentProgress(String, Collection)}).
+ *
+ * @author yan@pongasoft.com */
+public class DeploymentStepProgress
+{
+  String deploymentId
+
+  /**
+   * Order in which the steps completed (starts at 0)
+   */
+  int sequence
+
+  String stepId
+  String name
+  Map<String, String> metadata
+  String status
+  long startTime
+  long endTime
+
+  /**
+   * The message of the exception when the step failed
+   */
+  String error
+
+  Map toExternalRepresentation()
+  {
+    [
+      sequence: sequence,
+      stepId: stepId,
+      name: name,
+      metadata: metadata,
+      status: status,
+      startTime: startTime,
+      endTime: endTime,
+      error: error
+    ].findAll { k, v -> v != null }
+  }
+}
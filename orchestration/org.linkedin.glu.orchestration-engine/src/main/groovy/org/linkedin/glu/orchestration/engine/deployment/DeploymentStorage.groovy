@@ -46,4 +46,25 @@ public interface DeploymentStorage
   ArchivedDeployment endDeployment(String id,
                                    IStepCompletionStatus status,
                                    String details)
+
+  /**
+   * Records the progress of the steps (called while the deployment is running, in batches)
+   */
+  void appendDeploymentProgress(String id, Collection<DeploymentStepProgress> progress)
+
+  /**
+   * params can be <code>max</code> and <code>offset</code> (the progress is always sorted by
+   * sequence so that polling with <code>offset</code> set to the number of entries already read
+   * returns only the new ones)
+   *
+   * @return a map with progress: the list of {@link DeploymentStepProgress} and count: the total
+   *         number of entries
+   */
+  Map getDeploymentProgress(String id, params)
+
+  /**
+   * Deletes the progress of the steps (called when the deployment is archived: the final status
+   * of every step remains available in the details of the deployment)
+   */
+  void deleteDeploymentProgress(String id)
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ public class InMemoryDeploymentStorage implements DeploymentStorage
   Clock clock = SystemClock.instance()
   int lastDeploymentId = 0
   Map<String, ArchivedDeployment> deployments = [:]
+  Map<String, List<DeploymentStepProgress>> progress = [:]
 
   @Override
   ArchivedDeployment getArchivedDeployment(String id)
@@ -79,4 +80,36 @@ public class InMemoryDeploymentStorage implements DeploymentStorage
 
     return deployment
   }
+
+  @Override
+  synchronized void appendDeploymentProgress(String id, Collection<DeploymentStepProgress> progress)
+  {
+    def deploymentProgress = this.progress[id]
+    if(deploymentProgress == null)
+    {
+      deploymentProgress = []
+      this.progress[id] = deploymentProgress
+    }
+    deploymentProgress.addAll(progress)
+  }
+
+  @Override
+  synchronized Map getDeploymentProgress(String id, params)
+  {
+    def deploymentProgress = (progress[id] ?: []).sort(false) { it.sequence }
+
+    int offset = params?.offset ? params.offset.toInteger() : 0
+    int max = params?.max ? params.max.toInteger() : deploymentProgress.size()
+
+    [
+      progress: deploymentProgress.drop(offset).take(max),
+      count: deploymentProgress.size()
+    ]
+  }
+
+  @Override
+  synchronized void deleteDeploymentProgress(String id)
+  {
+    progress.remove(id)
+  }
 }
\ No newline at end of file
@@ -20,13 +20,25 @@ package org.linkedin.glu.orchestration.engine.deployment
 import org.linkedin.glu.provisioner.core.model.SystemModel
 import org.linkedin.glu.provisioner.plan.api.FilteredPlanExecutionProgressTracker
 import org.linkedin.glu.provisioner.plan.api.IPlanExecution
+import org.linkedin.glu.provisioner.plan.api.IStep
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.glu.groovy.utils.plugins.PluginService
+import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.SystemClock
+import org.linkedin.util.clock.Timespan
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
 
 /**
  * @author yan@pongasoft.com */
 class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
 {
+  public static final String MODULE = ProgressTracker.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
   final DeploymentStorage _deploymentStorage
   final PluginService _pluginService
   def final _deploymentId
@@ -34,6 +46,28 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
   private final SystemModel _model
   private final String _description
 
+  /**
+   * The progress of the leaf steps is recorded in batches of (at most) <code>progressBatchSize</code>
+   * steps, or sooner when the previous batch was recorded more than <code>progressFlushDelay</code>
+   * ago (<code>0</code> means only at the end of the deployment)
+   */
+  int progressBatchSize = 100
+  Timespan progressFlushDelay = Timespan.parse('5s')
+  Clock clock = SystemClock.INSTANCE
+
+  /**
+   * The progress recorded while the deployment is running is written in this executor so that
+   * the thread completing a step never waits for the storage (synchronously when
+   * <code>null</code>)
+   */
+  Executor executor
+
+  private final List<DeploymentStepProgress> _pendingProgress = []
+  private int _progressSequence = 0
+  private long _lastProgressFlushTime = 0
+  private boolean _progressFlushScheduled = false
+  private final Object _progressFlushLock = new Object()
+
   def ProgressTracker(DeploymentStorage deploymentStorage,
                       PluginService pluginService,
                       tracker,
@@ -53,6 +87,7 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
   {
     super.onPlanStart(planExecution)
     _planExecution = planExecution
+    _lastProgressFlushTime = clock.currentTimeMillis()
     _pluginService?.executeMethod(DeploymentService,
                                  "onStart_executeDeploymentPlan",
                                  [
@@ -64,9 +99,37 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
   }
 
 
+  @Override
+  public void onStepEnd(IStepCompletionStatus<T> status)
+  {
+    super.onStepEnd(status)
+
+    if(status.step.type != IStep.Type.LEAF)
+      return
+
+    boolean flush
+
+    synchronized(_pendingProgress)
+    {
+      _pendingProgress << createStepProgress(status, _progressSequence++)
+
+      flush = !_progressFlushScheduled &&
+        (_pendingProgress.size() >= progressBatchSize ||
+         (progressFlushDelay?.durationInMilliseconds > 0 &&
+          clock.currentTimeMillis() - _lastProgressFlushTime >= progressFlushDelay.durationInMilliseconds))
+
+      if(flush)
+        _progressFlushScheduled = true
+    }
+
+    if(flush)
+      scheduleFlushProgress()
+  }
+
   public void onPlanEnd(IStepCompletionStatus<T> status)
   {
     super.onPlanEnd(status)
+    flushProgress()
     String details = _planExecution.toXml([fabric: _model.fabric, systemId: _model.id])
     _deploymentStorage.endDeployment(_deploymentId, status, details)
     _pluginService?.executeMethod(DeploymentService,
@@ -80,4 +143,79 @@ class ProgressTracker<T> extends FilteredPlanExecutionProgressTracker<T>
                                    serviceResult: _planExecution
                                  ])
   }
+
+  /**
+   * Records the pending progress in the executor (at most one pending flush at a time)
+   */
+  private void scheduleFlushProgress()
+  {
+    if(executor == null)
+    {
+      flushProgress()
+      return
+    }
+
+    try
+    {
+      executor.execute({ flushProgress() } as Runnable)
+    }
+    catch(RejectedExecutionException e)
+    {
+      // the progress remains pending (recorded by the next flush or at the end of the deployment)
+      log.warn("could not schedule the recording of the progress of deployment ${_deploymentId} [ignored]")
+      synchronized(_pendingProgress)
+      {
+        _progressFlushScheduled = false
+      }
+    }
+  }
+
+  /**
+   * Records the pending progress (a failure to record the progress does not affect the
+   * deployment)
+   */
+  private void flushProgress()
+  {
+    // the pending progress is drained while holding the flush lock so
+    // that the batches are recorded in order
+    synchronized(_progressFlushLock)
+    {
+      List<DeploymentStepProgress> progress
+
+      synchronized(_pendingProgress)
+      {
+        progress = new ArrayList<DeploymentStepProgress>(_pendingProgress)
+        _pendingProgress.clear()
+        _lastProgressFlushTime = clock.currentTimeMillis()
+        _progressFlushScheduled = false
+      }
+
+      if(progress)
+      {
+        try
+        {
+          _deploymentStorage.appendDeploymentProgress(_deploymentId, progress)
+        }
+        catch(Throwable th)
+        {
+          log.warn("could not record the progress of deployment ${_deploymentId} [ignored]", th)
+        }
+      }
+    }
+  }
+
+  private DeploymentStepProgress createStepProgress(IStepCompletionStatus<T> status, int sequence)
+  {
+    new DeploymentStepProgress(deploymentId: _deploymentId,
+                               sequence: sequence,
+                               stepId: status.step.id,
+                               name: status.step.name,
+                               metadata: status.step.metadata?.collectEntries { k, v ->
+                                 [k, v?.toString()]
+                               },
+                               status: status.status.name(),
+                               startTime: status.startTime,
+                               endTime: status.endTime,
+                               error: status.throwable?.message)
+  }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.orchestration.engine.tracker
+
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.NodeEvent
+import org.linkedin.glu.utils.concurrent.ListenableFuture
+import org.linkedin.glu.utils.concurrent.SettableFuture
+import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.SystemClock
+import org.linkedin.util.clock.Timespan
+import org.linkedin.util.lifecycle.Destroyable
+import org.linkedin.zookeeper.tracker.NodeEventType
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+
+/**
+ * Keeps track of the callers waiting for a mount point to reach a given state. The waiters are
+ * indexed by fabric/agent/mount point so that an event only completes the waiters of the mount
+ * point it is about (instead of waking up every waiter on every event). Each waiter is a
+ * {@link ListenableFuture} which completes with <code>true</code> when the state is reached (or the mount
+ * point is in error) and with <code>false</code> when the timeout expires, so a caller does not
+ * have to park a thread to wait.
+ *
+ * The timeouts are computed with <code>clock</code>: the timeout thread only wakes up to check
+ * the deadline of a waiter (and waits again if the clock says it is not reached yet). With a
+ * clock which does not follow the real time, {@link #checkTimeouts} expires the waiters.
+ *
+ * @author yan@pongasoft.com */
+class MountPointStateWaiters implements Destroyable
+{
+  public static final String MODULE = MountPointStateWaiters.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  Clock clock = SystemClock.INSTANCE
+
+  private final Map<String, Set<StateWaiter>> _waiters = [:]
+  private boolean _destroyed = false
+
+  // a single (daemon) thread is used to expire all the waiters
+  private final ScheduledExecutorService _timeoutScheduler =
+    Executors.newSingleThreadScheduledExecutor({ Runnable r ->
+      Thread t = new Thread(r, 'glu-mount-point-state-waiters')
+      t.daemon = true
+      return t
+    } as ThreadFactory)
+
+  /**
+   * Registers a waiter. Note that this call does not check the current state of the mount point:
+   * it is the responsibility of the caller to call {@link #checkState} after registering (so
+   * that no event is missed in between).
+   *
+   * @param timeout <code>null</code> means wait forever
+   * @return the future which completes when the state is reached (<code>true</code>) or the
+   * timeout expires (<code>false</code>). Canceling the future simply unregisters the waiter.
+   * @throws IllegalStateException if destroyed (so that a caller waiting again after a timeout
+   * fails instead of waiting forever)
+   */
+  ListenableFuture<Boolean> register(String fabricName,
+                                     String agentName,
+                                     def mountPoint,
+                                     String state,
+                                     Timespan timeout)
+  {
+    StateWaiter waiter = new StateWaiter(computeKey(fabricName, agentName, mountPoint), state)
+
+    synchronized(_waiters)
+    {
+      if(_destroyed)
+        throw new IllegalStateException("destroyed")
+
+      Set<StateWaiter> waiters = _waiters[waiter.key]
+      if(waiters == null)
+      {
+        waiters = new LinkedHashSet<StateWaiter>()
+        _waiters[waiter.key] = waiters
+      }
+      waiters << waiter
+
+      // scheduled while holding the lock: destroy cannot shut down the scheduler in between
+      if(timeout != null)
+      {
+        waiter.deadline = clock.currentTimeMillis() + timeout.durationInMilliseconds
+        scheduleTimeout(waiter, timeout.durationInMilliseconds)
+      }
+    }
+
+    return waiter
+  }
+
+  /**
+   * Completes (with <code>false</code>) all the waiters whose timeout has expired according to
+   * <code>clock</code> (the timeout thread does it automatically when the clock follows the real
+   * time)
+   */
+  void checkTimeouts()
+  {
+    Collection<StateWaiter> waiters = []
+
+    synchronized(_waiters)
+    {
+      _waiters.values().each { waiters.addAll(it) }
+    }
+
+    long now = clock.currentTimeMillis()
+
+    waiters.each { StateWaiter waiter ->
+      if(waiter.deadline != null && now >= waiter.deadline)
+        waiter.complete(false)
+    }
+  }
+
+  private void scheduleTimeout(StateWaiter waiter, long delay)
+  {
+    waiter.timeoutFuture =
+      _timeoutScheduler.schedule({ checkTimeout(waiter) } as Runnable,
+                                 delay,
+                                 TimeUnit.MILLISECONDS)
+
+    // the waiter may have been completed before the timeout was scheduled
+    if(waiter.isDone())
+      waiter.timeoutFuture.cancel(false)
+  }
+
+  private void checkTimeout(StateWaiter waiter)
+  {
+    if(waiter.isDone())
+      return
+
+    long remaining = waiter.deadline - clock.currentTimeMillis()
+    if(remaining <= 0)
+      waiter.complete(false)
+    else
+      scheduleTimeout(waiter, remaining)
+  }
+
+  /**
+   * Completes the waiters of the mount point whose state is reached
+   *
+   * @param mountPointInfo <code>null</code> if the mount point does not exist
+   */
+  void checkState(String fabricName,
+                  String agentName,
+                  def mountPoint,
+                  MountPointInfo mountPointInfo)
+  {
+    Collection<StateWaiter> waiters
+
+    synchronized(_waiters)
+    {
+      waiters = _waiters[computeKey(fabricName, agentName, mountPoint)]
+      if(!waiters)
+        return
+      // completing a waiter removes it from the set
+      waiters = new ArrayList<StateWaiter>(waiters)
+    }
+
+    waiters.each { StateWaiter waiter ->
+      if(isInState(mountPointInfo, waiter.state))
+        waiter.complete(true)
+    }
+  }
+
+  /**
+   * Called with the events of the mount points of a fabric
+   */
+  void onMountPointEvents(String fabricName, Collection<NodeEvent<MountPointInfo>> events)
+  {
+    if(!events)
+      return
+
+    synchronized(_waiters)
+    {
+      if(_waiters.isEmpty())
+        return
+    }
+
+    events.each { NodeEvent<MountPointInfo> event ->
+      MountPointInfo mpi = event.nodeInfo
+      if(mpi)
+        checkState(fabricName,
+                   mpi.agentName,
+                   mpi.mountPoint,
+                   event.eventType == NodeEventType.DELETED ? null : mpi)
+    }
+  }
+
+  /**
+   * @return the number of waiters currently registered
+   */
+  int getWaitersCount()
+  {
+    synchronized(_waiters)
+    {
+      return _waiters.values().sum(0) { it.size() }
+    }
+  }
+
+  /**
+   * Completes all the waiters (with <code>false</code>) and stops the timeout thread. Any
+   * subsequent call to {@link #register} fails.
+   */
+  @Override
+  void destroy()
+  {
+    Collection<StateWaiter> waiters = []
+
+    synchronized(_waiters)
+    {
+      _destroyed = true
+      _waiters.values().each { waiters.addAll(it) }
+    }
+
+    waiters.each { it.complete(false) }
+
+    _timeoutScheduler.shutdownNow()
+  }
+
+  /**
+   * @return <code>true</code> if the mount point is in the provided state (or in error)
+   */
+  static boolean isInState(MountPointInfo mountPointInfo, String state)
+  {
+    if(mountPointInfo?.error)
+      return true
+
+    return !mountPointInfo?.transitionState && mountPointInfo?.currentState == state
+  }
+
+  private static String computeKey(String fabricName, String agentName, def mountPoint)
+  {
+    "${fabricName}:${agentName}:${MountPoint.create(mountPoint.toString())}".toString()
+  }
+
+  private void unregister(StateWaiter waiter)
+  {
+    synchronized(_waiters)
+    {
+      Set<StateWaiter> waiters = _waiters[waiter.key]
+      if(waiters != null)
+      {
+        waiters.remove(waiter)
+        if(waiters.isEmpty())
+          _waiters.remove(waiter.key)
+      }
+    }
+  }
+
+  private class StateWaiter extends SettableFuture<Boolean>
+  {
+    final String key
+    final String state
+    volatile Long deadline = null
+    volatile ScheduledFuture<?> timeoutFuture
+
+    StateWaiter(String key, String state)
+    {
+      this.key = key
+      this.state = state
+    }
+
+    @Override
+    protected void done()
+    {
+      timeoutFuture?.cancel(false)
+      unregister(this)
+      super.done()
+    }
+  }
+}
@@ -19,7 +19,10 @@ package org.linkedin.glu.orchestration.engine.tracker
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.tracker.AgentInfo
 import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.NodeEvent
+import org.linkedin.glu.agent.tracker.TrackerEventsListener
 import org.linkedin.glu.orchestration.engine.fabric.Fabric
+import org.linkedin.glu.utils.concurrent.ListenableFuture
 
 /**
  * @author ypujante
@@ -34,7 +37,8 @@ interface TrackerService
 
   /**
    * @return a map [accuracy: _accuracyLevel_,
-   *                allInfos: [_agentName_: [info: _agentInfo_, mountPoints: _mountPointInfos_]]
+   *                allInfos: [_agentName_: [info: _agentInfo_, mountPoints: _mountPointInfos_]],
+   *                transactionId: _zkTxId_]
    */
   def getAllInfosWithAccuracy(Fabric fabric)
 
@@ -42,6 +46,8 @@ interface TrackerService
 
   MountPointInfo getMountPointInfo(Fabric fabric, String agentName, mountPoint)
 
+  MountPointInfo getMountPointInfo(String fabric, String agentName, mountPoint)
+
   /**
    * Clears the agent info for the given agent
    * @return <code>true</code> if the agent was cleared, <code>false</code> if it was already cleared
@@ -59,4 +65,58 @@ interface TrackerService
   boolean waitForState(String fabric, String agentName, def mountPoint, String state, def timeout)
 
   boolean waitForState(Fabric fabric, String agentName, def mountPoint, String state, def timeout)
+
+  /**
+   * Asynchronous version of {@link #waitForState}: the future completes with <code>true</code>
+   * when the mount point reaches the state (or is in error) and with <code>false</code> when the
+   * timeout expires (<code>null</code> means no timeout). Canceling the future stops waiting.
+   */
+  ListenableFuture<Boolean> waitForStateAsync(String fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+
+  /**
+   * Asynchronous version of {@link #waitForState} (see above)
+   */
+  ListenableFuture<Boolean> waitForStateAsync(Fabric fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+
+  /**
+   * Same as {@link #waitForStateAsync} except that the current state of the mount point is
+   * ignored: the future only completes on the next event which puts the mount point in the state
+   * (or in error). Meant to be called right before triggering an action on the agent.
+   */
+  ListenableFuture<Boolean> waitForStateChangeAsync(String fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+
+  /**
+   * Same as {@link #waitForStateChangeAsync} (see above)
+   */
+  ListenableFuture<Boolean> waitForStateChangeAsync(Fabric fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+
+  /**
+   * Registers an event listener on the agents of the given fabric. Note that the listener is
+   * dropped when the tracker for the fabric is recreated (fabric changed).
+   */
+  void registerAgentListener(Fabric fabric,
+                             TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>> listener)
+
+  /**
+   * Registers an event listener on the mount points of the given fabric. Note that the listener is
+   * dropped when the tracker for the fabric is recreated (fabric changed).
+   */
+  void registerMountPointListener(Fabric fabric,
+                                  TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>> listener)
 }
@@ -17,10 +17,11 @@
 
 package org.linkedin.glu.orchestration.engine.tracker
 
-import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.ClockUtils
 import org.linkedin.util.clock.SystemClock
 
+import java.util.concurrent.Future
 import java.util.concurrent.TimeoutException
 import org.apache.zookeeper.WatchedEvent
 import org.linkedin.glu.agent.tracker.AgentsTracker
@@ -35,10 +36,12 @@ import org.linkedin.zookeeper.tracker.ErrorListener
 import org.linkedin.zookeeper.tracker.NodeEventType
 import org.linkedin.glu.agent.tracker.AgentInfo
 import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.NodeEvent
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.util.annotations.Initializable
 import org.linkedin.glu.agent.tracker.PrefixAgentInfoPropertyAccessor
 import org.linkedin.glu.agent.tracker.AgentInfoPropertyAccessor
+import org.linkedin.glu.utils.concurrent.ListenableFuture
 
 /**
  * @author ypujante
@@ -92,6 +95,11 @@ class TrackerServiceImpl implements TrackerService, Destroyable
     return getAgentsTrackerByFabric(fabric).getMountPointInfo(agentName, mountPoint)
   }
 
+  MountPointInfo getMountPointInfo(String fabric, String agentName, mountPoint)
+  {
+    return getMountPointInfo(fabricService.findFabric(fabric), agentName, mountPoint)
+  }
+
   @Override
   boolean clearAgentInfo(Fabric fabric, String agentName)
   {
@@ -104,7 +112,30 @@ class TrackerServiceImpl implements TrackerService, Destroyable
     return clearAgentInfo(fabricService.findFabric(fabric), agentName)
   }
 
-  private final Object _mountPointEventsLock = new Object()
+  @Override
+  void registerAgentListener(Fabric fabric,
+                             TrackerEventsListener<AgentInfo, NodeEvent<AgentInfo>> listener)
+  {
+    getAgentsTrackerByFabric(fabric).registerAgentListener(listener)
+  }
+
+  @Override
+  void registerMountPointListener(Fabric fabric,
+                                  TrackerEventsListener<MountPointInfo, NodeEvent<MountPointInfo>> listener)
+  {
+    getAgentsTrackerByFabric(fabric).registerMountPointListener(listener)
+  }
+
+  private final MountPointStateWaiters _mountPointStateWaiters = new MountPointStateWaiters()
+
+  /**
+   * The clock is used to compute the timeouts of the waiters
+   */
+  void setClock(Clock clock)
+  {
+    this.clock = clock
+    _mountPointStateWaiters.clock = clock
+  }
 
   @Override
   boolean waitForState(String fabric, String agentName, def mountPoint, String state, def timeout)
@@ -115,35 +146,78 @@ class TrackerServiceImpl implements TrackerService, Destroyable
   @Override
   boolean waitForState(Fabric fabric, String agentName, def mountPoint, String state, def timeout)
   {
+    Future<Boolean> future = waitForStateAsync(fabric, agentName, mountPoint, state, timeout)
     try
     {
-      GroovyConcurrentUtils.awaitFor(clock, timeout, _mountPointEventsLock) {
-        // this code is synchronized (see awaitFor documentation!)
-
-        def mpi = getMountPointInfo(fabric, agentName, mountPoint)
-
-        if(mpi?.error)
-          return true
-
-        return !mpi?.transitionState && mpi?.currentState == state
-      }
+      return future.get()
     }
-    catch(TimeoutException ignore)
+    finally
     {
-      return false;
+      // unregisters the waiter when interrupted (no op otherwise)
+      future.cancel(false)
     }
+  }
 
-    return true
+  @Override
+  ListenableFuture<Boolean> waitForStateAsync(String fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+  {
+    waitForStateAsync(fabricService.findFabric(fabric), agentName, mountPoint, state, timeout)
   }
 
-  private def mountPointEventsListener = { events ->
-    if(events)
-    {
-      synchronized(_mountPointEventsLock)
-      {
-        _mountPointEventsLock.notifyAll()
-      }
-    }
+  @Override
+  ListenableFuture<Boolean> waitForStateAsync(Fabric fabric,
+                                              String agentName,
+                                              def mountPoint,
+                                              String state,
+                                              def timeout)
+  {
+    AgentsTracker tracker = getAgentsTrackerByFabric(fabric)
+
+    ListenableFuture<Boolean> res = _mountPointStateWaiters.register(fabric.name,
+                                                                     agentName,
+                                                                     mountPoint,
+                                                                     state,
+                                                                     ClockUtils.toTimespan(timeout))
+
+    // the state is checked after registering the waiter so that an event
+    // happening in between is not missed
+    _mountPointStateWaiters.checkState(fabric.name,
+                                       agentName,
+                                       mountPoint,
+                                       tracker.getMountPointInfo(agentName, mountPoint))
+
+    return res
+  }
+
+  @Override
+  ListenableFuture<Boolean> waitForStateChangeAsync(String fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+  {
+    waitForStateChangeAsync(fabricService.findFabric(fabric), agentName, mountPoint, state, timeout)
+  }
+
+  @Override
+  ListenableFuture<Boolean> waitForStateChangeAsync(Fabric fabric,
+                                                    String agentName,
+                                                    def mountPoint,
+                                                    String state,
+                                                    def timeout)
+  {
+    // makes sure that the tracker (and its listener) exists for the fabric
+    getAgentsTrackerByFabric(fabric)
+
+    _mountPointStateWaiters.register(fabric.name,
+                                     agentName,
+                                     mountPoint,
+                                     state,
+                                     ClockUtils.toTimespan(timeout))
   }
 
   private synchronized AgentsTracker getAgentsTrackerByFabric(Fabric fabric)
@@ -195,6 +269,10 @@ class TrackerServiceImpl implements TrackerService, Destroyable
 
         tracker.registerErrorListener(errorListener as ErrorListener)
 
+        // only the waiters of the mount points which changed are notified
+        def mountPointEventsListener = { events ->
+          _mountPointStateWaiters.onMountPointEvents(fabricName, events)
+        }
         tracker.registerMountPointListener(mountPointEventsListener as TrackerEventsListener)
 
         tracker.start()
@@ -229,5 +307,6 @@ class TrackerServiceImpl implements TrackerService, Destroyable
     _trackers.values().each { map ->
       map.tracker.destroy()
     }
+    _mountPointStateWaiters.destroy()
   }
 }
@@ -17,14 +17,15 @@
 package org.linkedin.glu.orchestration.engine.action.execution;
 
 import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
-import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor;
+import org.linkedin.glu.provisioner.plan.api.IAsyncLeafStepExecutor;
 import org.linkedin.glu.provisioner.plan.api.LeafStep;
+import org.linkedin.glu.utils.concurrent.ListenableFuture;
 import org.linkedin.util.annotations.Initializer;
 
 /**
  * @author yan@pongasoft.com
  */
-public class ActionDescriptorStepExecutor implements ILeafStepExecutor<ActionDescriptor>
+public class ActionDescriptorStepExecutor implements IAsyncLeafStepExecutor<ActionDescriptor>
 {
   private ActionExecutionFactory _actionExecutionFactory;
 
@@ -53,4 +54,25 @@ public class ActionDescriptorStepExecutor implements ILeafStepExecutor<ActionDes
     ActionExecution<Object> action = _actionExecutionFactory.createAction(leafStep.getAction());
     return action.call();
   }
+
+  /**
+   * @return <code>true</code> if the factory can execute the action asynchronously
+   */
+  @Override
+  public boolean isAsyncExecution(LeafStep<ActionDescriptor> leafStep)
+  {
+    if(!(_actionExecutionFactory instanceof AsyncActionExecutionFactory))
+      return false;
+
+    AsyncActionExecutionFactory factory = (AsyncActionExecutionFactory) _actionExecutionFactory;
+    return factory.isAsyncAction(leafStep.getAction());
+  }
+
+  @Override
+  public ListenableFuture<Object> executeLeafStepAsync(LeafStep<ActionDescriptor> leafStep)
+    throws Exception
+  {
+    AsyncActionExecutionFactory factory = (AsyncActionExecutionFactory) _actionExecutionFactory;
+    return factory.executeAsyncAction(leafStep.getAction());
+  }
 }
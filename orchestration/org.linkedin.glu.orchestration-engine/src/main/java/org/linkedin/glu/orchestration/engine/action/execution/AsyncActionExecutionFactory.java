@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.orchestration.engine.action.execution;
+
+import org.linkedin.glu.orchestration.engine.action.descriptor.ActionDescriptor;
+import org.linkedin.glu.utils.concurrent.ListenableFuture;
+
+/**
+ * An action execution factory which can execute some actions without blocking a thread while
+ * waiting for them to complete.
+ *
+ * @author yan@pongasoft.com
+ */
+public interface AsyncActionExecutionFactory extends ActionExecutionFactory
+{
+  /**
+   * @return <code>true</code> if the action can be executed with
+   * {@link #executeAsyncAction(ActionDescriptor)}
+   */
+  boolean isAsyncAction(ActionDescriptor actionDescriptor);
+
+  /**
+   * Starts the action and returns right away.
+   *
+   * @return the future which completes when the action completes (canceling it interrupts the
+   * action)
+   */
+  ListenableFuture<Object> executeAsyncAction(ActionDescriptor actionDescriptor) throws Exception;
+}
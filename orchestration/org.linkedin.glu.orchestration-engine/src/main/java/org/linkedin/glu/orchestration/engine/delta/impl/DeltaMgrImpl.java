@@ -34,6 +34,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author yan@pongasoft.com
@@ -48,6 +49,11 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
 
   private Set<String> _excludedInVersionMismatch = null;
 
+  private DeltaSessions _deltaSessions = null;
+
+  private ForkJoinPool _forkJoinPool = null;
+  private int _parallelThreshold = SingleDeltaBuilder.DEFAULT_PARALLEL_THRESHOLD;
+
   /**
    * Constructor
    */
@@ -64,6 +70,7 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
   public void setIncludedInVersionMismatch(Set<String> includedInVersionMismatch)
   {
     _includedInVersionMismatch = includedInVersionMismatch;
+    clearDeltaSessions();
   }
 
   public Set<String> getExcludedInVersionMismatch()
@@ -75,6 +82,85 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
   public void setExcludedInVersionMismatch(Set<String> excludedInVersionMismatch)
   {
     _excludedInVersionMismatch = excludedInVersionMismatch;
+    clearDeltaSessions();
+  }
+
+  public boolean isIncrementalDelta()
+  {
+    return _deltaSessions != null;
+  }
+
+  /**
+   * When <code>true</code>, the last delta computed for a given expected model is kept around so
+   * that the next delta (for the same expected model) only recomputes the entries which changed
+   * in the current model (see {@link DeltaSessions}).
+   */
+  @Initializer
+  public void setIncrementalDelta(boolean incrementalDelta)
+  {
+    _deltaSessions = incrementalDelta ? new DeltaSessions() : null;
+  }
+
+  public int getParallelism()
+  {
+    ForkJoinPool forkJoinPool = _forkJoinPool;
+    return forkJoinPool == null ? 0 : forkJoinPool.getParallelism();
+  }
+
+  /**
+   * Number of threads used to compute the entries of a delta in parallel (only the entries which
+   * are not part of a parent/child relationship are computed in parallel). <code>0</code> (the
+   * default) means the delta is computed sequentially.
+   */
+  @Initializer
+  public void setParallelism(int parallelism)
+  {
+    ForkJoinPool previous = _forkJoinPool;
+    _forkJoinPool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+    if(previous != null)
+      previous.shutdown();
+  }
+
+  public int getParallelThreshold()
+  {
+    return _parallelThreshold;
+  }
+
+  /**
+   * Minimum number of entries for the delta to be computed in parallel
+   */
+  @Initializer
+  public void setParallelThreshold(int parallelThreshold)
+  {
+    _parallelThreshold = parallelThreshold;
+  }
+
+  /**
+   * Shuts down the threads used to compute the deltas in parallel (if any)
+   */
+  public void destroy()
+  {
+    ForkJoinPool forkJoinPool = _forkJoinPool;
+    _forkJoinPool = null;
+    if(forkJoinPool != null)
+      forkJoinPool.shutdown();
+  }
+
+  /**
+   * Configures the builder (parallel processing)
+   */
+  protected <T extends SingleDeltaBuilder> T configureBuilder(T builder)
+  {
+    builder.setForkJoinPool(_forkJoinPool);
+    builder.setParallelThreshold(_parallelThreshold);
+    return builder;
+  }
+
+  protected void clearDeltaSessions()
+  {
+    DeltaSessions deltaSessions = _deltaSessions;
+    if(deltaSessions != null)
+      deltaSessions.clear();
   }
 
   @Override
@@ -82,9 +168,20 @@ public class DeltaMgrImpl implements DeltaMgr, InternalDeltaProcessor
                                        SystemModel filteredCurrentModel,
                                        DeltaSystemModelFilter filter)
   {
+    DeltaSessions deltaSessions = _deltaSessions;
+
+    // only the unfiltered deltas are incremental
+    if(deltaSessions != null &&
+       filter == null &&
+       filteredExpectedModel != null &&
+       filteredCurrentModel != null)
+    {
+      return deltaSessions.computeDelta(this, filteredExpectedModel, filteredCurrentModel);
+    }
+
     SingleDeltaBuilder builder =
       new SingleDeltaBuilder(this, filteredExpectedModel, filteredCurrentModel, filter);
-    return builder.build();
+    return configureBuilder(builder).build();
   }
 
   @Override
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.delta.impl;
+
+import org.linkedin.glu.provisioner.core.model.LogicNotSystemFilter;
+import org.linkedin.glu.provisioner.core.model.LogicSystemFilterChain;
+import org.linkedin.glu.provisioner.core.model.PropertySystemFilter;
+import org.linkedin.glu.provisioner.core.model.SystemEntry;
+import org.linkedin.glu.provisioner.core.model.SystemFilter;
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+import org.linkedin.glu.provisioner.core.model.TagsSystemFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the last delta computed for a given expected model (identified by its fabric,
+ * its id, which is the sha-1 of its content, and its filters). The next delta computed for the
+ * same expected model only recomputes the entries which changed in the current model.
+ *
+ * @author yan@pongasoft.com
+ */
+public class DeltaSessions
+{
+  public static final String MODULE = DeltaSessions.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  public static final int DEFAULT_MAX_SESSIONS = 25;
+
+  private final Map<String, DeltaSession> _sessions;
+
+  /**
+   * Constructor
+   */
+  public DeltaSessions()
+  {
+    this(DEFAULT_MAX_SESSIONS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxSessions maximum number of sessions kept (least recently used are discarded)
+   */
+  public DeltaSessions(final int maxSessions)
+  {
+    _sessions = new LinkedHashMap<String, DeltaSession>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DeltaSession> eldest)
+      {
+        return size() > maxSessions;
+      }
+    };
+  }
+
+  /**
+   * Computes the delta, reusing the previous one computed for the same expected model if there is
+   * one.
+   */
+  public InternalSystemModelDelta computeDelta(DeltaMgrImpl deltaMgr,
+                                               SystemModel filteredExpectedModel,
+                                               SystemModel filteredCurrentModel)
+  {
+    String sessionKey = computeSessionKey(filteredExpectedModel, filteredCurrentModel);
+
+    if(sessionKey == null)
+    {
+      return deltaMgr.configureBuilder(new SingleDeltaBuilder(deltaMgr,
+                                                              filteredExpectedModel,
+                                                              filteredCurrentModel,
+                                                              null)).build();
+    }
+
+    DeltaSession previous;
+    synchronized(_sessions)
+    {
+      previous = _sessions.get(sessionKey);
+    }
+
+    SystemModel unfilteredCurrentModel = filteredCurrentModel.unfilter();
+
+    InternalSystemModelDelta previousDelta = null;
+    Set<String> reusableKeys = null;
+
+    if(previous != null)
+    {
+      previousDelta = previous.getDelta();
+      reusableKeys = previous.computeReusableKeys(unfilteredCurrentModel);
+    }
+
+    IncrementalDeltaBuilder builder = new IncrementalDeltaBuilder(deltaMgr,
+                                                                  filteredExpectedModel,
+                                                                  filteredCurrentModel,
+                                                                  previousDelta,
+                                                                  reusableKeys);
+    deltaMgr.configureBuilder(builder);
+
+    InternalSystemModelDelta delta = builder.build();
+
+    if(log.isDebugEnabled())
+      log.debug(filteredExpectedModel.getFabric() + ": reused " +
+                builder.getReusedEntriesCount() + "/" +
+                builder.getIndependentKeys().size() + " entries");
+
+    synchronized(_sessions)
+    {
+      _sessions.put(sessionKey, new DeltaSession(unfilteredCurrentModel,
+                                                 delta,
+                                                 builder.getIndependentKeys()));
+    }
+
+    return delta;
+  }
+
+  /**
+   * Discards all the sessions
+   */
+  public void clear()
+  {
+    synchronized(_sessions)
+    {
+      _sessions.clear();
+    }
+  }
+
+  /**
+   * @return the key of the session or <code>null</code> if the expected model cannot be
+   * identified (no id or filters which cannot be represented as a dsl, like a closure)
+   */
+  protected String computeSessionKey(SystemModel filteredExpectedModel,
+                                     SystemModel filteredCurrentModel)
+  {
+    if(filteredExpectedModel.getId() == null)
+      return null;
+
+    if(!hasDSL(filteredExpectedModel.getFilters()) || !hasDSL(filteredCurrentModel.getFilters()))
+      return null;
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(filteredExpectedModel.getFabric());
+    sb.append('|').append(filteredExpectedModel.getId());
+    sb.append('|').append(toDSL(filteredExpectedModel.getFilters()));
+    sb.append('|').append(toDSL(filteredCurrentModel.getFilters()));
+    return sb.toString();
+  }
+
+  private static String toDSL(SystemFilter filter)
+  {
+    return filter == null ? "" : filter.toDSL();
+  }
+
+  /**
+   * @return <code>true</code> if the filter has a dsl representation which identifies it
+   */
+  private static boolean hasDSL(SystemFilter filter)
+  {
+    if(filter == null)
+      return true;
+
+    // some filters do not implement toDSL (it throws an exception) and
+    // a closure coerced into a filter returns whatever the closure returns, so only the filters
+    // known to be properly represented are accepted
+    if(filter instanceof LogicSystemFilterChain)
+    {
+      for(SystemFilter f : ((LogicSystemFilterChain) filter).getFilters())
+      {
+        if(!hasDSL(f))
+          return false;
+      }
+      return true;
+    }
+
+    if(filter instanceof LogicNotSystemFilter)
+      return hasDSL(((LogicNotSystemFilter) filter).getFilter());
+
+    return filter instanceof PropertySystemFilter || filter instanceof TagsSystemFilter;
+  }
+
+  private static class DeltaSession
+  {
+    private final SystemModel _unfilteredCurrentModel;
+    private final InternalSystemModelDelta _delta;
+    private final Set<String> _independentKeys;
+
+    private DeltaSession(SystemModel unfilteredCurrentModel,
+                         InternalSystemModelDelta delta,
+                         Set<String> independentKeys)
+    {
+      _unfilteredCurrentModel = unfilteredCurrentModel;
+      _delta = delta;
+      _independentKeys = independentKeys;
+    }
+
+    public InternalSystemModelDelta getDelta()
+    {
+      return _delta;
+    }
+
+    /**
+     * @return the independent keys for which the current entry did not change
+     */
+    public Set<String> computeReusableKeys(SystemModel unfilteredCurrentModel)
+    {
+      Set<String> res = new HashSet<String>();
+
+      for(String key : _independentKeys)
+      {
+        SystemEntry previousEntry = _unfilteredCurrentModel.findEntry(key);
+        SystemEntry entry = unfilteredCurrentModel.findEntry(key);
+
+        // when the current model is maintained incrementally, unchanged
+        // entries are the same instance so equals is only called for changed entries
+        if(previousEntry == entry || (previousEntry != null && previousEntry.equals(entry)))
+          res.add(key);
+      }
+
+      return res;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.orchestration.engine.delta.impl;
+
+import org.linkedin.glu.provisioner.core.model.SystemModel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A delta builder which reuses the entry deltas computed by a previous delta for the entries
+ * which did not change. Only independent entries (not part of a parent/child relationship) are
+ * reused: the entries which are part of a parent/child relationship are always recomputed (their
+ * delta depends on the other entries and gets adjusted during the processing).
+ *
+ * @author yan@pongasoft.com
+ */
+public class IncrementalDeltaBuilder extends SingleDeltaBuilder
+{
+  private final InternalSystemModelDelta _previousDelta;
+  private final Set<String> _reusableKeys;
+
+  private final Set<String> _independentKeys = new HashSet<String>();
+  private final AtomicInteger _reusedEntriesCount = new AtomicInteger(0);
+
+  /**
+   * Constructor
+   *
+   * @param previousDelta the previous delta (<code>null</code> if none)
+   * @param reusableKeys the keys (of independent entries) for which the entry delta can be
+   *                     reused from the previous delta
+   */
+  public IncrementalDeltaBuilder(InternalDeltaProcessor deltaProcessor,
+                                 SystemModel filteredExpectedModel,
+                                 SystemModel filteredCurrentModel,
+                                 InternalSystemModelDelta previousDelta,
+                                 Set<String> reusableKeys)
+  {
+    super(deltaProcessor, filteredExpectedModel, filteredCurrentModel, null);
+    _previousDelta = previousDelta;
+    _reusableKeys = reusableKeys == null ? Collections.<String>emptySet() : reusableKeys;
+  }
+
+  /**
+   * @return the keys which were processed as independent entries (which means they are candidates
+   * for reuse by the next delta)
+   */
+  public Set<String> getIndependentKeys()
+  {
+    return _independentKeys;
+  }
+
+  public int getReusedEntriesCount()
+  {
+    return _reusedEntriesCount.get();
+  }
+
+  @Override
+  protected void processIndependentEntries(Collection<String> entryKeys)
+  {
+    _independentKeys.addAll(entryKeys);
+    super.processIndependentEntries(entryKeys);
+  }
+
+  @Override
+  protected InternalSystemEntryDelta computeIndependentEntryDelta(String entryKey)
+  {
+    if(_previousDelta != null && _reusableKeys.contains(entryKey))
+    {
+      InternalSystemEntryDelta previous = _previousDelta.findAnyEntryDelta(entryKey);
+      if(previous != null && previous.isNotFilteredOut())
+      {
+        _reusedEntriesCount.incrementAndGet();
+        return previous;
+      }
+    }
+
+    return super.computeIndependentEntryDelta(entryKey);
+  }
+}
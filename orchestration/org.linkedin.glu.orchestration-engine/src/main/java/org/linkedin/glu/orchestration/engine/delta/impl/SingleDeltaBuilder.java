@@ -27,6 +27,8 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @author yan@pongasoft.com
@@ -36,6 +38,11 @@ public class SingleDeltaBuilder
   public static final String MODULE = SingleDeltaBuilder.class.getName();
   public static final Logger log = LoggerFactory.getLogger(MODULE);
 
+  /**
+   * Below this number of independent entries, the entries are always processed sequentially
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 1000;
+
   private final InternalDeltaProcessor _deltaProcessor;
   private final InternalSystemModelDelta _systemModelDelta;
   private boolean _systemModelDeltaBuilt = false;
@@ -52,6 +59,9 @@ public class SingleDeltaBuilder
   private Set<String> _parentKeys;
   private HashSet<String> _nonEmptyAgents;
 
+  private ForkJoinPool _forkJoinPool = null;
+  private int _parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
   /**
    * Constructor
    */
@@ -167,6 +177,30 @@ public class SingleDeltaBuilder
     _parentKeys = parentKeys;
   }
 
+  public ForkJoinPool getForkJoinPool()
+  {
+    return _forkJoinPool;
+  }
+
+  /**
+   * @param forkJoinPool when not <code>null</code>, the independent entries (not part of a
+   *                     parent/child relationship) are processed in parallel using this pool
+   */
+  public void setForkJoinPool(ForkJoinPool forkJoinPool)
+  {
+    _forkJoinPool = forkJoinPool;
+  }
+
+  public int getParallelThreshold()
+  {
+    return _parallelThreshold;
+  }
+
+  public void setParallelThreshold(int parallelThreshold)
+  {
+    _parallelThreshold = parallelThreshold;
+  }
+
   /**
    * Builds and return the delta
    */
@@ -187,10 +221,7 @@ public class SingleDeltaBuilder
       processParentChild(parentKey, filteredKeys);
     }
 
-    for(String entryKey : filteredKeys)
-    {
-      processEntry(entryKey);
-    }
+    processIndependentEntries(filteredKeys);
 
     _systemModelDelta.removeNonEmptyAgents(_nonEmptyAgents);
 
@@ -213,6 +244,19 @@ public class SingleDeltaBuilder
   }
 
   protected InternalSystemEntryDelta createSystemEntryDelta(String entryKey)
+  {
+    InternalSystemEntryDelta delta = newSystemEntryDelta(entryKey);
+
+    if(delta != null)
+      trackNonEmptyAgent(delta);
+
+    return delta;
+  }
+
+  /**
+   * Creates the (unprocessed) delta for the entry without modifying the state of this builder
+   */
+  private InternalSystemEntryDelta newSystemEntryDelta(String entryKey)
   {
     SystemEntry expectedEntry = getUnfilteredExpectedModel().findEntry(entryKey);
     SystemEntry currentEntry = getUnfilteredCurrentModel().findEntry(entryKey);
@@ -225,15 +269,79 @@ public class SingleDeltaBuilder
     if(currentEntry == null && expectedEntry == null)
       return null;
 
-    InternalSystemEntryDelta delta =
-      new SystemEntryDeltaImpl(expectedEntry,
-                               currentEntry,
-                               !getFilteredKeys().contains(entryKey));
+    return new SystemEntryDeltaImpl(expectedEntry,
+                                    currentEntry,
+                                    !getFilteredKeys().contains(entryKey));
+  }
 
+  /**
+   * Keeps track of the agents which are not empty (see
+   * {@link InternalSystemModelDelta#removeNonEmptyAgents(Set)})
+   */
+  protected void trackNonEmptyAgent(InternalSystemEntryDelta delta)
+  {
     if(!delta.isEmptyAgent())
       _nonEmptyAgents.add(delta.getAgent());
+  }
 
-    return delta;
+  /**
+   * Processes all the entries which are not part of a parent/child relationship. Since the
+   * processing of such an entry does not depend on any other entry, they can be computed in
+   * parallel (see {@link #setForkJoinPool(ForkJoinPool)}).
+   *
+   * In parallel mode, each task only fills its own slice of an array and
+   * the deltas are then added to the system model delta from the calling thread, in the same
+   * order as the sequential processing, so the result is the same.
+   */
+  protected void processIndependentEntries(Collection<String> entryKeys)
+  {
+    ForkJoinPool forkJoinPool = _forkJoinPool;
+
+    if(forkJoinPool == null || entryKeys.size() < _parallelThreshold)
+    {
+      for(String entryKey : entryKeys)
+      {
+        addIndependentEntryDelta(computeIndependentEntryDelta(entryKey));
+      }
+    }
+    else
+    {
+      String[] keys = entryKeys.toArray(new String[entryKeys.size()]);
+      InternalSystemEntryDelta[] deltas = new InternalSystemEntryDelta[keys.length];
+
+      int chunkSize = Math.max(1, keys.length / (forkJoinPool.getParallelism() * 4));
+
+      forkJoinPool.invoke(new IndependentEntriesTask(keys, deltas, 0, keys.length, chunkSize));
+
+      for(InternalSystemEntryDelta delta : deltas)
+      {
+        addIndependentEntryDelta(delta);
+      }
+    }
+  }
+
+  /**
+   * Computes (and processes) the delta for an entry which is not part of a parent/child
+   * relationship. This method may be called concurrently (parallel mode) and as a result must
+   * not modify the state of this builder.
+   *
+   * @return the delta (<code>null</code> if no such entry)
+   */
+  protected InternalSystemEntryDelta computeIndependentEntryDelta(String entryKey)
+  {
+    InternalSystemEntryDelta delta = newSystemEntryDelta(entryKey);
+    if(delta == null)
+      return null;
+    return _deltaProcessor.processSystemEntryDelta(delta);
+  }
+
+  private void addIndependentEntryDelta(InternalSystemEntryDelta delta)
+  {
+    if(delta == null)
+      return;
+
+    trackNonEmptyAgent(delta);
+    _systemModelDelta.setEntryDelta(delta);
   }
 
 
@@ -286,6 +394,51 @@ public class SingleDeltaBuilder
     return dependencies;
   }
 
+  /**
+   * Computes the deltas of a slice of independent entries (splits until the slice is small enough)
+   */
+  private class IndependentEntriesTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] _keys;
+    private final InternalSystemEntryDelta[] _deltas;
+    private final int _from;
+    private final int _to;
+    private final int _chunkSize;
+
+    private IndependentEntriesTask(String[] keys,
+                                   InternalSystemEntryDelta[] deltas,
+                                   int from,
+                                   int to,
+                                   int chunkSize)
+    {
+      _keys = keys;
+      _deltas = deltas;
+      _from = from;
+      _to = to;
+      _chunkSize = chunkSize;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if(_to - _from <= _chunkSize)
+      {
+        for(int i = _from; i < _to; i++)
+        {
+          _deltas[i] = computeIndependentEntryDelta(_keys[i]);
+        }
+      }
+      else
+      {
+        int middle = (_from + _to) >>> 1;
+        invokeAll(new IndependentEntriesTask(_keys, _deltas, _from, middle, _chunkSize),
+                  new IndependentEntriesTask(_keys, _deltas, middle, _to, _chunkSize));
+      }
+    }
+  }
+
   public static int computeDepth(StateMachine stateMachine, String state)
   {
     if(state == null)
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package test.orchestration.engine.action
+
+import org.apache.zookeeper.data.Stat
+import org.linkedin.glu.agent.api.Agent
+import org.linkedin.glu.agent.api.AgentException
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.api.ScriptFailedException
+import org.linkedin.glu.agent.rest.client.AgentFactory
+import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.orchestration.engine.action.descriptor.AgentURIProvider
+import org.linkedin.glu.orchestration.engine.action.descriptor.ScriptTransitionActionDescriptor
+import org.linkedin.glu.orchestration.engine.agents.MountPointStateProvider
+import org.linkedin.glu.orchestration.engine.core.action.execution.ActionExecutionFactoryImpl
+import org.linkedin.glu.orchestration.engine.tracker.MountPointStateWaiters
+import org.linkedin.glu.utils.concurrent.ListenableFuture
+import org.linkedin.glu.utils.concurrent.SettableFuture
+import org.linkedin.groovy.util.json.JsonUtils
+import org.linkedin.zookeeper.tracker.TrackedNode
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests the asynchronous execution of the script transitions (completed by the tracker events)
+ *
+ * @author yan@pongasoft.com */
+public class TestAsyncActionExecution extends GroovyTestCase
+{
+  def agentCalls = []
+  Throwable executeActionException = null
+
+  // the waits registered with the mount point state provider (completed by the test)
+  def waits = []
+  Map<String, MountPointInfo> mountPointInfos = [:]
+
+  // the tasks handed off to the executor (run by the test)
+  List<Runnable> tasks = []
+
+  Agent agent = [
+    clearError: { args -> agentCalls << 'clearError' },
+    executeAction: { args ->
+      agentCalls << "executeAction:${args.action}".toString()
+      if(executeActionException)
+        throw executeActionException
+      return 'id'
+    },
+    interruptAction: { args ->
+      agentCalls << "interruptAction:${args.action}".toString()
+      return true
+    }
+  ] as Agent
+
+  MountPointStateProvider mountPointStateProvider = [
+    getMountPointInfo: { String fabric, String agentName, mountPoint ->
+      mountPointInfos["${agentName}:${mountPoint}".toString()]
+    },
+    waitForStateAsync: { String fabric, String agentName, mountPoint, String state, timeout ->
+      registerWait('waitForStateAsync', state)
+    },
+    waitForStateChangeAsync: { String fabric, String agentName, mountPoint, String state, timeout ->
+      registerWait('waitForStateChangeAsync', state)
+    }
+  ] as MountPointStateProvider
+
+  ActionExecutionFactoryImpl factory =
+    new ActionExecutionFactoryImpl(agentFactory: [
+                                     withRemoteAgent: { URI uri, Closure closure -> closure(agent) }
+                                   ] as AgentFactory,
+                                   agentURIProvider: [
+                                     getAgentURI: { String fabric, String agentName ->
+                                       new URI("http://${agentName}:12906".toString())
+                                     }
+                                   ] as AgentURIProvider,
+                                   mountPointStateProvider: mountPointStateProvider,
+                                   executor: { Runnable task -> tasks << task } as Executor,
+                                   asyncTransitions: true)
+
+  ScriptTransitionActionDescriptor ad =
+    new ScriptTransitionActionDescriptor(fabric: 'f1',
+                                         agent: 'a1',
+                                         mountPoint: '/m1',
+                                         action: 'start',
+                                         toState: 'running')
+
+  /**
+   * The step completes when the state is reached and fails when the mount point is in error.
+   * The completion never happens in the thread completing the wait (tracker event thread).
+   */
+  public void testStateReachedAndError()
+  {
+    assertTrue(factory.isAsyncAction(ad))
+
+    // state reached
+    Future future = factory.executeAsyncAction(ad)
+    assertEquals(['clearError', 'executeAction:start'], agentCalls)
+    assertEquals(['waitForStateChangeAsync:running'], waits.collect { it.name })
+    assertFalse(future.isDone())
+
+    mountPointInfos['a1:/m1'] = createInfo('running')
+    waits[0].future.complete(true)
+    assertFalse(future.isDone())
+    runTasks()
+    assertNull(future.get(0, TimeUnit.MILLISECONDS))
+
+    // error
+    agentCalls.clear()
+    waits.clear()
+    future = factory.executeAsyncAction(ad)
+    mountPointInfos['a1:/m1'] = createInfo('stopped', 'failed')
+    waits[0].future.complete(true)
+    assertFalse(future.isDone())
+    runTasks()
+    ExecutionException e = shouldFailWithExecutionException(future)
+    assertTrue(e.cause instanceof ScriptFailedException)
+  }
+
+  /**
+   * On timeout, the state is waited for again with <code>waitForStateAsync</code> (which checks
+   * the current state)
+   */
+  public void testTimeout()
+  {
+    Future future = factory.executeAsyncAction(ad)
+
+    // timeout
+    waits[0].future.complete(false)
+    runTasks()
+    assertFalse(future.isDone())
+    assertEquals(['waitForStateChangeAsync:running', 'waitForStateAsync:running'],
+                 waits.collect { it.name })
+
+    // timeout again
+    waits[1].future.complete(false)
+    runTasks()
+    assertFalse(future.isDone())
+    assertEquals(3, waits.size())
+    assertEquals('waitForStateAsync:running', waits[2].name)
+
+    // state reached
+    mountPointInfos['a1:/m1'] = createInfo('running')
+    waits[2].future.complete(true)
+    runTasks()
+    assertNull(future.get(0, TimeUnit.MILLISECONDS))
+  }
+
+  /**
+   * Canceling the step cancels the wait and interrupts the action (with the executor since it is
+   * a blocking call to the agent)
+   */
+  public void testCancel()
+  {
+    Future future = factory.executeAsyncAction(ad)
+
+    assertTrue(future.cancel(true))
+    assertTrue(waits[0].future.isCancelled())
+    assertEquals(['clearError', 'executeAction:start'], agentCalls)
+
+    runTasks()
+    assertEquals(['clearError', 'executeAction:start', 'interruptAction:start'], agentCalls)
+
+    // completing the (canceled) wait is a no op
+    waits[0].future.complete(true)
+    runTasks()
+    assertTrue(future.isCancelled())
+  }
+
+  /**
+   * When the action cannot be executed, the wait registered before is canceled
+   */
+  public void testExecuteActionFailure()
+  {
+    executeActionException = new AgentException('cannot execute')
+
+    assertEquals('cannot execute', shouldFail(AgentException) {
+      factory.executeAsyncAction(ad)
+    })
+
+    assertEquals(1, waits.size())
+    assertTrue(waits[0].future.isCancelled())
+    assertTrue(tasks.isEmpty())
+  }
+
+  /**
+   * Destroying the waiters (tracker) fails the step instead of waiting forever
+   */
+  public void testDestroy()
+  {
+    MountPointStateWaiters waiters = new MountPointStateWaiters()
+
+    factory.mountPointStateProvider = [
+      getMountPointInfo: { String fabric, String agentName, mountPoint -> null },
+      waitForStateAsync: { String fabric, String agentName, mountPoint, String state, timeout ->
+        waiters.register(fabric, agentName, mountPoint, state, timeout)
+      },
+      waitForStateChangeAsync: { String fabric, String agentName, mountPoint, String state, timeout ->
+        waiters.register(fabric, agentName, mountPoint, state, timeout)
+      }
+    ] as MountPointStateProvider
+
+    Future future = factory.executeAsyncAction(ad)
+    assertEquals(1, waiters.waitersCount)
+
+    waiters.destroy()
+    runTasks()
+
+    ExecutionException e = shouldFailWithExecutionException(future)
+    assertTrue(e.cause instanceof IllegalStateException)
+    assertEquals(0, waiters.waitersCount)
+  }
+
+  private ListenableFuture<Boolean> registerWait(String method, String state)
+  {
+    SettableFuture<Boolean> future = new SettableFuture<Boolean>()
+    waits << [name: "${method}:${state}".toString(), future: future]
+    return future
+  }
+
+  private void runTasks()
+  {
+    while(!tasks.isEmpty())
+    {
+      tasks.remove(0).run()
+    }
+  }
+
+  private ExecutionException shouldFailWithExecutionException(Future future)
+  {
+    try
+    {
+      future.get(0, TimeUnit.MILLISECONDS)
+      fail("should fail")
+    }
+    catch(ExecutionException e)
+    {
+      return e
+    }
+  }
+
+  private MountPointInfo createInfo(String currentState, String error = null)
+  {
+    def stateMachine = [currentState: currentState]
+    if(error)
+      stateMachine.error = error
+
+    def data = [scriptState: [stateMachine: stateMachine]]
+
+    MountPoint mp = MountPoint.create('/m1')
+    new MountPointInfo(agentName: 'a1',
+                       mountPoint: mp,
+                       trackedNode: new TrackedNode(mp.path,
+                                                    JsonUtils.compactPrint(data),
+                                                    new Stat(),
+                                                    0))
+  }
+}
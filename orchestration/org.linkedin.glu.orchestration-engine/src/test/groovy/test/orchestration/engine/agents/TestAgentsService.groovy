@@ -20,15 +20,20 @@ import org.apache.zookeeper.data.Stat
 import org.linkedin.glu.agent.api.MountPoint
 import org.linkedin.glu.agent.tracker.AgentsTracker
 import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.NodeEvent
+import org.linkedin.glu.agent.tracker.TrackerEventsListener
 import org.linkedin.glu.groovy.utils.plugins.PluginServiceImpl
 import org.linkedin.glu.orchestration.engine.agents.AgentsServiceImpl
 import org.linkedin.glu.orchestration.engine.fabric.Fabric
+import org.linkedin.glu.provisioner.core.model.SystemEntry
 import org.linkedin.glu.agent.tracker.AgentInfo
 import org.linkedin.glu.agent.api.Agent
 import org.linkedin.glu.orchestration.engine.tracker.TrackerService
 import org.linkedin.glu.agent.rest.client.AgentFactory
 import org.linkedin.util.clock.Clock
 import org.linkedin.util.clock.SettableClock
+import org.linkedin.groovy.util.json.JsonUtils
+import org.linkedin.zookeeper.tracker.NodeEventType
 import org.linkedin.zookeeper.tracker.TrackedNode
 import java.security.AccessControlException
 
@@ -171,6 +176,136 @@ public class TestAgentsService extends GroovyTestCase
     assertEquals("com.fasterxml.jackson.core.JsonParseException", entry.metadata.scriptState.stateMachine.error[0].name)
   }
 
+  /**
+   * The current system model is maintained from the tracker events (only changed entries are
+   * recreated)
+   */
+  public void testIncrementalCurrentSystemModel()
+  {
+    def allInfos = [:]
+    def listeners = []
+
+    def trackerService = [
+      getAllInfosWithAccuracy: { Fabric f -> allInfos[f] },
+      registerAgentListener: { Fabric f, TrackerEventsListener listener -> listeners << listener },
+      registerMountPointListener: { Fabric f, TrackerEventsListener listener -> listeners << listener }
+    ] as TrackerService
+
+    agentsService = new CountingAgentsService(pluginService: pluginService)
+    agentsService.trackerService = trackerService
+    agentsService.incrementalCurrentSystemModel = true
+
+    def fabric = new Fabric(name: 'f1')
+    def mp1 = MountPoint.create('/m1')
+    def mp2 = MountPoint.create('/m2')
+
+    def createMountPointInfo = { String agentName, MountPoint mp, String state ->
+      def data = [scriptState: [stateMachine: [currentState: state]]]
+      new MountPointInfo(agentName: agentName,
+                         mountPoint: mp,
+                         trackedNode: new TrackedNode(mp.path, JsonUtils.compactPrint(data), createStat(), 0))
+    }
+
+    def a1 = new AgentInfo(agentName: 'a1',
+                           trackedNode: new TrackedNode("/a1", "{}", createStat(), 0))
+    def a2 = new AgentInfo(agentName: 'a2',
+                           trackedNode: new TrackedNode("/a2", "{}", createStat(), 0))
+
+    def a1MountPoints = [(mp1): createMountPointInfo('a1', mp1, 'running'),
+                         (mp2): createMountPointInfo('a1', mp2, 'stopped')]
+
+    allInfos[fabric] = [
+      accuracy: AgentsTracker.AccuracyLevel.ACCURATE,
+      allInfos: [
+        a1: [info: a1, mountPoints: a1MountPoints],
+        a2: [info: a2, mountPoints: [:]]
+      ],
+      transactionId: 10L
+    ]
+
+    def model = agentsService.getCurrentSystemModel(fabric)
+    assertEquals(2, listeners.size())
+    assertEquals(10L, model.metadata.transactionId)
+    assertEquals(AgentsTracker.AccuracyLevel.ACCURATE, model.metadata.accuracy)
+    assertEquals(['a1:/m1', 'a1:/m2', 'a2:null'], model.findEntries().collect { it.key })
+    assertEquals('running', model.findEntry('a1:/m1').entryState)
+    assertEquals('stopped', model.findEntry('a1:/m2').entryState)
+    assertTrue(model.findEntry('a2', 'null').isEmptyAgent())
+    assertEquals(2, agentsService.systemEntriesCount)
+
+    // no event => same (read only) snapshot
+    assertTrue(model.is(agentsService.getCurrentSystemModel(fabric)))
+    assertEquals(2, agentsService.systemEntriesCount)
+
+    // the snapshot cannot be modified (shared by all the callers)...
+    assertTrue(model.isReadOnly())
+    shouldFail(UnsupportedOperationException) { model.metadata.foo = 'bar' }
+    shouldFail(UnsupportedOperationException) { model.removeEntry('a1:/m1') }
+    shouldFail(UnsupportedOperationException) { model.findEntry('a1:/m1').metadata.foo = 'bar' }
+    shouldFail(UnsupportedOperationException) {
+      model.findEntry('a1:/m1').metadata.scriptState.stateMachine.currentState = 'stopped'
+    }
+    shouldFail(UnsupportedOperationException) {
+      model.findEntry('a1:/m1').toExternalRepresentation().metadata.scriptState.foo = 'bar'
+    }
+    shouldFail(UnsupportedOperationException) { model.findEntry('a1:/m1').entryState = 'stopped' }
+    shouldFail(UnsupportedOperationException) { model.filterBy('agent', 'a1').metadata.foo = 'bar' }
+
+    // ... but a copy of it can
+    def model2 = model.clone()
+    assertFalse(model2.isReadOnly())
+    model2.metadata.foo = 'bar'
+    model2.findEntry('a1:/m1').metadata.foo = 'bar'
+    model2.findEntry('a1:/m1').metadata.scriptState.stateMachine.currentState = 'stopped'
+    model2.findEntry('a1:/m1').entryState = 'stopped'
+    model2.removeEntry('a2:null')
+    assertNull(model.metadata.foo)
+    assertNull(model.findEntry('a1:/m1').metadata.foo)
+    assertEquals('running', model.findEntry('a1:/m1').metadata.scriptState.stateMachine.currentState)
+    assertEquals('running', model.findEntry('a1:/m1').entryState)
+    assertEquals(['a1:/m1', 'a1:/m2', 'a2:null'], model.findEntries().collect { it.key })
+
+    // mp2 changes => only mp2 is recreated
+    def previousModel = model
+    a1MountPoints = [*:a1MountPoints]
+    a1MountPoints[mp2] = createMountPointInfo('a1', mp2, 'running')
+    allInfos[fabric].allInfos.a1.mountPoints = a1MountPoints
+    allInfos[fabric].transactionId = 11L
+    listeners[1].onEvents([new NodeEvent(nodeInfo: a1MountPoints[mp2], eventType: NodeEventType.UPDATED)])
+
+    model = agentsService.getCurrentSystemModel(fabric)
+    assertFalse(model.is(previousModel))
+    assertEquals(11L, model.metadata.transactionId)
+    assertEquals('running', model.findEntry('a1:/m1').entryState)
+    assertEquals('running', model.findEntry('a1:/m2').entryState)
+    assertTrue(model.findEntry('a2', 'null').isEmptyAgent())
+    assertEquals(3, agentsService.systemEntriesCount)
+    assertTrue(previousModel.findEntry('a1:/m1').is(model.findEntry('a1:/m1')))
+    assertFalse(previousModel.findEntry('a1:/m2').is(model.findEntry('a1:/m2')))
+    assertTrue(previousModel.findEntry('a2:null').is(model.findEntry('a2:null')))
+
+    // a2 disappears
+    allInfos[fabric].allInfos.remove('a2')
+    listeners[0].onEvents([new NodeEvent(nodeInfo: a2, eventType: NodeEventType.DELETED)])
+    model = agentsService.getCurrentSystemModel(fabric)
+    assertEquals(['a1:/m1', 'a1:/m2'], model.findEntries().collect { it.key })
+  }
+
+  /**
+   * Counts the system entries created from a mount point
+   */
+  private static class CountingAgentsService extends AgentsServiceImpl
+  {
+    int systemEntriesCount = 0
+
+    @Override
+    protected SystemEntry createSystemEntry(agentName, MountPointInfo mp)
+    {
+      systemEntriesCount++
+      return super.createSystemEntry(agentName, mp)
+    }
+  }
+
   protected Stat createStat()
   {
     new Stat(0,
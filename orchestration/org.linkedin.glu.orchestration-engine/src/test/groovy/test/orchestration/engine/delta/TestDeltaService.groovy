@@ -2054,6 +2054,136 @@ class TestDeltaService extends GroovyTestCase
                            deltaF(current, expected, "mountPoint='/p1'"))
   }
 
+  /**
+   * The incremental delta reuses the entry deltas of the entries which did not change
+   */
+  void testIncrementalDelta()
+  {
+    DeltaMgrImpl incrementalDeltaMgr = new DeltaMgrImpl(incrementalDelta: true)
+
+    SystemModel expected =
+      m([agent: 'a1', mountPoint: '/m1', script: 's1'],
+        [agent: 'a1', mountPoint: '/m2', script: 's1'],
+        [agent: 'a1', mountPoint: '/p1', script: 's1'],
+        [agent: 'a1', mountPoint: '/c1', script: 's1', parent: '/p1'])
+    expected.id = 'e1'
+
+    SystemEntry m1 = SystemEntry.fromExternalRepresentation([agent: 'a1', mountPoint: '/m1', script: 's1', entryState: 'running'])
+    SystemEntry m2 = SystemEntry.fromExternalRepresentation([agent: 'a1', mountPoint: '/m2', script: 's1', entryState: 'stopped'])
+    SystemEntry p1 = SystemEntry.fromExternalRepresentation([agent: 'a1', mountPoint: '/p1', script: 's1', entryState: 'running'])
+    SystemEntry c1 = SystemEntry.fromExternalRepresentation([agent: 'a1', mountPoint: '/c1', script: 's1', entryState: 'running', parent: '/p1'])
+
+    def current = new SystemModel(fabric: 'f1')
+    [m1, m2, p1, c1].each { current.addEntry(it) }
+
+    def delta1 = incrementalDeltaMgr.computeDelta(expected, current, null)
+    assertEquals(deltaMgr.computeDelta(expected, current, null).flatten(new TreeMap()),
+                 delta1.flatten(new TreeMap()))
+
+    // m2 changes (same instance for the other ones)
+    m2 = SystemEntry.fromExternalRepresentation([agent: 'a1', mountPoint: '/m2', script: 's1', entryState: 'running'])
+    current = new SystemModel(fabric: 'f1')
+    [m1, m2, p1, c1].each { current.addEntry(it) }
+
+    def delta2 = incrementalDeltaMgr.computeDelta(expected, current, null)
+    assertEquals(deltaMgr.computeDelta(expected, current, null).flatten(new TreeMap()),
+                 delta2.flatten(new TreeMap()))
+    assertEquals(DeltaState.OK, delta2.findEntryDelta('a1:/m2').deltaState)
+
+    // m1 was reused
+    assertTrue(delta1.findEntryDelta('a1:/m1').is(delta2.findEntryDelta('a1:/m1')))
+    // m2 was recomputed
+    assertFalse(delta1.findEntryDelta('a1:/m2').is(delta2.findEntryDelta('a1:/m2')))
+    // parent/child are always recomputed
+    assertFalse(delta1.findEntryDelta('a1:/c1').is(delta2.findEntryDelta('a1:/c1')))
+    assertFalse(delta1.findEntryDelta('a1:/p1').is(delta2.findEntryDelta('a1:/p1')))
+
+    // different filter => no reuse
+    def delta3 = incrementalDeltaMgr.computeDelta(expected.filterBy("mountPoint='/m1'"), current, null)
+    assertNotNull(delta3.findEntryDelta('a1:/m1'))
+    assertFalse(delta2.findEntryDelta('a1:/m1').is(delta3.findEntryDelta('a1:/m1')))
+  }
+
+  /**
+   * A model filtered by a closure (no dsl) cannot be identified => no incremental delta
+   */
+  void testIncrementalDeltaWithClosureFilter()
+  {
+    DeltaMgrImpl incrementalDeltaMgr = new DeltaMgrImpl(incrementalDelta: true)
+
+    SystemModel expected =
+      m([agent: 'a1', mountPoint: '/m1', script: 's1'],
+        [agent: 'a1', mountPoint: '/m2', script: 's1'])
+    expected.id = 'e1'
+
+    SystemModel current =
+      m([agent: 'a1', mountPoint: '/m1', script: 's1', entryState: 'running'],
+        [agent: 'a1', mountPoint: '/m2', script: 's1', entryState: 'stopped'])
+
+    // same filter as the one used by the console when creating a plan for a single entry
+    def filteredExpected = expected.unfilter().filterBy { entry ->
+      entry != null && entry.agent == 'a1' && entry.mountPoint == '/m1'
+    }
+
+    def delta1 = incrementalDeltaMgr.computeDelta(filteredExpected, current, null)
+    assertEquals(deltaMgr.computeDelta(filteredExpected, current, null).flatten(new TreeMap()),
+                 delta1.flatten(new TreeMap()))
+    assertNotNull(delta1.findEntryDelta('a1:/m1'))
+    assertNull(delta1.findEntryDelta('a1:/m2'))
+
+    // closure combined with a dsl filter (and a closure on the current model)
+    def delta2 = incrementalDeltaMgr.computeDelta(filteredExpected.filterBy("agent='a1'"),
+                                                  current.filterBy { true },
+                                                  null)
+    assertFalse(delta1.findEntryDelta('a1:/m1').is(delta2.findEntryDelta('a1:/m1')))
+    assertEquals(delta1.findEntryDelta('a1:/m1').deltaState,
+                 delta2.findEntryDelta('a1:/m1').deltaState)
+  }
+
+  /**
+   * The parallel computation must produce the same delta as the sequential one
+   */
+  void testParallelDelta()
+  {
+    DeltaMgrImpl parallelDeltaMgr = new DeltaMgrImpl(parallelism: 4, parallelThreshold: 1)
+
+    def expectedEntries = []
+    def currentEntries = []
+
+    (1..200).each { i ->
+      expectedEntries << [agent: "a${i % 7}", mountPoint: "/m${i}", script: 's1']
+      if(i % 3 == 0)
+        currentEntries << [agent: "a${i % 7}", mountPoint: "/m${i}", script: 's2', entryState: 'running']
+      else if(i % 5 != 0)
+        currentEntries << [agent: "a${i % 7}", mountPoint: "/m${i}", script: 's1', entryState: 'running']
+    }
+
+    // parent/child entries are always processed sequentially
+    expectedEntries << [agent: 'a1', mountPoint: '/p1', script: 's1']
+    expectedEntries << [agent: 'a1', mountPoint: '/c1', script: 's1', parent: '/p1']
+    currentEntries << [agent: 'a1', mountPoint: '/p1', script: 's1', entryState: 'stopped']
+    currentEntries << [agent: 'a1', mountPoint: '/c1', script: 's1', entryState: 'running', parent: '/p1']
+
+    // unexpected entry and empty agent
+    currentEntries << [agent: 'a8', mountPoint: '/u1', script: 's1', entryState: 'running']
+    currentEntries << [agent: 'a9', entryState: 'NA', metadata: [emptyAgent: true, currentState: 'NA']]
+
+    SystemModel expected = m(expectedEntries as Map[])
+    SystemModel current = m(currentEntries as Map[])
+
+    try
+    {
+      assertEquals(deltaMgr.computeDelta(expected, current, null).flatten(new TreeMap()),
+                   parallelDeltaMgr.computeDelta(expected, current, null).flatten(new TreeMap()))
+    }
+    finally
+    {
+      parallelDeltaMgr.destroy()
+    }
+
+    assertEquals(0, parallelDeltaMgr.parallelism)
+  }
+
   // Testing for use case where metadata changes (version in this case)
   // entry | current | expected
   // e1    | null    | null
@@ -16,6 +16,7 @@
 
 package test.orchestration.engine.deployment
 
+import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
 import org.linkedin.glu.orchestration.engine.deployment.DeploymentServiceImpl
 import org.linkedin.glu.orchestration.engine.deployment.DeploymentStorage
@@ -253,6 +254,82 @@ public class TestDeploymentService extends GroovyTestCase
 
   }
 
+  /**
+   * The progress of the steps is recorded (in batches and in the progress executor) while the
+   * deployment is running and deleted when the deployment is archived
+   */
+  public void testDeploymentProgress()
+  {
+    ThreadControl tc = new ThreadControl(Timespan.parse('30s'))
+
+    ExecutorService progressExecutor = Executors.newSingleThreadExecutor()
+    deploymentService.progressExecutor = progressExecutor
+    deploymentService.progressBatchSize = 2
+
+    try
+    {
+      doTestDeploymentProgress(tc)
+    }
+    finally
+    {
+      progressExecutor.shutdownNow()
+    }
+  }
+
+  private void doTestDeploymentProgress(ThreadControl tc)
+  {
+
+    def stepBuilder = new StepBuilder().sequential(name: 'p.S0') {
+      leaf(name: 'p.S0.L0', agent: 'a1', action: { })
+      leaf(name: 'p.S0.L1', agent: 'a2', action: { })
+      leaf(name: 'p.S0.L2', agent: 'a3', action: { tc.block('L2') })
+      leaf(name: 'p.S0.L3', agent: 'a4', action: { throw new Exception('failed') })
+    }
+    def plan = new Plan(stepBuilder.toStep())
+    plan.id = 'p'
+    plan.setMetadata('fabric', 'f1')
+    deploymentService.savePlan(plan)
+
+    CurrentDeployment deployment =
+      deploymentService.executeDeploymentPlan(new SystemModel(id: 'sma', fabric: 'f1'), plan)
+
+    // the first 2 steps have been recorded while the deployment is running (the progress tracker
+    // is asynchronous)
+    tc.waitForBlock('L2')
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '10s', '100') {
+      deploymentService.getDeploymentProgress(deployment.id, [:]).count == 2
+    }
+    Map progress = deploymentService.getDeploymentProgress(deployment.id, [:])
+    assertEquals(['p.S0.L0', 'p.S0.L1'], progress.progress.collect { it.name })
+    assertEquals([0, 1], progress.progress.collect { it.sequence })
+    assertEquals('a2', progress.progress[1].metadata.agent)
+    assertEquals('COMPLETED', progress.progress[1].status)
+
+    tc.unblock('L2')
+    deployment.planExecution.waitForCompletion()
+
+    // the remaining steps are recorded at the end of the deployment
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '10s', '100') {
+      deploymentService.getDeploymentProgress(deployment.id, [:]).count == 4
+    }
+    progress = deploymentService.getDeploymentProgress(deployment.id, [:])
+    assertEquals(['p.S0.L0', 'p.S0.L1', 'p.S0.L2', 'p.S0.L3'], progress.progress.collect { it.name })
+    assertEquals('FAILED', progress.progress[3].status)
+    assertEquals('failed', progress.progress[3].error)
+
+    // paging
+    progress = deploymentService.getDeploymentProgress(deployment.id, [offset: 1, max: 2])
+    assertEquals(4, progress.count)
+    assertEquals([1, 2], progress.progress.collect { it.sequence })
+
+    // unknown deployment
+    assertEquals(0, deploymentService.getDeploymentProgress('unknown', [:]).count)
+
+    // archiving the deployment deletes its progress
+    assertTrue(deploymentService.archiveDeployment(deployment.id))
+    assertEquals(0, deploymentService.getDeploymentProgress(deployment.id, [:]).count)
+  }
+
   private Plan createPlan(String fabric, String planId, Closure action)
   {
     def stepBuilder = new StepBuilder().sequential(name: "${planId}.S0".toString()) {
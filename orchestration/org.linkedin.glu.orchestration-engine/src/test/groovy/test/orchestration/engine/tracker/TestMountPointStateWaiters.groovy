@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.orchestration.engine.tracker
+
+import org.apache.zookeeper.data.Stat
+import org.linkedin.glu.agent.api.MountPoint
+import org.linkedin.glu.agent.tracker.MountPointInfo
+import org.linkedin.glu.agent.tracker.NodeEvent
+import org.linkedin.glu.orchestration.engine.tracker.MountPointStateWaiters
+import org.linkedin.groovy.util.json.JsonUtils
+import org.linkedin.util.clock.SettableClock
+import org.linkedin.util.clock.Timespan
+import org.linkedin.zookeeper.tracker.NodeEventType
+import org.linkedin.zookeeper.tracker.TrackedNode
+
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author yan@pongasoft.com */
+public class TestMountPointStateWaiters extends GroovyTestCase
+{
+  MountPointStateWaiters waiters = new MountPointStateWaiters()
+
+  @Override
+  protected void tearDown()
+  {
+    waiters.destroy()
+    super.tearDown()
+  }
+
+  /**
+   * Only the waiters of the mount point which changed are completed
+   */
+  public void testOnMountPointEvents()
+  {
+    Future<Boolean> w1 = waiters.register('f1', 'a1', '/m1', 'running', Timespan.parse('30s'))
+    Future<Boolean> w2 = waiters.register('f1', 'a1', '/m2', 'running', Timespan.parse('30s'))
+    Future<Boolean> w3 = waiters.register('f2', 'a1', '/m1', 'running', Timespan.parse('30s'))
+    Future<Boolean> w4 = waiters.register('f1', 'a1', '/m1', 'stopped', Timespan.parse('30s'))
+    assertEquals(4, waiters.waitersCount)
+
+    // current state is not the expected one
+    waiters.onMountPointEvents('f1', [createEvent('a1', '/m1', 'stopped', 'running')])
+    assertFalse(w1.isDone())
+    assertFalse(w4.isDone())
+
+    // transition completes
+    waiters.onMountPointEvents('f1', [createEvent('a1', '/m1', 'running')])
+    assertTrue(w1.get(0, TimeUnit.MILLISECONDS))
+    assertFalse(w2.isDone())
+    assertFalse(w3.isDone())
+    assertFalse(w4.isDone())
+    assertEquals(3, waiters.waitersCount)
+
+    // an error completes the waiter as well
+    waiters.onMountPointEvents('f1', [createEvent('a1', '/m2', 'stopped', null, 'failed')])
+    assertTrue(w2.get(0, TimeUnit.MILLISECONDS))
+    assertEquals(2, waiters.waitersCount)
+
+    // deleted mount point
+    waiters.onMountPointEvents('f2', [createEvent('a1', '/m1', 'running', null, null,
+                                                  NodeEventType.DELETED)])
+    assertFalse(w3.isDone())
+
+    waiters.onMountPointEvents('f2', [createEvent('a1', '/m1', 'running')])
+    assertTrue(w3.get(0, TimeUnit.MILLISECONDS))
+
+    // checkState (current state) completes the waiter
+    waiters.checkState('f1', 'a1', MountPoint.create('/m1'), createInfo('a1', '/m1', 'stopped'))
+    assertTrue(w4.get(0, TimeUnit.MILLISECONDS))
+
+    assertEquals(0, waiters.waitersCount)
+  }
+
+  /**
+   * The waiter completes with <code>false</code> on timeout and canceling it unregisters it
+   */
+  public void testTimeoutAndCancel()
+  {
+    Future<Boolean> w1 = waiters.register('f1', 'a1', '/m1', 'running', Timespan.parse('100'))
+    Future<Boolean> w2 = waiters.register('f1', 'a1', '/m1', 'running', null)
+    assertEquals(2, waiters.waitersCount)
+
+    assertFalse(w1.get(10, TimeUnit.SECONDS))
+    assertEquals(1, waiters.waitersCount)
+
+    assertTrue(w2.cancel(false))
+    assertEquals(0, waiters.waitersCount)
+
+    // completing after cancel is a no op
+    waiters.onMountPointEvents('f1', [createEvent('a1', '/m1', 'running')])
+    assertTrue(w2.isCancelled())
+
+    // destroy completes the remaining waiters
+    Future<Boolean> w3 = waiters.register('f1', 'a1', '/m1', 'running', null)
+    waiters.destroy()
+    assertFalse(w3.get(0, TimeUnit.MILLISECONDS))
+
+    // cannot wait anymore once destroyed
+    shouldFail(IllegalStateException) {
+      waiters.register('f1', 'a1', '/m1', 'running', null)
+    }
+  }
+
+  /**
+   * Registering (with a timeout) while being destroyed either fails or returns a waiter completed
+   * by destroy
+   */
+  public void testRegisterWhileDestroyed()
+  {
+    100.times {
+      MountPointStateWaiters stateWaiters = new MountPointStateWaiters()
+      Thread thread = Thread.start { stateWaiters.destroy() }
+      try
+      {
+        Future<Boolean> w1 = stateWaiters.register('f1', 'a1', '/m1', 'running', Timespan.parse('30s'))
+        thread.join()
+        assertFalse(w1.get(0, TimeUnit.MILLISECONDS))
+      }
+      catch(IllegalStateException e)
+      {
+        // destroyed before registering
+      }
+      finally
+      {
+        thread.join()
+      }
+    }
+  }
+
+  /**
+   * The timeouts follow the clock (and not the real time)
+   */
+  public void testTimeoutWithClock()
+  {
+    SettableClock clock = new SettableClock()
+    waiters.clock = clock
+
+    Future<Boolean> w1 = waiters.register('f1', 'a1', '/m1', 'running', Timespan.parse('100'))
+    Future<Boolean> w2 = waiters.register('f1', 'a1', '/m1', 'running', Timespan.parse('10s'))
+    Future<Boolean> w3 = waiters.register('f1', 'a1', '/m1', 'running', null)
+
+    // the real time does not expire the waiter
+    Thread.sleep(200)
+    assertFalse(w1.isDone())
+
+    clock.addDuration(Timespan.parse('100'))
+    waiters.checkTimeouts()
+    assertFalse(w1.get(0, TimeUnit.MILLISECONDS))
+    assertFalse(w2.isDone())
+    assertFalse(w3.isDone())
+
+    clock.addDuration(Timespan.parse('10s'))
+    waiters.checkTimeouts()
+    assertFalse(w2.get(0, TimeUnit.MILLISECONDS))
+    assertFalse(w3.isDone())
+    assertEquals(1, waiters.waitersCount)
+  }
+
+  private NodeEvent<MountPointInfo> createEvent(String agentName,
+                                                String mountPoint,
+                                                String currentState,
+                                                String transitionState = null,
+                                                String error = null,
+                                                NodeEventType eventType = NodeEventType.UPDATED)
+  {
+    new NodeEvent<MountPointInfo>(eventType: eventType,
+                                  nodeInfo: createInfo(agentName,
+                                                       mountPoint,
+                                                       currentState,
+                                                       transitionState,
+                                                       error))
+  }
+
+  private MountPointInfo createInfo(String agentName,
+                                    String mountPoint,
+                                    String currentState,
+                                    String transitionState = null,
+                                    String error = null)
+  {
+    def stateMachine = [currentState: currentState]
+    if(transitionState)
+      stateMachine.transitionState = transitionState
+    if(error)
+      stateMachine.error = error
+
+    def data = [scriptState: [stateMachine: stateMachine]]
+
+    MountPoint mp = MountPoint.create(mountPoint)
+    new MountPointInfo(agentName: agentName,
+                       mountPoint: mp,
+                       trackedNode: new TrackedNode(mp.path,
+                                                    JsonUtils.compactPrint(data),
+                                                    new Stat(),
+                                                    0))
+  }
+}
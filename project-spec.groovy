@@ -26,6 +26,7 @@ spec = [
     grails: '2.5.0',
     groovy: '2.4.3',
     jetty: '8.1.10.v20130312', // '9.0.0.v20130308' (cannot use 9 -> requires jdk 1.7)
+    jmh: '1.10.5',
     utilsMisc: '2.1.0',
     utilsZookeeper: '2.1.0',
     restlet: '2.1.2',
@@ -62,6 +63,8 @@ spec.external = [
   httpClient: "org.apache.httpcomponents:httpclient:4.2.6",
   ivy: 'org.apache.ivy:ivy:2.4.0',
   jbcrypt: 'org.mindrot:jbcrypt:0.3m',
+  jmhCore: "org.openjdk.jmh:jmh-core:${spec.versions.jmh}",
+  jmhGeneratorAnnprocess: "org.openjdk.jmh:jmh-generator-annprocess:${spec.versions.jmh}",
   jettyPackage: [
     group: "org.eclipse.jetty",
     name: "jetty-distribution",
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model
+
+import groovy.transform.CompileStatic
+
+/**
+ * A read only view of some of the entries of a model: a bitmap of the ids of the entries in the
+ * (shared) index of the unfiltered model. This is what a filtered model uses instead of copying
+ * the entries which match the filter.
+ *
+ * @author yan@pongasoft.com */
+@CompileStatic
+class FilteredSystemEntries extends AbstractMap<String, SystemEntry>
+{
+  private final SystemEntriesIndex _index
+  private final BitSet _ids
+  private final int _size
+
+  /**
+   * @param ids the ids (in the index) of the entries in this view (must not be modified afterwards)
+   */
+  FilteredSystemEntries(SystemEntriesIndex index, BitSet ids)
+  {
+    _index = index
+    _ids = ids
+    _size = ids.cardinality()
+  }
+
+  /**
+   * Note that since this is a map, <code>entries.index</code> is a lookup in the map, hence the
+   * need to call this method explicitly
+   */
+  SystemEntriesIndex getIndex()
+  {
+    return _index
+  }
+
+  /**
+   * @return a copy of the ids of the entries in this view
+   */
+  BitSet computeIds()
+  {
+    return (BitSet) _ids.clone()
+  }
+
+  boolean containsId(int id)
+  {
+    return id >= 0 && _ids.get(id)
+  }
+
+  /**
+   * @return the keys of the children of the given parent which are part of this view
+   * (<code>null</code> if none)
+   */
+  Collection<String> findChildrenKeys(String parentKey)
+  {
+    Collection<String> children = _index.findChildrenKeys(parentKey)
+    if(children == null)
+      return null
+
+    Collection<String> res = null
+    for(String key : children)
+    {
+      if(containsKey(key))
+      {
+        if(res == null)
+          res = new HashSet<String>()
+        res.add(key)
+      }
+    }
+    return res
+  }
+
+  @Override
+  int size()
+  {
+    return _size
+  }
+
+  @Override
+  boolean containsKey(Object key)
+  {
+    return key instanceof String && containsId(_index.getId((String) key))
+  }
+
+  @Override
+  SystemEntry get(Object key)
+  {
+    if(!(key instanceof String))
+      return null
+    int id = _index.getId((String) key)
+    return containsId(id) ? _index.getEntry(id) : null
+  }
+
+  @Override
+  Collection<SystemEntry> values()
+  {
+    return (Collection<SystemEntry>) new IdsSet(this, IdsSet.VALUES)
+  }
+
+  @Override
+  Set<String> keySet()
+  {
+    return (Set<String>) new IdsSet(this, IdsSet.KEYS)
+  }
+
+  @Override
+  Set<Map.Entry<String, SystemEntry>> entrySet()
+  {
+    return (Set<Map.Entry<String, SystemEntry>>) new IdsSet(this, IdsSet.ENTRIES)
+  }
+
+  /**
+   * The keys, values or entries of the view (iterated in the order of the ids, hence in the order
+   * of the keys)
+   *
+   * Using (static) classes rather than anonymous ones on purpose (nested
+   * anonymous classes do not play well with groovy).
+   */
+  private static class IdsSet extends AbstractSet<Object>
+  {
+    static final int KEYS = 0
+    static final int VALUES = 1
+    static final int ENTRIES = 2
+
+    private final FilteredSystemEntries _entries
+    private final int _kind
+
+    IdsSet(FilteredSystemEntries entries, int kind)
+    {
+      _entries = entries
+      _kind = kind
+    }
+
+    @Override
+    Iterator<Object> iterator()
+    {
+      return new IdsIterator(_entries, _kind)
+    }
+
+    @Override
+    int size()
+    {
+      return _entries.size()
+    }
+
+    @Override
+    boolean contains(Object o)
+    {
+      if(_kind == KEYS)
+        return _entries.containsKey(o)
+      return super.contains(o)
+    }
+  }
+
+  private static class IdsIterator implements Iterator<Object>
+  {
+    private final SystemEntriesIndex _index
+    private final BitSet _ids
+    private final int _kind
+    private int _next
+
+    IdsIterator(FilteredSystemEntries entries, int kind)
+    {
+      _index = entries.@_index
+      _ids = entries.@_ids
+      _kind = kind
+      _next = _ids.nextSetBit(0)
+    }
+
+    @Override
+    boolean hasNext()
+    {
+      return _next >= 0
+    }
+
+    @Override
+    Object next()
+    {
+      if(_next < 0)
+        throw new NoSuchElementException()
+
+      SystemEntry entry = _index.getEntry(_next)
+      _next = _ids.nextSetBit(_next + 1)
+
+      switch(_kind)
+      {
+        case IdsSet.KEYS:
+          return entry.key
+
+        case IdsSet.ENTRIES:
+          return new AbstractMap.SimpleImmutableEntry<String, SystemEntry>(entry.key, entry)
+
+        default:
+          return entry
+      }
+    }
+
+    @Override
+    void remove()
+    {
+      throw new UnsupportedOperationException()
+    }
+  }
+}
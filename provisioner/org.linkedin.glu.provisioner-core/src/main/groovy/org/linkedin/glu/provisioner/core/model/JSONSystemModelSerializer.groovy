@@ -17,21 +17,174 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.ObjectMapper
 import org.linkedin.groovy.util.json.JsonUtils
 
 /**
  * Uses json for the format.
  *
+ * The <code>Reader</code>/<code>InputStream</code> and <code>Writer</code>/<code>OutputStream</code>
+ * flavors are streaming: the entries are built (resp. written) one at a time, without building a
+ * map (resp. a string) for the whole model first, which matters for big models.
+ *
  * @author ypujante@linkedin.com */
 class JSONSystemModelSerializer implements SystemModelSerializer
 {
   public static final JSONSystemModelSerializer INSTANCE = new JSONSystemModelSerializer()
 
+  private static final ObjectMapper JACKSON_MAPPER = JsonUtils.newJacksonMapper(false)
+
   int prettyPrint
 
   SystemModel deserialize(String model)
   {
-    SystemModel.fromExternalRepresentation(JsonUtils.fromJSON(model))
+    if(model == null)
+      return null
+
+    deserialize(new StringReader(model))
+  }
+
+  SystemModel deserialize(InputStream model)
+  {
+    deserialize(model, true)
+  }
+
+  /**
+   * @param includeEntries <code>false</code> to skip the entries entirely (when only the id,
+   *                       fabric, metadata and agent tags are needed)
+   */
+  SystemModel deserialize(InputStream model, boolean includeEntries)
+  {
+    if(model == null)
+      return null
+
+    deserialize(JACKSON_MAPPER.factory.createParser(model), includeEntries)
+  }
+
+  SystemModel deserialize(Reader model)
+  {
+    deserialize(model, true)
+  }
+
+  /**
+   * @param includeEntries <code>false</code> to skip the entries entirely (when only the id,
+   *                       fabric, metadata and agent tags are needed)
+   */
+  SystemModel deserialize(Reader model, boolean includeEntries)
+  {
+    if(model == null)
+      return null
+
+    deserialize(JACKSON_MAPPER.factory.createParser(model), includeEntries)
+  }
+
+  /**
+   * Same as {@link #deserialize(String)} but skips the entries
+   */
+  SystemModel deserializeNoEntries(String model)
+  {
+    if(model == null)
+      return null
+
+    deserialize(new StringReader(model), false)
+  }
+
+  private SystemModel deserialize(JsonParser parser, boolean includeEntries)
+  {
+    try
+    {
+      JsonToken token = parser.nextToken()
+
+      if(token == null || token == JsonToken.VALUE_NULL)
+        return null
+
+      if(token != JsonToken.START_OBJECT)
+        throw new JsonParseException("expecting a json object for the model",
+                                     parser.currentLocation)
+
+      def id = null
+      def fabric = null
+      def name = null
+      Map metadata = null
+      Map agentTags = null
+      Collection<SystemEntry> entries = []
+
+      while(parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+        String fieldName = parser.currentName
+        token = parser.nextToken()
+
+        switch(fieldName)
+        {
+          case 'id':
+            id = parser.readValueAs(Object)
+            break
+
+          case 'fabric':
+            fabric = parser.readValueAs(Object)
+            break
+
+          case 'name':
+            name = parser.readValueAs(Object)
+            break
+
+          case 'metadata':
+            metadata = parser.readValueAs(Map)
+            break
+
+          case 'agentTags':
+            agentTags = parser.readValueAs(Map)
+            break
+
+          case 'entries':
+            if(includeEntries && token == JsonToken.START_ARRAY)
+            {
+              // only 1 entry at a time is represented as a map
+              while((token = parser.nextToken()) == JsonToken.START_OBJECT)
+              {
+                entries << SystemEntry.fromExternalRepresentation(parser.readValueAs(Map))
+              }
+
+              // anything else than an entry (ex: null) must not silently end the entries
+              if(token != JsonToken.END_ARRAY)
+                throw new JsonParseException("expecting a json object for the entry (got ${token})".toString(),
+                                             parser.currentLocation)
+            }
+            else
+              parser.skipChildren()
+            break
+
+          default:
+            parser.skipChildren()
+            break
+        }
+      }
+
+      // the agent tags need to be added before the entries but they
+      // come after in the canonical representation
+      SystemModel systemModel = new SystemModel(id: id,
+                                                fabric: fabric,
+                                                metadata: metadata ?: [:])
+
+      agentTags?.each { agent, tags ->
+        systemModel.addAgentTags(agent, tags)
+      }
+
+      entries.each { systemModel.addEntry(it) }
+
+      if(name)
+        systemModel.metadata.name = name
+
+      return systemModel
+    }
+    finally
+    {
+      parser.close()
+    }
   }
 
   String serialize(SystemModel model)
@@ -39,6 +192,70 @@ class JSONSystemModelSerializer implements SystemModelSerializer
     return JsonUtils.prettyPrint(model.toCanonicalRepresentation(), prettyPrint)
   }
 
+  /**
+   * Writes the canonical representation of the model (the stream is not closed)
+   */
+  void serialize(SystemModel model, OutputStream out)
+  {
+    serialize(model, JACKSON_MAPPER.factory.createGenerator(out))
+  }
+
+  /**
+   * Writes the canonical representation of the model (the writer is not closed)
+   */
+  void serialize(SystemModel model, Writer out)
+  {
+    serialize(model, JACKSON_MAPPER.factory.createGenerator(out))
+  }
+
+  private void serialize(SystemModel model, JsonGenerator generator)
+  {
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+    if(prettyPrint)
+      generator.useDefaultPrettyPrinter()
+
+    try
+    {
+      def ext = model.toExternalRepresentation(false)
+
+      generator.writeStartObject()
+      generator.writeObjectField('id', ext.id)
+      generator.writeObjectField('fabric', ext.fabric)
+      if(ext.metadata)
+        generator.writeObjectField('metadata', ext.metadata)
+
+      boolean hasAgentTags = ext.agentTags
+
+      boolean first = true
+      model.each { SystemEntry entry ->
+        if(first)
+        {
+          generator.writeArrayFieldStart('entries')
+          first = false
+        }
+
+        def entryExt = entry.toExternalRepresentation()
+
+        // in the canonical representation, the agent tags are removed from the entry tags
+        if(hasAgentTags && entryExt.tags)
+          entryExt.tags = entryExt.tags - model.getAgentTags(entry.agent).tags
+
+        generator.writeObject(entryExt)
+      }
+      if(!first)
+        generator.writeEndArray()
+
+      if(hasAgentTags)
+        generator.writeObjectField('agentTags', ext.agentTags)
+
+      generator.writeEndObject()
+    }
+    finally
+    {
+      generator.close()
+    }
+  }
+
   String getType()
   {
     return 'json';
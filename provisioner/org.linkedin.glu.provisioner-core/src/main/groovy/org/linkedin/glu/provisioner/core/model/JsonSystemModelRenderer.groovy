@@ -35,12 +35,24 @@ class JsonSystemModelRenderer implements SystemModelRenderer
 
   int prettyPrint = 2
 
+  /**
+   * When <code>true</code>, the system id is the merkle root of the model (see
+   * {@link SystemModelDigests}) which only rehashes the entries which changed. Note that the id
+   * computed this way is different from the (default) one computed from the json representation
+   * of the whole model, hence it is not enabled by default (the ids of the models already saved
+   * would not match anymore).
+   */
+  boolean incrementalSystemId = false
+
   @Override
   String computeSystemId(SystemModel model)
   {
     if(model == null)
       return null
 
+    if(incrementalSystemId)
+      return SystemModelDigests.computeModelDigest(model)
+
     def ext = model.toCanonicalRepresentation()
     ext.remove('id') // we remove id from the computation
     def json = JACKSON_CANONICAL_MAPPER.writeValueAsString(ext)
@@ -17,22 +17,24 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import groovy.transform.CompileStatic
+
 /**
  * Implement composite/chain pattern for executing a AND
  *
  * @author ypujante@linkedin.com */
 class LogicAndSystemFilterChain extends LogicSystemFilterChain
 {
-  def boolean filter(SystemEntry entry)
+  @CompileStatic
+  boolean filter(SystemEntry entry)
   {
-    def res = true
-
-    filters.each { filter ->
-      if(res)
-        res = filter.filter(entry)
+    for(SystemFilter filter : filters)
+    {
+      if(!filter.filter(entry))
+        return false
     }
 
-    return res
+    return true
   }
 
   def String getKind()
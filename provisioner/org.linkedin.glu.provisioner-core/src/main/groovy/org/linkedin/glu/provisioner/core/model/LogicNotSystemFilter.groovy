@@ -17,6 +17,8 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import groovy.transform.CompileStatic
+
 /**
  * @author ypujante@linkedin.com */
 class LogicNotSystemFilter implements SystemFilter
@@ -34,7 +36,8 @@ class LogicNotSystemFilter implements SystemFilter
     return "not{${filter.toDSL()}}".toString()
   }
 
-  def boolean filter(SystemEntry entry)
+  @CompileStatic
+  boolean filter(SystemEntry entry)
   {
     return !filter.filter(entry);
   }
@@ -17,22 +17,24 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import groovy.transform.CompileStatic
+
 /**
  * Implement composite/chain pattern for executing a OR
  *
  * @author ypujante@linkedin.com */
 class LogicOrSystemFilterChain extends LogicSystemFilterChain
 {
-  def boolean filter(SystemEntry entry)
+  @CompileStatic
+  boolean filter(SystemEntry entry)
   {
-    def res = false
-
-    filters.each { filter ->
-      if(!res)
-        res = filter.filter(entry)
+    for(SystemFilter filter : filters)
+    {
+      if(filter.filter(entry))
+        return true
     }
 
-    return res
+    return false
   }
 
   def String getKind()
@@ -17,7 +17,16 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import groovy.transform.CompileDynamic
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.runtime.DefaultGroovyMethods
+
 /**
+ * The filter is "compiled" when the tokens are set: the first token is resolved once to a direct
+ * accessor on {@link SystemEntry} (when it is one of its known properties) and the tokens access
+ * maps and lists directly (statically typed). The (slow) dynamic property resolution is only used
+ * as a fallback for other kinds of values.
+ *
  * @author ypujante@linkedin.com */
 class PropertySystemFilter extends NameEqualsValueSystemFilter
 {
@@ -38,6 +47,7 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
   /**
    * Handles simple property
    */
+  @CompileStatic
   static class StringPropertyToken implements PropertyToken
   {
     String token
@@ -48,6 +58,16 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
       if(value == null)
         return NO_MATCH
 
+      // maps (metadata, initParameters...) are by far the most common case
+      if(value instanceof Map)
+        return ((Map) value).get(token)
+
+      return dynamicMatches(value)
+    }
+
+    @CompileDynamic
+    protected Object dynamicMatches(Object value)
+    {
       try
       {
         // handles int ranges
@@ -75,15 +95,67 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
     @Override
     void append(StringBuilder sb)
     {
-      if(sb.size() != 0)
+      if(sb.length() != 0)
         sb.append('.')
       sb.append(toString())
     }
   }
 
+  /**
+   * The known properties of {@link SystemEntry} (accessed directly)
+   */
+  @CompileStatic
+  static enum SystemEntryProperty
+  {
+    agent { Object get(SystemEntry entry) { entry.agent } },
+    mountPoint { Object get(SystemEntry entry) { entry.mountPoint } },
+    key { Object get(SystemEntry entry) { entry.key } },
+    script { Object get(SystemEntry entry) { entry.script } },
+    entryState { Object get(SystemEntry entry) { entry.entryState } },
+    parent { Object get(SystemEntry entry) { entry.parent } },
+    initParameters { Object get(SystemEntry entry) { entry.initParameters } },
+    actionArgs { Object get(SystemEntry entry) { entry.actionArgs } },
+    metadata { Object get(SystemEntry entry) { entry.metadata } },
+    tags { Object get(SystemEntry entry) { entry.tags } }
+
+    abstract Object get(SystemEntry entry)
+
+    /**
+     * @return <code>null</code> if not a known property
+     */
+    static SystemEntryProperty find(String name)
+    {
+      for(SystemEntryProperty property : values())
+      {
+        if(property.name() == name)
+          return property
+      }
+      return null
+    }
+  }
+
+  /**
+   * The first token of the filter when it is a known property of {@link SystemEntry}
+   */
+  @CompileStatic
+  static class SystemEntryPropertyToken extends StringPropertyToken
+  {
+    SystemEntryProperty property
+
+    @Override
+    Object matches(Object value)
+    {
+      if(value instanceof SystemEntry)
+        return property.get((SystemEntry) value)
+
+      return super.matches(value)
+    }
+  }
+
   /**
    * Handles [xxx] notation... Note that it works for single integers as well as ranges ([0..-1]).
    */
+  @CompileStatic
   static class IndexedPropertyToken implements PropertyToken
   {
     def index
@@ -94,6 +166,18 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
       if(value == null)
         return NO_MATCH
 
+      if(value instanceof List && index instanceof Integer)
+        return DefaultGroovyMethods.getAt((List) value, (int) index)
+
+      if(value instanceof Map)
+        return ((Map) value).get(index)
+
+      return dynamicMatches(value)
+    }
+
+    @CompileDynamic
+    protected Object dynamicMatches(Object value)
+    {
       if(value.metaClass.respondsTo(value, 'getAt', [index.getClass()]))
         value.getAt(index)
       else
@@ -123,17 +207,41 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
     new IndexedPropertyToken(index: index)
   }
 
+  /**
+   * Compiles the tokens: the first one is turned into a direct accessor when it is a known
+   * property of {@link SystemEntry}
+   *
+   * @return the compiled tokens
+   */
+  public static PropertyToken[] compile(Collection<PropertyToken> tokens)
+  {
+    PropertyToken[] res = tokens.toArray(new PropertyToken[tokens.size()])
+
+    if(res.length > 0 && res[0] instanceof StringPropertyToken)
+    {
+      String token = ((StringPropertyToken) res[0]).token
+      SystemEntryProperty property = SystemEntryProperty.find(token)
+      if(property)
+        res[0] = new SystemEntryPropertyToken(token: token, property: property)
+    }
+
+    return res
+  }
+
   private Collection<PropertyToken> _tokens
+  private PropertyToken[] _compiledTokens
 
   void setName(String n)
   {
     super.setName(n)
     _tokens = name.tokenize('.').collect { createFromToken(it) }
+    _compiledTokens = compile(_tokens)
   }
 
   void setTokens(Collection<PropertyToken> tokens)
   {
     _tokens = tokens?.collect { it } ?: []
+    _compiledTokens = compile(_tokens)
     super.setName(computeName())
   }
 
@@ -164,30 +272,46 @@ class PropertySystemFilter extends NameEqualsValueSystemFilter
     return 'p';
   }
 
-  def boolean filter(SystemEntry entry)
+  @CompileStatic
+  boolean filter(SystemEntry entry)
   {
     if(entry == null)
       return false
 
     Object computedValue = computeValue(entry)
 
+    if(computedValue.is(PropertyToken.NO_MATCH))
+      return false
+
+    Object expectedValue = getValue()
+
     if(computedValue instanceof Collection)
-      computedValue.find { it == value}
+    {
+      for(Object v : (Collection) computedValue)
+      {
+        if(v == expectedValue)
+          return true
+      }
+      return false
+    }
     else
-      computedValue == value
+      return computedValue == expectedValue
   }
 
   /**
    * @return {@link PropertyToken#NO_MATCH} when there is no match */
-  private Object computeValue(def v)
+  @CompileStatic
+  private Object computeValue(Object v)
   {
     if(v == null)
       return PropertyToken.NO_MATCH
 
-    for(PropertyToken token : _tokens)
+    PropertyToken[] tokens = _compiledTokens
+
+    for(int i = 0; i < tokens.length; i++)
     {
-      v = token.matches(v)
-      if(v == PropertyToken.NO_MATCH)
+      v = tokens[i].matches(v)
+      if(v.is(PropertyToken.NO_MATCH))
         return v
     }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model
+
+import groovy.transform.CompileStatic
+
+/**
+ * Deep read only copies of the values (maps, lists...) stored in a read only model or entry.
+ *
+ * The copies are serialized as regular (modifiable) maps and lists, so a deep clone of a read only
+ * value (see <code>LangUtils.deepClone</code>, used by the <code>clone</code> methods) can be
+ * modified.
+ *
+ * @author yan@pongasoft.com */
+@CompileStatic
+class ReadOnlyValues
+{
+  /**
+   * @return a read only copy of the value where all the nested maps and collections are read only
+   * as well (the value itself when it is neither a map nor a collection or already read only)
+   */
+  static def deepReadOnly(def value)
+  {
+    if(value instanceof ReadOnlyMap || value instanceof ReadOnlyList || value instanceof ReadOnlySet)
+      return value
+
+    if(value instanceof Map)
+    {
+      Map res = new LinkedHashMap()
+      for(Map.Entry e in ((Map) value).entrySet())
+        res.put(e.key, deepReadOnly(e.value))
+      return new ReadOnlyMap(res)
+    }
+
+    if(value instanceof Set)
+    {
+      Set res = new LinkedHashSet()
+      for(def v in (Set) value)
+        res.add(deepReadOnly(v))
+      return new ReadOnlySet(res)
+    }
+
+    if(value instanceof Collection)
+    {
+      List res = new ArrayList(((Collection) value).size())
+      for(def v in (Collection) value)
+        res.add(deepReadOnly(v))
+      return new ReadOnlyList(res)
+    }
+
+    return value
+  }
+
+  private static class ReadOnlyMap extends AbstractMap implements Serializable
+  {
+    private final Map _map
+
+    ReadOnlyMap(Map map)
+    {
+      _map = map
+    }
+
+    @Override
+    Object get(Object key)
+    {
+      return _map.get(key)
+    }
+
+    @Override
+    boolean containsKey(Object key)
+    {
+      return _map.containsKey(key)
+    }
+
+    @Override
+    int size()
+    {
+      return _map.size()
+    }
+
+    @Override
+    Set<Map.Entry> entrySet()
+    {
+      return Collections.unmodifiableMap(_map).entrySet()
+    }
+
+    private Object writeReplace()
+    {
+      return new LinkedHashMap(_map)
+    }
+  }
+
+  private static class ReadOnlyList extends AbstractList implements RandomAccess, Serializable
+  {
+    private final List _list
+
+    ReadOnlyList(List list)
+    {
+      _list = list
+    }
+
+    @Override
+    Object get(int index)
+    {
+      return _list.get(index)
+    }
+
+    @Override
+    int size()
+    {
+      return _list.size()
+    }
+
+    private Object writeReplace()
+    {
+      return new ArrayList(_list)
+    }
+  }
+
+  private static class ReadOnlySet extends AbstractSet implements Serializable
+  {
+    private final Set _set
+
+    ReadOnlySet(Set set)
+    {
+      _set = set
+    }
+
+    @Override
+    boolean contains(Object o)
+    {
+      return _set.contains(o)
+    }
+
+    @Override
+    Iterator iterator()
+    {
+      return Collections.unmodifiableSet(_set).iterator()
+    }
+
+    @Override
+    int size()
+    {
+      return _set.size()
+    }
+
+    private Object writeReplace()
+    {
+      return new LinkedHashSet(_set)
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model
+
+import groovy.transform.CompileStatic
+import org.linkedin.glu.utils.tags.TagIndex
+
+/**
+ * An immutable snapshot of the entries of a model: each entry gets an id (its position in the
+ * order of the keys) so that a set of entries of the model can be represented by a bitmap of ids
+ * (see {@link FilteredSystemEntries}). The index of the children and the index of the tags (which
+ * uses the same ids) are computed once and shared by all the filtered models.
+ *
+ * @author yan@pongasoft.com */
+@CompileStatic
+class SystemEntriesIndex
+{
+  private final SystemEntry[] _entries
+  private final Map<String, Integer> _ids
+  private final Map<String, Collection<String>> _children = new HashMap<String, Collection<String>>()
+
+  // lazily computed (see getTagIndex)
+  private volatile TagIndex _tagIndex = null
+
+  /**
+   * @param entries the entries (sorted by key)
+   */
+  SystemEntriesIndex(Collection<SystemEntry> entries)
+  {
+    _entries = entries.toArray(new SystemEntry[entries.size()])
+    _ids = new HashMap<String, Integer>(_entries.length * 2)
+
+    for(int id = 0; id < _entries.length; id++)
+    {
+      SystemEntry entry = _entries[id]
+      _ids.put(entry.key, id)
+
+      if(entry.parent != SystemEntry.DEFAULT_PARENT)
+      {
+        Collection<String> children = _children.get(entry.parentKey)
+        if(children == null)
+        {
+          children = new HashSet<String>()
+          _children.put(entry.parentKey, children)
+        }
+        children.add(entry.key)
+      }
+    }
+  }
+
+  /**
+   * @return the number of entries
+   */
+  int getSize()
+  {
+    return _entries.length
+  }
+
+  /**
+   * @return the id of the entry or <code>-1</code> if there is no such entry
+   */
+  int getId(String key)
+  {
+    Integer id = _ids.get(key)
+    return id == null ? -1 : id.intValue()
+  }
+
+  SystemEntry getEntry(int id)
+  {
+    return _entries[id]
+  }
+
+  /**
+   * @return the keys of the children of the given parent (all of them, not only the ones in a
+   * given set of ids)
+   */
+  Collection<String> findChildrenKeys(String parentKey)
+  {
+    return _children.get(parentKey)
+  }
+
+  /**
+   * @return a new bitmap with the ids of all the entries
+   */
+  BitSet computeAllIds()
+  {
+    BitSet res = new BitSet(_entries.length)
+    res.set(0, _entries.length)
+    return res
+  }
+
+  /**
+   * @return a new bitmap with the ids of the given keys (the keys which are not in the index are
+   * ignored)
+   */
+  BitSet computeIds(Collection<String> keys)
+  {
+    BitSet res = new BitSet(_entries.length)
+    for(String key : keys)
+    {
+      int id = getId(key)
+      if(id >= 0)
+        res.set(id)
+    }
+    return res
+  }
+
+  /**
+   * @return the index of the keys by tags. The ids of the keys in the tag index are the same as
+   * the ids of the entries in this index.
+   */
+  TagIndex getTagIndex()
+  {
+    TagIndex tagIndex = _tagIndex
+
+    if(tagIndex == null)
+    {
+      // a new TagIndex assigns the ids sequentially, hence following the
+      // same order guarantees the same ids
+      tagIndex = new TagIndex()
+      for(SystemEntry entry : _entries)
+      {
+        tagIndex.add(entry.key, entry.tags)
+      }
+      _tagIndex = tagIndex
+    }
+
+    return tagIndex
+  }
+}
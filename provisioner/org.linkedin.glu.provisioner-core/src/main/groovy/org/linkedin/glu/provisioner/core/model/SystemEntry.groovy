@@ -21,6 +21,7 @@ import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
 import org.linkedin.groovy.util.json.JsonUtils
 import org.linkedin.glu.utils.tags.TaggeableTreeSetImpl
 import org.linkedin.glu.utils.tags.ReadOnlyTaggeable
+import org.linkedin.glu.utils.tags.WriteOnlyTaggeable
 import org.linkedin.util.lang.LangUtils
 import org.linkedin.glu.groovy.util.state.DefaultStateMachine
 
@@ -41,6 +42,13 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
   Map<String, Object> metadata = [:] // optional
   volatile ReadOnlyTaggeable entryTags = ReadOnlyTaggeable.EMPTY // optional
 
+  // the digest of the content of this entry (only cached once the entry is read only since a
+  // modifiable entry can be modified in place, ex: entry.metadata.foo = 'bar')
+  private volatile String _digest
+
+  // see makeReadOnly
+  private volatile boolean _readOnly = false
+
   String getKey()
   {
     return "${agent}:${mountPoint}".toString()
@@ -75,7 +83,7 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
       res.actionArgs = actionArgs
 
     if(hasTags())
-      res.tags = tags
+      res.tags = entryTags.tags
 
     return res
   }
@@ -131,7 +139,8 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
   @Override
   Set<String> getTags()
   {
-    return entryTags.getTags()
+    Set<String> tags = entryTags.getTags()
+    return _readOnly ? Collections.unmodifiableSet(tags) : tags
   }
 
   @Override
@@ -166,7 +175,113 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
 
   void setTags(Collection<String> tags)
   {
-    entryTags = new TaggeableTreeSetImpl(tags)
+    setEntryTags(new TaggeableTreeSetImpl(tags))
+  }
+
+  void setEntryTags(ReadOnlyTaggeable entryTags)
+  {
+    checkNotReadOnly()
+    this.entryTags = entryTags
+  }
+
+  void setAgent(String agent)
+  {
+    checkNotReadOnly()
+    this.agent = agent
+  }
+
+  void setMountPoint(String mountPoint)
+  {
+    checkNotReadOnly()
+    this.mountPoint = mountPoint
+  }
+
+  void setScript(script)
+  {
+    checkNotReadOnly()
+    this.script = script
+  }
+
+  void setEntryState(String entryState)
+  {
+    checkNotReadOnly()
+    this.entryState = entryState
+  }
+
+  void setParent(String parent)
+  {
+    checkNotReadOnly()
+    this.parent = parent
+  }
+
+  void setInitParameters(initParameters)
+  {
+    checkNotReadOnly()
+    this.initParameters = initParameters
+  }
+
+  void setActionArgs(actionArgs)
+  {
+    checkNotReadOnly()
+    this.actionArgs = actionArgs
+  }
+
+  void setMetadata(Map<String, Object> metadata)
+  {
+    checkNotReadOnly()
+    this.metadata = metadata
+  }
+
+  boolean isReadOnly()
+  {
+    return _readOnly
+  }
+
+  /**
+   * Makes this entry read only: the setters throw an exception and the init parameters, action
+   * args, metadata (at any depth) and tags can no longer be modified in place (use
+   * <code>clone</code> to get a modifiable copy). This is how an entry can be safely shared by
+   * several models.
+   *
+   * @return this entry
+   */
+  SystemEntry makeReadOnly()
+  {
+    if(!_readOnly)
+    {
+      // the values are copied so that the entry does not depend on maps still owned by the caller
+      this.initParameters = ReadOnlyValues.deepReadOnly(initParameters)
+      this.actionArgs = ReadOnlyValues.deepReadOnly(actionArgs)
+      this.metadata = (Map<String, Object>) ReadOnlyValues.deepReadOnly(metadata)
+      if(entryTags instanceof WriteOnlyTaggeable)
+        this.entryTags = new ReadOnlyTaggeableTreeSet(entryTags.tags)
+      _readOnly = true
+    }
+    return this
+  }
+
+  private void checkNotReadOnly()
+  {
+    if(_readOnly)
+      throw new UnsupportedOperationException("read only entry ${key}: clone it first")
+  }
+
+  /**
+   * @return the digest (sha-1) of the content of this entry (computed once and cached when the
+   * entry is read only, computed on every call otherwise)
+   */
+  String getDigest()
+  {
+    if(!_readOnly)
+      return SystemModelDigests.computeEntryDigest(this)
+
+    String digest = _digest
+    if(digest == null)
+    {
+      digest = SystemModelDigests.computeEntryDigest(this)
+      _digest = digest
+    }
+    return digest
   }
 
   boolean isEmptyAgent()
@@ -247,4 +362,54 @@ class SystemEntry implements ReadOnlyTaggeable, MetadataProvider
   {
     return JsonUtils.prettyPrint(toExternalRepresentation())
   }
+
+  /**
+   * The tags of a read only entry (the digest of the entry would not follow any modification)
+   */
+  private static class ReadOnlyTaggeableTreeSet extends TaggeableTreeSetImpl
+  {
+    private final Set<String> _readOnlyTags
+
+    ReadOnlyTaggeableTreeSet(Collection<String> tags)
+    {
+      super(tags)
+      _readOnlyTags = (Set<String>) ReadOnlyValues.deepReadOnly(super.getTags())
+    }
+
+    @Override
+    Set<String> getTags()
+    {
+      return _readOnlyTags
+    }
+
+    @Override
+    boolean addTag(String tag)
+    {
+      throw new UnsupportedOperationException("read only tags")
+    }
+
+    @Override
+    Set<String> addTags(Collection<String> tags)
+    {
+      throw new UnsupportedOperationException("read only tags")
+    }
+
+    @Override
+    boolean removeTag(String tag)
+    {
+      throw new UnsupportedOperationException("read only tags")
+    }
+
+    @Override
+    Set<String> removeTags(Collection<String> tags)
+    {
+      throw new UnsupportedOperationException("read only tags")
+    }
+
+    @Override
+    void setTags(Collection<String> tags)
+    {
+      throw new UnsupportedOperationException("read only tags")
+    }
+  }
 }
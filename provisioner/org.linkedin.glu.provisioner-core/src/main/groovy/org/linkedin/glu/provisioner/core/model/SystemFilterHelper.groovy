@@ -16,6 +16,8 @@
 
 package org.linkedin.glu.provisioner.core.model
 
+import org.linkedin.glu.utils.tags.TagIndex
+
 /**
  * @author yan@pongasoft.com */
 public class SystemFilterHelper
@@ -143,4 +145,76 @@ public class SystemFilterHelper
       return true
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Uses the index of the entries of the model to compute (with bitmap operations) the entries
+   * which can possibly match the filter based on its tags and keys filters only (ex:
+   * <code>tags='a;b'</code> and <code>not{tags.hasAny('c')}</code> is resolved as
+   * <code>(a AND b) ANDNOT c</code>). The filter itself still needs to be applied on the result.
+   *
+   * @return the ids (in <code>model.entriesIndex</code>) of the candidate entries or
+   *         <code>null</code> if the filter cannot be resolved by tags or keys (in which case
+   *         every entry is a candidate)
+   */
+  static BitSet computeCandidates(SystemFilter filter, SystemModel model)
+  {
+    if(filter instanceof SystemEntryKeyModelFilter)
+    {
+      return model.entriesIndex.computeIds(filter.keys)
+    }
+
+    if(filter instanceof TagsSystemFilter)
+    {
+      TagIndex tagIndex = model.entriesIndex.tagIndex
+      if(filter.allTags)
+        return tagIndex.computeKeysWithAllTags(filter.tags)
+      else
+        return tagIndex.computeKeysWithAnyTag(filter.tags)
+    }
+
+    if(filter instanceof LogicNotSystemFilter)
+    {
+      // only a tags or keys filter is exact (anything else is a superset which cannot be negated)
+      if(filter.filter instanceof TagsSystemFilter ||
+         filter.filter instanceof SystemEntryKeyModelFilter)
+      {
+        BitSet res = model.entriesIndex.computeAllIds()
+        res.andNot(computeCandidates(filter.filter, model))
+        return res
+      }
+      return null
+    }
+
+    if(filter instanceof LogicAndSystemFilterChain)
+    {
+      BitSet res = null
+      for(SystemFilter f : filter.filters)
+      {
+        BitSet candidates = computeCandidates(f, model)
+        if(candidates != null)
+        {
+          if(res == null)
+            res = candidates
+          else
+            res.and(candidates)
+        }
+      }
+      return res
+    }
+
+    if(filter instanceof LogicOrSystemFilterChain)
+    {
+      BitSet res = new BitSet()
+      for(SystemFilter f : filter.filters)
+      {
+        BitSet candidates = computeCandidates(f, model)
+        if(candidates == null)
+          return null
+        res.or(candidates)
+      }
+      return res
+    }
+
+    return null
+  }
+}
@@ -27,6 +27,7 @@ import org.linkedin.util.lang.LangUtils
 import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
 
 import org.linkedin.glu.utils.tags.ReadOnlyTaggeable
+import org.linkedin.glu.utils.tags.TagIndex
 import org.linkedin.glu.utils.tags.Taggeable
 import org.linkedin.glu.utils.tags.TaggeableTreeSetImpl
 
@@ -37,7 +38,9 @@ class SystemModel implements MetadataProvider
   public static final OneWayCodec SHA1 =
     OneWayMessageDigestCodec.createSHA1Instance('', HexaCodec.INSTANCE)
 
-  private final Map<String, SystemEntry> _entries = new TreeMap()
+  // for a filtered model, the entries are a (read only) view over the
+  // entries of the unfiltered model (see FilteredSystemEntries) until the model is modified
+  private Map<String, SystemEntry> _entries = new TreeMap()
   private final Map<String, Collection<String>> _children = new HashMap<String,Collection<String>>()
   private Map<String, Taggeable> _agentTags = new TreeMap<String, Taggeable>()
 
@@ -53,6 +56,69 @@ class SystemModel implements MetadataProvider
   // when a filter is applied we keep a reference to the original unfiltered model
   private SystemModel _unfilteredModel = null
 
+  // the index of the entries (lazily computed, see getEntriesIndex)
+  private volatile SystemEntriesIndex _entriesIndex = null
+
+  // the index of the entries by tags of a filtered model (lazily computed, see getTagIndex)
+  private volatile TagIndex _tagIndex = null
+
+  // see makeReadOnly
+  private volatile boolean _readOnly = false
+
+  void setId(String id)
+  {
+    checkNotReadOnly()
+    this.id = id
+  }
+
+  void setFabric(String fabric)
+  {
+    checkNotReadOnly()
+    this.fabric = fabric
+  }
+
+  void setFilters(SystemFilter filters)
+  {
+    checkNotReadOnly()
+    this.filters = filters
+  }
+
+  void setMetadata(Map<String, Object> metadata)
+  {
+    checkNotReadOnly()
+    this.metadata = metadata
+  }
+
+  boolean isReadOnly()
+  {
+    return _readOnly
+  }
+
+  /**
+   * Makes this model (and its entries) read only so that it can be safely shared: any attempt to
+   * modify it (including its metadata at any depth) throws an exception and the caller should use
+   * <code>clone</code> to get a modifiable copy. A filtered model of a read only model is read
+   * only as well.
+   *
+   * @return this model
+   */
+  SystemModel makeReadOnly()
+  {
+    if(!_readOnly)
+    {
+      _entries.values().each { SystemEntry entry -> entry.makeReadOnly() }
+      this.metadata = (Map<String, Object>) ReadOnlyValues.deepReadOnly(metadata)
+      _readOnly = true
+    }
+    return this
+  }
+
+  private void checkNotReadOnly()
+  {
+    if(_readOnly)
+      throw new UnsupportedOperationException("read only model ${fabric}: clone it first")
+  }
+
   /**
    * @return the metadata called 'name'
    */
@@ -77,6 +143,8 @@ class SystemModel implements MetadataProvider
 
   void addEntry(SystemEntry entry)
   {
+    checkNotReadOnly()
+    materializeEntries()
     if(_entries.containsKey(entry.key))
     {
       throw new IllegalArgumentException("already defined entry ${entry.key}")
@@ -95,6 +163,8 @@ class SystemModel implements MetadataProvider
     {
       entry.tags = entry.entryTags.tags + agentTags.tags
     }
+    _entriesIndex = null
+    _tagIndex = null
   }
 
   void updateEntry(SystemEntry entry)
@@ -105,7 +175,85 @@ class SystemModel implements MetadataProvider
 
   void removeEntry(String key)
   {
+    checkNotReadOnly()
+    materializeEntries()
     _entries.remove(key)
+    _entriesIndex = null
+    _tagIndex = null
+  }
+
+  /**
+   * A filtered model shares the entries of the unfiltered model until it gets modified, at which
+   * point it gets its own copy.
+   */
+  private void materializeEntries()
+  {
+    if(_entries instanceof FilteredSystemEntries)
+    {
+      Map<String, SystemEntry> entries = new TreeMap(_entries)
+      entries.values().each { SystemEntry entry ->
+        if(entry.parent != SystemEntry.DEFAULT_PARENT)
+        {
+          Collection<String> children = _children[entry.parentKey]
+          if(children == null)
+          {
+            children = new HashSet<String>()
+            _children[entry.parentKey] = children
+          }
+          children << entry.key
+        }
+      }
+      _entries = entries
+    }
+  }
+
+  /**
+   * The index is computed the first time it is needed and discarded when the entries change.
+   * A filtered model returns the index of the unfiltered model (which contains entries which are
+   * not part of the filtered model).
+   *
+   * @return the index of the entries (ids, children, tags)
+   */
+  SystemEntriesIndex getEntriesIndex()
+  {
+    def entries = _entries
+    if(entries instanceof FilteredSystemEntries)
+      return entries.getIndex()
+
+    SystemEntriesIndex entriesIndex = _entriesIndex
+
+    if(entriesIndex == null)
+    {
+      entriesIndex = new SystemEntriesIndex(entries.values())
+      _entriesIndex = entriesIndex
+    }
+
+    return entriesIndex
+  }
+
+  /**
+   * The index is computed the first time it is needed and discarded when the entries change
+   * (note that the tags of an entry must not be modified once the entry has been added).
+   *
+   * @return the index of the keys of the entries by tags (entry tags and agent tags)
+   */
+  TagIndex getTagIndex()
+  {
+    if(!(_entries instanceof FilteredSystemEntries))
+      return entriesIndex.tagIndex
+
+    TagIndex tagIndex = _tagIndex
+
+    if(tagIndex == null)
+    {
+      tagIndex = new TagIndex()
+      _entries.values().each { SystemEntry se ->
+        tagIndex.add(se.key, se.tags)
+      }
+      _tagIndex = tagIndex
+    }
+
+    return tagIndex
   }
 
   SystemEntry findEntry(String agent, String mountPoint)
@@ -120,6 +268,9 @@ class SystemModel implements MetadataProvider
 
   Collection<String> findChildrenKeys(String parentKey)
   {
+    def entries = _entries
+    if(entries instanceof FilteredSystemEntries)
+      return entries.findChildrenKeys(parentKey)
     _children[parentKey]
   }
 
@@ -188,6 +339,7 @@ class SystemModel implements MetadataProvider
    */
   void addAgentTags(String agentName, Collection<String> tags)
   {
+    checkNotReadOnly()
     if(_entries)
     {
       throw new IllegalStateException("currently unsupported operation: add the tags, then the entries")
@@ -218,7 +370,7 @@ class SystemModel implements MetadataProvider
    */
   Map<String, ? extends ReadOnlyTaggeable> getAgentTags()
   {
-    return _agentTags
+    return _readOnly ? Collections.unmodifiableMap(_agentTags) : _agentTags
   }
 
   /**
@@ -343,19 +495,34 @@ class SystemModel implements MetadataProvider
 
     def newFilters = SystemFilterHelper.and(filters, filter)
 
-    SystemModel model = new SystemModel(id: id,
-                                        fabric: fabric,
-                                        metadata: metadata,
-                                        filters: newFilters,
-                                        _agentTags: _agentTags,
-                                        _unfilteredModel: _unfilteredModel ?: this)
+    SystemEntriesIndex index = entriesIndex
 
-    _entries.values().each { SystemEntry se ->
-      if(filter.filter(se))
-        model.addEntry(se)
+    def entries = _entries
+    BitSet ids = entries instanceof FilteredSystemEntries ? entries.computeIds() : index.computeAllIds()
+
+    // the tags and keys filters (if any) are resolved with the index so that only the entries
+    // which can possibly match are checked
+    BitSet candidates = SystemFilterHelper.computeCandidates(filter, this)
+    if(candidates != null)
+      ids.and(candidates)
+
+    for(int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+    {
+      if(!filter.filter(index.getEntry(i)))
+        ids.clear(i)
     }
 
-    return model
+    // the filtered model does not copy the entries: it is a view (bitmap
+    // of ids) over the (immutable) index of the entries of this model
+    def res = new SystemModel(id: id,
+                              fabric: fabric,
+                              metadata: metadata,
+                              filters: newFilters,
+                              _agentTags: _agentTags,
+                              _unfilteredModel: _unfilteredModel ?: this,
+                              _entries: new FilteredSystemEntries(index, ids))
+    res._readOnly = _readOnly
+    return res
   }
 
 
@@ -417,6 +584,25 @@ class SystemModel implements MetadataProvider
     return this
   }
 
+  /**
+   * @return the digest of each entry (sorted by key)
+   * @see SystemModelDigests
+   */
+  SortedMap<String, String> computeEntriesDigests()
+  {
+    SystemModelDigests.computeEntriesDigests(this)
+  }
+
+  /**
+   * @return the keys of the entries which differ between this model and the other one (added,
+   * removed or modified), computed from the entries digests (no delta)
+   * @see SystemModelDigests
+   */
+  SortedSet<String> computeChangedKeys(SystemModel other)
+  {
+    SystemModelDigests.computeChangedKeys(this, other)
+  }
+
   /**
    * In the canonical representation, the agent tags are removed from the entry tags
    */
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.core.model
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.linkedin.groovy.util.json.JsonUtils
+import org.linkedin.util.codec.HexaCodec
+
+import java.security.MessageDigest
+
+/**
+ * Merkle style digests of a system model: each entry has its own digest (cached on the entry when
+ * it is read only, see {@link SystemEntry#getDigest()}) and the digest of the model is computed
+ * from the digest of its "header" (fabric, metadata and agent tags) and the digests of its entries
+ * sorted by key. As a result, computing the digest of a read only model which shares most of its
+ * entries with a previous one only rehashes the few entries which differ.
+ *
+ * The entries digests can also be used to compare 2 models without computing a full delta
+ * (see {@link #computeChangedKeys(SystemModel, SystemModel)}).
+ *
+ * @author yan@pongasoft.com */
+class SystemModelDigests
+{
+  private static final ObjectMapper JACKSON_CANONICAL_MAPPER = JsonUtils.newJacksonMapper(true)
+
+  /**
+   * @return the digest (sha-1) of the (canonical) json representation of the fields of the entry
+   */
+  static String computeEntryDigest(SystemEntry entry)
+  {
+    def content = [
+      agent: entry.agent,
+      mountPoint: entry.mountPoint,
+      script: entry.script,
+      entryState: entry.entryState,
+      parent: entry.parent,
+      initParameters: entry.initParameters ?: [:],
+      actionArgs: entry.actionArgs ?: [:],
+      metadata: entry.metadata ?: [:],
+      tags: new TreeSet<String>(entry.tags)
+    ]
+
+    MessageDigest md = newSHA1()
+    md.update(JACKSON_CANONICAL_MAPPER.writeValueAsBytes(content))
+    return HexaCodec.INSTANCE.encode(md.digest())
+  }
+
+  /**
+   * @return the digest of each entry of the model (sorted by key)
+   */
+  static SortedMap<String, String> computeEntriesDigests(SystemModel model)
+  {
+    SortedMap<String, String> res = new TreeMap<String, String>()
+
+    model.each { SystemEntry entry ->
+      res[entry.key] = entry.digest
+    }
+
+    return res
+  }
+
+  /**
+   * @return the merkle root of the model: the digest of its header (everything but the id and
+   * the entries) followed by the key and digest of each entry (sorted by key). <code>null</code>
+   * if the model is <code>null</code>
+   */
+  static String computeModelDigest(SystemModel model)
+  {
+    if(model == null)
+      return null
+
+    MessageDigest md = newSHA1()
+
+    def header = model.toExternalRepresentation(false)
+    header.remove('id') // we remove id from the computation
+    md.update(JACKSON_CANONICAL_MAPPER.writeValueAsBytes(header))
+
+    computeEntriesDigests(model).each { String key, String digest ->
+      md.update("\n${key}:${digest}".toString().getBytes('UTF-8'))
+    }
+
+    return HexaCodec.INSTANCE.encode(md.digest())
+  }
+
+  /**
+   * Compares the 2 models entry by entry using the entries digests.
+   *
+   * @return the keys of the entries which are only in one of the 2 models or which are in both
+   * but with a different content (sorted)
+   */
+  static SortedSet<String> computeChangedKeys(SystemModel model1, SystemModel model2)
+  {
+    SortedMap<String, String> digests1 =
+      model1 ? computeEntriesDigests(model1) : new TreeMap<String, String>()
+    SortedMap<String, String> digests2 =
+      model2 ? computeEntriesDigests(model2) : new TreeMap<String, String>()
+
+    SortedSet<String> res = new TreeSet<String>()
+
+    digests1.each { String key, String digest ->
+      if(digests2[key] != digest)
+        res << key
+    }
+
+    digests2.keySet().each { String key ->
+      if(!digests1.containsKey(key))
+        res << key
+    }
+
+    return res
+  }
+
+  private static MessageDigest newSHA1()
+  {
+    return MessageDigest.getInstance('SHA-1')
+  }
+}
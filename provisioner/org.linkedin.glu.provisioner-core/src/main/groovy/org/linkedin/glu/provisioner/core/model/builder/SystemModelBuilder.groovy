@@ -16,6 +16,8 @@
 
 package org.linkedin.glu.provisioner.core.model.builder
 
+import com.fasterxml.jackson.core.JsonProcessingException
+import org.linkedin.glu.provisioner.core.model.JSONSystemModelSerializer
 import org.linkedin.glu.provisioner.core.model.SystemEntry
 import org.linkedin.glu.provisioner.core.model.SystemModel
 
@@ -25,6 +27,39 @@ public class SystemModelBuilder extends ModelBuilder<SystemModel>
 {
   private SystemModel _systemModel
 
+  /**
+   * The json (not groovy dsl) model is parsed while being read (streaming) which avoids loading
+   * the entire content as a string and then as a map before building the model.
+   */
+  @Override
+  SystemModelBuilder deserializeFromJsonInputStream(InputStream inputStream, String filename)
+  {
+    if(inputStream == null || filename?.endsWith('.json.groovy'))
+    {
+      super.deserializeFromJsonInputStream(inputStream, filename)
+      return this
+    }
+
+    try
+    {
+      _systemModel = JSONSystemModelSerializer.INSTANCE.deserialize(inputStream)
+    }
+    catch(JsonProcessingException jpe)
+    {
+      // the content is not available anymore so there is no excerpt to show other than
+      // the location of the error (a mapping error may not have any)
+      def excerpt = "${filename ?: 'model'}".toString()
+      if(jpe.location)
+        excerpt = "${excerpt}: [${jpe.location.lineNr}:${jpe.location.columnNr}]".toString()
+
+      log.error(excerpt)
+
+      throw new ModelBuilderParseException(jpe, excerpt)
+    }
+
+    return this
+  }
+
   @Override
   Map doParseJsonGroovy(String jsonModel)
   {
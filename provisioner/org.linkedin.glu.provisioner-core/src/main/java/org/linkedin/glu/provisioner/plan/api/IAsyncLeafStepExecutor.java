@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.provisioner.plan.api;
+
+import org.linkedin.glu.utils.concurrent.ListenableFuture;
+
+/**
+ * A leaf step executor which can execute (some of) the leaf steps asynchronously: instead of
+ * blocking a thread until the step completes, it returns a future which gets completed when the
+ * step is done (ex: when an event is received).
+ *
+ * @author yan@pongasoft.com
+ */
+public interface IAsyncLeafStepExecutor<T> extends ILeafStepExecutor<T>
+{
+  /**
+   * @return <code>true</code> if the leaf step should be executed with
+   * {@link #executeLeafStepAsync(LeafStep)} rather than {@link #executeLeafStep(LeafStep)}
+   */
+  boolean isAsyncExecution(LeafStep<T> leafStep);
+
+  /**
+   * Starts the execution of the leaf step and returns right away. Canceling the future must
+   * cancel the execution.
+   *
+   * @return the future which gets completed when the execution of the leaf step is done
+   */
+  ListenableFuture<Object> executeLeafStepAsync(LeafStep<T> leafStep) throws Exception;
+}
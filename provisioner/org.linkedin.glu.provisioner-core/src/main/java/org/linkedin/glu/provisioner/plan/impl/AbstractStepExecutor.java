@@ -38,7 +38,7 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
   private final IStep<T> _step;
   protected final StepExecutionContext<T> _context;
 
-  private Future<Void> _future;
+  private Future<?> _future;
   private volatile IStepCompletionStatus<T> _completionStatus;
   private long _startTime = 0;
 
@@ -141,56 +141,74 @@ public abstract class AbstractStepExecutor<T> implements IStepExecutor<T>
       if(log.isDebugEnabled())
         debug("execute (submitting)");
 
-      _future = submit(new Callable<Void>()
+      _future = submitExecution();
+
+      _context.onStepStart(this);
+    }
+  }
+
+  /**
+   * Submits the execution of the step.
+   *
+   * @return the future representing the execution (canceling it cancels the execution)
+   */
+  protected Future<?> submitExecution()
+  {
+    return submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception
       {
-        @Override
-        public Void call() throws Exception
+        try
         {
-          try
-          {
-            if(log.isDebugEnabled())
-              debug("execute (waiting for resume)");
+          if(log.isDebugEnabled())
+            debug("execute (waiting for resume)");
 
-            IStepCompletionStatus<T> completionStatus;
+          IStepCompletionStatus<T> completionStatus;
 
-            try
+          try
+          {
+            if(waitForResume())
             {
-              if(waitForResume())
-              {
-                if(log.isDebugEnabled())
-                  debug("execute (executing)");
-
-                _startTime = _context.currentTimeMillis();
-                completionStatus = doExecute();
-                setCompletionStatus(completionStatus);
-              }
-              else
-              {
-                if(log.isDebugEnabled())
-                  debug("execute (not executing)");
-              }
+              if(log.isDebugEnabled())
+                debug("execute (executing)");
+
+              recordStartTime();
+              completionStatus = doExecute();
+              setCompletionStatus(completionStatus);
             }
-            catch(Throwable th)
+            else
             {
               if(log.isDebugEnabled())
-                debug("exception in execute (ignored)", th);
-              completionStatus = createCompletionStatus(IStepCompletionStatus.Status.FAILED, th);
-              setCompletionStatus(completionStatus);
+                debug("execute (not executing)");
             }
-
-            return null;
           }
           catch(Throwable th)
           {
-            // this should not really happen
-            log.warn("exception in execute (ignored)", th);
-            return null;
+            if(log.isDebugEnabled())
+              debug("exception in execute (ignored)", th);
+            completionStatus = createCompletionStatus(IStepCompletionStatus.Status.FAILED, th);
+            setCompletionStatus(completionStatus);
           }
+
+          return null;
+        }
+        catch(Throwable th)
+        {
+          // this should not really happen
+          log.warn("exception in execute (ignored)", th);
+          return null;
         }
-      });
+      }
+    });
+  }
 
-      _context.onStepStart(this);
-    }
+  /**
+   * Records the time at which the execution of the step actually starts
+   */
+  protected void recordStartTime()
+  {
+    _startTime = _context.currentTimeMillis();
   }
 
   protected abstract IStepCompletionStatus<T> doExecute() throws InterruptedException;
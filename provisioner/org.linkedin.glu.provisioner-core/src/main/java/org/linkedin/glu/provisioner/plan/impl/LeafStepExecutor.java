@@ -21,8 +21,10 @@ import org.slf4j.LoggerFactory;
 import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus;
 import org.linkedin.glu.provisioner.plan.api.LeafStep;
 import org.linkedin.glu.provisioner.plan.api.LeafStepCompletionStatus;
+import org.linkedin.glu.utils.concurrent.ListenableFuture;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 /**
@@ -42,12 +44,110 @@ public class LeafStepExecutor<T> extends AbstractStepExecutor<T> implements ISte
   }
 
   /**
-   * Submits the job to the appropriate service executor.
+   * Submits the job to the appropriate service executor (through the scheduler which limits the
+   * number of leaf steps executing concurrently).
    */
   @Override
   public <V> Future<V> submit(Callable<V> callable)
   {
-    return _context.getLeafStepExecutorService().submit(callable);
+    return _context.submitLeafStep((LeafStep<T>) getStep(), callable);
+  }
+
+  /**
+   * When the leaf step executor can execute the step asynchronously, the execution does not hold
+   * a thread (nor a slot of the scheduler thread pool) while waiting for the step to complete: the
+   * completion status is set when the future returned by the leaf step executor completes.
+   */
+  @Override
+  protected Future<?> submitExecution()
+  {
+    final LeafStep<T> step = (LeafStep<T>) getStep();
+
+    if(!getContext().isAsyncLeafStep(step))
+      return super.submitExecution();
+
+    return _context.submitAsyncLeafStep(step, new Callable<ListenableFuture<Object>>()
+    {
+      @Override
+      public ListenableFuture<Object> call() throws Exception
+      {
+        try
+        {
+          if(waitForResume())
+          {
+            if(log.isDebugEnabled())
+              debug("execute (executing asynchronously)");
+
+            recordStartTime();
+
+            final ListenableFuture<Object> execution = getContext().executeLeafStepAsync(step);
+
+            execution.addListener(new Runnable()
+            {
+              @Override
+              public void run()
+              {
+                setCompletionStatus(computeCompletionStatus(execution));
+              }
+            });
+
+            return execution;
+          }
+          else
+          {
+            if(log.isDebugEnabled())
+              debug("execute (not executing)");
+          }
+        }
+        catch(Throwable th)
+        {
+          if(log.isDebugEnabled())
+            debug("exception in execute (ignored)", th);
+          setCompletionStatus(createCompletionStatus(IStepCompletionStatus.Status.FAILED, th));
+        }
+
+        return null;
+      }
+    });
+  }
+
+  /**
+   * @return the completion status matching the (completed) asynchronous execution
+   */
+  protected IStepCompletionStatus<T> computeCompletionStatus(Future<Object> execution)
+  {
+    IStepCompletionStatus.Status status = IStepCompletionStatus.Status.COMPLETED;
+    Throwable throwable = null;
+
+    if(execution.isCancelled())
+    {
+      status = IStepCompletionStatus.Status.CANCELLED;
+    }
+    else
+    {
+      try
+      {
+        execution.get();
+      }
+      catch(InterruptedException e)
+      {
+        status = IStepCompletionStatus.Status.CANCELLED;
+      }
+      catch(ExecutionException e)
+      {
+        if(e.getCause() instanceof InterruptedException)
+        {
+          status = IStepCompletionStatus.Status.CANCELLED;
+        }
+        else
+        {
+          throwable = e.getCause();
+          status = IStepCompletionStatus.Status.FAILED;
+        }
+      }
+    }
+
+    return createCompletionStatus(status, throwable);
   }
 
   @Override
@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.linkedin.glu.provisioner.plan.impl;
+
+import org.linkedin.glu.provisioner.plan.api.LeafStep;
+import org.linkedin.glu.utils.concurrent.ListenableFuture;
+import org.linkedin.glu.utils.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Schedules the execution of the leaf steps of a plan on the leaf executor service while making
+ * sure that there are never more than <code>maxInFlight</code> leaf steps executing at the same
+ * time for the plan, and never more than <code>maxInFlightPerKey</code> for a given key (the
+ * value of the <code>keyName</code> metadata of the step, ex: the agent). The leaf steps which
+ * cannot be executed yet are queued (per key) and get executed as soon as a leaf step completes.
+ *
+ * A limit of <code>0</code> (or less) means no limit. A step without the key metadata is only
+ * limited by <code>maxInFlight</code>.
+ *
+ * A step submitted with {@link #submitAsync(LeafStep, Callable)} only uses a thread to start
+ * its execution but keeps its slot until the execution completes.
+ *
+ * @author yan@pongasoft.com
+ */
+public class LeafStepScheduler<T>
+{
+  public static final String MODULE = LeafStepScheduler.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private final ExecutorService _executorService;
+  private final int _maxInFlight;
+  private final int _maxInFlightPerKey;
+  private final String _keyName;
+
+  private final Map<Object, Deque<ScheduledLeafStep<?>>> _pendingSteps =
+    new HashMap<Object, Deque<ScheduledLeafStep<?>>>();
+  private final Map<Object, Integer> _inFlightPerKey = new HashMap<Object, Integer>();
+
+  // the keys which have pending steps and can execute at least one more (in arrival order)
+  private final Set<Object> _readyKeys = new LinkedHashSet<Object>();
+
+  private int _inFlight = 0;
+
+  /**
+   * Constructor
+   */
+  public LeafStepScheduler(ExecutorService executorService,
+                           int maxInFlight,
+                           int maxInFlightPerKey,
+                           String keyName)
+  {
+    _executorService = executorService;
+    _maxInFlight = maxInFlight;
+    _maxInFlightPerKey = maxInFlightPerKey;
+    _keyName = keyName;
+  }
+
+  /**
+   * Constructor (no limit)
+   */
+  public LeafStepScheduler(ExecutorService executorService)
+  {
+    this(executorService, 0, 0, null);
+  }
+
+  public ExecutorService getExecutorService()
+  {
+    return _executorService;
+  }
+
+  public int getMaxInFlight()
+  {
+    return _maxInFlight;
+  }
+
+  public int getMaxInFlightPerKey()
+  {
+    return _maxInFlightPerKey;
+  }
+
+  public String getKeyName()
+  {
+    return _keyName;
+  }
+
+  /**
+   * @return the number of leaf steps currently executing
+   */
+  public synchronized int getInFlightCount()
+  {
+    return _inFlight;
+  }
+
+  /**
+   * @return the number of leaf steps waiting to be executed
+   */
+  public synchronized int getPendingCount()
+  {
+    int res = 0;
+    for(Deque<ScheduledLeafStep<?>> steps : _pendingSteps.values())
+    {
+      res += steps.size();
+    }
+    return res;
+  }
+
+  /**
+   * Schedules the execution of the callable (for the given step). The step is executed right
+   * away if the limits allow it, otherwise it is queued.
+   *
+   * @return the future (note that canceling the future of a step which has not started yet
+   * simply removes it from the queue)
+   */
+  public <V> Future<V> submit(LeafStep<T> step, Callable<V> callable)
+  {
+    if(_maxInFlight <= 0 && _maxInFlightPerKey <= 0)
+      return _executorService.submit(callable);
+
+    ScheduledLeafStep<V> scheduledStep = new ScheduledLeafStep<V>(computeKey(step), callable, null);
+
+    enqueue(scheduledStep);
+
+    return scheduledStep;
+  }
+
+  /**
+   * Schedules the asynchronous execution of the callable (for the given step): the callable is
+   * called in a thread of the executor service and returns right away the future of the
+   * execution. The step is accounted as in flight until this future completes (the thread is
+   * released as soon as the callable returns).
+   *
+   * @return the future which completes when the future returned by the callable completes
+   * (note that canceling it cancels the execution, or removes it from the queue if it has not
+   * started yet)
+   */
+  public <V> ListenableFuture<V> submitAsync(LeafStep<T> step,
+                                             final Callable<ListenableFuture<V>> callable)
+  {
+    final AsyncExecution<V> res = new AsyncExecution<V>();
+
+    Callable<Void> start = new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception
+      {
+        try
+        {
+          res.setExecution(callable.call());
+        }
+        catch(Throwable th)
+        {
+          res.fail(th);
+        }
+        return null;
+      }
+    };
+
+    if(_maxInFlight <= 0 && _maxInFlightPerKey <= 0)
+    {
+      res.setTask(_executorService.submit(start));
+    }
+    else
+    {
+      final ScheduledLeafStep<Void> scheduledStep =
+        new ScheduledLeafStep<Void>(computeKey(step), start, res);
+
+      res.setTask(scheduledStep);
+
+      // the slot is released when the execution completes (not when the start task completes)
+      res.addListener(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          onDone(scheduledStep);
+        }
+      });
+
+      enqueue(scheduledStep);
+    }
+
+    return res;
+  }
+
+  private void enqueue(ScheduledLeafStep<?> scheduledStep)
+  {
+    List<ScheduledLeafStep<?>> stepsToStart;
+
+    synchronized(this)
+    {
+      Deque<ScheduledLeafStep<?>> steps = _pendingSteps.get(scheduledStep._key);
+      if(steps == null)
+      {
+        steps = new ArrayDeque<ScheduledLeafStep<?>>();
+        _pendingSteps.put(scheduledStep._key, steps);
+      }
+      steps.addLast(scheduledStep);
+
+      if(canExecute(scheduledStep._key))
+        _readyKeys.add(scheduledStep._key);
+
+      stepsToStart = pollStepsToStart();
+    }
+
+    startSteps(stepsToStart);
+  }
+
+  /**
+   * @return the key to use for the step (when there is no key, the step itself is used so that it
+   * is never limited by <code>maxInFlightPerKey</code>)
+   */
+  protected Object computeKey(LeafStep<T> step)
+  {
+    Object key = null;
+
+    if(_keyName != null && step.getMetadata() != null)
+      key = step.getMetadata().get(_keyName);
+
+    return key == null ? step : key;
+  }
+
+  /**
+   * Must be called while holding the lock
+   */
+  private boolean canExecute(Object key)
+  {
+    if(_maxInFlightPerKey <= 0)
+      return true;
+
+    Integer inFlight = _inFlightPerKey.get(key);
+    return inFlight == null || inFlight < _maxInFlightPerKey;
+  }
+
+  /**
+   * Removes from the queue as many pending steps as allowed and accounts them as in flight. Must
+   * be called while holding the lock.
+   *
+   * @return the steps to start (with {@link #startSteps(List)}) or <code>null</code> if none
+   */
+  private List<ScheduledLeafStep<?>> pollStepsToStart()
+  {
+    List<ScheduledLeafStep<?>> stepsToStart = null;
+
+    Iterator<Object> iterator = _readyKeys.iterator();
+
+    while(iterator.hasNext() && (_maxInFlight <= 0 || _inFlight < _maxInFlight))
+    {
+      Object key = iterator.next();
+
+      Deque<ScheduledLeafStep<?>> steps = _pendingSteps.get(key);
+      ScheduledLeafStep<?> scheduledStep = steps.pollFirst();
+
+      if(steps.isEmpty())
+        _pendingSteps.remove(key);
+
+      Integer inFlight = _inFlightPerKey.get(key);
+      inFlight = inFlight == null ? 1 : inFlight + 1;
+      _inFlightPerKey.put(key, inFlight);
+      _inFlight++;
+      scheduledStep._started = true;
+
+      if(!_pendingSteps.containsKey(key) || !canExecute(key))
+        iterator.remove();
+
+      if(stepsToStart == null)
+        stepsToStart = new ArrayList<ScheduledLeafStep<?>>();
+      stepsToStart.add(scheduledStep);
+    }
+
+    return stepsToStart;
+  }
+
+  /**
+   * Hands off the steps to the executor service. Must be called without holding the lock: the
+   * executor service may block (or run the step in the calling thread) and a rejected step ends
+   * up calling {@link #onDone(ScheduledLeafStep)}.
+   */
+  private void startSteps(List<ScheduledLeafStep<?>> stepsToStart)
+  {
+    if(stepsToStart != null)
+    {
+      for(ScheduledLeafStep<?> scheduledStep : stepsToStart)
+      {
+        scheduledStep.start();
+      }
+    }
+  }
+
+  /**
+   * Called when a step completes (or is cancelled)
+   */
+  private void onDone(ScheduledLeafStep<?> scheduledStep)
+  {
+    List<ScheduledLeafStep<?>> stepsToStart;
+
+    synchronized(this)
+    {
+      if(scheduledStep._released)
+        return;
+
+      scheduledStep._released = true;
+
+      Object key = scheduledStep._key;
+
+      if(scheduledStep._started)
+      {
+        _inFlight--;
+
+        Integer inFlight = _inFlightPerKey.get(key);
+        if(inFlight == null || inFlight <= 1)
+          _inFlightPerKey.remove(key);
+        else
+          _inFlightPerKey.put(key, inFlight - 1);
+
+        if(_pendingSteps.containsKey(key))
+          _readyKeys.add(key);
+      }
+      else
+      {
+        // cancelled before being started: simply remove it from the queue
+        Deque<ScheduledLeafStep<?>> steps = _pendingSteps.get(key);
+        if(steps != null)
+        {
+          steps.remove(scheduledStep);
+          if(steps.isEmpty())
+          {
+            _pendingSteps.remove(key);
+            _readyKeys.remove(key);
+          }
+        }
+      }
+
+      stepsToStart = pollStepsToStart();
+    }
+
+    startSteps(stepsToStart);
+  }
+
+  private class ScheduledLeafStep<V> extends FutureTask<V>
+  {
+    private final Object _key;
+    private final SettableFuture<?> _asyncExecution;
+    private boolean _started = false;
+    private boolean _released = false;
+
+    private ScheduledLeafStep(Object key, Callable<V> callable, SettableFuture<?> asyncExecution)
+    {
+      super(callable);
+      _key = key;
+      _asyncExecution = asyncExecution;
+    }
+
+    /**
+     * Must be called without holding the lock of the scheduler
+     */
+    private void start()
+    {
+      try
+      {
+        _executorService.execute(this);
+      }
+      catch(RuntimeException e)
+      {
+        // will end up calling done()
+        setException(e);
+      }
+    }
+
+    @Override
+    protected void done()
+    {
+      try
+      {
+        if(_asyncExecution == null)
+        {
+          onDone(this);
+        }
+        else
+        {
+          // the slot of an asynchronous step is released when the
+          // execution completes... this only propagates the case when the start task did not run
+          if(isCancelled())
+            _asyncExecution.cancel(false);
+          else
+          {
+            try
+            {
+              get();
+            }
+            catch(ExecutionException e)
+            {
+              _asyncExecution.fail(e.getCause());
+            }
+          }
+        }
+      }
+      catch(Throwable th)
+      {
+        log.warn("unexpected exception (ignored)", th);
+      }
+    }
+  }
+
+  /**
+   * The future returned by {@link #submitAsync(LeafStep, Callable)}: it completes when the
+   * execution started by the task completes.
+   */
+  private static class AsyncExecution<V> extends SettableFuture<V>
+  {
+    private volatile Future<?> _task;
+    private volatile ListenableFuture<V> _execution;
+
+    private void setTask(Future<?> task)
+    {
+      _task = task;
+      if(isCancelled())
+        task.cancel(false);
+    }
+
+    private void setExecution(final ListenableFuture<V> execution)
+    {
+      if(execution == null)
+      {
+        complete(null);
+        return;
+      }
+
+      _execution = execution;
+
+      execution.addListener(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          completeWith(execution);
+        }
+      });
+
+      // canceled while the execution was starting
+      if(isCancelled())
+        execution.cancel(true);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+      boolean res = super.cancel(mayInterruptIfRunning);
+
+      if(res)
+      {
+        Future<?> task = _task;
+        if(task != null)
+          task.cancel(false);
+
+        Future<V> execution = _execution;
+        if(execution != null)
+          execution.cancel(mayInterruptIfRunning);
+      }
+
+      return res;
+    }
+  }
+}
@@ -37,6 +37,9 @@ public class PlanExecutor<T> implements IPlanExecutor<T>
   private ExecutorService _executorService;
   private ExecutorService _leafExecutorService;
   private ILeafStepExecutor<T> _leafStepExecutor;
+  private int _maxInFlightLeafSteps = 0;
+  private int _maxInFlightLeafStepsPerKey = 0;
+  private String _leafStepConcurrencyKey = "agent";
 
   /**
    * Constructor
@@ -110,6 +113,51 @@ public class PlanExecutor<T> implements IPlanExecutor<T>
     _leafStepExecutor = leafStepExecutor;
   }
 
+  public int getMaxInFlightLeafSteps()
+  {
+    return _maxInFlightLeafSteps;
+  }
+
+  /**
+   * Maximum number of leaf steps executing at the same time for a given plan (<code>0</code> means
+   * no limit)
+   */
+  @Initializer
+  public void setMaxInFlightLeafSteps(int maxInFlightLeafSteps)
+  {
+    _maxInFlightLeafSteps = maxInFlightLeafSteps;
+  }
+
+  public int getMaxInFlightLeafStepsPerKey()
+  {
+    return _maxInFlightLeafStepsPerKey;
+  }
+
+  /**
+   * Maximum number of leaf steps executing at the same time for a given plan and a given key
+   * (see {@link #setLeafStepConcurrencyKey(String)}), <code>0</code> means no limit
+   */
+  @Initializer
+  public void setMaxInFlightLeafStepsPerKey(int maxInFlightLeafStepsPerKey)
+  {
+    _maxInFlightLeafStepsPerKey = maxInFlightLeafStepsPerKey;
+  }
+
+  public String getLeafStepConcurrencyKey()
+  {
+    return _leafStepConcurrencyKey;
+  }
+
+  /**
+   * The name of the metadata of the leaf step used to limit the concurrency per key (by default
+   * <code>agent</code>)
+   */
+  @Initializer
+  public void setLeafStepConcurrencyKey(String leafStepConcurrencyKey)
+  {
+    _leafStepConcurrencyKey = leafStepConcurrencyKey;
+  }
+
   /**
    * Execute the provided plan. Note that this call is non blocking and will return an execution
    * object with which to interract.
@@ -135,8 +183,15 @@ public class PlanExecutor<T> implements IPlanExecutor<T>
   public IPlanExecution<T> executePlan(Plan<T> plan,
                                        IPlanExecutionProgressTracker<T> progressTracker)
   {
+    // the limits are per plan
+    LeafStepScheduler<T> leafStepScheduler =
+      new LeafStepScheduler<T>(_leafExecutorService,
+                               _maxInFlightLeafSteps,
+                               _maxInFlightLeafStepsPerKey,
+                               _leafStepConcurrencyKey);
+
     StepExecutionContext<T> ctx = new StepExecutionContext<T>(_executorService,
-                                                              _leafExecutorService,
+                                                              leafStepScheduler,
                                                               _leafStepExecutor,
                                                               progressTracker,
                                                               _clock);
@@ -21,7 +21,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
+import org.linkedin.glu.provisioner.plan.api.IAsyncLeafStepExecutor;
 import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor;
 import org.linkedin.glu.provisioner.plan.api.LeafStep;
 import org.linkedin.glu.provisioner.plan.api.IPlanExecutionProgressTracker;
@@ -33,6 +35,7 @@ import org.linkedin.glu.provisioner.plan.api.Plan;
 import org.linkedin.glu.provisioner.plan.api.IStepExecution;
 import org.linkedin.glu.provisioner.plan.api.NoOpPlanExecutionProgressTracker;
 import org.linkedin.glu.provisioner.plan.api.IPlanExecution;
+import org.linkedin.glu.utils.concurrent.ListenableFuture;
 import org.linkedin.util.clock.Clock;
 import org.linkedin.util.reflect.ObjectProxyBuilder;
 
@@ -46,6 +49,7 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
 
   private final ExecutorService _executorService;
   private final ExecutorService _leafStepExecutorService;
+  private final LeafStepScheduler<T> _leafStepScheduler;
   private final ILeafStepExecutor<T> _leafStepExecutor;
   private final IPlanExecutionProgressTracker<T> _originalTracker;
   private final Clock _clock;
@@ -61,9 +65,28 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
                               ILeafStepExecutor<T> leafStepExecutor,
                               IPlanExecutionProgressTracker<T> tracker,
                               Clock clock)
+  {
+    this(executorService,
+         new LeafStepScheduler<T>(leafStepExecutorService),
+         leafStepExecutor,
+         tracker,
+         clock);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param leafStepScheduler to limit the number of leaf steps executing concurrently
+   */
+  public StepExecutionContext(ExecutorService executorService,
+                              LeafStepScheduler<T> leafStepScheduler,
+                              ILeafStepExecutor<T> leafStepExecutor,
+                              IPlanExecutionProgressTracker<T> tracker,
+                              Clock clock)
   {
     _executorService = executorService;
-    _leafStepExecutorService = leafStepExecutorService;
+    _leafStepScheduler = leafStepScheduler;
+    _leafStepExecutorService = leafStepScheduler.getExecutorService();
     _leafStepExecutor = leafStepExecutor;
     _originalTracker = tracker;
     _clock = clock;
@@ -84,6 +107,29 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
     return _leafStepExecutorService;
   }
 
+  public LeafStepScheduler<T> getLeafStepScheduler()
+  {
+    return _leafStepScheduler;
+  }
+
+  /**
+   * Submits the execution of the leaf step (through the scheduler)
+   */
+  public <V> Future<V> submitLeafStep(LeafStep<T> leafStep, Callable<V> callable)
+  {
+    return _leafStepScheduler.submit(leafStep, callable);
+  }
+
+  /**
+   * Submits the asynchronous execution of the leaf step (through the scheduler): the slot is
+   * held until the future returned by the callable completes.
+   */
+  public <V> ListenableFuture<V> submitAsyncLeafStep(LeafStep<T> leafStep,
+                                                     Callable<ListenableFuture<V>> callable)
+  {
+    return _leafStepScheduler.submitAsync(leafStep, callable);
+  }
+
   public ILeafStepExecutor<T> getLeafStepExecutor()
   {
     return _leafStepExecutor;
@@ -94,6 +140,20 @@ public class StepExecutionContext<T> implements IPlanExecutionProgressTracker<T>
     _leafStepExecutor.executeLeafStep(leafStep);
   }
 
+  /**
+   * @return <code>true</code> if the leaf step executor can execute this step asynchronously
+   */
+  public boolean isAsyncLeafStep(LeafStep<T> leafStep)
+  {
+    return _leafStepExecutor instanceof IAsyncLeafStepExecutor &&
+           ((IAsyncLeafStepExecutor<T>) _leafStepExecutor).isAsyncExecution(leafStep);
+  }
+
+  public ListenableFuture<Object> executeLeafStepAsync(LeafStep<T> leafStep) throws Exception
+  {
+    return ((IAsyncLeafStepExecutor<T>) _leafStepExecutor).executeLeafStepAsync(leafStep);
+  }
+
   public long currentTimeMillis()
   {
     return _clock.currentTimeMillis();
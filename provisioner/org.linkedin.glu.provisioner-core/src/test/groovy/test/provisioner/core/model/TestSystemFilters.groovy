@@ -147,6 +147,33 @@ class TestSystemFilters extends GroovyTestCase
 
     checkFiltering("tags.hasAny('e:tag3;a:tag1')", "tags.hasAny('a:tag1;e:tag3')", ["h1:/m/1", "h1:/m/2", "h2:/m/1"])
     checkFiltering("tags.hasAny(['e:tag3', 'a:tag1'])", "tags.hasAny('a:tag1;e:tag3')", ["h1:/m/1", "h1:/m/2", "h2:/m/1"])
+
+    // combination of tags (resolved with the tag index)
+    checkFiltering("and{tags='e:tag1';not{tags.hasAny('e:tag3')}}", "and{tags='e:tag1';not{tags.hasAny('e:tag3')}}", ["h1:/m/1"])
+    checkFiltering("not{tags='e:tag1'}", "not{tags='e:tag1'}", ["h2:/m/1"])
+    checkFiltering("or{tags='a:tag3';tags.hasAny('e:tag2')}", "or{tags='a:tag3';tags.hasAny('e:tag2')}", ["h1:/m/1", "h2:/m/1"])
+    checkFiltering("tags='e:tag4'", "tags='e:tag4'", [])
+
+    // combination of tags and other filters
+    checkFiltering("and{agent='h1';tags='e:tag3'}", "and{agent='h1';tags='e:tag3'}", ["h1:/m/2"])
+    checkFiltering("or{tags='a:tag3';metadata.em1='ev1'}", "or{tags='a:tag3';metadata.em1='ev1'}", ["h1:/m/1", "h2:/m/1"])
+    checkFiltering("not{and{agent='h1';tags='e:tag3'}}", "not{and{agent='h1';tags='e:tag3'}}", ["h1:/m/1", "h2:/m/1"])
+  }
+
+  /**
+   * The properties of the entry are accessed directly (and maps/lists without the meta class)
+   * with a fallback on dynamic resolution
+   */
+  public void testPropertyFiltering()
+  {
+    checkFiltering("key='h1:/m/2'", "key='h1:/m/2'", ["h1:/m/2"])
+    checkFiltering("entryState='running'", "entryState='running'", ["h1:/m/1", "h1:/m/2", "h2:/m/1"])
+    checkFiltering("parent='/'", "parent='/'", ["h1:/m/1", "h1:/m/2", "h2:/m/1"])
+    checkFiltering("initParameters.ip2='c1'", "initParameters.ip2='c1'", ["h1:/m/1"])
+    checkFiltering("initParameters.ip4[-1].m3='mv4'", "initParameters.ip4[-1].m3='mv4'", ["h1:/m/1"])
+    checkFiltering("script.foo='s1'", "script.foo='s1'", [])
+    checkFiltering("foo='s1'", "foo='s1'", [])
+    checkFiltering("or{metadata.em1='ev1';not{agent='h1'}}", "or{metadata.em1='ev1';not{agent='h1'}}", ["h1:/m/1", "h2:/m/1"])
   }
 
   public void testNullSystemEntry()
@@ -17,8 +17,11 @@
 
 package test.provisioner.core.model
 
+import com.fasterxml.jackson.core.JsonParseException
 import org.linkedin.glu.provisioner.core.model.SystemModel
 import org.linkedin.glu.provisioner.core.model.SystemEntry
+import org.linkedin.glu.provisioner.core.model.SystemEntryKeyModelFilter
+import org.linkedin.glu.provisioner.core.model.LogicNotSystemFilter
 import org.linkedin.glu.provisioner.core.model.JSONSystemModelSerializer
 import org.linkedin.groovy.util.collections.GroovyCollectionsUtils
 
@@ -48,6 +51,57 @@ class TestSystemModel extends GroovyTestCase
     }
   }
 
+  /**
+   * Streaming serialization/deserialization (the model is never rendered as a whole string)
+   */
+  public void testStreamingSerializer()
+  {
+    def sd = new SystemModel(fabric: 'f1', metadata: [m1: 'v1', name: 'n1'])
+    sd.addAgentTags('h1', ['at1'])
+
+    (1..3).each {
+      sd.addEntry(new SystemEntry(agent: 'h1',
+                                  mountPoint: "/m${it}",
+                                  script: 's1',
+                                  initParameters: [ip1: 'iv1', ip2: ['c1'], ip3: [m1: 'mv1']],
+                                  metadata: [em1: 'ev1'],
+                                  tags: ['t1', 't2']))
+    }
+
+    def serializer = new JSONSystemModelSerializer(prettyPrint: 2)
+
+    def baos = new ByteArrayOutputStream()
+    serializer.serialize(sd, baos)
+
+    SystemModel computedSystem =
+      serializer.deserialize(new ByteArrayInputStream(baos.toByteArray()))
+    assertEquals(sd, computedSystem)
+    assertEquals('n1', computedSystem.name)
+
+    computedSystem.each {
+      assertEquals(['at1', 't1', 't2'] as TreeSet, it.tags)
+    }
+
+    def sw = new StringWriter()
+    serializer.serialize(sd, sw)
+    assertEquals(sd, serializer.deserialize(new StringReader(sw.toString())))
+
+    // only the "header"
+    SystemModel noEntries = serializer.deserializeNoEntries(sw.toString())
+    assertEquals(sd.id, noEntries.id)
+    assertEquals('f1', noEntries.fabric)
+    assertEquals('n1', noEntries.name)
+    assertEquals([m1: 'v1', name: 'n1'], noEntries.metadata)
+    assertEquals(0, noEntries.findEntries().size())
+
+    assertNull(serializer.deserialize((String) null))
+
+    // a non object entry must not silently drop the rest of the model
+    shouldFail(JsonParseException) {
+      serializer.deserialize(new StringReader('{"fabric": "f1", "entries": [{"agent": "h1", "mountPoint": "/m1"}, null, {"agent": "h1", "mountPoint": "/m2"}], "agentTags": {"h1": ["at1"]}}'))
+    }
+  }
+
   public void testFilters()
   {
     def sd = new SystemModel(fabric: 'f1', metadata: [m1: 'v1'])
@@ -113,6 +167,63 @@ class TestSystemModel extends GroovyTestCase
     assertEquals(sd.metadata, filteredModel.metadata)
   }
 
+  /**
+   * A filtered model is a view over the entries of the unfiltered model
+   */
+  public void testFilteredModelView()
+  {
+    def sd = new SystemModel(fabric: 'f1')
+
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/p", script: 's1'))
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c1", script: 's1', parent: '/p'))
+    sd.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c2", script: 's2', parent: '/p'))
+    sd.addEntry(new SystemEntry(agent: 'h2', mountPoint: "/m", script: 's1'))
+
+    def allEntries = sd.findEntries()
+
+    def filteredModel = sd.filterBy('script', 's1')
+    assertEquals(['h1:/c1', 'h1:/p', 'h2:/m'], filteredModel.getKeys([]))
+    assertEquals([allEntries[0], allEntries[2], allEntries[3]], filteredModel.findEntries())
+    assertNull(filteredModel.findEntry('h1:/c2'))
+    assertTrue(filteredModel.findEntry('h1:/c1').is(sd.findEntry('h1:/c1')))
+    assertTrue(filteredModel.unfilter().is(sd))
+
+    // only the children which are part of the filtered model
+    assertEquals(['h1:/c1', 'h1:/c2'] as Set, sd.findChildrenKeys('h1:/p') as Set)
+    assertEquals(['h1:/c1'] as Set, filteredModel.findChildrenKeys('h1:/p') as Set)
+    assertNull(filteredModel.filterBy('agent', 'h2').findChildrenKeys('h1:/p'))
+
+    // filtering a filtered model
+    def filteredModel2 = filteredModel.filterBy('agent', 'h1')
+    assertEquals(['h1:/c1', 'h1:/p'], filteredModel2.getKeys([]))
+    assertTrue(filteredModel2.unfilter().is(sd))
+
+    // filter by keys (and not keys)
+    def keysFilter = new SystemEntryKeyModelFilter(keys: ['h1:/c2', 'h2:/m', 'h3:/x'])
+    assertEquals(['h1:/c2', 'h2:/m'], sd.filterBy(keysFilter).getKeys([]))
+    assertEquals(['h2:/m'], filteredModel.filterBy(keysFilter).getKeys([]))
+    assertEquals(['h1:/c1', 'h1:/p'],
+                 sd.filterBy(new LogicNotSystemFilter(filter: keysFilter)).getKeys([]))
+
+    // equality with a model built the "old" way
+    def expectedModel = new SystemModel(fabric: 'f1')
+    [allEntries[0], allEntries[2], allEntries[3]].each { expectedModel.addEntry(it) }
+    assertEquals(expectedModel.toExternalRepresentation(), filteredModel.toExternalRepresentation())
+
+    // modifying the unfiltered model does not change the filtered model
+    sd.removeEntry('h2:/m')
+    sd.addEntry(new SystemEntry(agent: 'h3', mountPoint: "/m", script: 's1'))
+    assertEquals(['h1:/c1', 'h1:/p', 'h2:/m'], filteredModel.getKeys([]))
+    assertEquals(['h1:/c1', 'h1:/p', 'h3:/m'], sd.filterBy('script', 's1').getKeys([]))
+
+    // modifying the filtered model does not change the unfiltered model
+    filteredModel.addEntry(new SystemEntry(agent: 'h1', mountPoint: "/c3", script: 's1', parent: '/p'))
+    filteredModel.removeEntry('h1:/c1')
+    assertEquals(['h1:/c3', 'h1:/p', 'h2:/m'], filteredModel.getKeys([]))
+    assertEquals(['h1:/c3'] as Set, filteredModel.findChildrenKeys('h1:/p') as Set)
+    assertEquals(['h1:/c1', 'h1:/c2', 'h1:/p', 'h3:/m'], sd.getKeys([]))
+  }
+
   public void testStats()
   {
     def sd = new SystemModel(fabric: 'f1', metadata: [m1: 'v1'])
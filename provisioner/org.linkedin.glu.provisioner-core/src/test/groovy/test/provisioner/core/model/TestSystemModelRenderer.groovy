@@ -85,6 +85,142 @@ public class TestSystemModelRenderer extends GroovyTestCase
                  new JsonSystemModelRenderer().computeSystemId(model))
   }
 
+  /**
+   * The incremental system id (merkle root) only depends on the content
+   */
+  public void testIncrementalSystemIdComputation()
+  {
+    def renderer = new JsonSystemModelRenderer(incrementalSystemId: true)
+
+    def model = m([agent: 'a1', mountPoint: '/m2', script: 's1', initParameters: [z: 1, b: 2]],
+                  [agent: 'a1', mountPoint: '/m1', script: 's1'],
+                  [agent: 'a1', mountPoint: '/m3', script: 's2', initParameters: [ip1: "iv1", ip0: "iv0"]])
+
+    // same content, different order (entries and maps)
+    def model2 = m([agent: 'a1', mountPoint: '/m3', script: 's2', initParameters: [ip0: "iv0", ip1: "iv1"]],
+                   [agent: 'a1', mountPoint: '/m1', script: 's1'],
+                   [agent: 'a1', mountPoint: '/m2', script: 's1', initParameters: [b: 2, z: 1]])
+
+    String id = renderer.computeSystemId(model)
+    assertNotNull(id)
+    assertEquals(id, renderer.computeSystemId(model2))
+    assertTrue(model.computeChangedKeys(model2).isEmpty())
+
+    // the id is not part of the computation
+    model2.id = 'foo'
+    assertEquals(id, renderer.computeSystemId(model2))
+
+    // changing an entry
+    String digest = model2.findEntry('a1:/m1').digest
+    model2.findEntry('a1:/m1').script = 's3'
+    assertFalse(digest == model2.findEntry('a1:/m1').digest)
+    assertFalse(id == renderer.computeSystemId(model2))
+    assertEquals(['a1:/m1'], model.computeChangedKeys(model2) as List)
+
+    // adding an entry
+    model2.addEntry(SystemEntry.fromExternalRepresentation([agent: 'a2', mountPoint: '/m1', script: 's1']))
+    assertEquals(['a1:/m1', 'a2:/m1'], model.computeChangedKeys(model2) as List)
+    assertEquals(['a1:/m1', 'a2:/m1'], model2.computeChangedKeys(model) as List)
+
+    // the header is part of the computation
+    def model3 = m([agent: 'a1', mountPoint: '/m2', script: 's1', initParameters: [z: 1, b: 2]],
+                   [agent: 'a1', mountPoint: '/m1', script: 's1'],
+                   [agent: 'a1', mountPoint: '/m3', script: 's2', initParameters: [ip1: "iv1", ip0: "iv0"]])
+    model3.metadata.name = 'n1'
+    assertFalse(id == renderer.computeSystemId(model3))
+    assertTrue(model.computeChangedKeys(model3).isEmpty())
+
+    // the default id is not changed
+    assertEquals('e66425e1e4f005c106c05cc2a018a2f3d8cd3aaa',
+                 new JsonSystemModelRenderer().computeSystemId(model))
+  }
+
+  /**
+   * The digest of an entry must follow the changes done through the setters
+   */
+  public void testEntryDigestSetters()
+  {
+    SystemEntry entry =
+      SystemEntry.fromExternalRepresentation([agent: 'a1', mountPoint: '/m1', script: 's1',
+                                              initParameters: [p1: [v1: 1]], tags: ['t0']])
+    Set<String> digests = new HashSet<String>()
+    digests << entry.digest
+
+    // no change => same digest
+    assertFalse(digests.add(entry.digest))
+
+    entry.agent = 'a2'
+    assertTrue(digests.add(entry.digest))
+
+    entry.mountPoint = '/m2'
+    assertTrue(digests.add(entry.digest))
+
+    entry.script = 's2'
+    assertTrue(digests.add(entry.digest))
+
+    entry.entryState = 'stopped'
+    assertTrue(digests.add(entry.digest))
+
+    entry.parent = '/p1'
+    assertTrue(digests.add(entry.digest))
+
+    entry.initParameters = [*:entry.initParameters, p2: 'v2']
+    assertTrue(digests.add(entry.digest))
+
+    entry.metadata = [foo: 'bar']
+    assertTrue(digests.add(entry.digest))
+
+    entry.actionArgs = [foo: 'bar']
+    assertTrue(digests.add(entry.digest))
+
+    entry.tags = ['t0', 't1']
+    assertTrue(digests.add(entry.digest))
+
+    // merging the agent tags
+    SystemModel model = new SystemModel(fabric: "f1")
+    model.addAgentTags('a2', ['t2'])
+    model.addEntry(entry)
+    assertTrue(digests.add(entry.digest))
+
+    // same content => same digest
+    assertEquals(entry.digest, entry.clone().digest)
+  }
+
+  /**
+   * The digest of a modifiable entry must follow the changes done in place (it is only cached
+   * once the entry is read only)
+   */
+  public void testEntryDigestInPlaceModifications()
+  {
+    def renderer = new JsonSystemModelRenderer(incrementalSystemId: true)
+
+    def model = m([agent: 'a1', mountPoint: '/m1', script: 's1', metadata: [m1: [v1: 1]]],
+                  [agent: 'a1', mountPoint: '/m2', script: 's1', tags: ['t0']])
+    def model2 = model.clone()
+
+    String id = renderer.computeSystemId(model)
+    assertEquals(id, renderer.computeSystemId(model2))
+
+    // metadata modified in place
+    model2.findEntry('a1:/m1').metadata.m1.v1 = 2
+    String id2 = renderer.computeSystemId(model2)
+    assertFalse(id == id2)
+    assertEquals(['a1:/m1'], model.computeChangedKeys(model2) as List)
+
+    // tags modified in place
+    model2.findEntry('a1:/m2').entryTags.addTag('t1')
+    assertFalse(id2 == renderer.computeSystemId(model2))
+    assertEquals(['a1:/m1', 'a1:/m2'], model.computeChangedKeys(model2) as List)
+
+    // read only => cannot be modified anymore (and the digest is cached)
+    model2.makeReadOnly()
+    String digest = model2.findEntry('a1:/m1').digest
+    assertTrue(digest.is(model2.findEntry('a1:/m1').digest))
+    shouldFail(UnsupportedOperationException) { model2.findEntry('a1:/m1').metadata.m1.v1 = 3 }
+    shouldFail(UnsupportedOperationException) { model2.findEntry('a1:/m2').entryTags.addTag('t2') }
+    assertEquals(digest, model2.findEntry('a1:/m1').clone().digest)
+  }
+
   private SystemModel m(Map... entries)
   {
     SystemModel model = new SystemModel(fabric: "f1")
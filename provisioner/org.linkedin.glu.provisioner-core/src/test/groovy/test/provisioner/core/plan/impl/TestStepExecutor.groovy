@@ -16,7 +16,10 @@
 
 package test.provisioner.core.plan.impl
 
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import org.linkedin.glu.provisioner.plan.api.IAsyncLeafStepExecutor
 import org.linkedin.glu.provisioner.plan.api.LeafStep
 import org.linkedin.glu.provisioner.plan.api.ILeafStepExecutor
 import org.linkedin.glu.provisioner.plan.api.NoOpPlanExecutionProgressTracker
@@ -24,8 +27,12 @@ import org.linkedin.glu.provisioner.plan.api.IStepCompletionStatus
 import org.linkedin.glu.provisioner.plan.api.Plan
 import org.linkedin.glu.provisioner.plan.api.XmlStepCompletionStatusVisitor
 import org.linkedin.glu.provisioner.core.plan.impl.StepBuilder
+import org.linkedin.glu.provisioner.plan.impl.PlanExecutor
 import org.linkedin.glu.provisioner.plan.impl.StepExecutionContext
+import org.linkedin.glu.utils.concurrent.SettableFuture
+import org.linkedin.groovy.util.concurrent.GroovyConcurrentUtils
 import org.linkedin.util.clock.Clock
+import org.linkedin.util.clock.SystemClock
 
 /**
  * @author ypujante@linkedin.com */
@@ -116,6 +123,122 @@ public class TestStepExecutor extends GroovyTestCase
 """, executor.toXml())
   }
 
+  /**
+   * Leaf steps are throttled per plan and per agent
+   */
+  public void testLeafStepScheduler()
+  {
+    def inFlight = new AtomicInteger(0)
+    def maxInFlight = new AtomicInteger(0)
+    def inFlightPerAgent = new ConcurrentHashMap<String, AtomicInteger>()
+    def maxInFlightPerAgent = new AtomicInteger(0)
+    def out = Collections.synchronizedList([])
+
+    def action = { String agent, String name ->
+      return {
+        inFlightPerAgent.putIfAbsent(agent, new AtomicInteger(0))
+        int count = inFlight.incrementAndGet()
+        int agentCount = inFlightPerAgent[agent].incrementAndGet()
+        synchronized(maxInFlight)
+        {
+          maxInFlight.set(Math.max(maxInFlight.get(), count))
+          maxInFlightPerAgent.set(Math.max(maxInFlightPerAgent.get(), agentCount))
+        }
+        Thread.sleep(20)
+        out << name
+        inFlightPerAgent[agent].decrementAndGet()
+        inFlight.decrementAndGet()
+      }
+    }
+
+    def stepBuilder = new StepBuilder().parallel(name: 'P0') {
+      leaf(name: 'P0.L1.1', agent: 'a1', action: action('a1', 'P0.L1.1'))
+      leaf(name: 'P0.L1.2', agent: 'a1', action: action('a1', 'P0.L1.2'))
+      leaf(name: 'P0.L1.3', agent: 'a1', action: action('a1', 'P0.L1.3'))
+      leaf(name: 'P0.L1.4', agent: 'a2', action: action('a2', 'P0.L1.4'))
+      leaf(name: 'P0.L1.5', agent: 'a2', action: action('a2', 'P0.L1.5'))
+      leaf(name: 'P0.L1.6', agent: 'a3', action: action('a3', 'P0.L1.6'))
+    }
+
+    def planExecutor = new PlanExecutor(Executors.newCachedThreadPool(),
+                                        leafStepExecutor as ILeafStepExecutor)
+    planExecutor.clock = staticClock
+    planExecutor.maxInFlightLeafSteps = 2
+    planExecutor.maxInFlightLeafStepsPerKey = 1
+
+    def executor = planExecutor.executePlan(new Plan(stepBuilder.toStep()))
+    def status = executor.waitForCompletion()
+
+    assertEquals(IStepCompletionStatus.Status.COMPLETED, status.status)
+    assertEquals(6, out.size())
+    assertEquals(2, maxInFlight.get())
+    assertEquals(1, maxInFlightPerAgent.get())
+
+    // statuses are reported in the order of the steps (not in the order of completion)
+    assertEquals((1..6).collect { "P0.L1.${it}".toString() },
+                 status.statuses.collect { it.step.metadata.name })
+  }
+
+  /**
+   * Asynchronous leaf steps hold their slot (but not a thread) until their future completes
+   */
+  public void testAsyncLeafSteps()
+  {
+    def executions = new ConcurrentHashMap<String, SettableFuture<Object>>()
+
+    def asyncLeafStepExecutor = [
+      executeLeafStep: { LeafStep leafStep -> throw new IllegalStateException('not expected') },
+      isAsyncExecution: { LeafStep leafStep -> true },
+      executeLeafStepAsync: { LeafStep leafStep ->
+        def execution = new SettableFuture<Object>()
+        executions[leafStep.metadata.name] = execution
+        return execution
+      }
+    ]
+
+    def stepBuilder = new StepBuilder().parallel(name: 'P0') {
+      leaf(name: 'P0.L1.1')
+      leaf(name: 'P0.L1.2')
+      leaf(name: 'P0.L1.3')
+      leaf(name: 'P0.L1.4')
+    }
+
+    // a single thread is enough to execute all the leaf steps
+    def planExecutor = new PlanExecutor(Executors.newCachedThreadPool(),
+                                        Executors.newSingleThreadExecutor(),
+                                        asyncLeafStepExecutor as IAsyncLeafStepExecutor)
+    planExecutor.clock = staticClock
+    planExecutor.maxInFlightLeafSteps = 2
+
+    def executor = planExecutor.executePlan(new Plan(stepBuilder.toStep()))
+
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '10s', '10') {
+      executions.size() == 2
+    }
+    assertEquals(['P0.L1.1', 'P0.L1.2'], executions.keySet().sort())
+
+    executions['P0.L1.1'].complete('L1.1')
+    executions['P0.L1.2'].fail(new Exception('L1.2'))
+
+    GroovyConcurrentUtils.waitForCondition(SystemClock.INSTANCE, '10s', '10') {
+      executions.size() == 4
+    }
+    assertFalse(executor.isCompleted())
+
+    executions['P0.L1.3'].complete(null)
+
+    // canceling the plan cancels the executions in progress
+    executor.cancel(true)
+    def status = executor.waitForCompletion()
+
+    assertTrue(executions['P0.L1.4'].isCancelled())
+    assertEquals([IStepCompletionStatus.Status.COMPLETED,
+                  IStepCompletionStatus.Status.FAILED,
+                  IStepCompletionStatus.Status.COMPLETED,
+                  IStepCompletionStatus.Status.CANCELLED], status.statuses.status)
+    assertEquals('L1.2', status.statuses[1].throwable.message)
+  }
+
   private void addLeafStep(stepBuilder, String name, Closure closure)
   {
     stepBuilder.addLeafStep(new LeafStep(null, [name: name], closure))
@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.groovy.utils.io
+
+import org.linkedin.glu.utils.concurrent.Submitter
+import org.linkedin.util.lang.MemorySize
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.security.MessageDigest
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+
+/**
+ * Fetches the content of an http(s) location into a file. When the server supports range
+ * requests (<code>Accept-Ranges: bytes</code>) and the content is big enough, the content is split
+ * in parts which are fetched in parallel (each part being written at its position in the file). A
+ * part which fails is resumed from the last byte received (up to <code>maxRetries</code> times).
+ *
+ * The digest of the content is computed while the content is being fetched (so there is no need
+ * to read the file again once fetched) and is optionally compared to an expected checksum.
+ *
+ * @author yan@pongasoft.com */
+class RangedFetcher
+{
+  public static final String MODULE = RangedFetcher.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  /**
+   * Used to fetch the parts in parallel
+   */
+  Submitter submitter = Submitter.DEFAULT
+
+  /**
+   * Maximum number of parts fetched in parallel (<code>1</code> means sequential)
+   */
+  int parallelism = 1
+
+  /**
+   * The content is never split in parts smaller than this
+   */
+  MemorySize minPartSize = MemorySize.parse('8m')
+
+  /**
+   * How many times a part is resumed after a failure
+   */
+  int maxRetries = 3
+
+  MemorySize bufferSize = MemorySize.parse('64k')
+
+  String digestAlgorithm = 'SHA1'
+
+  /**
+   * Fetches the content of the location into the file
+   *
+   * @param expectedChecksum the expected digest of the content (as an hex string) or
+   *                         <code>null</code> for no verification
+   * @return the digest of the content (as an hex string)
+   * @throws IOException if the content cannot be fetched or does not match the expected checksum
+   *                     (in which case the file is deleted)
+   */
+  String fetch(URI uri, File file, String expectedChecksum = null)
+  {
+    boolean fetched = false
+
+    try
+    {
+      String checksum = new Fetch(uri, file).fetch()
+
+      if(expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(checksum))
+        throw new ChecksumMismatchException(
+          "checksum mismatch for ${stripUserInfo(uri)}: expected ${expectedChecksum} but was ${checksum}")
+
+      fetched = true
+
+      return checksum
+    }
+    finally
+    {
+      if(!fetched)
+        file.delete()
+    }
+  }
+
+  /**
+   * @return the uri without the user info (credentials) to be used in messages and to open the
+   * connection (the credentials being sent in the <code>Authorization</code> header)
+   */
+  private static URI stripUserInfo(URI uri)
+  {
+    if(uri.userInfo == null)
+      return uri
+
+    new URI(uri.scheme, null, uri.host, uri.port, uri.path, uri.query, uri.fragment)
+  }
+
+  private static String toHex(MessageDigest md)
+  {
+    new BigInteger(1, md.digest()).toString(16).padLeft(md.digestLength * 2, '0')
+  }
+
+  /**
+   * Thrown when the fetched content does not match the expected checksum
+   */
+  static class ChecksumMismatchException extends IOException
+  {
+    ChecksumMismatchException(String message)
+    {
+      super(message)
+    }
+  }
+
+  /**
+   * Thrown when the content changed while being fetched (the server does not honor the range
+   * request anymore) in which case it does not make sense to resume
+   */
+  static class ContentChangedException extends IOException
+  {
+    ContentChangedException(String message)
+    {
+      super(message)
+    }
+  }
+
+  /**
+   * A part of the content: <code>[start, end)</code> (<code>end</code> is <code>-1</code> when
+   * the length of the content is unknown)
+   */
+  private static class Part
+  {
+    long start
+    long end
+
+    // number of bytes written (contiguous from start)
+    volatile long written = 0
+    volatile boolean done = false
+  }
+
+  /**
+   * The state of 1 call to fetch
+   */
+  private class Fetch
+  {
+    final URI uri
+    final URI url
+    final File file
+
+    String authorization
+    String validator
+    boolean acceptRanges
+
+    FileChannel channel
+    List<Part> parts = []
+
+    volatile boolean aborted = false
+
+    // the first error (which aborted the fetch)
+    volatile Throwable error
+
+    private final Object _lock = new Object()
+
+    Fetch(URI uri, File file)
+    {
+      this.uri = uri
+      this.url = stripUserInfo(uri)
+      this.file = file
+
+      if(uri.userInfo)
+        authorization = "Basic ${uri.userInfo.bytes.encodeBase64()}".toString()
+    }
+
+    String fetch()
+    {
+      MessageDigest md = MessageDigest.getInstance(digestAlgorithm)
+
+      HttpURLConnection cx = openConnection(null)
+
+      // the content is requested entirely (and not with a HEAD request
+      // first) so that fetching a small file (or from a server which does not support ranges)
+      // only requires 1 request. The first part simply stops reading after its end.
+      InputStream inputStream = cx.inputStream
+
+      long length = cx.getHeaderFieldLong('Content-Length', -1)
+      acceptRanges = cx.getHeaderField('Accept-Ranges')?.equalsIgnoreCase('bytes')
+      validator = cx.getHeaderField('ETag') ?: cx.getHeaderField('Last-Modified')
+
+      int partsCount = 1
+      if(acceptRanges && length > 0 && parallelism > 1)
+        partsCount = Math.max(1L, Math.min((long) parallelism, length.intdiv(minPartSize.sizeInBytes) as long)) as int
+
+      long partSize = length > 0 ? length.intdiv(partsCount) as long : -1
+      for(int i = 0; i < partsCount; i++)
+      {
+        long start = i * partSize
+        long end = i == partsCount - 1 ? length : start + partSize
+        parts << new Part(start: Math.max(0L, start), end: end)
+      }
+
+      RandomAccessFile raf = new RandomAccessFile(file, 'rw')
+      try
+      {
+        raf.setLength(0)
+        channel = raf.channel
+
+        if(partsCount == 1)
+        {
+          // sequential: the digest is updated with the bytes as they are written
+          fetchPart(parts[0], cx, inputStream, md)
+        }
+        else
+        {
+          if(log.isDebugEnabled())
+            log.debug("[${url}] fetching ${length} bytes in ${partsCount} parts")
+
+          List<Future> futures = []
+          try
+          {
+            futures << submitter.submit({ fetchPart(parts[0], cx, inputStream, null) } as Callable)
+            parts.drop(1).each { Part part ->
+              futures << submitter.submit({ fetchPart(part, null, null, null) } as Callable)
+            }
+
+            digestInOrder(md)
+          }
+          finally
+          {
+            if(error != null)
+              aborted = true
+
+            // waiting for all the parts to be done before closing the file
+            // (the error of the parts which failed is the one which aborted the fetch)
+            futures.each { Future future ->
+              try
+              {
+                future.get()
+              }
+              catch(ExecutionException ignored)
+              {
+              }
+            }
+          }
+
+          if(error != null)
+            throw error
+        }
+
+        if(length >= 0 && channel.size() != length)
+          throw new EOFException("[${url}] expected ${length} bytes but got ${channel.size()}")
+
+        channel.force(false)
+      }
+      finally
+      {
+        raf.close()
+      }
+
+      return toHex(md)
+    }
+
+    /**
+     * Fetches the part (resuming it when it fails). When provided, the connection is used for the
+     * first attempt.
+     */
+    private void fetchPart(Part part,
+                           HttpURLConnection cx,
+                           InputStream inputStream,
+                           MessageDigest md)
+    {
+      int retries = 0
+
+      try
+      {
+        while(true)
+        {
+          try
+          {
+            if(cx == null)
+            {
+              cx = openConnection(part)
+              inputStream = cx.inputStream
+            }
+
+            copy(inputStream, part, md)
+
+            if(part.end >= 0 && part.start + part.written < part.end)
+              throw new EOFException("[${url}] premature end of stream")
+
+            part.done = true
+            return
+          }
+          catch(IOException e)
+          {
+            if(aborted ||
+               !acceptRanges ||
+               e instanceof ContentChangedException ||
+               retries >= maxRetries)
+              throw e
+
+            retries++
+
+            log.warn("[${url}] resuming after ${part.start + part.written} bytes (${retries}/${maxRetries}): ${e.message}")
+          }
+          finally
+          {
+            inputStream?.close()
+            inputStream = null
+            cx?.disconnect()
+            cx = null
+          }
+        }
+      }
+      catch(Throwable th)
+      {
+        synchronized(_lock)
+        {
+          if(error == null)
+            error = th
+        }
+        aborted = true
+        throw th
+      }
+      finally
+      {
+        synchronized(_lock)
+        {
+          _lock.notifyAll()
+        }
+      }
+    }
+
+    /**
+     * Copies the content of the stream at the position of the part in the file (up to the end of
+     * the part)
+     */
+    private void copy(InputStream inputStream, Part part, MessageDigest md)
+    {
+      byte[] buffer = new byte[bufferSize.sizeInBytes as int]
+
+      while(!aborted)
+      {
+        int len = buffer.length
+        if(part.end >= 0)
+          len = Math.min((long) len, part.end - part.start - part.written) as int
+
+        if(len <= 0)
+          return
+
+        int read = inputStream.read(buffer, 0, len)
+        if(read == -1)
+          return
+
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read)
+        long position = part.start + part.written
+        while(byteBuffer.hasRemaining())
+          position += channel.write(byteBuffer, position)
+
+        md?.update(buffer, 0, read)
+
+        part.written += read
+
+        if(md == null)
+        {
+          synchronized(_lock)
+          {
+            _lock.notifyAll()
+          }
+        }
+      }
+
+      throw new IOException("[${url}] aborted")
+    }
+
+    /**
+     * Updates the digest with the content of the file (in order) as soon as it is written by the
+     * parts (the content is read back while it is still in the file system cache).
+     */
+    private void digestInOrder(MessageDigest md)
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(bufferSize.sizeInBytes as int)
+
+      for(Part part : parts)
+      {
+        long digested = 0
+
+        while(true)
+        {
+          long written = part.written
+
+          if(digested < written)
+          {
+            buffer.clear()
+            buffer.limit(Math.min((long) buffer.capacity(), written - digested) as int)
+            int read = channel.read(buffer, part.start + digested)
+            if(read > 0)
+            {
+              md.update(buffer.array(), 0, read)
+              digested += read
+            }
+          }
+          else
+          {
+            if(part.done)
+              break
+
+            if(aborted)
+              return
+
+            synchronized(_lock)
+            {
+              if(part.written == digested && !part.done && !aborted)
+                _lock.wait(1000)
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Opens the connection for the part (or for the whole content when <code>null</code>)
+     */
+    private HttpURLConnection openConnection(Part part)
+    {
+      HttpURLConnection cx = (HttpURLConnection) url.toURL().openConnection()
+
+      if(authorization)
+        cx.setRequestProperty('Authorization', authorization)
+
+      if(part != null)
+      {
+        long from = part.start + part.written
+        cx.setRequestProperty('Range', "bytes=${from}-${part.end >= 0 ? part.end - 1 : ''}".toString())
+        // when the content changes, the server ignores the range and returns the whole content
+        if(validator)
+          cx.setRequestProperty('If-Range', validator)
+
+        if(cx.responseCode != HttpURLConnection.HTTP_PARTIAL)
+        {
+          cx.disconnect()
+          throw new ContentChangedException("[${url}] range request not honored (${cx.responseCode})")
+        }
+      }
+
+      return cx
+    }
+  }
+}
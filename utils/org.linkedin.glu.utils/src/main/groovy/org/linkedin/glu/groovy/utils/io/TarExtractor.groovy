@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.groovy.utils.io
+
+import org.apache.tools.bzip2.CBZip2InputStream
+import org.apache.tools.tar.TarEntry
+import org.apache.tools.tar.TarInputStream
+import org.linkedin.glu.utils.concurrent.Submitter
+import org.linkedin.util.lang.MemorySize
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.nio.file.attribute.PosixFilePermission
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.Semaphore
+import java.util.zip.GZIPInputStream
+
+/**
+ * Extracts a tar file (optionally compressed with gzip or bzip2, which is detected from the
+ * content) in a single streaming pass in the jvm: decompress -> untar -> (optional) transform ->
+ * write. The permissions, modification times and links of the entries are preserved.
+ *
+ * Like tar, the entries cannot be written outside of the target directory: the entries with
+ * <code>..</code> are rejected, the symbolic links are created last (once all the other entries
+ * have been written, so that no entry can be written through them) and only if they point
+ * inside the target directory (checked again once all of them exist since a link can change
+ * where another one resolves), and no entry is written in a directory which (really) is
+ * outside of the target directory.
+ *
+ * When <code>parallelism</code> is more than 1, the entries which are small enough
+ * (<code>maxBufferedEntrySize</code>) are read in memory and written (and transformed) by other
+ * threads while the next entries are being read (the entries still need to be read in order from
+ * the stream).
+ *
+ * @author yan@pongasoft.com */
+class TarExtractor
+{
+  public static final String MODULE = TarExtractor.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private static final int MODE_OWNER_EXECUTE = 0100
+
+  private static final Map<Integer, PosixFilePermission> PERMISSIONS = [
+    0400: PosixFilePermission.OWNER_READ,
+    0200: PosixFilePermission.OWNER_WRITE,
+    0100: PosixFilePermission.OWNER_EXECUTE,
+    040: PosixFilePermission.GROUP_READ,
+    020: PosixFilePermission.GROUP_WRITE,
+    010: PosixFilePermission.GROUP_EXECUTE,
+    04: PosixFilePermission.OTHERS_READ,
+    02: PosixFilePermission.OTHERS_WRITE,
+    01: PosixFilePermission.OTHERS_EXECUTE,
+  ]
+
+  /**
+   * Used to write the entries in parallel
+   */
+  Submitter submitter = Submitter.DEFAULT
+
+  /**
+   * Maximum number of entries written in parallel (<code>1</code> means sequential)
+   */
+  int parallelism = 1
+
+  /**
+   * Entries bigger than this are always written by the thread reading the tar file
+   */
+  MemorySize maxBufferedEntrySize = MemorySize.parse('1m')
+
+  MemorySize bufferSize = MemorySize.parse('64k')
+
+  /**
+   * Optional transformation of the content of the entries: called with the name of the entry and
+   * its content (<code>byte[]</code>) and must return the content to write. When set, the content
+   * of each entry is read in memory.
+   */
+  Closure transformer
+
+  /**
+   * Extracts the tar file into the directory
+   *
+   * @return the number of entries extracted
+   */
+  int extract(File tarFile, File toDir)
+  {
+    tarFile.withInputStream { InputStream is ->
+      extract(is, toDir)
+    }
+  }
+
+  /**
+   * Extracts the (possibly compressed) tar stream into the directory
+   *
+   * @return the number of entries extracted
+   */
+  int extract(InputStream inputStream, File toDir)
+  {
+    Path root = toDir.toPath().toAbsolutePath().normalize()
+    Files.createDirectories(root)
+    Path realRoot = root.toRealPath()
+
+    TarInputStream tis = new TarInputStream(decompress(inputStream))
+
+    Semaphore permits = new Semaphore(Math.max(1, parallelism))
+    List<Future> futures = []
+    Map<Path, TarEntry> directories = [:]
+    Map<Path, String> symbolicLinks = [:]
+
+    int count = 0
+
+    try
+    {
+      TarEntry entry
+      while((entry = tis.nextEntry) != null)
+      {
+        Path path = resolve(root, entry.name)
+        if(path == null)
+          continue
+
+        count++
+
+        if(entry.isDirectory())
+        {
+          createDirectories(realRoot, path)
+          // the mode is set at the end as well since a read only
+          // directory would prevent its own content from being written
+          directories[path] = entry
+          continue
+        }
+
+        if(entry.isSymbolicLink())
+        {
+          symbolicLinks[path] = entry.linkName
+          continue
+        }
+
+        createDirectories(realRoot, path.parent)
+        Files.deleteIfExists(path)
+
+        if(entry.isLink())
+        {
+          Path target = resolve(root, entry.linkName)
+          if(target == null)
+            throw new IOException("invalid link ${entry.name} -> ${entry.linkName}")
+          // the target may still be written by another thread
+          waitFor(futures)
+          checkInside(realRoot, target.toRealPath(), entry.name)
+          Files.createLink(path, target)
+          continue
+        }
+
+        if(parallelism > 1 && entry.size <= maxBufferedEntrySize.sizeInBytes)
+        {
+          byte[] content = readContent(tis, entry)
+          long modTime = entry.modTime.time
+          int mode = entry.mode
+          String name = entry.name
+
+          permits.acquire()
+          futures << submitter.submit({
+            try
+            {
+              writeFile(path, name, null, content, mode, modTime)
+            }
+            finally
+            {
+              permits.release()
+            }
+          } as Callable)
+
+          // removes the entries which are done to not keep them all in memory
+          checkDone(futures)
+        }
+        else
+        {
+          byte[] content = transformer ? readContent(tis, entry) : null
+          writeFile(path, entry.name, tis, content, entry.mode, entry.modTime.time)
+        }
+      }
+
+      waitFor(futures)
+    }
+    finally
+    {
+      futures*.cancel(false)
+    }
+
+    // creating the symbolic links once all the other entries have been written
+    symbolicLinks.each { Path path, String linkName ->
+      createSymbolicLink(realRoot, path, linkName)
+    }
+
+    // a link is checked when it is created but a link created after it
+    // can change where it resolves (ex: b -> . turns a/../x into ../x) so they are all checked
+    // again once they all exist
+    symbolicLinks.each { Path path, String linkName ->
+      checkSymbolicLink(realRoot, path, linkName)
+    }
+
+    // setting the mode and modification time of the directories once all their content has
+    // been written
+    directories.each { Path dir, TarEntry entry ->
+      // the directory may have been replaced by a link
+      if(Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+      {
+        setMode(dir, entry.mode)
+        Files.setLastModifiedTime(dir, FileTime.fromMillis(entry.modTime.time))
+      }
+    }
+
+    return count
+  }
+
+  /**
+   * @return the path of the entry or <code>null</code> if it should be skipped (ex: the root)
+   * @throws IOException if the entry is outside of the root directory (<code>..</code>)
+   */
+  private static Path resolve(Path root, String name)
+  {
+    // like tar, removes leading /
+    name = name.replaceFirst('^/+', '')
+    if(name == '' || name == '.' || name == './')
+      return null
+
+    Path path = root.resolve(name).normalize()
+    if(!path.startsWith(root))
+      throw new IOException("entry ${name} is outside of ${root}")
+
+    if(path == root)
+      return null
+
+    return path
+  }
+
+  /**
+   * Creates the directory (and its parents) after making sure that the closest existing one is
+   * (really) inside the root directory (it could be a link pointing outside)
+   */
+  private static void createDirectories(Path realRoot, Path dir)
+  {
+    Path existing = dir
+    while(!Files.exists(existing))
+      existing = existing.parent
+
+    checkInside(realRoot, existing.toRealPath(), dir.toString())
+
+    Files.createDirectories(dir)
+  }
+
+  /**
+   * Creates the symbolic link only if it points inside the root directory
+   */
+  private static void createSymbolicLink(Path realRoot, Path path, String linkName)
+  {
+    createDirectories(realRoot, path.parent)
+
+    String name = "${path} -> ${linkName}"
+
+    Path realParent = path.parent.toRealPath()
+    Path target = realParent.resolve(linkName)
+    checkInside(realRoot, target.normalize(), name)
+
+    // the target may go through other links
+    if(Files.exists(target))
+      checkInside(realRoot, target.toRealPath(), name)
+
+    Files.deleteIfExists(path)
+    Files.createSymbolicLink(path, Paths.get(linkName))
+  }
+
+  /**
+   * Checks that the (existing) symbolic link really resolves inside the root directory and
+   * deletes it otherwise. When the link is dangling, the part of its target which exists is
+   * resolved.
+   */
+  private static void checkSymbolicLink(Path realRoot, Path path, String linkName)
+  {
+    // the link may have been replaced by another one
+    if(!Files.isSymbolicLink(path))
+      return
+
+    Path target = path.parent.toRealPath().resolve(Files.readSymbolicLink(path))
+
+    Path existing = target
+    while(existing != null && !Files.exists(existing))
+      existing = existing.parent
+
+    Path realTarget = target.normalize()
+    if(existing != null)
+      realTarget = existing.toRealPath().resolve(existing.relativize(target)).normalize()
+
+    if(!realTarget.startsWith(realRoot))
+    {
+      Files.delete(path)
+      checkInside(realRoot, realTarget, "${path} -> ${linkName}")
+    }
+  }
+
+  /**
+   * @throws IOException if the path is not inside the root directory
+   */
+  private static void checkInside(Path realRoot, Path path, String name)
+  {
+    if(!path.startsWith(realRoot))
+      throw new IOException("entry ${name} is outside of ${realRoot}")
+  }
+
+  /**
+   * Detects the compression (from the magic bytes) and decompresses the stream
+   */
+  private InputStream decompress(InputStream inputStream)
+  {
+    int size = bufferSize.sizeInBytes as int
+
+    BufferedInputStream bis = new BufferedInputStream(inputStream, size)
+    bis.mark(3)
+    int b0 = bis.read()
+    int b1 = bis.read()
+    int b2 = bis.read()
+    bis.reset()
+
+    // gzip
+    if(b0 == 0x1f && b1 == 0x8b)
+      return new GZIPInputStream(bis, size)
+
+    // bzip2 ('BZh')
+    if(b0 == 0x42 && b1 == 0x5a && b2 == 0x68)
+    {
+      // the stream must start after 'BZ' (CBZip2InputStream reads 'h' itself)
+      bis.read()
+      bis.read()
+      return new BufferedInputStream(new CBZip2InputStream(bis), size)
+    }
+
+    return bis
+  }
+
+  private static byte[] readContent(TarInputStream tis, TarEntry entry)
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream((int) Math.min(entry.size, Integer.MAX_VALUE))
+    tis.copyEntryContents(baos)
+    return baos.toByteArray()
+  }
+
+  private void writeFile(Path path,
+                         String name,
+                         InputStream inputStream,
+                         byte[] content,
+                         int mode,
+                         long modTime)
+  {
+    if(transformer)
+      content = transformer(name, content) as byte[]
+
+    if(content != null)
+    {
+      Files.write(path, content)
+    }
+    else
+    {
+      // copies the content of the current entry only (and does not close
+      // the tar stream)
+      Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    setMode(path, mode)
+    Files.setLastModifiedTime(path, FileTime.fromMillis(modTime))
+  }
+
+  /**
+   * Sets the permissions of the file (when the file system does not support posix permissions,
+   * only the executable bit of the owner is set)
+   */
+  private static void setMode(Path path, int mode)
+  {
+    try
+    {
+      Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission)
+      PERMISSIONS.each { int bit, PosixFilePermission permission ->
+        if(mode & bit)
+          permissions << permission
+      }
+      Files.setPosixFilePermissions(path, permissions)
+    }
+    catch(UnsupportedOperationException ignored)
+    {
+      if(mode & MODE_OWNER_EXECUTE)
+        path.toFile().setExecutable(true)
+    }
+  }
+
+  /**
+   * Removes the futures which are done (rethrowing their exception if any)
+   */
+  private static void checkDone(List<Future> futures)
+  {
+    Iterator<Future> iterator = futures.iterator()
+    while(iterator.hasNext())
+    {
+      Future future = iterator.next()
+      if(future.isDone())
+      {
+        get(future)
+        iterator.remove()
+      }
+    }
+  }
+
+  private static void waitFor(List<Future> futures)
+  {
+    while(futures)
+      get(futures.remove(0))
+  }
+
+  private static void get(Future future)
+  {
+    try
+    {
+      future.get()
+    }
+    catch(ExecutionException e)
+    {
+      throw e.cause
+    }
+  }
+}
@@ -19,10 +19,59 @@ package org.linkedin.glu.groovy.utils.json
 import org.linkedin.groovy.util.json.JsonUtils
 import org.linkedin.util.reflect.ReflectUtils
 
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
 /**
  * @author yan@pongasoft.com */
 public class GluGroovyJsonUtils extends JsonUtils
 {
+  /**
+   * Prefix of a compressed json string (the number being the version of the encoding)
+   */
+  public static final String COMPRESSED_JSON_PREFIX = 'gz1:'
+
+  /**
+   * Compresses the json string. The result (<code>gz1:</code> followed by the base64 encoding of
+   * the gzipped json) is still a (ascii) string so it can be stored and read back as a string.
+   */
+  public static String compressJSON(String json)
+  {
+    if(json == null)
+      return null
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream()
+    new GZIPOutputStream(baos).withStream { OutputStream os ->
+      os.write(json.getBytes('UTF-8'))
+    }
+
+    return COMPRESSED_JSON_PREFIX + baos.toByteArray().encodeBase64().toString()
+  }
+
+  /**
+   * @return <code>true</code> if the string was compressed with {@link #compressJSON(String)}
+   */
+  public static boolean isCompressedJSON(String data)
+  {
+    return data?.startsWith(COMPRESSED_JSON_PREFIX)
+  }
+
+  /**
+   * Opposite of {@link #compressJSON(String)}. A string which is not compressed (plain json) is
+   * returned as is.
+   */
+  public static String decompressJSON(String data)
+  {
+    if(!isCompressedJSON(data))
+      return data
+
+    byte[] compressed = data.substring(COMPRESSED_JSON_PREFIX.size()).decodeBase64()
+
+    new GZIPInputStream(new ByteArrayInputStream(compressed)).withStream { InputStream is ->
+      new String(is.bytes, 'UTF-8')
+    }
+  }
+
   /**
    * This method is the opposite of {@link #extractFullStackTrace(Throwable)} and will attempt
    * to "deserialize" the full stack trace into the original exception including all the chain
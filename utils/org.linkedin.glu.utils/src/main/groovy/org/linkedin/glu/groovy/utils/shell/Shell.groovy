@@ -174,6 +174,32 @@ def interface Shell extends FileSystem
    */
   Resource fetch(location, destination)
 
+  /**
+   * Same as {@link #fetch(Object, Object)} but also verifies the content of the location: the
+   * sha-1 of the content (as returned by {@link #sha1(Object)}) must be equal to
+   * <code>checksum</code> otherwise an <code>IOException</code> is thrown (and the fetched file
+   * is deleted). For <code>http(s)</code> locations, the sha-1 is computed while the content is
+   * being fetched.
+   *
+   * @param location the location you want to fetch (usually remote)
+   * @param destination ({@see #toResource(Object)} for possible values) (<code>null</code> for
+   *                    the tmp space)
+   * @param checksum the expected sha-1 (40 chars hex string) (<code>null</code> for no
+   *                 verification)
+   * @return where the location was fetched (locally) (as a <code>Resource</code>)
+   */
+  Resource fetch(location, destination, String checksum)
+
+  /**
+   * Same as {@link #fetch(Object, Object, String)} but also returns the sha-1 of the content
+   * (as returned by {@link #sha1(Object)}). For <code>http(s)</code> locations, it is the sha-1
+   * computed while the content is being fetched so there is no need to read the file again.
+   *
+   * @return a map with <code>resource</code> (where the location was fetched) and
+   *         <code>sha1</code> (or <code>null</code> if the location is <code>null</code>)
+   */
+  Map fetchWithSha1(location, destination, String checksum)
+
   /**
    * Returns the content of the location as a <code>String</code> or
    * <code>null</code> if the location is not reachable
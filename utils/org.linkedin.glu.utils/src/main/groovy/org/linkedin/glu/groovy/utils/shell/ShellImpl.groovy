@@ -26,6 +26,8 @@ import org.linkedin.glu.groovy.utils.GluGroovyLangUtils
 import org.linkedin.glu.groovy.utils.collections.GluGroovyCollectionUtils
 import org.linkedin.glu.groovy.utils.concurrent.FutureTaskExecutionThreadFactory
 import org.linkedin.glu.groovy.utils.io.GluGroovyIOUtils
+import org.linkedin.glu.groovy.utils.io.RangedFetcher
+import org.linkedin.glu.groovy.utils.io.TarExtractor
 import org.linkedin.glu.utils.concurrent.OneThreadPerTaskSubmitter
 import org.linkedin.glu.utils.concurrent.Submitter
 import org.linkedin.glu.utils.core.Externable
@@ -51,6 +53,9 @@ import javax.management.MBeanServerConnection
 import javax.management.ObjectName
 import javax.management.remote.JMXConnectorFactory
 import javax.management.remote.JMXServiceURL
+import java.nio.ByteBuffer
+import java.nio.charset.CharacterCodingException
+import java.nio.charset.Charset
 import java.nio.file.Files
 import java.nio.file.LinkOption
 import java.nio.file.NoSuchFileException
@@ -126,12 +131,32 @@ def class ShellImpl implements Shell
     _submitter = submitter
   }
 
+  /**
+   * Maximum number of parts of an http(s) location fetched in parallel (when the server supports
+   * range requests) (see {@link RangedFetcher})
+   */
+  int fetchParallelism = 1
+
+  /**
+   * When <code>true</code>, tar files are extracted in the jvm (see {@link TarExtractor}) instead
+   * of forking <code>tar</code> (and decrypted while being extracted)
+   */
+  boolean untarInProcess = false
+
+  /**
+   * Maximum number of entries written in parallel when extracting a tar file in the jvm
+   */
+  int untarParallelism = 1
+
   Shell newShell(FileSystem fileSystem)
   {
     return new ShellImpl(fileSystem: fileSystem,
                          charset: charset,
                          clock: clock,
-                         submitter: _submitter)
+                         submitter: _submitter,
+                         fetchParallelism: fetchParallelism,
+                         untarInProcess: untarInProcess,
+                         untarParallelism: untarParallelism)
   }
 
   Shell newShell(def file)
@@ -170,6 +195,13 @@ def class ShellImpl implements Shell
   {
     file = toResource(file)
     toDir = toResource(toDir)
+
+    if(untarInProcess)
+    {
+      createTarExtractor().extract(file.file, toDir.file)
+      return toDir
+    }
+
     def command = "tar -xf ${file.file}"
 
     def mimeTypes = getMimeTypes(file)
@@ -424,6 +456,19 @@ def class ShellImpl implements Shell
 
   Resource untarAndDecrypt(file, toDir, encryptionKeys)
   {
+    if(untarInProcess)
+    {
+      file = toResource(file)
+      toDir = toResource(toDir)
+
+      // single pass: each entry is decrypted before being written
+      TarExtractor extractor = createTarExtractor()
+      extractor.transformer = { String name, byte[] content ->
+        decryptContent(content, encryptionKeys)
+      }
+      extractor.extract(file.file, toDir.file)
+      return toDir
+    }
 
     def tmpDir = createTempDir()
     untar(file, tmpDir)
@@ -432,6 +477,33 @@ def class ShellImpl implements Shell
     return toDir
   }
 
+  protected TarExtractor createTarExtractor()
+  {
+    new TarExtractor(submitter: getSubmitter(),
+                     parallelism: untarParallelism,
+                     bufferSize: FILE_BUFFER_SIZE)
+  }
+
+  /**
+   * Decrypts the content of a file: a content which is not text (utf-8) is returned as is
+   */
+  protected byte[] decryptContent(byte[] content, encryptionKeys)
+  {
+    String text
+    try
+    {
+      text = Charset.forName('UTF-8').newDecoder().decode(ByteBuffer.wrap(content)).toString()
+    }
+    catch(CharacterCodingException ignored)
+    {
+      return content
+    }
+
+    String decrypted = EncryptionUtils.decryptBuffer(text, encryptionKeys)
+
+    return decrypted == text ? content : decrypted.getBytes('UTF-8')
+  }
+
 
   /**
    * Exporting ant access to the shell 
@@ -460,6 +532,37 @@ def class ShellImpl implements Shell
    * is that it fetches the file in the provided destination rather than in the tmp space.
    */
   Resource fetch(location, destination)
+  {
+    return fetch(location, destination, null)
+  }
+
+  /**
+   * Fetches the file pointed to by the location and verifies that its sha-1 is equal to
+   * <code>checksum</code> (when not <code>null</code>). <code>http(s)</code> locations are
+   * fetched with {@link RangedFetcher} (in parallel parts when the server supports range requests,
+   * resuming the parts which fail, computing the sha-1 while fetching).
+   */
+  Resource fetch(location, destination, String checksum)
+  {
+    doFetch(location, destination, checksum, false)?.resource
+  }
+
+  /**
+   * Same as {@link #fetch(Object, Object, String)} but also returns the sha-1 of the content
+   * (the one computed while fetching for <code>http(s)</code> locations)
+   */
+  Map fetchWithSha1(location, destination, String checksum)
+  {
+    doFetch(location, destination, checksum, true)
+  }
+
+  /**
+   * @return a map with <code>resource</code> and <code>sha1</code> (only when
+   *         <code>computeSha1</code> or <code>checksum</code> for non <code>http(s)</code>
+   *         locations since it requires reading the file again) or <code>null</code> if the
+   *         location is <code>null</code>
+   */
+  private Map doFetch(location, destination, String checksum, boolean computeSha1)
   {
     URI uri = GroovyNetUtils.toURI(location)
 
@@ -483,9 +586,35 @@ def class ShellImpl implements Shell
       tempFile = tempFile.createRelative(filename)
     }
 
-    GroovyIOUtils.fetchContent(location, tempFile.file)
+    String sha1 = null
+
+    if(uri.scheme == 'http' || uri.scheme == 'https')
+    {
+      sha1 = createRangedFetcher().fetch(uri, tempFile.file, checksum)
+    }
+    else
+    {
+      GroovyIOUtils.fetchContent(location, tempFile.file)
+
+      if(checksum != null || computeSha1)
+        sha1 = sha1(tempFile)
 
-    return tempFile
+      if(checksum != null && !checksum.equalsIgnoreCase(sha1))
+      {
+        rm(tempFile)
+        throw new RangedFetcher.ChecksumMismatchException(
+          "checksum mismatch for ${location}: expected ${checksum} but was ${sha1}")
+      }
+    }
+
+    return [resource: tempFile, sha1: sha1]
+  }
+
+  protected RangedFetcher createRangedFetcher()
+  {
+    new RangedFetcher(submitter: getSubmitter(),
+                      parallelism: fetchParallelism,
+                      bufferSize: FILE_BUFFER_SIZE)
   }
 
   /**
@@ -0,0 +1,575 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.utils.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map implemented as a hash array mapped trie: {@link #plus} and {@link #minus}
+ * return a new map which shares all the nodes of this map except the ones on the path to the
+ * modified key, so an update is <code>O(log32(n))</code> (in time and memory) instead of the
+ * <code>O(n)</code> required to copy a <code>HashMap</code>. Since the map never changes once
+ * built, it can be handed to any number of readers as a consistent snapshot.
+ *
+ * The mutating methods of {@link Map} throw {@link UnsupportedOperationException}.
+ *
+ * @author yan@pongasoft.com
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V>
+{
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  // 7 levels of bitmap nodes (32 bits of hash) + 1 level of collision node
+  private static final int MAX_DEPTH = 8;
+
+  private static final PersistentHashMap<Object, Object> EMPTY =
+    new PersistentHashMap<Object, Object>(null, 0);
+
+  private final Node _root;
+  private final int _size;
+
+  private transient Set<Map.Entry<K, V>> _entrySet;
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentHashMap<K, V> empty()
+  {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /**
+   * @return a persistent map with the same content as the provided map
+   */
+  public static <K, V> PersistentHashMap<K, V> create(Map<? extends K, ? extends V> map)
+  {
+    PersistentHashMap<K, V> res = empty();
+    return res.plusAll(map);
+  }
+
+  private PersistentHashMap(Node root, int size)
+  {
+    _root = root;
+    _size = size;
+  }
+
+  /**
+   * @return a new map with the key associated to the value (<code>this</code> if the key is
+   * already associated to the same value instance)
+   */
+  public PersistentHashMap<K, V> plus(K key, V value)
+  {
+    int hash = hash(key);
+    Change change = new Change();
+
+    Node root = _root == null ? BitmapIndexedNode.EMPTY : _root;
+    root = root.plus(0, hash, key, value, change);
+
+    if(root == _root)
+      return this;
+
+    return new PersistentHashMap<K, V>(root, change.sizeChanged ? _size + 1 : _size);
+  }
+
+  /**
+   * @return a new map with all the entries of the provided map added
+   */
+  public PersistentHashMap<K, V> plusAll(Map<? extends K, ? extends V> map)
+  {
+    PersistentHashMap<K, V> res = this;
+    for(Map.Entry<? extends K, ? extends V> entry : map.entrySet())
+    {
+      res = res.plus(entry.getKey(), entry.getValue());
+    }
+    return res;
+  }
+
+  /**
+   * @return a new map without the key (<code>this</code> if the key is not in the map)
+   */
+  public PersistentHashMap<K, V> minus(Object key)
+  {
+    if(_root == null)
+      return this;
+
+    Change change = new Change();
+    Node root = _root.minus(0, hash(key), key, change);
+
+    if(!change.sizeChanged)
+      return this;
+
+    if(_size == 1)
+      return empty();
+
+    return new PersistentHashMap<K, V>(root, _size - 1);
+  }
+
+  @Override
+  public int size()
+  {
+    return _size;
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return _size == 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key)
+  {
+    Leaf leaf = findLeaf(key);
+    return leaf == null ? null : (V) leaf.getValue();
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return findLeaf(key) != null;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet()
+  {
+    if(_entrySet == null)
+    {
+      _entrySet = new AbstractSet<Map.Entry<K, V>>()
+      {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator()
+        {
+          return new EntryIterator<K, V>(_root);
+        }
+
+        @Override
+        public int size()
+        {
+          return _size;
+        }
+      };
+    }
+    return _entrySet;
+  }
+
+  private Leaf findLeaf(Object key)
+  {
+    if(_root == null)
+      return null;
+    return _root.find(0, hash(key), key);
+  }
+
+  private static int hash(Object key)
+  {
+    if(key == null)
+      return 0;
+    int h = key.hashCode();
+    // spreads the higher bits in the lower bits which are used first
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equal(Object o1, Object o2)
+  {
+    return o1 == o2 || (o1 != null && o1.equals(o2));
+  }
+
+  /**
+   * Keeps track of whether the size of the map changed while updating the trie
+   */
+  private static class Change
+  {
+    boolean sizeChanged = false;
+  }
+
+  private static class Leaf extends AbstractMap.SimpleImmutableEntry<Object, Object>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int _hash;
+
+    private Leaf(int hash, Object key, Object value)
+    {
+      super(key, value);
+      _hash = hash;
+    }
+  }
+
+  private static abstract class Node
+  {
+    abstract Leaf find(int shift, int hash, Object key);
+
+    abstract Node plus(int shift, int hash, Object key, Object value, Change change);
+
+    /**
+     * @return the node without the key or <code>null</code> if the node is now empty
+     */
+    abstract Node minus(int shift, int hash, Object key, Change change);
+
+    /**
+     * @return the only leaf of this node (so that the parent can inline it) or <code>null</code>
+     */
+    abstract Leaf getSingleLeaf();
+
+    /**
+     * @return the children of the node (leaves or nodes)
+     */
+    abstract Object[] getChildren();
+  }
+
+  /**
+   * A node with up to 32 children (each one being a leaf or a node), only the children which
+   * exist are stored (the bitmap tells which ones)
+   */
+  private static class BitmapIndexedNode extends Node
+  {
+    private static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(0, new Object[0]);
+
+    private final int _bitmap;
+    private final Object[] _children;
+
+    private BitmapIndexedNode(int bitmap, Object[] children)
+    {
+      _bitmap = bitmap;
+      _children = children;
+    }
+
+    private static int bit(int shift, int hash)
+    {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private int index(int bit)
+    {
+      return Integer.bitCount(_bitmap & (bit - 1));
+    }
+
+    @Override
+    Leaf find(int shift, int hash, Object key)
+    {
+      int bit = bit(shift, hash);
+      if((_bitmap & bit) == 0)
+        return null;
+
+      Object child = _children[index(bit)];
+      if(child instanceof Node)
+        return ((Node) child).find(shift + BITS, hash, key);
+
+      Leaf leaf = (Leaf) child;
+      return equal(key, leaf.getKey()) ? leaf : null;
+    }
+
+    @Override
+    Node plus(int shift, int hash, Object key, Object value, Change change)
+    {
+      int bit = bit(shift, hash);
+      int idx = index(bit);
+
+      if((_bitmap & bit) == 0)
+      {
+        change.sizeChanged = true;
+        Object[] children = new Object[_children.length + 1];
+        System.arraycopy(_children, 0, children, 0, idx);
+        children[idx] = new Leaf(hash, key, value);
+        System.arraycopy(_children, idx, children, idx + 1, _children.length - idx);
+        return new BitmapIndexedNode(_bitmap | bit, children);
+      }
+
+      Object child = _children[idx];
+      Object newChild;
+
+      if(child instanceof Node)
+      {
+        newChild = ((Node) child).plus(shift + BITS, hash, key, value, change);
+      }
+      else
+      {
+        Leaf leaf = (Leaf) child;
+        if(equal(key, leaf.getKey()))
+        {
+          if(leaf.getValue() == value)
+            return this;
+          newChild = new Leaf(hash, key, value);
+        }
+        else
+        {
+          change.sizeChanged = true;
+          newChild = createNode(shift + BITS, leaf, new Leaf(hash, key, value));
+        }
+      }
+
+      if(newChild == child)
+        return this;
+
+      return replaceChild(idx, newChild);
+    }
+
+    @Override
+    Node minus(int shift, int hash, Object key, Change change)
+    {
+      int bit = bit(shift, hash);
+      if((_bitmap & bit) == 0)
+        return this;
+
+      int idx = index(bit);
+      Object child = _children[idx];
+
+      if(child instanceof Node)
+      {
+        Node node = (Node) child;
+        Node newNode = node.minus(shift + BITS, hash, key, change);
+
+        if(newNode == node)
+          return this;
+
+        if(newNode == null)
+          return removeChild(idx, bit);
+
+        // a node with a single leaf is replaced by the leaf itself
+        Leaf singleLeaf = newNode.getSingleLeaf();
+        return replaceChild(idx, singleLeaf != null ? singleLeaf : newNode);
+      }
+
+      Leaf leaf = (Leaf) child;
+      if(!equal(key, leaf.getKey()))
+        return this;
+
+      change.sizeChanged = true;
+      return removeChild(idx, bit);
+    }
+
+    @Override
+    Leaf getSingleLeaf()
+    {
+      if(_children.length == 1 && _children[0] instanceof Leaf)
+        return (Leaf) _children[0];
+      return null;
+    }
+
+    @Override
+    Object[] getChildren()
+    {
+      return _children;
+    }
+
+    private Node replaceChild(int idx, Object child)
+    {
+      Object[] children = _children.clone();
+      children[idx] = child;
+      return new BitmapIndexedNode(_bitmap, children);
+    }
+
+    private Node removeChild(int idx, int bit)
+    {
+      if(_children.length == 1)
+        return null;
+
+      Object[] children = new Object[_children.length - 1];
+      System.arraycopy(_children, 0, children, 0, idx);
+      System.arraycopy(_children, idx + 1, children, idx, _children.length - idx - 1);
+      return new BitmapIndexedNode(_bitmap & ~bit, children);
+    }
+
+    private static Node createNode(int shift, Leaf leaf1, Leaf leaf2)
+    {
+      if(leaf1._hash == leaf2._hash)
+        return new CollisionNode(leaf1._hash, new Leaf[] { leaf1, leaf2 });
+
+      Change ignored = new Change();
+      return EMPTY.plus(shift, leaf1._hash, leaf1.getKey(), leaf1.getValue(), ignored)
+                  .plus(shift, leaf2._hash, leaf2.getKey(), leaf2.getValue(), ignored);
+    }
+  }
+
+  /**
+   * A node containing the leaves whose keys have the exact same hash
+   */
+  private static class CollisionNode extends Node
+  {
+    private final int _hash;
+    private final Leaf[] _leaves;
+
+    private CollisionNode(int hash, Leaf[] leaves)
+    {
+      _hash = hash;
+      _leaves = leaves;
+    }
+
+    private int indexOf(Object key)
+    {
+      for(int i = 0; i < _leaves.length; i++)
+      {
+        if(equal(key, _leaves[i].getKey()))
+          return i;
+      }
+      return -1;
+    }
+
+    @Override
+    Leaf find(int shift, int hash, Object key)
+    {
+      if(hash != _hash)
+        return null;
+      int idx = indexOf(key);
+      return idx == -1 ? null : _leaves[idx];
+    }
+
+    @Override
+    Node plus(int shift, int hash, Object key, Object value, Change change)
+    {
+      if(hash != _hash)
+      {
+        // the new key differs from the colliding ones at this level, so
+        // this node gets pushed down in a bitmap node
+        Node node = new BitmapIndexedNode(BitmapIndexedNode.bit(shift, _hash), new Object[] { this });
+        return node.plus(shift, hash, key, value, change);
+      }
+
+      int idx = indexOf(key);
+
+      Leaf[] leaves;
+      if(idx == -1)
+      {
+        change.sizeChanged = true;
+        leaves = new Leaf[_leaves.length + 1];
+        System.arraycopy(_leaves, 0, leaves, 0, _leaves.length);
+        leaves[_leaves.length] = new Leaf(hash, key, value);
+      }
+      else
+      {
+        if(_leaves[idx].getValue() == value)
+          return this;
+        leaves = _leaves.clone();
+        leaves[idx] = new Leaf(hash, key, value);
+      }
+
+      return new CollisionNode(_hash, leaves);
+    }
+
+    @Override
+    Node minus(int shift, int hash, Object key, Change change)
+    {
+      if(hash != _hash)
+        return this;
+
+      int idx = indexOf(key);
+      if(idx == -1)
+        return this;
+
+      change.sizeChanged = true;
+
+      if(_leaves.length == 1)
+        return null;
+
+      Leaf[] leaves = new Leaf[_leaves.length - 1];
+      System.arraycopy(_leaves, 0, leaves, 0, idx);
+      System.arraycopy(_leaves, idx + 1, leaves, idx, _leaves.length - idx - 1);
+      return new CollisionNode(_hash, leaves);
+    }
+
+    @Override
+    Leaf getSingleLeaf()
+    {
+      return _leaves.length == 1 ? _leaves[0] : null;
+    }
+
+    @Override
+    Object[] getChildren()
+    {
+      return _leaves;
+    }
+  }
+
+  /**
+   * Depth first iteration of the trie (no recursion)
+   */
+  private static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>>
+  {
+    private final Object[][] _stack = new Object[MAX_DEPTH][];
+    private final int[] _positions = new int[MAX_DEPTH];
+    private int _depth = -1;
+    private Leaf _next;
+
+    private EntryIterator(Node root)
+    {
+      if(root != null)
+      {
+        _depth = 0;
+        _stack[0] = root.getChildren();
+        _positions[0] = 0;
+      }
+      _next = advance();
+    }
+
+    private Leaf advance()
+    {
+      while(_depth >= 0)
+      {
+        Object[] children = _stack[_depth];
+        int position = _positions[_depth];
+
+        if(position >= children.length)
+        {
+          _stack[_depth] = null;
+          _depth--;
+          continue;
+        }
+
+        _positions[_depth] = position + 1;
+
+        Object child = children[position];
+        if(child instanceof Leaf)
+          return (Leaf) child;
+
+        _depth++;
+        _stack[_depth] = ((Node) child).getChildren();
+        _positions[_depth] = 0;
+      }
+
+      return null;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return _next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> next()
+    {
+      if(_next == null)
+        throw new NoSuchElementException();
+
+      Leaf res = _next;
+      _next = advance();
+      return (Map.Entry<K, V>) (Map.Entry<?, ?>) res;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
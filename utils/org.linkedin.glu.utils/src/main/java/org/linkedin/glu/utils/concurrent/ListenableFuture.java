@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.utils.concurrent;
+
+import java.util.concurrent.Future;
+
+/**
+ * A future which calls back listeners when it completes (so that a caller does not have to block
+ * a thread waiting for it).
+ *
+ * @author yan@pongasoft.com
+ */
+public interface ListenableFuture<V> extends Future<V>
+{
+  /**
+   * Adds a listener which gets called when the future completes (normally, with an exception or
+   * cancelled). If the future is already completed, the listener is called right away (in the
+   * calling thread), otherwise it is called in the thread which completes the future, so it
+   * should not block.
+   */
+  void addListener(Runnable listener);
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.utils.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A {@link ListenableFuture} which is not backed by any computation: it is completed explicitly
+ * by calling {@link #complete(Object)} or {@link #fail(Throwable)}. Only the first call has an
+ * effect.
+ *
+ * @author yan@pongasoft.com
+ */
+public class SettableFuture<V> extends FutureTask<V> implements ListenableFuture<V>
+{
+  public static final String MODULE = SettableFuture.class.getName();
+  public static final Logger log = LoggerFactory.getLogger(MODULE);
+
+  private static final Callable<Object> NOT_RUN = new Callable<Object>()
+  {
+    @Override
+    public Object call() throws Exception
+    {
+      throw new IllegalStateException("a settable future is never run");
+    }
+  };
+
+  private List<Runnable> _listeners = null;
+  private boolean _completed = false;
+
+  /**
+   * Constructor
+   */
+  @SuppressWarnings("unchecked")
+  public SettableFuture()
+  {
+    super((Callable<V>) NOT_RUN);
+  }
+
+  /**
+   * Completes the future with the value
+   */
+  public void complete(V value)
+  {
+    set(value);
+  }
+
+  /**
+   * Completes the future with the exception
+   */
+  public void fail(Throwable throwable)
+  {
+    setException(throwable);
+  }
+
+  /**
+   * Completes this future the same way the provided (completed) future did
+   */
+  public void completeWith(Future<? extends V> future)
+  {
+    if(future.isCancelled())
+    {
+      cancel(false);
+      return;
+    }
+
+    try
+    {
+      complete(future.get());
+    }
+    catch(ExecutionException e)
+    {
+      fail(e.getCause());
+    }
+    catch(Throwable th)
+    {
+      fail(th);
+    }
+  }
+
+  @Override
+  public void addListener(Runnable listener)
+  {
+    synchronized(this)
+    {
+      if(!_completed)
+      {
+        if(_listeners == null)
+          _listeners = new ArrayList<Runnable>(1);
+        _listeners.add(listener);
+        return;
+      }
+    }
+
+    callListener(listener);
+  }
+
+  @Override
+  protected void done()
+  {
+    List<Runnable> listeners;
+
+    synchronized(this)
+    {
+      _completed = true;
+      listeners = _listeners;
+      _listeners = null;
+    }
+
+    if(listeners != null)
+    {
+      for(Runnable listener : listeners)
+      {
+        callListener(listener);
+      }
+    }
+  }
+
+  private void callListener(Runnable listener)
+  {
+    try
+    {
+      listener.run();
+    }
+    catch(Throwable th)
+    {
+      log.warn("unexpected exception in listener (ignored)", th);
+    }
+  }
+}
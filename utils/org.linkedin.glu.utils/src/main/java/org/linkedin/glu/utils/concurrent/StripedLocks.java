@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.linkedin.glu.utils.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks where each key is mapped to one of them (a stripe) so that operations on
+ * different keys can (most likely) proceed concurrently while operations on the same key are
+ * serialized, without having to keep one lock per key.
+ *
+ * @author yan@pongasoft.com
+ */
+public class StripedLocks
+{
+  public static final int DEFAULT_STRIPES = 64;
+
+  private final Lock[] _locks;
+  private final int _mask;
+
+  /**
+   * Constructor
+   */
+  public StripedLocks()
+  {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param stripes the number of locks (rounded up to the next power of 2)
+   */
+  public StripedLocks(int stripes)
+  {
+    int size = 1;
+    while(size < stripes)
+      size <<= 1;
+
+    _locks = new Lock[size];
+    for(int i = 0; i < size; i++)
+    {
+      _locks[i] = new ReentrantLock();
+    }
+    _mask = size - 1;
+  }
+
+  public int getStripesCount()
+  {
+    return _locks.length;
+  }
+
+  /**
+   * @return the lock for the given key (<code>null</code> is a valid key)
+   */
+  public Lock getLock(Object key)
+  {
+    return _locks[computeStripe(key)];
+  }
+
+  /**
+   * Executes the callable while holding the locks of all the keys. The locks are always acquired
+   * in the same order (whatever the order of the keys) so that 2 callers locking the same keys
+   * cannot deadlock. <code>null</code> keys are ignored.
+   *
+   * @return whatever the callable returns
+   */
+  public <T> T withLocks(Collection<?> keys, Callable<T> callable) throws Exception
+  {
+    List<Lock> locks = getLocks(keys);
+
+    int locked = 0;
+    try
+    {
+      for(Lock lock : locks)
+      {
+        lock.lock();
+        locked++;
+      }
+
+      return callable.call();
+    }
+    finally
+    {
+      for(int i = locked - 1; i >= 0; i--)
+      {
+        locks.get(i).unlock();
+      }
+    }
+  }
+
+  /**
+   * @return the (distinct) locks of the keys in acquisition order
+   */
+  protected List<Lock> getLocks(Collection<?> keys)
+  {
+    TreeSet<Integer> stripes = new TreeSet<Integer>();
+
+    for(Object key : keys)
+    {
+      if(key != null)
+        stripes.add(computeStripe(key));
+    }
+
+    List<Lock> res = new ArrayList<Lock>(stripes.size());
+    for(Integer stripe : stripes)
+    {
+      res.add(_locks[stripe]);
+    }
+    return res;
+  }
+
+  protected int computeStripe(Object key)
+  {
+    int h = key == null ? 0 : key.hashCode();
+    // spreads the bits so that keys which only differ in the high bits do not collide
+    h ^= (h >>> 16);
+    return h & _mask;
+  }
+}
@@ -23,15 +23,21 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
-import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Demultiplexes a stream generated by {@link MultiplexedInputStream}.
+ *
+ * The bytes provided to {@link #write(byte[], int, int)} are processed
+ * in place (and the data is written directly to the output streams) unless a header is split
+ * across 2 calls, in which case (only) the partial header is kept in the internal buffer.
+ *
  * @author yan@pongasoft.com
  */
 public class DemultiplexedOutputStream extends OutputStream
@@ -46,14 +52,14 @@ public class DemultiplexedOutputStream extends OutputStream
   public static final StringSplitter SS = new StringSplitter('=');
 
   private final Map<String, OutputStream> _outputStreams;
-  private final Map<String, WritableByteChannel> _outputChannels;
+  private final List<NamedOutputStream> _namedOutputStreams = new ArrayList<NamedOutputStream>();
   private final MemorySize _bufferSize;
 
   private ByteBuffer _buffer;
   private long _numberOfBytesWritten = 0;
 
   // the data currently being written needs to be written there
-  private WritableByteChannel _currentOutputChannel = null;
+  private OutputStream _currentOutputStream = null;
   private int _currentNumberOfBytesToWrite = 0;
 
   private boolean _expectStreamHeader = true;
@@ -82,11 +88,10 @@ public class DemultiplexedOutputStream extends OutputStream
     _bufferSize = bufferSize;
 
     _buffer = ByteBuffer.allocate((int) _bufferSize.getSizeInBytes());
-    _outputChannels = new LinkedHashMap<String, WritableByteChannel>();
 
     for(Map.Entry<String, ? extends OutputStream> entry : outputStreams.entrySet())
     {
-      _outputChannels.put(entry.getKey(), Channels.newChannel(entry.getValue()));
+      _namedOutputStreams.add(new NamedOutputStream(entry.getKey(), entry.getValue()));
     }
   }
 
@@ -101,7 +106,7 @@ public class DemultiplexedOutputStream extends OutputStream
 
     _buffer.put((byte) b);
     
-    processBuffer();
+    processInternalBuffer();
   }
 
   @Override
@@ -112,13 +117,29 @@ public class DemultiplexedOutputStream extends OutputStream
 
     while(len > 0)
     {
+      // nothing pending in the internal buffer => the bytes are processed in place
+      if(_buffer.position() == 0)
+      {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+        processBuffer(buffer);
+
+        // what is left (if anything) is an incomplete header which is kept for the next call
+        if(buffer.remaining() > _buffer.remaining())
+          throw new IOException("invalid stream detected");
+
+        _buffer.put(buffer);
+
+        return;
+      }
+
       if(_buffer.remaining() == 0)
         throw new IOException("invalid stream detected");
 
       int numberOfBytesToWrite = Math.min(len, _buffer.remaining());
 
       _buffer.put(b, off, numberOfBytesToWrite);
-      processBuffer();
+      processInternalBuffer();
       len -= numberOfBytesToWrite;
       off += numberOfBytesToWrite;
     }
@@ -144,42 +165,50 @@ public class DemultiplexedOutputStream extends OutputStream
     _closed = true;
   }
 
-  private void processBuffer() throws IOException
+  private void processInternalBuffer() throws IOException
   {
-    boolean needMoreBytes = false;
-
     _buffer.flip();
 
     try
     {
-      while(_buffer.hasRemaining() && !needMoreBytes)
+      processBuffer(_buffer);
+    }
+    finally
+    {
+      _buffer.compact();
+    }
+  }
+
+  /**
+   * Processes the buffer (ready for read) until it is empty or a header is incomplete
+   */
+  private void processBuffer(ByteBuffer buffer) throws IOException
+  {
+    boolean needMoreBytes = false;
+
+    while(buffer.hasRemaining() && !needMoreBytes)
+    {
+      if(_expectStreamHeader)
       {
-        if(_expectStreamHeader)
+        needMoreBytes = processStreamHeader(buffer);
+      }
+      else
+      {
+        if(_expectPartHeader)
         {
-          needMoreBytes = processStreamHeader();
+          needMoreBytes = processPartHeader(buffer);
         }
         else
         {
-          if(_expectPartHeader)
-          {
-            needMoreBytes = processPartHeader();
-          }
-          else
-          {
-            processData();
-          }
+          processData(buffer);
         }
       }
     }
-    finally
-    {
-      _buffer.compact();
-    }
   }
 
-  private boolean processStreamHeader() throws IOException
+  private boolean processStreamHeader(ByteBuffer buffer) throws IOException
   {
-    String line = readLine();
+    String line = readLine(buffer);
 
     // we need to read more...
     if(line == null)
@@ -201,11 +230,12 @@ public class DemultiplexedOutputStream extends OutputStream
     {
       if(versionChecked)
       {
-        if(!_outputChannels.containsKey(headerPart))
+        if(!_outputStreams.containsKey(headerPart))
         {
           if(log.isDebugEnabled())
             log.debug("output stream " + headerPart + " not provided... swallowing output");
-          _outputChannels.put(headerPart, Channels.newChannel(NullOutputStream.INSTANCE));
+          _outputStreams.put(headerPart, NullOutputStream.INSTANCE);
+          _namedOutputStreams.add(new NamedOutputStream(headerPart, NullOutputStream.INSTANCE));
         }
       }
       else
@@ -222,96 +252,178 @@ public class DemultiplexedOutputStream extends OutputStream
     return false;
   }
 
-  private boolean processPartHeader() throws IOException
+  /**
+   * The part header (<code>[name]=[sizeInBytes]\n</code>) is parsed directly from the bytes
+   * (this is called for every part).
+   */
+  private boolean processPartHeader(ByteBuffer buffer) throws IOException
   {
-    String line = readLine();
-    
+    byte[] array = buffer.array();
+    int off = buffer.arrayOffset() + buffer.position();
+    int end = findEndOfLine(buffer);
+
     // we need to read more...
-    if(line == null)
+    if(end == -1)
       return true;
 
+    buffer.position(buffer.position() + end - off + 1);
+    _numberOfBytesWritten += end - off + 1;
+
     // we skip empty lines
-    if(line.equals(""))
+    if(end == off)
       return false;
 
-    List<String> headerParts = SS.splitAsList(line);
-    if(headerParts.size() != 2)
-      throw new IOException("invalid part header: " + line);
-
-    _currentOutputChannel = _outputChannels.get(headerParts.get(0));
-    if(_currentOutputChannel == null)
-      throw new IOException("invalid stream: mismatch stream header and part header: " + line);
+    int separator = -1;
 
-    try
+    for(int i = off; i < end; i++)
     {
-      _currentNumberOfBytesToWrite = Integer.valueOf(headerParts.get(1));
+      if(array[i] == '=')
+      {
+        if(separator != -1)
+          throw new IOException("invalid part header: " + toString(array, off, end));
+        separator = i;
+      }
     }
-    catch(NumberFormatException e)
+
+    if(separator == -1)
+      throw new IOException("invalid part header: " + toString(array, off, end));
+
+    _currentOutputStream = findOutputStream(array, off, separator);
+    if(_currentOutputStream == null)
+      throw new IOException("invalid stream: mismatch stream header and part header: " +
+                            toString(array, off, end));
+
+    long size = 0;
+
+    for(int i = separator + 1; i < end; i++)
     {
-      throw new IOException("invalid stream: part header: " + line + " does not contain a valid size");
+      int digit = array[i] - '0';
+      if(digit < 0 || digit > 9)
+      {
+        size = -1;
+        break;
+      }
+      size = size * 10 + digit;
+      if(size > Integer.MAX_VALUE)
+        break;
     }
 
+    if(separator + 1 == end || size < 0 || size > Integer.MAX_VALUE)
+      throw new IOException("invalid stream: part header: " + toString(array, off, end) +
+                            " does not contain a valid size");
+
+    _currentNumberOfBytesToWrite = (int) size;
+
     _expectPartHeader = false;
     return false;
   }
 
-  private void processData() throws IOException
+  private void processData(ByteBuffer buffer) throws IOException
   {
-    int numberOfBytesInBuffer = _buffer.remaining();
+    int numberOfBytesToWrite = Math.min(buffer.remaining(), _currentNumberOfBytesToWrite);
+
+    // written directly from the backing array (no intermediate copy)
+    _currentOutputStream.write(buffer.array(),
+                               buffer.arrayOffset() + buffer.position(),
+                               numberOfBytesToWrite);
+
+    buffer.position(buffer.position() + numberOfBytesToWrite);
+    _currentNumberOfBytesToWrite -= numberOfBytesToWrite;
+    _numberOfBytesWritten += numberOfBytesToWrite;
 
-    // all the bytes in the buffer belongs to the current output
-    if(numberOfBytesInBuffer <= _currentNumberOfBytesToWrite)
+    if(_currentNumberOfBytesToWrite == 0)
     {
-      while(_buffer.hasRemaining())
-      {
-        int numberOfBytesRead = _currentOutputChannel.write(_buffer);
-        _currentNumberOfBytesToWrite -= numberOfBytesRead;
-        _numberOfBytesWritten += numberOfBytesRead;
-      }
+      _currentOutputStream = null;
+      _expectPartHeader = true;
     }
-    else
+  }
+
+  private OutputStream findOutputStream(byte[] array, int off, int end)
+  {
+    for(NamedOutputStream namedOutputStream : _namedOutputStreams)
     {
-      // only a portion of the bytes in the buffer belongs to the current output
-      int limit = _buffer.limit();
+      if(namedOutputStream.matches(array, off, end))
+        return namedOutputStream._outputStream;
+    }
 
-      // we read only the portion
-      _buffer.limit(_currentNumberOfBytesToWrite + _buffer.position());
+    return null;
+  }
 
-      // then we read them
-      while(_buffer.hasRemaining())
-      {
-        int numberOfBytesRead = _currentOutputChannel.write(_buffer);
-        _currentNumberOfBytesToWrite -= numberOfBytesRead;
-        _numberOfBytesWritten += numberOfBytesRead;
-      }
+  /**
+   * @return the index (in the backing array) of the end of line or <code>-1</code> if none
+   */
+  private static int findEndOfLine(ByteBuffer buffer)
+  {
+    byte[] array = buffer.array();
+    int limit = buffer.arrayOffset() + buffer.limit();
 
-      // we restore the limit
-      _buffer.limit(limit);
+    for(int i = buffer.arrayOffset() + buffer.position(); i < limit; i++)
+    {
+      if(array[i] == '\n')
+        return i;
     }
 
-    if(_currentNumberOfBytesToWrite == 0)
+    return -1;
+  }
+
+  private String readLine(ByteBuffer buffer)
+  {
+    byte[] array = buffer.array();
+    int off = buffer.arrayOffset() + buffer.position();
+    int end = findEndOfLine(buffer);
+
+    if(end == -1)
+      return null;
+
+    buffer.position(buffer.position() + end - off + 1);
+    _numberOfBytesWritten += end - off + 1;
+    return toString(array, off, end);
+  }
+
+  private static String toString(byte[] array, int off, int end)
+  {
+    try
     {
-      _currentOutputChannel = null;
-      _expectPartHeader = true;
+      return new String(array, off, end - off, "UTF-8");
+    }
+    catch(UnsupportedEncodingException e)
+    {
+      // should not happen
+      throw new RuntimeException(e);
     }
   }
 
-  private String readLine()
+  private static class NamedOutputStream
   {
-    byte[] array = _buffer.array();
-    int limit = _buffer.limit();
+    private final byte[] _name;
+    private final OutputStream _outputStream;
 
-    int off = _buffer.position();
+    private NamedOutputStream(String name, OutputStream outputStream)
+    {
+      try
+      {
+        _name = name.getBytes("UTF-8");
+      }
+      catch(UnsupportedEncodingException e)
+      {
+        // should not happen
+        throw new RuntimeException(e);
+      }
+      _outputStream = outputStream;
+    }
 
-    for(int i = off; i < limit; i++)
+    private boolean matches(byte[] array, int off, int end)
     {
-      if(array[i] == '\n')
+      if(end - off != _name.length)
+        return false;
+
+      for(int i = 0; i < _name.length; i++)
       {
-        _buffer.position(i + 1);
-        _numberOfBytesWritten += i - off + 1;
-        return new String(array, off, i - off);
+        if(_name[i] != array[off + i])
+          return false;
       }
+
+      return true;
     }
-    return null;
   }
 }
@@ -208,6 +208,19 @@ public class MultiplexedInputStream extends InputStream implements Startable
     return res;
   }
 
+  private static int computeNumberOfDigits(int number)
+  {
+    int res = 1;
+
+    while(number >= 10)
+    {
+      number /= 10;
+      res++;
+    }
+
+    return res;
+  }
+
   private static Map<String, InputStream> computeNames(Collection<InputStream> inputStreams)
   {
     Map<String, InputStream> res = new LinkedHashMap<String, InputStream>();
@@ -491,6 +504,8 @@ public class MultiplexedInputStream extends InputStream implements Startable
     private final ByteBuffer _buffer;
     private final ReadableByteChannel _channel;
 
+    private final byte[] _headerPrefix;
+
     private final int _minSize;
     private long _totalNumberOfBytesWritten = 0;
 
@@ -500,6 +515,16 @@ public class MultiplexedInputStream extends InputStream implements Startable
       _buffer = buffer;
       _channel = channel;
 
+      try
+      {
+        _headerPrefix = (name + "=").getBytes("UTF-8");
+      }
+      catch(UnsupportedEncodingException e)
+      {
+        // should not happen
+        throw new RuntimeException(e);
+      }
+
       // format is <name>=<size>\n<bytes>\n\n with the smallest message containing 1 byte
       _minSize = computeSize(1);
 
@@ -536,25 +561,37 @@ public class MultiplexedInputStream extends InputStream implements Startable
       if(numberOfBytes == 0)
         return 0;
 
-      return computeHeader(numberOfBytes).length + numberOfBytes + SEPARATOR.length;
+      return computeHeaderSize(numberOfBytes) + numberOfBytes + SEPARATOR.length;
     }
 
-    private byte[] computeHeader(int numberOfBytesToWrite)
+    /**
+     * @return the size of the header (<code>[name]=[numberOfBytes]\n</code>)
+     */
+    private int computeHeaderSize(int numberOfBytes)
     {
-      StringBuilder sb = new StringBuilder(_name);
-      sb.append('=');
-      sb.append(numberOfBytesToWrite);
-      sb.append('\n');
+      return _headerPrefix.length + computeNumberOfDigits(numberOfBytes) + 1;
+    }
 
-      try
-      {
-        return sb.toString().getBytes("UTF-8");
-      }
-      catch(UnsupportedEncodingException e)
+    /**
+     * Writes the header directly in the buffer (this is called for every part so it does not
+     * allocate anything)
+     */
+    private void putHeader(ByteBuffer buffer, int numberOfBytes)
+    {
+      buffer.put(_headerPrefix);
+
+      int position = buffer.position();
+      int numberOfDigits = computeNumberOfDigits(numberOfBytes);
+
+      // digits are written from the least significant one (at the end)
+      for(int i = numberOfDigits - 1; i >= 0; i--)
       {
-        // should not happen
-        throw new RuntimeException(e);
+        buffer.put(position + i, (byte) ('0' + numberOfBytes % 10));
+        numberOfBytes /= 10;
       }
+
+      buffer.position(position + numberOfDigits);
+      buffer.put((byte) '\n');
     }
 
     @Override
@@ -624,13 +661,12 @@ public class MultiplexedInputStream extends InputStream implements Startable
         // we need to write numberOfBytesToWrite
         _buffer.limit(numberOfBytesToWrite);
 
-        byte[] header = computeHeader(numberOfBytesToWrite);
-
         // number of actual bytes written
-        long numberOfBytesWritten = header.length + _buffer.remaining() + SEPARATOR.length;
+        long numberOfBytesWritten =
+          computeHeaderSize(numberOfBytesToWrite) + _buffer.remaining() + SEPARATOR.length;
 
         // writing the data to the buffer
-        _multiplexedBuffer.put(header);
+        putHeader(_multiplexedBuffer, numberOfBytesToWrite);
         _multiplexedBuffer.put(_buffer);
         _multiplexedBuffer.put(SEPARATOR); // 2 char
 
@@ -661,7 +697,7 @@ public class MultiplexedInputStream extends InputStream implements Startable
         // this is an approximation (because we cannot write more than the capacity of the
         // buffer!), but we know it will fit
         numberOfBytesToWrite =
-          spaceAvailable - (computeHeader(_multiplexedBuffer.capacity()).length +
+          spaceAvailable - (computeHeaderSize(_multiplexedBuffer.capacity()) +
                             SEPARATOR.length);
 
         if(numberOfBytesToWrite < 1)
@@ -44,4 +44,9 @@ public class NullOutputStream extends OutputStream
   public void write(int i) throws IOException
   {
   }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+  }
 }
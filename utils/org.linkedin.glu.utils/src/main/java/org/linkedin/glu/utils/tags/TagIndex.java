@@ -16,20 +16,35 @@
 
 package org.linkedin.glu.utils.tags;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Index of keys by tags. The keys are interned to dense ints and the keys associated to a tag
+ * (postings) are stored as bitmaps so that queries on multiple tags (all tags, any tag, all tags
+ * but not some others...) are computed with bitmap operations (and, or, and not) rather than by
+ * checking the tags of every key.
+ *
  * This class is not thread safe.
  *
  * @author yan@pongasoft.com
  */
 public class TagIndex
 {
-  private final Map<String, Set<String>> _indexByTag = new HashMap<String, Set<String>>();
-  private final Map<String, Set<String>> _indexByKey = new HashMap<String, Set<String>>();
+  private final Map<String, Integer> _idsByKey = new HashMap<String, Integer>();
+  private final List<String> _keysById = new ArrayList<String>();
+  private final Map<String, Set<String>> _tagsByKey = new HashMap<String, Set<String>>();
+  private final Map<String, BitSet> _postingsByTag = new HashMap<String, BitSet>();
+
+  // all the ids currently used (the ids of removed keys are reused)
+  private final BitSet _ids = new BitSet();
 
   /**
    * Constructor
@@ -43,59 +58,189 @@ public class TagIndex
    */
   public TagIndex(TagIndex other)
   {
-    for(Map.Entry<String, Set<String>> entry : other._indexByKey.entrySet())
+    _idsByKey.putAll(other._idsByKey);
+    _keysById.addAll(other._keysById);
+    _tagsByKey.putAll(other._tagsByKey);
+    for(Map.Entry<String, BitSet> entry : other._postingsByTag.entrySet())
     {
-      add(entry.getKey(), entry.getValue());
+      _postingsByTag.put(entry.getKey(), (BitSet) entry.getValue().clone());
     }
+    _ids.or(other._ids);
   }
 
   public void add(String key, Set<String> tags)
   {
-    _indexByKey.put(key, tags);
+    remove(key);
+
+    int id = _ids.nextClearBit(0);
+    _ids.set(id);
+    if(id == _keysById.size())
+      _keysById.add(key);
+    else
+      _keysById.set(id, key);
+    _idsByKey.put(key, id);
+    _tagsByKey.put(key, tags);
+
     for(String tag : tags)
     {
-      Set<String> keys = _indexByTag.get(tag);
-      if(keys == null)
+      BitSet postings = _postingsByTag.get(tag);
+      if(postings == null)
       {
-        keys = new HashSet<String>();
-        _indexByTag.put(tag, keys);
+        postings = new BitSet();
+        _postingsByTag.put(tag, postings);
       }
-      keys.add(key);
+      postings.set(id);
     }
   }
 
   public void remove(String key)
   {
-    Set<String> tags = _indexByKey.remove(key);
-    if(tags != null)
+    Integer id = _idsByKey.remove(key);
+    if(id != null)
     {
+      _ids.clear(id);
+      _keysById.set(id, null);
+
+      Set<String> tags = _tagsByKey.remove(key);
       for(String tag : tags)
       {
-        Set<String> keys = _indexByTag.get(tag);
-        keys.remove(key);
-        if(keys.isEmpty())
-          _indexByTag.remove(tag);
+        BitSet postings = _postingsByTag.get(tag);
+        postings.clear(id);
+        if(postings.isEmpty())
+          _postingsByTag.remove(tag);
       }
     }
   }
 
   public Set<String> getKeys()
   {
-    return _indexByKey.keySet();
+    return Collections.unmodifiableSet(_idsByKey.keySet());
   }
 
   public Set<String> getTags()
   {
-    return _indexByTag.keySet();
+    return Collections.unmodifiableSet(_postingsByTag.keySet());
   }
 
+  /**
+   * Note that the keys are computed from the postings of the tag at the time of the call: the
+   * returned set is a snapshot (which cannot be modified) and, unlike a view, it does not reflect
+   * the keys added to (or removed from) the index afterwards.
+   *
+   * @return the keys with the given tag (<code>null</code> if none)
+   */
   public Set<String> getKeys(String tag)
   {
-    return _indexByTag.get(tag);
+    BitSet postings = _postingsByTag.get(tag);
+    if(postings == null)
+      return null;
+    return Collections.unmodifiableSet(toKeys(postings));
   }
 
   public Set<String> getTags(String key)
   {
-    return _indexByKey.get(key);
+    return _tagsByKey.get(key);
+  }
+
+  /**
+   * @return the keys which have all the tags (empty set if none)
+   */
+  public Set<String> findKeysWithAllTags(Collection<String> tags)
+  {
+    return toKeys(computeKeysWithAllTags(tags));
+  }
+
+  /**
+   * @return the keys which have at least one of the tags (empty set if none)
+   */
+  public Set<String> findKeysWithAnyTag(Collection<String> tags)
+  {
+    return toKeys(computeKeysWithAnyTag(tags));
+  }
+
+  /**
+   * @return the keys which have all the tags <code>tags</code> and none of the tags
+   *         <code>excludedTags</code> (empty set if none)
+   */
+  public Set<String> findKeys(Collection<String> tags, Collection<String> excludedTags)
+  {
+    BitSet res = computeKeysWithAllTags(tags);
+    res.andNot(computeKeysWithAnyTag(excludedTags));
+    return toKeys(res);
+  }
+
+  /**
+   * @return the (ids of the) keys which have all the tags (all the keys if no tags). Note that
+   *         the result is a copy that you can modify.
+   */
+  public BitSet computeKeysWithAllTags(Collection<String> tags)
+  {
+    BitSet res = null;
+
+    if(tags != null)
+    {
+      for(String tag : tags)
+      {
+        BitSet postings = _postingsByTag.get(tag);
+        if(postings == null)
+          return new BitSet();
+
+        if(res == null)
+          res = (BitSet) postings.clone();
+        else
+          res.and(postings);
+
+        if(res.isEmpty())
+          return res;
+      }
+    }
+
+    return res == null ? computeAllKeys() : res;
+  }
+
+  /**
+   * @return the (ids of the) keys which have at least one of the tags. Note that the result is a
+   *         copy that you can modify.
+   */
+  public BitSet computeKeysWithAnyTag(Collection<String> tags)
+  {
+    BitSet res = new BitSet();
+
+    if(tags != null)
+    {
+      for(String tag : tags)
+      {
+        BitSet postings = _postingsByTag.get(tag);
+        if(postings != null)
+          res.or(postings);
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @return the (ids of the) all the keys. Note that the result is a copy that you can modify.
+   */
+  public BitSet computeAllKeys()
+  {
+    return (BitSet) _ids.clone();
+  }
+
+  /**
+   * @return the keys for the ids (in the order of the ids)
+   */
+  public Set<String> toKeys(BitSet ids)
+  {
+    Set<String> res = new LinkedHashSet<String>(ids.cardinality() * 4 / 3 + 1);
+
+    for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1))
+    {
+      String key = _keysById.get(id);
+      if(key != null)
+        res.add(key);
+    }
+
+    return res;
   }
 }
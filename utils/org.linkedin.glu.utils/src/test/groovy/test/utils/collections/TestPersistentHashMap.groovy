@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.utils.collections
+
+import org.linkedin.glu.utils.collections.PersistentHashMap
+
+/**
+ * @author yan@pongasoft.com */
+public class TestPersistentHashMap extends GroovyTestCase
+{
+  public void testPersistentHashMap()
+  {
+    PersistentHashMap<String, Integer> empty = PersistentHashMap.empty()
+    assertTrue(empty.isEmpty())
+
+    def m1 = empty.plus('a', 1)
+    def m2 = m1.plus('b', 2)
+    def m3 = m2.plus('a', 3)
+    def m4 = m3.minus('b')
+
+    // previous versions are untouched
+    assertTrue(empty.isEmpty())
+    assertEquals([a: 1], m1)
+    assertEquals([a: 1, b: 2], m2)
+    assertEquals([a: 3, b: 2], m3)
+    assertEquals([a: 3], m4)
+
+    // no change => same instance
+    assertTrue(m2.plus('a', 1).is(m2))
+    assertTrue(m2.minus('c').is(m2))
+    assertTrue(m4.minus('a').is(PersistentHashMap.empty()))
+
+    // null keys and values
+    def m5 = m1.plus(null, null)
+    assertTrue(m5.containsKey(null))
+    assertNull(m5.get(null))
+    assertFalse(m5.containsKey('b'))
+    assertEquals(2, m5.size())
+
+    // immutable
+    shouldFail(UnsupportedOperationException) { m1.put('b', 2) }
+    shouldFail(UnsupportedOperationException) { m1.remove('a') }
+
+    assertEquals([a: 1, b: 2], PersistentHashMap.create([a: 1, b: 2]))
+  }
+
+  /**
+   * Compares (random) operations with a <code>HashMap</code> (including keys with colliding hash
+   * codes)
+   */
+  public void testAgainstHashMap()
+  {
+    Random random = new Random(0)
+
+    def ref = [:]
+    PersistentHashMap map = PersistentHashMap.empty()
+    def snapshots = []
+
+    10000.times { i ->
+      def key
+      switch(random.nextInt(3))
+      {
+        case 0:
+          key = new CollidingKey("k${random.nextInt(300)}".toString())
+          break
+        case 1:
+          key = "s${random.nextInt(3000)}".toString()
+          break
+        default:
+          key = random.nextInt(3000)
+          break
+      }
+
+      if(random.nextInt(3) == 0)
+      {
+        ref.remove(key)
+        map = map.minus(key)
+      }
+      else
+      {
+        def value = random.nextInt()
+        ref[key] = value
+        map = map.plus(key, value)
+      }
+
+      assertEquals(ref.size(), map.size())
+
+      if(i % 1000 == 0)
+        snapshots << [new HashMap(ref), map]
+    }
+
+    assertEquals(ref, map)
+    assertEquals(ref, new HashMap(map))
+    assertEquals(ref.hashCode(), map.hashCode())
+    ref.each { k, v ->
+      assertTrue(map.containsKey(k))
+      assertEquals(v, map.get(k))
+    }
+
+    // snapshots did not change
+    snapshots.each { expected, snapshot ->
+      assertEquals(expected, snapshot)
+    }
+
+    // removing everything
+    ref.keySet().each { map = map.minus(it) }
+    assertTrue(map.isEmpty())
+  }
+
+  private static class CollidingKey
+  {
+    final String name
+
+    CollidingKey(String name)
+    {
+      this.name = name
+    }
+
+    @Override
+    int hashCode()
+    {
+      return name.hashCode() % 8
+    }
+
+    @Override
+    boolean equals(Object o)
+    {
+      return o instanceof CollidingKey && o.name == name
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.utils.concurrent
+
+import org.linkedin.glu.utils.concurrent.SettableFuture
+
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutionException
+
+/**
+ * @author yan@pongasoft.com */
+public class TestSettableFuture extends GroovyTestCase
+{
+  public void testComplete()
+  {
+    def calls = []
+
+    def future = new SettableFuture<String>()
+    future.addListener({ calls << "l1:${future.get()}".toString() } as Runnable)
+    future.addListener({ throw new Exception('ignored') } as Runnable)
+    future.addListener({ calls << "l2:${future.get()}".toString() } as Runnable)
+
+    assertFalse(future.isDone())
+    assertEquals([], calls)
+
+    future.complete('v1')
+    // only the first completion counts
+    future.complete('v2')
+    future.fail(new Exception('e'))
+
+    assertEquals('v1', future.get())
+    assertEquals(['l1:v1', 'l2:v1'], calls)
+
+    // already completed => called right away
+    future.addListener({ calls << "l3:${future.get()}".toString() } as Runnable)
+    assertEquals(['l1:v1', 'l2:v1', 'l3:v1'], calls)
+  }
+
+  public void testFailAndCancel()
+  {
+    def future = new SettableFuture<String>()
+    future.fail(new Exception('e1'))
+    assertEquals('java.lang.Exception: e1', shouldFail(ExecutionException) { future.get() })
+
+    def calls = []
+    future = new SettableFuture<String>()
+    future.addListener({ calls << future.isCancelled() } as Runnable)
+    assertTrue(future.cancel(true))
+    assertEquals([true], calls)
+    shouldFail(CancellationException) { future.get() }
+  }
+
+  public void testCompleteWith()
+  {
+    def source = new SettableFuture<String>()
+    def target = new SettableFuture<String>()
+    source.addListener({ target.completeWith(source) } as Runnable)
+    source.complete('v1')
+    assertEquals('v1', target.get())
+
+    source = new SettableFuture<String>()
+    target = new SettableFuture<String>()
+    source.fail(new Exception('e1'))
+    target.completeWith(source)
+    assertEquals('java.lang.Exception: e1', shouldFail(ExecutionException) { target.get() })
+
+    source = new SettableFuture<String>()
+    target = new SettableFuture<String>()
+    source.cancel(false)
+    target.completeWith(source)
+    assertTrue(target.isCancelled())
+  }
+}
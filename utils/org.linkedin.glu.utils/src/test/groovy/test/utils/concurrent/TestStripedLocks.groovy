@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.utils.concurrent
+
+import org.linkedin.glu.utils.concurrent.StripedLocks
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * @author yan@pongasoft.com */
+public class TestStripedLocks extends GroovyTestCase
+{
+  public void testStripes()
+  {
+    assertEquals(64, new StripedLocks().stripesCount)
+    assertEquals(8, new StripedLocks(5).stripesCount)
+    assertEquals(1, new StripedLocks(1).stripesCount)
+
+    def locks = new StripedLocks(16)
+
+    // same key => same lock
+    assertTrue(locks.getLock('/a/b').is(locks.getLock('/a/b')))
+    assertTrue(locks.getLock(null).is(locks.getLock(null)))
+
+    // 100 keys => at most 16 locks
+    assertTrue((1..100).collect { locks.getLock("/${it}".toString()) }.unique(false).size() <= 16)
+  }
+
+  public void testWithLocks()
+  {
+    def locks = new StripedLocks(16)
+
+    ReentrantLock lockA = locks.getLock('a')
+    ReentrantLock lockB = locks.getLock('b')
+
+    assertEquals('res', locks.withLocks(['a', 'b', null, 'a']) {
+      assertTrue(lockA.heldByCurrentThread)
+      assertTrue(lockB.heldByCurrentThread)
+      // locks are reentrant
+      locks.withLocks(['a']) { assertEquals(2, lockA.holdCount) }
+      return 'res'
+    })
+
+    assertFalse(lockA.locked)
+    assertFalse(lockB.locked)
+
+    // locks are released when the callable fails
+    assertEquals('e1', shouldFail(Exception) {
+      locks.withLocks(['a', 'b']) { throw new Exception('e1') }
+    })
+    assertFalse(lockA.locked)
+    assertFalse(lockB.locked)
+  }
+
+  public void testNoDeadlock()
+  {
+    def locks = new StripedLocks(2)
+
+    // 'a' and 'b' locked in opposite orders by 2 threads
+    def start = new CountDownLatch(1)
+    def done = new CountDownLatch(2)
+    def threads = [['a', 'b'], ['b', 'a']].collect { keys ->
+      Thread.start {
+        start.await()
+        1000.times { locks.withLocks(keys) { Thread.yield() } }
+        done.countDown()
+      }
+    }
+
+    start.countDown()
+    assertTrue(done.await(10, TimeUnit.SECONDS))
+    threads.each { it.join() }
+  }
+}
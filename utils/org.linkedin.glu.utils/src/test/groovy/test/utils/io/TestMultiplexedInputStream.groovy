@@ -106,6 +106,45 @@ public class TestMultiplexedInputStream extends GroovyTestCase
     }
   }
 
+  /**
+   * The demultiplexer processes the bytes in place: headers and data may be split anywhere
+   * between 2 writes
+   */
+  public void testDemultiplexWithArbitraryWrites()
+  {
+    Random random = new Random(10)
+
+    def streams = [:]
+    (0..3).each { idx ->
+      byte[] bytes = new byte[random.nextInt(50000)]
+      random.nextBytes(bytes)
+      streams["S${idx}".toString()] = bytes
+    }
+
+    def mis = new MultiplexedInputStream(streams.collectEntries { k, v -> [k, new ByteArrayInputStream(v)] },
+                                         MemorySize.parse('1k'))
+    byte[] multiplexed = mis.bytes
+
+    [1, 7, 100, 1000, 5000].each { maxWriteSize ->
+      def outputStreams = streams.collectEntries { k, v -> [k, new ByteArrayOutputStream()] }
+
+      def dmos = new DemultiplexedOutputStream(outputStreams, MemorySize.parse('100'))
+
+      int offset = 0
+      while(offset < multiplexed.size())
+      {
+        int len = Math.min(multiplexed.size() - offset, random.nextInt(maxWriteSize) + 1)
+        dmos.write(multiplexed, offset, len)
+        offset += len
+      }
+
+      streams.each { k, v ->
+        assertTrue(k, Arrays.equals(v, outputStreams[k].toByteArray()))
+      }
+      assertEquals(multiplexed.size(), dmos.numberOfBytesWritten)
+    }
+  }
+
   /**
    * This is to make sure that no matter how the stream terminates, the threads that were spawned
    * will terminate properly.
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.utils.io
+
+import com.sun.net.httpserver.HttpExchange
+import org.linkedin.glu.groovy.utils.io.RangedFetcher
+import org.linkedin.glu.groovy.utils.shell.Shell
+import org.linkedin.glu.groovy.utils.shell.ShellImpl
+import org.linkedin.groovy.util.net.GroovyNetUtils
+import org.linkedin.util.lang.MemorySize
+
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author yan@pongasoft.com */
+public class TestRangedFetcher extends GroovyTestCase
+{
+  byte[] content = new byte[100 * 1024]
+  String contentSha1
+
+  boolean supportRanges = true
+  // number of range requests which will only return half of the range (to force a resume)
+  AtomicInteger failures = new AtomicInteger(0)
+  AtomicInteger rangeRequests = new AtomicInteger(0)
+
+  @Override
+  protected void setUp()
+  {
+    super.setUp()
+    new Random(1).nextBytes(content)
+    contentSha1 =
+      new BigInteger(1, MessageDigest.getInstance('SHA1').digest(content)).toString(16).padLeft(40, '0')
+  }
+
+  private def handler = { HttpExchange t ->
+    int from = 0
+    int to = content.length - 1
+
+    String range = t.requestHeaders.getFirst('Range')
+    if(supportRanges)
+      t.responseHeaders.add('Accept-Ranges', 'bytes')
+    t.responseHeaders.add('ETag', '"v1"')
+
+    int code = 200
+    if(supportRanges && range)
+    {
+      rangeRequests.incrementAndGet()
+      def m = range =~ /bytes=(\d+)-(\d*)/
+      assertTrue(m.matches())
+      from = m.group(1) as int
+      if(m.group(2))
+        to = m.group(2) as int
+      code = 206
+      t.responseHeaders.add('Content-Range', "bytes ${from}-${to}/${content.length}".toString())
+      if(failures.getAndDecrement() > 0)
+        to = from + (to - from).intdiv(2)
+    }
+
+    int length = to - from + 1
+    t.sendResponseHeaders(code, length)
+    OutputStream os = t.responseBody
+    os.write(content, from, length)
+    os.close()
+  }
+
+  private String fetch(RangedFetcher fetcher, File file, String checksum = null)
+  {
+    GroovyNetUtils.withHttpServer(0, ['/content': handler]) { int port ->
+      fetcher.fetch(new URI("http://localhost:${port}/content"), file, checksum)
+    }
+  }
+
+  /**
+   * The content is fetched in parallel parts
+   */
+  public void testParallelFetch()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File file = shell.toResource('/content.bin').file
+
+      def fetcher = new RangedFetcher(parallelism: 4, minPartSize: MemorySize.parse('10k'))
+
+      assertEquals(contentSha1, fetch(fetcher, file, contentSha1))
+      assertTrue(Arrays.equals(content, file.bytes))
+      // 1 part using the initial request + 3 parts
+      assertEquals(3, rangeRequests.get())
+    }
+  }
+
+  /**
+   * The parts which fail are resumed
+   */
+  public void testResume()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File file = shell.toResource('/content.bin').file
+
+      def fetcher = new RangedFetcher(parallelism: 4,
+                                      minPartSize: MemorySize.parse('10k'),
+                                      bufferSize: MemorySize.parse('1k'))
+
+      failures.set(2)
+      assertEquals(contentSha1, fetch(fetcher, file))
+      assertTrue(Arrays.equals(content, file.bytes))
+      assertEquals(5, rangeRequests.get())
+
+      // not enough retries
+      failures.set(10)
+      fetcher.maxRetries = 1
+      shouldFail(EOFException) { fetch(fetcher, file) }
+      assertFalse(file.exists())
+    }
+  }
+
+  /**
+   * When the server does not support ranges, the content is fetched sequentially
+   */
+  public void testNoRangeSupport()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File file = shell.toResource('/content.bin').file
+
+      supportRanges = false
+
+      def fetcher = new RangedFetcher(parallelism: 4, minPartSize: MemorySize.parse('10k'))
+
+      assertEquals(contentSha1, fetch(fetcher, file))
+      assertTrue(Arrays.equals(content, file.bytes))
+      assertEquals(0, rangeRequests.get())
+    }
+  }
+
+  /**
+   * The file is deleted when the checksum does not match
+   */
+  public void testChecksumMismatch()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File file = shell.toResource('/content.bin').file
+
+      def fetcher = new RangedFetcher(parallelism: 4, minPartSize: MemorySize.parse('10k'))
+
+      shouldFail(RangedFetcher.ChecksumMismatchException) {
+        fetch(fetcher, file, '0' * 40)
+      }
+      assertFalse(file.exists())
+
+      // through the shell (sequential)
+      GroovyNetUtils.withHttpServer(0, ['/content': handler]) { int port ->
+        def location = "http://localhost:${port}/content"
+        assertTrue(Arrays.equals(content, shell.fetch(location, null, contentSha1).file.bytes))
+
+        // the sha-1 computed while fetching is returned
+        Map fetched = shell.fetchWithSha1(location, null, null)
+        assertEquals(contentSha1, fetched.sha1)
+        assertTrue(Arrays.equals(content, fetched.resource.file.bytes))
+
+        shouldFail(RangedFetcher.ChecksumMismatchException) {
+          shell.fetch(location, file, '0' * 40)
+        }
+        assertFalse(file.exists())
+      }
+    }
+  }
+}
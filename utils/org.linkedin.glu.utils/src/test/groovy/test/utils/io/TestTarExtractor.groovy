@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package test.utils.io
+
+import org.apache.tools.tar.TarConstants
+import org.apache.tools.tar.TarEntry
+import org.apache.tools.tar.TarOutputStream
+import org.linkedin.glu.groovy.utils.io.TarExtractor
+import org.linkedin.glu.groovy.utils.shell.Shell
+import org.linkedin.glu.groovy.utils.shell.ShellImpl
+import org.linkedin.util.io.resource.Resource
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.PosixFilePermissions
+
+/**
+ * @author yan@pongasoft.com */
+public class TestTarExtractor extends GroovyTestCase
+{
+  private static final def FILES = [
+    '/tar/a/a.sh',
+    '/tar/a/a.txt',
+    '/tar/b.sh',
+    '/tar/b.txt'
+  ]
+
+  /**
+   * Extracts the tar files (with all compressions) sequentially and in parallel
+   */
+  public void testExtract()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      FILES.each {
+        def f = shell.saveContent(it, "...content of ${it}...")
+        if(f.filename.endsWith('.sh'))
+          shell.chmodPlusX(f)
+      }
+
+      [null, 'gzip', 'bzip2'].each { compression ->
+        Resource tarFile = shell.tar(dir: '/tar', tarDir: '/out', compression: compression)
+
+        [1, 3].each { parallelism ->
+          Resource outputDir = shell.toResource("/untar/${compression}/${parallelism}")
+
+          def extractor = new TarExtractor(parallelism: parallelism)
+          assertTrue(extractor.extract(tarFile.file, outputDir.file) >= FILES.size())
+
+          FILES.each { f ->
+            Resource file = outputDir.createRelative(f)
+            String msg = "${file} (${compression}/${parallelism})"
+            assertEquals(msg, "...content of ${f}...".toString(), shell.cat(file))
+            assertEquals(msg, f.endsWith('.sh'), Files.isExecutable(file.file.toPath()))
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The content of the entries can be transformed (ex: decrypted) while being extracted
+   */
+  public void testTransformer()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      FILES.each { shell.saveContent(it, "...content of ${it}...") }
+
+      Resource tarFile = shell.tar(dir: '/tar', tarDir: '/out', compression: 'gzip')
+
+      def extractor = new TarExtractor(transformer: { String name, byte[] content ->
+        name.endsWith('.txt') ? new String(content, 'UTF-8').toUpperCase().getBytes('UTF-8') : content
+      })
+
+      Resource outputDir = shell.toResource('/untar')
+      extractor.extract(tarFile.file, outputDir.file)
+
+      FILES.each { f ->
+        String content = "...content of ${f}..."
+        assertEquals(f.endsWith('.txt') ? content.toUpperCase() : content,
+                     shell.cat(outputDir.createRelative(f)))
+      }
+    }
+  }
+
+  /**
+   * The shell extracts in the jvm when configured to
+   */
+  public void testShellUntarInProcess()
+  {
+    ShellImpl.createTempShell { ShellImpl shell ->
+      shell.untarInProcess = true
+      shell.untarParallelism = 2
+
+      ["./src/test/resources/testUntar_tar", "./src/test/resources/testUntar_tgz"].each { file ->
+        def untarred = shell.untar(shell.fetch(new File(file).canonicalFile.toURI()))
+        assertEquals("for ${file}", ['a.txt', 'b.txt', 'c.txt'], shell.ls(untarred).filename.sort())
+      }
+    }
+  }
+
+  /**
+   * Entries with .. are rejected
+   */
+  public void testEntryOutside()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File outputDir = shell.toResource('/root/untar').file
+      File outside = shell.toResource('/root/outside.txt').file
+
+      byte[] tar = createTar { TarOutputStream tos ->
+        addFile(tos, 'a.txt', 'a')
+        addFile(tos, '../outside.txt', 'outside')
+      }
+
+      shouldFail(IOException) {
+        new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir)
+      }
+
+      assertFalse(outside.exists())
+    }
+  }
+
+  /**
+   * Like tar, the leading / is removed
+   */
+  public void testAbsoluteEntry()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File outputDir = shell.toResource('/untar').file
+      File outside = shell.toResource('/outside/abs.txt').file
+
+      byte[] tar = createTar { TarOutputStream tos ->
+        addFile(tos, outside.absolutePath, 'abs')
+      }
+
+      assertEquals(1, new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir))
+
+      assertFalse(outside.exists())
+      assertEquals('abs', new File(outputDir, outside.absolutePath).text)
+    }
+  }
+
+  /**
+   * An entry cannot be written through a symbolic link pointing outside of the directory
+   */
+  public void testSymbolicLinkOutside()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File outside = shell.toResource('/outside').file
+      outside.mkdirs()
+
+      [outside.absolutePath, '../outside'].each { linkName ->
+        File outputDir = shell.toResource('/untar').file
+
+        byte[] tar = createTar { TarOutputStream tos ->
+          addSymbolicLink(tos, 'evil', linkName)
+          addFile(tos, 'evil/passwd', 'evil')
+        }
+
+        shouldFail(IOException) {
+          new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir)
+        }
+
+        assertEquals("for ${linkName}", [], outside.list() as List)
+        assertFalse(Files.isSymbolicLink(new File(outputDir, 'evil').toPath()))
+
+        shell.rmdirs('/untar')
+      }
+
+      // the link points inside... but through another link which points outside
+      File outputDir = shell.toResource('/untar').file
+      byte[] tar = createTar { TarOutputStream tos ->
+        addSymbolicLink(tos, 'b', '.')
+        addSymbolicLink(tos, 'evil', 'b/../outside')
+      }
+
+      shouldFail(IOException) {
+        new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir)
+      }
+      assertFalse(Files.exists(new File(outputDir, 'evil').toPath()))
+
+      shell.rmdirs('/untar')
+
+      // same but the other link is created after (so it is not there yet when the link is created)
+      tar = createTar { TarOutputStream tos ->
+        addSymbolicLink(tos, 'evil', 'b/../outside')
+        addSymbolicLink(tos, 'b', '.')
+      }
+
+      shouldFail(IOException) {
+        new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir)
+      }
+      assertFalse(Files.isSymbolicLink(new File(outputDir, 'evil').toPath()))
+    }
+  }
+
+  /**
+   * Links pointing inside the directory are created (after the other entries)
+   */
+  public void testSymbolicLinkInside()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File outputDir = shell.toResource('/untar').file
+
+      byte[] tar = createTar { TarOutputStream tos ->
+        addSymbolicLink(tos, 'l1', 'a')
+        addSymbolicLink(tos, 'a/l2', '../b.txt')
+        addFile(tos, 'a/a.txt', 'a')
+        addFile(tos, 'b.txt', 'b')
+      }
+
+      assertEquals(4, new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir))
+
+      Path l1 = new File(outputDir, 'l1').toPath()
+      assertTrue(Files.isSymbolicLink(l1))
+      assertEquals('a', new File(outputDir, 'l1/a.txt').text)
+      assertEquals('b', new File(outputDir, 'l1/l2').text)
+    }
+  }
+
+  /**
+   * A read only directory does not prevent its content from being extracted
+   */
+  public void testReadOnlyDirectory()
+  {
+    ShellImpl.createTempShell { Shell shell ->
+      File outputDir = shell.toResource('/untar').file
+
+      byte[] tar = createTar { TarOutputStream tos ->
+        addDirectory(tos, 'ro', 0555)
+        addFile(tos, 'ro/a.txt', 'a')
+      }
+
+      File ro = new File(outputDir, 'ro')
+      try
+      {
+        assertEquals(2, new TarExtractor().extract(new ByteArrayInputStream(tar), outputDir))
+
+        assertEquals('a', new File(ro, 'a.txt').text)
+        assertEquals(PosixFilePermissions.fromString('r-xr-xr-x'),
+                     Files.getPosixFilePermissions(ro.toPath()))
+      }
+      finally
+      {
+        // so that it can be deleted
+        ro.setWritable(true)
+      }
+    }
+  }
+
+  private static byte[] createTar(Closure closure)
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream()
+    TarOutputStream tos = new TarOutputStream(baos)
+    tos.longFileMode = TarOutputStream.LONGFILE_GNU
+    closure(tos)
+    tos.close()
+    return baos.toByteArray()
+  }
+
+  private static void addFile(TarOutputStream tos, String name, String content)
+  {
+    byte[] bytes = content.getBytes('UTF-8')
+    TarEntry entry = new TarEntry(name, true)
+    entry.size = bytes.length
+    tos.putNextEntry(entry)
+    tos.write(bytes)
+    tos.closeEntry()
+  }
+
+  private static void addDirectory(TarOutputStream tos, String name, int mode)
+  {
+    TarEntry entry = new TarEntry("${name}/".toString())
+    entry.mode = 040000 | mode
+    tos.putNextEntry(entry)
+    tos.closeEntry()
+  }
+
+  private static void addSymbolicLink(TarOutputStream tos, String name, String linkName)
+  {
+    TarEntry entry = new TarEntry(name, TarConstants.LF_SYMLINK)
+    entry.linkName = linkName
+    tos.putNextEntry(entry)
+    tos.closeEntry()
+  }
+}
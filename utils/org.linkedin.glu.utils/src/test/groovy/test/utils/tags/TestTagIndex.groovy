@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 Yan Pujante
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package test.utils.tags
+
+import org.linkedin.glu.utils.tags.TagIndex
+
+/**
+ * @author yan@pongasoft.com */
+public class TestTagIndex extends GroovyTestCase
+{
+  public void testTagIndex()
+  {
+    TagIndex index = new TagIndex()
+
+    assertEquals([] as Set, index.keys)
+    assertEquals([] as Set, index.tags)
+    assertNull(index.getKeys('fruit'))
+
+    index.add('apple', ['fruit', 'red'] as Set)
+    index.add('banana', ['fruit', 'yellow'] as Set)
+    index.add('tomato', ['fruit', 'vegetable', 'red'] as Set)
+    index.add('carrot', ['vegetable'] as Set)
+
+    assertEquals(['apple', 'banana', 'tomato', 'carrot'] as Set, index.keys)
+    assertEquals(['fruit', 'red', 'yellow', 'vegetable'] as Set, index.tags)
+    assertEquals(['apple', 'banana', 'tomato'] as Set, index.getKeys('fruit'))
+    assertEquals(['fruit', 'red'] as Set, index.getTags('apple'))
+
+    assertEquals(['apple', 'tomato'] as Set, index.findKeysWithAllTags(['fruit', 'red']))
+    assertEquals([] as Set, index.findKeysWithAllTags(['fruit', 'rock']))
+    assertEquals(['apple', 'banana', 'tomato', 'carrot'] as Set, index.findKeysWithAllTags([]))
+    assertEquals(['banana', 'tomato', 'carrot'] as Set, index.findKeysWithAnyTag(['vegetable', 'yellow', 'rock']))
+    assertEquals([] as Set, index.findKeysWithAnyTag([]))
+    assertEquals(['apple', 'banana'] as Set, index.findKeys(['fruit'], ['vegetable']))
+    assertEquals(['carrot'] as Set, index.findKeys([], ['fruit']))
+
+    // copy is independent
+    TagIndex copy = new TagIndex(index)
+
+    // getKeys(tag) is a (read only) snapshot
+    Set<String> fruits = index.getKeys('fruit')
+    shouldFail(UnsupportedOperationException) { fruits.add('lemon') }
+
+    index.remove('tomato')
+    assertEquals(['apple', 'banana', 'carrot'] as Set, index.keys)
+    assertEquals(['apple', 'banana', 'tomato'] as Set, fruits)
+    assertEquals(['apple'] as Set, index.findKeysWithAllTags(['fruit', 'red']))
+    assertEquals(['carrot'] as Set, index.getKeys('vegetable'))
+    assertNull(index.getTags('tomato'))
+
+    index.remove('banana')
+    assertNull(index.getKeys('yellow'))
+    assertEquals(['fruit', 'red', 'vegetable'] as Set, index.tags)
+
+    // the ids of the removed keys are reused
+    index.add('lemon', ['fruit', 'yellow'] as Set)
+    assertEquals(['apple', 'lemon'] as Set, index.getKeys('fruit'))
+    assertEquals(['lemon'] as Set, index.getKeys('yellow'))
+
+    // adding an existing key replaces its tags
+    index.add('apple', ['fruit', 'green'] as Set)
+    assertNull(index.getKeys('red'))
+    assertEquals(['apple'] as Set, index.getKeys('green'))
+    assertEquals(['apple', 'lemon', 'carrot'] as Set, index.keys)
+
+    assertEquals(['apple', 'banana', 'tomato', 'carrot'] as Set, copy.keys)
+    assertEquals(['apple', 'tomato'] as Set, copy.findKeysWithAllTags(['fruit', 'red']))
+    assertEquals(['banana'] as Set, copy.getKeys('yellow'))
+  }
+}